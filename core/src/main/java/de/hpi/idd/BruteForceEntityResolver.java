@@ -1,14 +1,21 @@
 package de.hpi.idd;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import de.hpi.idd.sim.SimilarityClassifier;
 import de.hpi.idd.store.RecordStore;
 import de.hpi.idd.store.StoreException;
+import de.hpi.idd.util.ChunkedExecutor;
 import de.hpi.idd.util.UnionFind;
 
 /**
@@ -21,6 +28,11 @@ import de.hpi.idd.util.UnionFind;
  */
 public class BruteForceEntityResolver<RECORD, ID> implements EntityResolver<RECORD, ID> {
 
+	/** number of chunks compared at once when running on an executor */
+	private static final int CHUNKS_PER_BATCH = 16;
+
+	/** runs the comparisons in chunks, null to use parallel streams */
+	private ChunkedExecutor executor;
 	private boolean parallelizable = true;
 	private final SimilarityClassifier<RECORD> sim;
 	private final RecordStore<ID, RECORD> store;
@@ -36,21 +48,73 @@ public class BruteForceEntityResolver<RECORD, ID> implements EntityResolver<RECO
 		store.close();
 	}
 
+	@Override
+	public void delete(ID recordId) throws StoreException {
+		store.deleteRecord(recordId);
+		Set<ID> component = uf.removeComponent(recordId);
+		component.remove(recordId);
+		for (ID member : component) {
+			RECORD record = store.getRecord(member);
+			// the member may have been deleted concurrently
+			if (record != null) {
+				resolve(record, member);
+			}
+		}
+	}
+
 	@Override
 	public Collection<ID> insert(RECORD record, ID recordId) throws StoreException {
 		store.storeRecord(recordId, record);
 		return resolve(record, recordId);
 	}
 
+	/**
+	 * Get the executor the records are compared on.
+	 *
+	 * @return the executor, null if the common ForkJoinPool is used
+	 */
+	public Executor getExecutor() {
+		return executor == null ? null : executor.getExecutor();
+	}
+
 	public boolean isParallelizable() {
 		return parallelizable;
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public Collection<ID> resolve(RECORD record, ID recordId) throws StoreException {
-		List<ID> matches = StreamSupport.stream(store.spliterator(), parallelizable).filter(
-				candidate -> !recordId.equals(candidate.getKey()) && sim.areSimilar(record, candidate.getValue()))
-				.map(Entry::getKey).collect(Collectors.toList());
+		Predicate<Entry<ID, RECORD>> similar = candidate -> !recordId.equals(candidate.getKey())
+				&& sim.areSimilar(record, candidate.getValue());
+		List<ID> matches;
+		if (parallelizable && executor != null) {
+			matches = new ArrayList<>();
+			// compare the records in batches instead of copying the whole store
+			int capacity = CHUNKS_PER_BATCH * executor.getChunkSize();
+			Spliterator<Entry<ID, RECORD>> records = store.spliterator();
+			List<Entry<ID, RECORD>> batch = new ArrayList<>(capacity);
+			Consumer<Entry<ID, RECORD>> add = batch::add;
+			Object[] verdicts = new Object[capacity];
+			boolean more = true;
+			while (more) {
+				batch.clear();
+				do {
+					more = records.tryAdvance(add);
+				} while (more && batch.size() < capacity);
+				executor.forEach(batch.size(), i -> {
+					Entry<ID, RECORD> candidate = batch.get(i);
+					verdicts[i] = similar.test(candidate) ? candidate.getKey() : null;
+				});
+				for (int i = 0; i < batch.size(); i++) {
+					if (verdicts[i] != null) {
+						matches.add((ID) verdicts[i]);
+					}
+				}
+			}
+		} else {
+			matches = StreamSupport.stream(store.spliterator(), parallelizable).filter(similar).map(Entry::getKey)
+					.collect(Collectors.toList());
+		}
 		for (ID match : matches) {
 			uf.union(recordId, match);
 		}
@@ -59,6 +123,24 @@ public class BruteForceEntityResolver<RECORD, ID> implements EntityResolver<RECO
 		return component;
 	}
 
+	/**
+	 * Compare the records on a dedicated executor instead of the common
+	 * ForkJoinPool. The records are submitted in chunks of
+	 * {@link ChunkedExecutor#DEFAULT_CHUNK_SIZE} records, while the store is
+	 * iterated in batches of a few chunks, so that it is not copied. The
+	 * executor is only used if the resolver is parallelizable.
+	 *
+	 * @param executor
+	 *            executor running the comparisons, null to use the common
+	 *            ForkJoinPool
+	 * @return this
+	 * @see de.hpi.idd.dysni.DynamicSortedNeighborhoodIndexer#setExecutor(Executor)
+	 */
+	public BruteForceEntityResolver<RECORD, ID> setExecutor(Executor executor) {
+		this.executor = executor == null ? null : new ChunkedExecutor(executor);
+		return this;
+	}
+
 	public BruteForceEntityResolver<RECORD, ID> setParallelizable(boolean parallelizable) {
 		this.parallelizable = parallelizable;
 		return this;
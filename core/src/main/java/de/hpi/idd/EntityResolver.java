@@ -16,6 +16,21 @@ import java.util.Collection;
  */
 public interface EntityResolver<RECORD, ID> extends Closeable {
 
+	/**
+	 * Remove a record from the entity resolver. The duplicate cluster the
+	 * record belonged to is resolved again without it. By default, records
+	 * cannot be removed.
+	 *
+	 * @param recordId
+	 *            the unique identifier of the record
+	 * @throws StoreException
+	 * @throws UnsupportedOperationException
+	 *             if the entity resolver does not support removing records
+	 */
+	default void delete(ID recordId) throws StoreException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support deleting records");
+	}
+
 	/**
 	 * Add a record to the entity resolver
 	 *
@@ -39,4 +54,21 @@ public interface EntityResolver<RECORD, ID> extends Closeable {
 	 */
 	Collection<ID> resolve(RECORD record, ID recordId) throws StoreException;
 
+	/**
+	 * Replace a record of the entity resolver with a new version.
+	 *
+	 * @param record
+	 *            the new version of the record
+	 * @param recordId
+	 *            the unique identifier of the record
+	 * @return ids of duplicate records
+	 * @throws StoreException
+	 * @see #delete(Object)
+	 * @see #insert(Object, Object)
+	 */
+	default Collection<ID> update(RECORD record, ID recordId) throws StoreException {
+		delete(recordId);
+		return insert(record, recordId);
+	}
+
 }
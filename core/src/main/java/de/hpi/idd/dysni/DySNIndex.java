@@ -1,17 +1,57 @@
 package de.hpi.idd.dysni;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import de.hpi.idd.dysni.avl.BraidedAVLTree;
-import de.hpi.idd.dysni.avl.Node;
+import de.hpi.idd.dysni.avl.SnapshotCodec;
+import de.hpi.idd.dysni.avl.TreeSnapshot;
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.window.CandidateSink;
 import de.hpi.idd.dysni.window.WindowBuilder;
+import de.hpi.idd.sim.SimilarityClassifier;
+import de.hpi.idd.util.ChunkedExecutor;
+import de.hpi.idd.util.ElementCollection;
+import de.hpi.idd.util.ElementCollection.TagConsumer;
 
 /**
  * A index for the DySNI approach. The elements are inserted into a
- * {@link BraidedAVLTree} to access them sorted by a specific key. Keys are
+ * {@link SortedIndex} to access them sorted by a specific key. Keys are
  * generated by a {@link KeyHandler}. The windows to retrieve possible
  * duplicates are built by the specified {@link WindowBuilder}
  *
+ * <p>
+ * A concurrent index guards its sorted index by a read/write lock, so that
+ * windows are built in parallel while inserts and deletes are exclusive. The
+ * window of an inserted record is built before other threads may modify the
+ * index again.
+ * </p>
+ *
+ * <p>
+ * If the sorted index {@link SortedIndex#supportsOptimisticReads() supports
+ * optimistic reads}, windows are built without any lock into a throwaway
+ * recording, which is only passed to the sink if the index was not modified
+ * in the meantime. Otherwise, the window is built again within a read-only
+ * operation of the sorted index. As such an index is thread-safe itself,
+ * inserts and deletes only hold the lock of a concurrent index in shared
+ * mode, so that it merely excludes them from operations on the whole index,
+ * e.g. {@link #join(DySNIndex) joins} and snapshots.
+ * </p>
+ *
  * @param <RECORD>
  *            type of records to be resolved
  * @param <KEY>
@@ -21,10 +61,165 @@ import de.hpi.idd.dysni.window.WindowBuilder;
  */
 class DySNIndex<RECORD, KEY extends Comparable<KEY>, ID> {
 
+	/**
+	 * Sink recording a window built optimistically, so that its candidates
+	 * are only passed to the actual sink once the read has been validated.
+	 * While recording, the candidates count against the
+	 * {@link CandidateSink#getRemainingComparisons() remaining comparisons} of
+	 * the sink, including those the sink has already received from other
+	 * windows. Recordings are reused by the thread building the windows.
+	 */
+	private static class Recording<ID> implements CandidateSink<ID> {
+
+		/** classifier of the verdict per candidate, null if there is none */
+		private final List<SimilarityClassifier<?>> classifiers = new ArrayList<>();
+		private final List<ID> ids = new ArrayList<>();
+		/** verdict per candidate */
+		private final BitSet similar = new BitSet();
+		/** sink the recording is replayed into */
+		private CandidateSink<ID> sink;
+		/** receives tagged elements, created once to avoid allocations per node */
+		private final TagConsumer<ID> tagged = this::record;
+		/** tag per candidate */
+		private int[] tags = new int[16];
+		private boolean truncated = false;
+
+		@Override
+		public void accept(ID id) {
+			record(id, ElementCollection.UNTAGGED);
+		}
+
+		@Override
+		public void accept(ID id, SimilarityClassifier<?> classifier, boolean similar) {
+			this.similar.set(ids.size(), similar);
+			record(id, ElementCollection.UNTAGGED);
+			classifiers.set(classifiers.size() - 1, classifier);
+		}
+
+		@Override
+		public void acceptElements(IndexNode<?, ? extends ID> node) {
+			node.forEachTagged(tagged);
+		}
+
+		@Override
+		public void acceptTagged(ID id, int tag) {
+			record(id, tag);
+		}
+
+		/**
+		 * Discard the recording, so that it does not retain any ids.
+		 */
+		void clear() {
+			classifiers.clear();
+			ids.clear();
+			similar.clear();
+			sink = null;
+			truncated = false;
+		}
+
+		@Override
+		public int getRemainingComparisons() {
+			return Math.max(0, sink.getRemainingComparisons() - ids.size());
+		}
+
+		@Override
+		public boolean isExhausted() {
+			return ids.size() >= sink.getRemainingComparisons() || sink.isExhausted();
+		}
+
+		@Override
+		public void markTruncated() {
+			truncated = true;
+		}
+
+		private void record(ID id, int tag) {
+			if (ids.size() == tags.length) {
+				tags = Arrays.copyOf(tags, 2 * tags.length);
+			}
+			tags[ids.size()] = tag;
+			ids.add(id);
+			classifiers.add(null);
+		}
+
+		/**
+		 * Pass the recorded candidates to the sink.
+		 */
+		void replay() {
+			for (int i = 0; i < ids.size(); i++) {
+				SimilarityClassifier<?> classifier = classifiers.get(i);
+				if (classifier == null) {
+					sink.acceptTagged(ids.get(i), tags[i]);
+				} else {
+					sink.accept(ids.get(i), classifier, similar.get(i));
+				}
+			}
+			if (truncated) {
+				sink.markTruncated();
+			}
+		}
+
+		/**
+		 * Prepare recording a window for a sink.
+		 */
+		void reset(CandidateSink<ID> sink) {
+			clear();
+			this.sink = sink;
+		}
+	}
+
+	/**
+	 * Keys of a batch of records computed in advance, so that the records can
+	 * be inserted without computing them again.
+	 *
+	 * @see DySNIndex#computeKeys(List, boolean, ChunkedExecutor)
+	 */
+	public class Keys {
+
+		private final List<KEY> keys;
+
+		private Keys(List<KEY> keys) {
+			this.keys = keys;
+		}
+
+		/**
+		 * Insert a record of the batch into the index and pass the possible
+		 * duplicates to a sink.
+		 *
+		 * @param i
+		 *            position of the record in the batch
+		 * @param record
+		 *            the new record
+		 * @param value
+		 *            the id it can be identified by
+		 * @param tag
+		 *            dense int of the id, see
+		 *            {@link DySNIndex#insert(Object, Object, int, CandidateSink)}
+		 * @param sink
+		 *            receives the ids of possible duplicate records, possibly
+		 *            more than once
+		 */
+		public void insert(int i, RECORD record, ID value, int tag, CandidateSink<ID> sink) {
+			DySNIndex.this.insert(keys.get(i), record, value, tag, sink);
+		}
+	}
+
+	/** orders joins of two indexes with the same identity hash */
+	private static final Object TIE_LOCK = new Object();
+
+	/** codec for writing keys to snapshots, may be null */
+	private final SnapshotCodec<KEY> keyCodec;
+	/** keys the records have been inserted with, to delete them by id */
+	private final Map<ID, KEY> keys;
+	/** guards the sorted index, null if the index is not concurrent */
+	private final ReadWriteLock lock;
+	/** whether the sorted index supports optimistic reads */
+	private final boolean optimistic;
+	/** recordings of windows built optimistically, one per thread */
+	private final ThreadLocal<Recording<ID>> recordings = ThreadLocal.withInitial(Recording::new);
 	/** used for computation of the key of an element in the tree */
 	private final KeyHandler<RECORD, KEY> keyHandler;
-	/** binary search tree with pointers to the in-order neighbors of nodes */
-	private final BraidedAVLTree<KEY, ID> tree = new BraidedAVLTree<>();
+	/** sorted index with pointers to the in-order neighbors of nodes */
+	private final SortedIndex<KEY, ID> index;
 	/** window builder to retrieve possible duplicates */
 	private final WindowBuilder<RECORD, KEY, ID> windowBuilder;
 
@@ -36,8 +231,153 @@ class DySNIndex<RECORD, KEY extends Comparable<KEY>, ID> {
 	 *            {@link WindowBuilder} to be used.
 	 */
 	public DySNIndex(DySNIndexConfiguration<RECORD, KEY, ID> conf) {
-		this.keyHandler = conf.getHandler();
-		this.windowBuilder = conf.getBuilder();
+		this(conf, false);
+	}
+
+	/**
+	 * Construct a new index from the specified configuration.
+	 *
+	 * @param conf
+	 *            the configuration specifying the {@link KeyHandler} and
+	 *            {@link WindowBuilder} to be used.
+	 * @param concurrent
+	 *            whether the index is used by several threads concurrently
+	 */
+	public DySNIndex(DySNIndexConfiguration<RECORD, KEY, ID> conf, boolean concurrent) {
+		this(conf.getHandler(), conf.getBuilder(), conf.getIndexFactory().get(), conf.getKeyCodec(),
+				concurrent ? new ReentrantReadWriteLock() : null);
+	}
+
+	private DySNIndex(KeyHandler<RECORD, KEY> keyHandler, WindowBuilder<RECORD, KEY, ID> windowBuilder,
+			SortedIndex<KEY, ID> index, SnapshotCodec<KEY> keyCodec, ReadWriteLock lock) {
+		this.keyHandler = keyHandler;
+		this.lock = lock;
+		this.keyCodec = keyCodec;
+		this.windowBuilder = windowBuilder;
+		this.index = index;
+		this.optimistic = index.supportsOptimisticReads();
+		this.keys = lock == null ? new HashMap<>() : new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Build the window of a record and pass its candidates to the sink exactly
+	 * once. If the sorted index supports optimistic reads, the window is built
+	 * optimistically first. Otherwise, or if the index was modified in the
+	 * meantime, it is built within a read-only operation of the index. No
+	 * lambda is created, so that building a window into a reused sink does not
+	 * allocate.
+	 *
+	 * @param key
+	 *            key of the node the window starts at, if the node is not
+	 *            given
+	 * @param node
+	 *            node the window starts at, null to find it by the key
+	 * @see SortedIndex#beginRead()
+	 */
+	private void buildWindow(RECORD record, KEY key, IndexNode<KEY, ID> node, CandidateSink<ID> sink) {
+		if (optimistic && buildWindowOptimistically(record, key, node, sink)) {
+			return;
+		}
+		long stamp = index.beginRead();
+		try {
+			windowBuilder.buildWindow(record, index, node == null ? index.find(key) : node, sink);
+		} finally {
+			index.endRead(stamp);
+		}
+	}
+
+	/**
+	 * Build the window of a record into the recording of the current thread
+	 * without blocking writers and replay it into the sink if the read can be
+	 * validated.
+	 *
+	 * @return true if the candidates have been passed to the sink
+	 * @see SortedIndex#tryOptimisticRead()
+	 */
+	private boolean buildWindowOptimistically(RECORD record, KEY key, IndexNode<KEY, ID> node,
+			CandidateSink<ID> sink) {
+		long stamp = index.tryOptimisticRead();
+		if (stamp == 0L) {
+			return false;
+		}
+		Recording<ID> recording = recordings.get();
+		recording.reset(sink);
+		try {
+			try {
+				windowBuilder.buildWindow(record, index, node == null ? index.find(key) : node, recording);
+			} catch (RuntimeException e) {
+				// an inconsistent state may cause arbitrary exceptions
+				if (index.validate(stamp)) {
+					throw e;
+				}
+				return false;
+			}
+			if (!index.validate(stamp)) {
+				return false;
+			}
+			recording.replay();
+			return true;
+		} finally {
+			recording.clear();
+		}
+	}
+
+	/**
+	 * Compute the keys of a batch of records.
+	 *
+	 * @param records
+	 *            the records to be inserted
+	 * @param parallel
+	 *            whether the keys should be computed in parallel, which
+	 *            requires a thread-safe {@link KeyHandler}
+	 * @return keys in the order of the records
+	 */
+	public Keys computeKeys(List<RECORD> records, boolean parallel) {
+		return computeKeys(records, parallel, null);
+	}
+
+	/**
+	 * Compute the keys of a batch of records, in parallel on a dedicated
+	 * executor if one is given.
+	 *
+	 * @param records
+	 *            the records to be inserted, with fast random access
+	 * @param parallel
+	 *            whether the keys should be computed in parallel, which
+	 *            requires a thread-safe {@link KeyHandler}
+	 * @param executor
+	 *            executor computing the keys in chunks, null to use the
+	 *            common ForkJoinPool
+	 * @return keys in the order of the records
+	 */
+	@SuppressWarnings("unchecked")
+	public Keys computeKeys(List<RECORD> records, boolean parallel, ChunkedExecutor executor) {
+		if (parallel && executor != null) {
+			Object[] keys = new Object[records.size()];
+			executor.forEach(keys.length, i -> keys[i] = keyHandler.computeKey(records.get(i)));
+			return new Keys((List<KEY>) (List<?>) Arrays.asList(keys));
+		}
+		Stream<RECORD> stream = records.stream();
+		if (parallel) {
+			stream = stream.parallel();
+		}
+		return new Keys(stream.map(keyHandler::computeKey).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Remove a record from the index. It is located by the key it was inserted
+	 * with, so the key is not computed again and the record does not need to
+	 * be retrieved.
+	 *
+	 * @param value
+	 *            the id the record can be identified by
+	 * @return true if the record was contained in the index
+	 */
+	public boolean delete(ID value) {
+		return modify(() -> {
+			KEY key = keys.remove(value);
+			return key != null && index.delete(key, value);
+		});
 	}
 
 	/**
@@ -49,21 +389,33 @@ class DySNIndex<RECORD, KEY extends Comparable<KEY>, ID> {
 	 * @return the ids of possible duplicate records
 	 */
 	public Collection<ID> findCandidates(RECORD record) {
-		return findCandidates(record, tree.find(keyHandler.computeKey(record)));
+		Collection<ID> candidates = new ArrayList<>();
+		findCandidates(record, candidates::add);
+		return candidates;
 	}
 
 	/**
-	 * Find possible duplicates by building a window starting from the given
-	 * node.
+	 * Find possible duplicates by building a window starting from the
+	 * corresponding node in the tree and pass them to a sink.
 	 *
 	 * @param record
 	 *            the record for which duplicates should be found
-	 * @param node
-	 *            the node to start search from
-	 * @return the ids of possible duplicate records
+	 * @param sink
+	 *            receives the ids of possible duplicate records, possibly more
+	 *            than once
 	 */
-	private Collection<ID> findCandidates(RECORD record, Node<KEY, ID> node) {
-		return windowBuilder.buildWindow(record, node);
+	public void findCandidates(RECORD record, CandidateSink<ID> sink) {
+		KEY key = keyHandler.computeKey(record);
+		if (lock == null || optimistic) {
+			buildWindow(record, key, null, sink);
+			return;
+		}
+		lock.readLock().lock();
+		try {
+			buildWindow(record, key, null, sink);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -75,11 +427,307 @@ class DySNIndex<RECORD, KEY extends Comparable<KEY>, ID> {
 	 *            the id it can be identified by
 	 */
 	public Collection<ID> insert(RECORD record, ID value) {
-		Node<KEY, ID> node = tree.insert(keyHandler.computeKey(record), value);
-		return findCandidates(record, node);
+		Collection<ID> candidates = new ArrayList<>();
+		insert(keyHandler.computeKey(record), record, value, ElementCollection.UNTAGGED, candidates::add);
+		return candidates;
+	}
+
+	/**
+	 * Insert a new record into the index using its id and pass the possible
+	 * duplicates to a sink.
+	 *
+	 * @param record
+	 *            the new record
+	 * @param value
+	 *            the id it can be identified by
+	 * @param sink
+	 *            receives the ids of possible duplicate records, possibly more
+	 *            than once
+	 */
+	public void insert(RECORD record, ID value, CandidateSink<ID> sink) {
+		insert(record, value, ElementCollection.UNTAGGED, sink);
+	}
+
+	/**
+	 * Insert a new record into the index using its id and pass the possible
+	 * duplicates to a sink. The id is {@link IndexNode#setTag(Object, int)
+	 * tagged} with its dense int, so that sinks collecting dense ints do not
+	 * need to look it up when it is a candidate of later records.
+	 *
+	 * @param record
+	 *            the new record
+	 * @param value
+	 *            the id it can be identified by
+	 * @param tag
+	 *            dense int of the id, {@link ElementCollection#UNTAGGED} if
+	 *            there is none
+	 * @param sink
+	 *            receives the ids of possible duplicate records, possibly more
+	 *            than once
+	 */
+	public void insert(RECORD record, ID value, int tag, CandidateSink<ID> sink) {
+		insert(keyHandler.computeKey(record), record, value, tag, sink);
+	}
+
+	/**
+	 * Insert a record with a precomputed key. If the index is concurrent and
+	 * does not support optimistic reads, the write lock is downgraded to the
+	 * read lock for building the window, so that the node cannot be deleted
+	 * in the meantime.
+	 */
+	private void insert(KEY key, RECORD record, ID value, int tag, CandidateSink<ID> sink) {
+		IndexNode<KEY, ID> node;
+		if (lock == null || optimistic) {
+			node = modify(() -> track(key, value, index.insert(key, value, tag)));
+			if (node != null) {
+				buildWindow(record, null, node, sink);
+			}
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			node = track(key, value, index.insert(key, value, tag));
+			lock.readLock().lock();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try {
+			if (node != null) {
+				buildWindow(record, null, node, sink);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Move all records of another index into this index. All keys of the other
+	 * index must be larger than the keys of this index. The other index is
+	 * empty afterwards.
+	 *
+	 * @param other
+	 *            the index whose records should be appended
+	 * @see SortedIndex#join(SortedIndex)
+	 */
+	public void join(DySNIndex<RECORD, KEY, ID> other) {
+		if (other == this) {
+			throw new IllegalArgumentException("Cannot join an index with itself");
+		}
+		Supplier<Void> joiner = () -> {
+			index.join(other.index);
+			keys.putAll(other.keys);
+			other.keys.clear();
+			return null;
+		};
+		// acquire the write locks in a global order to avoid deadlocks
+		int hash = System.identityHashCode(this);
+		int otherHash = System.identityHashCode(other);
+		if (hash == otherHash) {
+			synchronized (TIE_LOCK) {
+				write(() -> other.write(joiner));
+			}
+		} else if (hash < otherHash) {
+			write(() -> other.write(joiner));
+		} else {
+			other.write(() -> write(joiner));
+		}
+	}
+
+	/**
+	 * Pass the duplicates found among the candidates of the window most
+	 * recently built by the current thread to the window builder.
+	 *
+	 * @param record
+	 *            the record the window was built for
+	 * @param matches
+	 *            ids of the candidates determined similar to the record
+	 * @see WindowBuilder#matched(Object, Collection)
+	 */
+	public void matched(RECORD record, Collection<ID> matches) {
+		windowBuilder.matched(record, matches);
+	}
+
+	/**
+	 * Load the index from a snapshot. The index must be empty.
+	 *
+	 * @param file
+	 *            the snapshot
+	 * @param idCodec
+	 *            codec used to write the ids
+	 * @throws IOException
+	 *             if the snapshot cannot be read
+	 * @see TreeSnapshot
+	 */
+	public void readSnapshot(Path file, SnapshotCodec<ID> idCodec) throws IOException {
+		if (lock == null) {
+			TreeSnapshot.read(file, getKeyCodec(), idCodec, index);
+			track(index);
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			TreeSnapshot.read(file, getKeyCodec(), idCodec, index);
+			track(index);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Insert or delete a record while holding the write lock if the index is
+	 * concurrent. If the sorted index supports optimistic reads, it is
+	 * thread-safe itself, so that the lock is held in shared mode.
+	 */
+	private <R> R modify(Supplier<R> modification) {
+		if (lock == null) {
+			return modification.get();
+		}
+		Lock mode = optimistic ? lock.readLock() : lock.writeLock();
+		mode.lock();
+		try {
+			return modification.get();
+		} finally {
+			mode.unlock();
+		}
+	}
+
+	/**
+	 * Run a read-only operation on the index while holding the read lock if
+	 * the index is concurrent and does not support optimistic reads.
+	 *
+	 * @see SortedIndex#read(Supplier)
+	 */
+	private <R> R read(Supplier<R> reader) {
+		if (lock == null || optimistic) {
+			return index.read(reader);
+		}
+		lock.readLock().lock();
+		try {
+			return index.read(reader);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private SnapshotCodec<KEY> getKeyCodec() {
+		if (keyCodec == null) {
+			throw new IllegalStateException("No snapshot codec configured for the keys of the index");
+		}
+		return keyCodec;
 	}
 
 	public int size() {
-		return tree.nodes();
+		return read(index::nodes);
+	}
+
+	/**
+	 * Take a snapshot of the index using the same {@link KeyHandler} and
+	 * {@link WindowBuilder}. The snapshot is meant for finding candidates,
+	 * records cannot be deleted from it.
+	 *
+	 * @return index pinned to the current state of this index
+	 * @see SortedIndex#snapshot()
+	 */
+	public DySNIndex<RECORD, KEY, ID> snapshot() {
+		return new DySNIndex<>(keyHandler, windowBuilder, read(index::snapshot), keyCodec, null);
+	}
+
+	/**
+	 * Split the index at a key. Records whose keys are larger than or equal to
+	 * the key are moved into a new index using the same {@link KeyHandler} and
+	 * a {@link WindowBuilder#copy() copy} of the {@link WindowBuilder}, so
+	 * that the feedback of one index does not tune the windows of the other.
+	 *
+	 * @param key
+	 *            the smallest key of the new index
+	 * @return index containing the records with keys larger than or equal to
+	 *         the key
+	 * @see SortedIndex#split(Comparable)
+	 */
+	public DySNIndex<RECORD, KEY, ID> split(KEY key) {
+		return write(() -> {
+			DySNIndex<RECORD, KEY, ID> larger = new DySNIndex<>(keyHandler, windowBuilder.copy(), index.split(key),
+					keyCodec, lock == null ? null : new ReentrantReadWriteLock());
+			larger.track(larger.index);
+			keys.keySet().removeAll(larger.keys.keySet());
+			return larger;
+		});
+	}
+
+	/**
+	 * Remember the key a record has been inserted with.
+	 *
+	 * @return the node the record has been inserted into
+	 */
+	private IndexNode<KEY, ID> track(KEY key, ID value, IndexNode<KEY, ID> node) {
+		if (node != null && value != null) {
+			keys.put(value, key);
+		}
+		return node;
+	}
+
+	/**
+	 * Remember the keys of all records of a sorted index, e.g. after loading
+	 * it.
+	 */
+	private void track(SortedIndex<KEY, ID> records) {
+		for (IndexNode<KEY, ID> node = records.getSmallest(); node != null; node = node.getNext()) {
+			for (ID value : node.getElements()) {
+				keys.put(value, node.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Check whether the windows depend on the duplicates found.
+	 *
+	 * @return true if the record has to be matched before the next window is
+	 *         built
+	 * @see WindowBuilder#usesFeedback()
+	 */
+	public boolean usesFeedback() {
+		return windowBuilder.usesFeedback();
+	}
+
+	/**
+	 * Run a modification of the whole index while holding the write lock if
+	 * the index is concurrent.
+	 */
+	private <R> R write(Supplier<R> writer) {
+		if (lock == null) {
+			return writer.get();
+		}
+		lock.writeLock().lock();
+		try {
+			return writer.get();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Write a snapshot of the index.
+	 *
+	 * @param file
+	 *            the snapshot
+	 * @param idCodec
+	 *            codec to write the ids
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 * @see TreeSnapshot
+	 */
+	public void writeSnapshot(Path file, SnapshotCodec<ID> idCodec) throws IOException {
+		if (lock == null) {
+			TreeSnapshot.write(index, file, getKeyCodec(), idCodec);
+			return;
+		}
+		// inserts into an index supporting optimistic reads hold the read lock
+		Lock mode = optimistic ? lock.writeLock() : lock.readLock();
+		mode.lock();
+		try {
+			TreeSnapshot.write(index, file, getKeyCodec(), idCodec);
+		} finally {
+			mode.unlock();
+		}
 	}
 }
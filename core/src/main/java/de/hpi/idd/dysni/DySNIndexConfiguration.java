@@ -1,5 +1,10 @@
 package de.hpi.idd.dysni;
 
+import java.util.function.Supplier;
+
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.dysni.avl.SnapshotCodec;
+import de.hpi.idd.dysni.index.SortedIndex;
 import de.hpi.idd.dysni.window.WindowBuilder;
 
 /**
@@ -16,6 +21,8 @@ public class DySNIndexConfiguration<RECORD, KEY extends Comparable<KEY>, ID> {
 
 	private final WindowBuilder<RECORD, KEY, ID> builder;
 	private final KeyHandler<RECORD, KEY> handler;
+	private final Supplier<SortedIndex<KEY, ID>> indexFactory;
+	private SnapshotCodec<KEY> keyCodec;
 
 	/**
 	 * Construct a new configuration
@@ -26,8 +33,32 @@ public class DySNIndexConfiguration<RECORD, KEY extends Comparable<KEY>, ID> {
 	 *            the {@link WindowBuilder} to be used in the index
 	 */
 	public DySNIndexConfiguration(KeyHandler<RECORD, KEY> handler, WindowBuilder<RECORD, KEY, ID> builder) {
+		this(handler, builder, BraidedAVLTree::new);
+	}
+
+	/**
+	 * Construct a new configuration
+	 *
+	 * @param handler
+	 *            the {@link KeyHandler} to be used in the index
+	 * @param builder
+	 *            the {@link WindowBuilder} to be used in the index
+	 * @param indexFactory
+	 *            creates the sorted index the elements are stored in, e.g. a
+	 *            {@link de.hpi.idd.dysni.avl.ConcurrentBraidedAVLTree
+	 *            ConcurrentBraidedAVLTree} or a
+	 *            {@link de.hpi.idd.dysni.skiplist.ConcurrentSkipListIndex
+	 *            ConcurrentSkipListIndex} for indexes accessed by multiple
+	 *            threads, a {@link de.hpi.idd.dysni.btree.BPlusTree
+	 *            BPlusTree} for faster window expansion or a
+	 *            {@link de.hpi.idd.dysni.persistent.PersistentAVLTree
+	 *            PersistentAVLTree} for snapshot-isolated reads
+	 */
+	public DySNIndexConfiguration(KeyHandler<RECORD, KEY> handler, WindowBuilder<RECORD, KEY, ID> builder,
+			Supplier<SortedIndex<KEY, ID>> indexFactory) {
 		this.handler = handler;
 		this.builder = builder;
+		this.indexFactory = indexFactory;
 	}
 
 	WindowBuilder<RECORD, KEY, ID> getBuilder() {
@@ -38,4 +69,27 @@ public class DySNIndexConfiguration<RECORD, KEY extends Comparable<KEY>, ID> {
 		return handler;
 	}
 
+	Supplier<SortedIndex<KEY, ID>> getIndexFactory() {
+		return indexFactory;
+	}
+
+	SnapshotCodec<KEY> getKeyCodec() {
+		return keyCodec;
+	}
+
+	/**
+	 * Set the codec used to write the keys of the index to snapshots. Indexes
+	 * without a codec cannot be written to or read from snapshots.
+	 *
+	 * @param keyCodec
+	 *            codec for the keys
+	 * @return this
+	 * @see DynamicSortedNeighborhoodIndexer#writeSnapshot(java.nio.file.Path,
+	 *      SnapshotCodec)
+	 */
+	public DySNIndexConfiguration<RECORD, KEY, ID> setKeyCodec(SnapshotCodec<KEY> keyCodec) {
+		this.keyCodec = keyCodec;
+		return this;
+	}
+
 }
@@ -1,17 +1,51 @@
 package de.hpi.idd.dysni;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import de.hpi.idd.EntityResolver;
+import de.hpi.idd.dysni.avl.SnapshotCodec;
+import de.hpi.idd.dysni.avl.TreeSnapshot;
+import de.hpi.idd.dysni.window.CandidateBuffer;
+import de.hpi.idd.dysni.window.DenseCandidateBuffer;
+import de.hpi.idd.dysni.window.WindowBudget;
+import de.hpi.idd.dysni.window.WindowBuilder;
 import de.hpi.idd.sim.SimilarityClassifier;
 import de.hpi.idd.store.RecordStore;
 import de.hpi.idd.store.StoreException;
+import de.hpi.idd.util.ChunkedExecutor;
+import de.hpi.idd.util.CompactIdDictionary;
+import de.hpi.idd.util.ConcurrentIdDictionary;
+import de.hpi.idd.util.ConcurrentUnionFind;
+import de.hpi.idd.util.DisjointSets;
+import de.hpi.idd.util.ElementCollection;
+import de.hpi.idd.util.IdDictionary;
 import de.hpi.idd.util.UnionFind;
 
 /**
@@ -30,12 +64,131 @@ import de.hpi.idd.util.UnionFind;
  */
 public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResolver<RECORD, ID> {
 
-	private int comparisons = 0;
+	/**
+	 * Read-only view of the indexes pinned to the state at the time the
+	 * snapshot was taken. The snapshot can be used while the indexer is
+	 * modified.
+	 *
+	 * <p>
+	 * Only the indexes are pinned, i.e. which ids are candidates of a record.
+	 * The candidates themselves are retrieved from a record store when they
+	 * are compared. By default, this is the store of the indexer, so that
+	 * records updated after the snapshot was taken are compared in their new
+	 * version and records deleted in the meantime are never found. Records
+	 * inserted afterwards are not found either. Resolving against the exact
+	 * state of the snapshot requires a record store versioned alongside it,
+	 * which can be {@link DynamicSortedNeighborhoodIndexer#snapshot(RecordStore)
+	 * passed} when taking the snapshot.
+	 * </p>
+	 *
+	 * @see DynamicSortedNeighborhoodIndexer#snapshot()
+	 */
+	public class Snapshot {
+
+		private final Collection<DySNIndex<RECORD, ?, ID>> indexes = new ArrayList<>();
+		/** store the candidates are retrieved from */
+		private final RecordStore<ID, RECORD> records;
+
+		private Snapshot(RecordStore<ID, RECORD> records) {
+			this.records = records;
+			for (DySNIndex<RECORD, ?, ID> index : DynamicSortedNeighborhoodIndexer.this.indexes) {
+				indexes.add(index.snapshot());
+			}
+		}
+
+		/**
+		 * Find the duplicates of a record among the records indexed by the
+		 * snapshot. The duplicate clusters are not versioned, so only the
+		 * records directly determined similar to the record are returned.
+		 * Candidates are retrieved from the record store of the snapshot,
+		 * candidates missing from it are skipped.
+		 *
+		 * @param record
+		 *            the record to be resolved
+		 * @param recordId
+		 *            the unique identifier of the record, may be null
+		 * @return ids of similar records
+		 */
+		public Set<ID> resolve(RECORD record, ID recordId) {
+			CandidateBuffer<ID> candidates = snapshotBuffers.get();
+			candidates.reset(recordId);
+			for (DySNIndex<RECORD, ?, ID> index : indexes) {
+				index.findCandidates(record, candidates);
+			}
+			return collectMatches(candidates.size(), i -> {
+				ID candidate = candidates.get(i);
+				return areSimilar(record, candidate, records) ? candidate : null;
+			});
+		}
+	}
+
+	/**
+	 * Candidates of a record inserted in a batch, whose windows have been
+	 * built but which has not been matched yet.
+	 */
+	private static class PendingRecord {
+
+		/** dense ints of the candidates already found similar by a window builder */
+		private final int[] similar;
+		/** whether a window was truncated because the budget was used up */
+		private final boolean truncated;
+		/** dense ints of the candidates that still need to be compared */
+		private final int[] unclassified;
+
+		PendingRecord(DenseCandidateBuffer<?> candidates) {
+			int[] dense = candidates.getCandidates();
+			int classified = candidates.getClassified();
+			unclassified = new int[candidates.size() - classified];
+			int[] similar = new int[classified];
+			int u = 0;
+			int s = 0;
+			for (int i = 0; i < candidates.size(); i++) {
+				int candidate = dense[i];
+				if (!candidates.isClassified(candidate)) {
+					unclassified[u++] = candidate;
+				} else if (candidates.isSimilar(candidate)) {
+					similar[s++] = candidate;
+				}
+			}
+			this.similar = Arrays.copyOf(similar, s);
+			this.truncated = candidates.isTruncated();
+		}
+	}
+
+	/** "DYSC" in ASCII, starts the snapshot of the duplicate clusters */
+	private static final int COMPONENTS_MAGIC = 0x44595343;
+	/** name of the snapshot file containing the duplicate clusters */
+	private static final String COMPONENTS_SNAPSHOT = "components.snapshot";
+	/** format version of the snapshot of the duplicate clusters */
+	private static final int COMPONENTS_VERSION = 1;
+
+	/**
+	 * reusable buffers collecting the candidates of a record as dense ints, one
+	 * per thread
+	 */
+	private final ThreadLocal<DenseCandidateBuffer<ID>> buffers;
+	/** budget of all windows built for a record */
+	private WindowBudget budget = WindowBudget.UNLIMITED;
+	/** number of comparisons of records */
+	private final LongAdder comparisons = new LongAdder();
+	/** whether the indexer is used by several threads concurrently */
+	private final boolean concurrent;
+	/**
+	 * guards the ids of the dictionary against deletions while matches are
+	 * connected, null if the indexer is not concurrent
+	 */
+	private final ReadWriteLock deletions;
+	/** assigns dense ints to the ids of the indexed records */
+	private final IdDictionary<ID> dictionary;
+	/** runs the comparisons in chunks, null to use parallel streams */
+	private ChunkedExecutor executor;
 	/**
 	 * the different indexes, each with a specific key function and window
 	 * builder
 	 */
 	private final Collection<DySNIndex<RECORD, ?, ID>> indexes = new ArrayList<>();
+	/** reusable arrays collecting the matches of a record, one per thread */
+	private final ThreadLocal<Object[]> matchScratch = ThreadLocal.withInitial(() -> new Object[16]);
 	/**
 	 * indicates whether parallel execution of the similarity function should be
 	 * used
@@ -45,8 +198,15 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	private final SimilarityClassifier<RECORD> sim;
 	/** external store to retrieve records by their id */
 	private final RecordStore<ID, RECORD> store;
+	/**
+	 * reusable buffers collecting the candidates of a record resolved against
+	 * a {@link Snapshot}, one per thread
+	 */
+	private final ThreadLocal<CandidateBuffer<ID>> snapshotBuffers = ThreadLocal.withInitial(CandidateBuffer::new);
+	/** number of records whose windows were truncated */
+	private final LongAdder truncations = new LongAdder();
 	/** Union find data structure to ensure transitivity of similarity */
-	private final UnionFind<ID> uf = new UnionFind<>();
+	private final DisjointSets<ID> uf;
 
 	/**
 	 * Construct a new DySNIndexer with the specified store and similarity
@@ -58,8 +218,36 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	 *            the similarity classifier to determine duplicates
 	 */
 	public DynamicSortedNeighborhoodIndexer(RecordStore<ID, RECORD> store, SimilarityClassifier<RECORD> sim) {
+		this(store, sim, false);
+	}
+
+	/**
+	 * Construct a new DySNIndexer with the specified store and similarity
+	 * measure to be used. A concurrent indexer can be used by several threads,
+	 * e.g. to insert and resolve independent records in parallel. Each index
+	 * is then guarded by a read/write lock, so that windows are built in
+	 * parallel while modifications of an index are exclusive. The duplicate
+	 * clusters are kept in a {@link ConcurrentUnionFind}. The store, the
+	 * {@link KeyHandler}s, window builders and the similarity classifier must
+	 * be thread-safe as well. Indexes must be added and configured before the
+	 * indexer is shared.
+	 *
+	 * @param store
+	 *            the external store where records should be put
+	 * @param sim
+	 *            the similarity classifier to determine duplicates
+	 * @param concurrent
+	 *            whether the indexer is used by several threads concurrently
+	 */
+	public DynamicSortedNeighborhoodIndexer(RecordStore<ID, RECORD> store, SimilarityClassifier<RECORD> sim,
+			boolean concurrent) {
 		this.store = store;
 		this.sim = sim;
+		this.concurrent = concurrent;
+		this.dictionary = concurrent ? new ConcurrentIdDictionary<>() : new CompactIdDictionary<>();
+		this.uf = concurrent ? new ConcurrentUnionFind<>() : new UnionFind<>();
+		this.deletions = concurrent ? new ReentrantReadWriteLock() : null;
+		this.buffers = ThreadLocal.withInitial(() -> new DenseCandidateBuffer<>(dictionary, sim));
 	}
 
 	/**
@@ -70,7 +258,7 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	 * @return this
 	 */
 	public DynamicSortedNeighborhoodIndexer<RECORD, ID> addIndex(DySNIndexConfiguration<RECORD, ?, ID> config) {
-		indexes.add(new DySNIndex<>(config));
+		indexes.add(new DySNIndex<>(config, concurrent));
 		return this;
 	}
 
@@ -99,15 +287,110 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	 * @param candidate
 	 *            a potential duplicate represented by its unique id
 	 * @return true if the record and the candidate are determined similar by
-	 *         the similarity measure
+	 *         the similarity measure, false if the candidate has been deleted
+	 *         concurrently
 	 */
 	private boolean areSimilar(RECORD record, ID candidate) {
+		return areSimilar(record, candidate, store);
+	}
+
+	/**
+	 * Check a record and a candidate retrieved from a specific store for
+	 * similarity.
+	 *
+	 * @see #areSimilar(Object, Object)
+	 */
+	private boolean areSimilar(RECORD record, ID candidate, RecordStore<ID, RECORD> records) {
+		if (candidate == null) {
+			return false;
+		}
+		RECORD candidateRec = getRecord(records, candidate);
+		return candidateRec != null && sim.areSimilar(record, candidateRec);
+	}
+
+	/**
+	 * Pass the duplicates of a record to the window builders and connect them
+	 * in the Union Find data structure.
+	 *
+	 * @param record
+	 *            the record for which similar records have been resolved
+	 * @param recordId
+	 *            the unique identifier of the record, may be null
+	 * @param matches
+	 *            ids of the records determined similar to the record
+	 * @return ids of duplicate records
+	 */
+	private Collection<ID> cluster(RECORD record, ID recordId, Set<ID> matches) {
+		// candidates deleted concurrently
+		matches.remove(null);
+		for (DySNIndex<RECORD, ?, ID> index : indexes) {
+			index.matched(record, matches);
+		}
+		Collection<ID> component;
+		// deletions are exclusive, so that deleted records are not connected
+		// again, while records are connected in parallel
+		if (deletions != null) {
+			deletions.readLock().lock();
+		}
 		try {
-			RECORD candidateRec = store.getRecord(candidate);
-			return sim.areSimilar(record, candidateRec);
-		} catch (StoreException e) {
-			throw new RuntimeException("Error retrieving element from store", e);
+			// skip records deleted since they were matched
+			matches.removeIf(match -> dictionary.indexOf(match) < 0);
+			final ID rep;
+			if (recordId != null) {
+				rep = recordId;
+			} else {
+				if (matches.isEmpty()) {
+					return Collections.emptyList();
+				}
+				rep = matches.iterator().next();
+			}
+			for (ID match : matches) {
+				uf.union(rep, match);
+			}
+			component = uf.getComponent(rep);
+		} finally {
+			if (deletions != null) {
+				deletions.readLock().unlock();
+			}
 		}
+		component.remove(recordId);
+		return component;
+	}
+
+	/**
+	 * Compare a record to each of its candidates, in parallel if the indexer
+	 * is parallelizable. The matches are collected in a reusable array of the
+	 * calling thread, each index written by exactly one action.
+	 *
+	 * @param size
+	 *            number of candidates
+	 * @param matcher
+	 *            returns the id of the candidate at an index if it is similar
+	 *            to the record, null otherwise
+	 * @return ids of similar records
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<ID> collectMatches(int size, IntFunction<ID> matcher) {
+		Object[] matches = matchScratch.get();
+		if (matches.length < size) {
+			matches = new Object[Math.max(size, 2 * matches.length)];
+			matchScratch.set(matches);
+		}
+		Object[] slots = matches;
+		Set<ID> similar = new HashSet<>();
+		try {
+			forEach(size, i -> slots[i] = matcher.apply(i));
+			for (int i = 0; i < size; i++) {
+				if (slots[i] != null) {
+					similar.add((ID) slots[i]);
+				}
+			}
+		} finally {
+			// do not retain the ids of deleted records, even if a comparison
+			// failed
+			Arrays.fill(slots, 0, size, null);
+		}
+		return similar;
 	}
 
 	@Override
@@ -115,26 +398,144 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 		store.close();
 	}
 
+	/**
+	 * Remove a record from the store and all indexes. The other members of its
+	 * duplicate cluster are resolved again, so that members that were only
+	 * connected through the removed record fall apart. The cost depends on the
+	 * size of the cluster, not on the number of indexed records.
+	 */
+	@Override
+	public void delete(ID recordId) throws StoreException {
+		RECORD record = store.getRecord(recordId);
+		if (record == null) {
+			return;
+		}
+		for (DySNIndex<RECORD, ?, ID> index : indexes) {
+			index.delete(recordId);
+		}
+		store.deleteRecord(recordId);
+		Set<ID> component;
+		if (deletions != null) {
+			deletions.writeLock().lock();
+		}
+		try {
+			dictionary.remove(recordId);
+			component = uf.removeComponent(recordId);
+		} finally {
+			if (deletions != null) {
+				deletions.writeLock().unlock();
+			}
+		}
+		component.remove(recordId);
+		for (ID member : component) {
+			RECORD memberRecord = store.getRecord(member);
+			// the member may have been deleted concurrently
+			if (memberRecord != null) {
+				resolve(memberRecord, member);
+			}
+		}
+	}
+
 	/**
 	 * Retrieve candidates for possible similarity to a given record from each
-	 * index.
+	 * index. The candidates are collected in the buffer of the current thread.
 	 *
 	 * @param record
 	 *            the record for which potential duplicates should be resolved
+	 * @param recordId
+	 *            the unique identifier of the record, which is excluded
 	 * @return ids of potential duplicates
 	 */
-	private Set<ID> findCandidates(RECORD record) {
-		return indexes.stream().flatMap(index -> index.findCandidates(record).stream()).collect(Collectors.toSet());
+	private DenseCandidateBuffer<ID> findCandidates(RECORD record, ID recordId) {
+		DenseCandidateBuffer<ID> candidates = buffers.get();
+		candidates.reset(recordId, budget);
+		for (DySNIndex<RECORD, ?, ID> index : indexes) {
+			index.findCandidates(record, candidates);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Run an action for each candidate, in parallel if the indexer is
+	 * parallelizable. The action runs on the {@link #setExecutor(Executor)
+	 * executor} if one is set, otherwise on the common ForkJoinPool.
+	 *
+	 * @param size
+	 *            number of candidates
+	 * @param action
+	 *            action to be run for the index of each candidate
+	 */
+	private void forEach(int size, IntConsumer action) {
+		if (parallelizable && executor != null) {
+			executor.forEach(size, action);
+			return;
+		}
+		IntStream stream = IntStream.range(0, size);
+		if (parallelizable) {
+			stream = stream.parallel();
+		}
+		stream.forEach(action);
+	}
+
+	/**
+	 * Retrieve a record from the store. This method may produce a
+	 * {@link RuntimeException} if the record cannot be retrieved, see
+	 * {@link #areSimilar(Object, Object)}.
+	 *
+	 * @param records
+	 *            the store containing the record
+	 * @param id
+	 *            the id of the record
+	 * @return the record
+	 */
+	private RECORD getRecord(RecordStore<ID, RECORD> records, ID id) {
+		try {
+			return records.getRecord(id);
+		} catch (StoreException e) {
+			throw new RuntimeException("Error retrieving element from store", e);
+		}
+	}
+
+	/**
+	 * Get the budget of all windows built for a record.
+	 *
+	 * @return the budget
+	 */
+	public WindowBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the executor the candidates are compared on.
+	 *
+	 * @return the executor, null if the common ForkJoinPool is used
+	 */
+	public Executor getExecutor() {
+		return executor == null ? null : executor.getExecutor();
 	}
 
 	public int getComparisons() {
-		return comparisons;
+		return comparisons.intValue();
+	}
+
+	/**
+	 * Get the number of records whose windows were truncated because the
+	 * budget was used up. Duplicates of these records may have been missed.
+	 *
+	 * @return number of truncated records
+	 */
+	public int getTruncations() {
+		return truncations.intValue();
 	}
 
 	public List<Integer> indexSizes() {
 		return indexes.stream().map(DySNIndex::size).collect(Collectors.toList());
 	}
 
+	private static String indexSnapshot(int index) {
+		return "index-" + index + ".snapshot";
+	}
+
 	/**
 	 * Add a new record to the indexer. Stores the record and inserts it into
 	 * all indexes.
@@ -144,11 +545,128 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 		if (recordId != null) {
 			store.storeRecord(recordId, record);
 		}
-		Set<ID> candidates = indexes.stream().flatMap(index -> index.insert(record, recordId).stream())
-				.collect(Collectors.toSet());
+		DenseCandidateBuffer<ID> candidates = buffers.get();
+		candidates.reset(recordId, budget);
+		int tag = tag(recordId);
+		for (DySNIndex<RECORD, ?, ID> index : indexes) {
+			index.insert(record, recordId, tag, candidates);
+		}
 		return resolve(record, recordId, candidates);
 	}
 
+	/**
+	 * Add a batch of records to the indexer. The result is exactly the same as
+	 * if the records were {@link #insert(Object, Object) inserted} one by one
+	 * in the iteration order of the map, but the work is done in stages to
+	 * amortize it over the batch:
+	 * <ol>
+	 * <li>the keys of all records are computed for each index, in parallel on
+	 * the {@link #setExecutor(Executor) executor} if the indexer is
+	 * {@link #setParallelizable(boolean) parallelizable}</li>
+	 * <li>the records are written to the store in one batch</li>
+	 * <li>the records are inserted into the indexes in order and the windows
+	 * are built, each only containing the records inserted before</li>
+	 * <li>all candidates of the batch are compared in one parallel phase</li>
+	 * <li>the duplicate clusters are updated in order</li>
+	 * </ol>
+	 * If a window builder {@link WindowBuilder#usesFeedback() uses the
+	 * duplicates found} to build its windows, each record is matched before
+	 * the windows of the next record are built instead.
+	 *
+	 * @param records
+	 *            the records to be added by their unique identifier
+	 * @return ids of the duplicates of each record at the time it was added,
+	 *         as returned by {@link #insert(Object, Object)}, in the order of
+	 *         the records
+	 * @throws StoreException
+	 *             if the records cannot be stored
+	 */
+	public Map<ID, Collection<ID>> insertAll(Map<ID, RECORD> records) throws StoreException {
+		List<ID> ids = new ArrayList<>(records.keySet());
+		List<RECORD> recs = new ArrayList<>(records.values());
+		List<DySNIndex<RECORD, ?, ID>.Keys> keys = new ArrayList<>();
+		for (DySNIndex<RECORD, ?, ID> index : indexes) {
+			keys.add(index.computeKeys(recs, parallelizable, executor));
+		}
+		store.storeRecords(records);
+		Map<ID, Collection<ID>> duplicates = new LinkedHashMap<>();
+		DenseCandidateBuffer<ID> candidates = buffers.get();
+		if (indexes.stream().anyMatch(DySNIndex::usesFeedback)) {
+			for (int i = 0; i < recs.size(); i++) {
+				insert(keys, i, recs.get(i), ids.get(i), candidates);
+				duplicates.put(ids.get(i), resolve(recs.get(i), ids.get(i), candidates));
+			}
+			return duplicates;
+		}
+		PendingRecord[] pending = new PendingRecord[recs.size()];
+		int total = 0;
+		for (int i = 0; i < recs.size(); i++) {
+			insert(keys, i, recs.get(i), ids.get(i), candidates);
+			pending[i] = new PendingRecord(candidates);
+			total += pending[i].unclassified.length;
+		}
+		comparisons.add(total);
+		boolean[] verdicts = matchAll(recs, pending, total);
+		int offset = 0;
+		for (int i = 0; i < recs.size(); i++) {
+			PendingRecord record = pending[i];
+			if (record.truncated) {
+				truncations.increment();
+			}
+			Set<ID> matches = new HashSet<>();
+			for (int candidate : record.similar) {
+				matches.add(dictionary.get(candidate));
+			}
+			for (int candidate : record.unclassified) {
+				if (verdicts[offset++]) {
+					matches.add(dictionary.get(candidate));
+				}
+			}
+			duplicates.put(ids.get(i), cluster(recs.get(i), ids.get(i), matches));
+		}
+		return duplicates;
+	}
+
+	/**
+	 * Add a batch of records to the indexer in the order of the stream.
+	 *
+	 * @param records
+	 *            the records to be added associated with their unique
+	 *            identifier, which must be distinct
+	 * @return ids of the duplicates of each record at the time it was added
+	 * @throws StoreException
+	 *             if the records cannot be stored
+	 * @see #insertAll(Map)
+	 */
+	public Map<ID, Collection<ID>> insertAll(Stream<? extends Entry<ID, RECORD>> records) throws StoreException {
+		Map<ID, RECORD> batch = records.collect(Collectors.toMap(Entry::getKey, Entry::getValue, (r1, r2) -> {
+			throw new IllegalArgumentException("Duplicate id in batch");
+		}, LinkedHashMap::new));
+		return insertAll(batch);
+	}
+
+	/**
+	 * Insert a record of a batch into all indexes using the keys computed in
+	 * advance and collect its candidates.
+	 */
+	private void insert(List<DySNIndex<RECORD, ?, ID>.Keys> keys, int i, RECORD record, ID recordId,
+			DenseCandidateBuffer<ID> candidates) {
+		candidates.reset(recordId, budget);
+		int tag = tag(recordId);
+		for (DySNIndex<RECORD, ?, ID>.Keys indexKeys : keys) {
+			indexKeys.insert(i, record, recordId, tag, candidates);
+		}
+	}
+
+	/**
+	 * Whether the indexer can be used by several threads concurrently
+	 *
+	 * @return true, if the indexer is thread-safe
+	 */
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
 	/**
 	 * Whether similarity function will be executed in parallel or not
 	 *
@@ -162,17 +680,56 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	 * Check candidates for similarity to a given record. This is usually the
 	 * most expensive part of DySNI. To improve performance, it is recommended
 	 * to check whether parallelizing the calls to the similarity measure is
-	 * helpful.
+	 * helpful. Candidates already classified by a window builder using the
+	 * same classifier are not compared again.
 	 *
 	 * @param record
 	 *            the record for which similar records should be resolved
 	 * @param candidates
-	 *            potential duplicates represented by their unique id
+	 *            potential duplicates represented by the dense ints of their
+	 *            unique id
 	 * @return ids of similar records
 	 */
-	private Set<ID> matchCandidates(RECORD record, Set<ID> candidates) {
-		comparisons += candidates.size();
-		return stream(candidates).filter(candidate -> areSimilar(record, candidate)).collect(Collectors.toSet());
+	private Set<ID> matchCandidates(RECORD record, DenseCandidateBuffer<ID> candidates) {
+		comparisons.add(candidates.size() - candidates.getClassified());
+		int[] dense = candidates.getCandidates();
+		return collectMatches(candidates.size(), i -> {
+			int candidate = dense[i];
+			ID id = dictionary.get(candidate);
+			boolean similar = candidates.isClassified(candidate) ? candidates.isSimilar(candidate)
+					: areSimilar(record, id);
+			return similar ? id : null;
+		});
+	}
+
+	/**
+	 * Compare the records of a batch to their unclassified candidates. All
+	 * comparisons are done in one phase, in parallel if the indexer is
+	 * parallelizable.
+	 *
+	 * @param records
+	 *            the records of the batch
+	 * @param pending
+	 *            the candidates of each record
+	 * @param total
+	 *            number of unclassified candidates of all records
+	 * @return verdicts of the unclassified candidates in the order of the
+	 *         records
+	 */
+	private boolean[] matchAll(List<RECORD> records, PendingRecord[] pending, int total) {
+		int[] owners = new int[total];
+		int[] candidates = new int[total];
+		int offset = 0;
+		for (int i = 0; i < pending.length; i++) {
+			int[] unclassified = pending[i].unclassified;
+			Arrays.fill(owners, offset, offset + unclassified.length, i);
+			System.arraycopy(unclassified, 0, candidates, offset, unclassified.length);
+			offset += unclassified.length;
+		}
+		boolean[] verdicts = new boolean[total];
+		forEach(total,
+				pair -> verdicts[pair] = areSimilar(records.get(owners[pair]), dictionary.get(candidates[pair])));
+		return verdicts;
 	}
 
 	/**
@@ -182,8 +739,7 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	 */
 	@Override
 	public Collection<ID> resolve(RECORD record, ID recordId) {
-		Set<ID> candidates = findCandidates(record);
-		return resolve(record, recordId, candidates);
+		return resolve(record, recordId, findCandidates(record, recordId));
 	}
 
 	/**
@@ -194,27 +750,119 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	 * @param recordId
 	 *            the unique identifier of the record
 	 * @param candidates
-	 *            potential duplicates represented by their unique id
+	 *            potential duplicates represented by their unique id,
+	 *            excluding the record itself
 	 * @return ids of duplicate records
 	 */
-	private Collection<ID> resolve(RECORD record, ID recordId, Set<ID> candidates) {
-		candidates.remove(recordId);
-		Set<ID> matches = matchCandidates(record, candidates);
-		final ID rep;
-		if (recordId != null) {
-			rep = recordId;
-		} else {
-			if (matches.isEmpty()) {
-				return Collections.emptyList();
-			}
-			rep = matches.iterator().next();
+	private Collection<ID> resolve(RECORD record, ID recordId, DenseCandidateBuffer<ID> candidates) {
+		if (candidates.isTruncated()) {
+			truncations.increment();
 		}
-		for (ID match : matches) {
-			uf.union(rep, match);
+		return cluster(record, recordId, matchCandidates(record, candidates));
+	}
+
+	/**
+	 * Restore the indexes and duplicate clusters from snapshots written by
+	 * {@link #writeSnapshot(Path, SnapshotCodec)}. The indexer must have been
+	 * configured with the same indexes and must not contain any records yet.
+	 * The records themselves are not part of the snapshot and must still be
+	 * available in the store.
+	 *
+	 * @param directory
+	 *            directory containing the snapshots
+	 * @param idCodec
+	 *            codec used to write the ids
+	 * @throws IOException
+	 *             if a snapshot cannot be read
+	 */
+	public void readSnapshot(Path directory, SnapshotCodec<ID> idCodec) throws IOException {
+		int i = 0;
+		for (DySNIndex<RECORD, ?, ID> index : indexes) {
+			index.readSnapshot(directory.resolve(indexSnapshot(i++)), idCodec);
+		}
+		Path file = directory.resolve(COMPONENTS_SNAPSHOT);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != COMPONENTS_MAGIC) {
+				throw new IOException("Not a snapshot: " + file);
+			}
+			int version = buffer.getInt();
+			if (version != COMPONENTS_VERSION) {
+				throw new IOException("Unsupported snapshot version " + version + ": " + file);
+			}
+			int components = buffer.getInt();
+			for (int c = 0; c < components; c++) {
+				int size = buffer.getInt();
+				ID rep = idCodec.decode(buffer);
+				for (int j = 1; j < size; j++) {
+					uf.union(rep, idCodec.decode(buffer));
+				}
+			}
+			if (buffer.hasRemaining()) {
+				throw new IOException("Corrupt snapshot: " + file);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt snapshot: " + file, e);
 		}
-		Collection<ID> component = uf.getComponent(rep);
-		component.remove(recordId);
-		return component;
+	}
+
+	/**
+	 * Set a budget limiting all windows built for a record, e.g. to meet a
+	 * latency target per insert. Window builders extending
+	 * {@link de.hpi.idd.dysni.window.AbstractWindowBuilder
+	 * AbstractWindowBuilder} alternate between both directions and stop as
+	 * soon as the budget is used up. The number of comparisons directly bounds
+	 * the work of matching the candidates, while the time limit applies to
+	 * building the windows.
+	 *
+	 * @param budget
+	 *            budget per record, {@link WindowBudget#UNLIMITED} to disable
+	 * @return this
+	 * @see #getTruncations()
+	 */
+	public DynamicSortedNeighborhoodIndexer<RECORD, ID> setBudget(WindowBudget budget) {
+		this.budget = budget;
+		return this;
+	}
+
+	/**
+	 * Compare the candidates of a record on a dedicated executor instead of
+	 * the common ForkJoinPool, which is shared with unrelated work of the JVM.
+	 * The candidates are submitted in chunks of
+	 * {@link ChunkedExecutor#DEFAULT_CHUNK_SIZE} candidates. If the
+	 * comparisons block on retrieving records from the store, an executor of
+	 * {@link ChunkedExecutor#newVirtualThreadExecutor() virtual threads} may
+	 * be used on Java 21 and later. The keys of a batch of records
+	 * {@link #insertAll(Map) inserted} at once are computed on the executor as
+	 * well. The executor is only used if the indexer is
+	 * {@link #setParallelizable(boolean) parallelizable}.
+	 *
+	 * @param executor
+	 *            executor running the comparisons, e.g. an
+	 *            {@link java.util.concurrent.ExecutorService ExecutorService}
+	 *            or a dedicated {@link java.util.concurrent.ForkJoinPool
+	 *            ForkJoinPool}, null to use the common ForkJoinPool
+	 * @return this
+	 */
+	public DynamicSortedNeighborhoodIndexer<RECORD, ID> setExecutor(Executor executor) {
+		return setExecutor(executor, ChunkedExecutor.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Compare the candidates of a record on a dedicated executor instead of
+	 * the common ForkJoinPool.
+	 *
+	 * @param executor
+	 *            executor running the comparisons, null to use the common
+	 *            ForkJoinPool
+	 * @param chunkSize
+	 *            number of candidates per task
+	 * @return this
+	 * @see #setExecutor(Executor)
+	 */
+	public DynamicSortedNeighborhoodIndexer<RECORD, ID> setExecutor(Executor executor, int chunkSize) {
+		this.executor = executor == null ? null : new ChunkedExecutor(executor, chunkSize);
+		return this;
 	}
 
 	/**
@@ -233,17 +881,86 @@ public class DynamicSortedNeighborhoodIndexer<RECORD, ID> implements EntityResol
 	}
 
 	/**
-	 * Stream candidates based on the parallelization configuration
+	 * Take a snapshot of all indexes in order to resolve records against a
+	 * point-in-time state while records are still inserted. All indexes must
+	 * support {@link de.hpi.idd.dysni.index.SortedIndex#snapshot() snapshots},
+	 * e.g. a {@link de.hpi.idd.dysni.persistent.PersistentAVLTree
+	 * PersistentAVLTree}, which takes them in constant time. Candidates are
+	 * retrieved from the store of the indexer, so they are compared in their
+	 * current version, see {@link Snapshot}.
 	 *
-	 * @param candidates
-	 *            candidates to stream
-	 * @return stream of candidates, parallel if {@link #parallelizable} true
+	 * @return snapshot of the indexes
+	 * @throws UnsupportedOperationException
+	 *             if an index does not support snapshots
 	 */
-	private <T> Stream<T> stream(Set<T> candidates) {
-		if (parallelizable) {
-			return candidates.parallelStream();
-		} else {
-			return candidates.stream();
+	public Snapshot snapshot() {
+		return new Snapshot(store);
+	}
+
+	/**
+	 * Take a snapshot of all indexes whose candidates are retrieved from a
+	 * specific record store, e.g. a snapshot of the store of the indexer taken
+	 * at the same time, so that records updated or deleted afterwards are
+	 * compared in the version the indexes were pinned to.
+	 *
+	 * @param records
+	 *            store the candidates are retrieved from
+	 * @return snapshot of the indexes
+	 * @throws UnsupportedOperationException
+	 *             if an index does not support snapshots
+	 * @see #snapshot()
+	 */
+	public Snapshot snapshot(RecordStore<ID, RECORD> records) {
+		return new Snapshot(records);
+	}
+
+	/**
+	 * Assign the dense int a record is tagged with in the indexes, so that its
+	 * id does not need to be looked up whenever it is a candidate.
+	 *
+	 * @return dense int of the id, {@link ElementCollection#UNTAGGED} if the
+	 *         id is null
+	 */
+	private int tag(ID recordId) {
+		return recordId == null ? ElementCollection.UNTAGGED : dictionary.add(recordId);
+	}
+
+	/**
+	 * Write snapshots of all indexes and the duplicate clusters into a
+	 * directory, one file per index. All indexes must have been configured
+	 * with a {@link DySNIndexConfiguration#setKeyCodec(SnapshotCodec) key
+	 * codec}. The indexer must not be modified while the snapshots are written.
+	 *
+	 * @param directory
+	 *            existing directory for the snapshots
+	 * @param idCodec
+	 *            codec to write the ids
+	 * @throws IOException
+	 *             if a snapshot cannot be written
+	 * @see TreeSnapshot
+	 */
+	public void writeSnapshot(Path directory, SnapshotCodec<ID> idCodec) throws IOException {
+		int i = 0;
+		for (DySNIndex<RECORD, ?, ID> index : indexes) {
+			index.writeSnapshot(directory.resolve(indexSnapshot(i++)), idCodec);
+		}
+		List<Set<ID>> components = new ArrayList<>();
+		for (Set<ID> component : uf) {
+			if (component.size() > 1) {
+				components.add(component);
+			}
+		}
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(directory.resolve(COMPONENTS_SNAPSHOT))))) {
+			out.writeInt(COMPONENTS_MAGIC);
+			out.writeInt(COMPONENTS_VERSION);
+			out.writeInt(components.size());
+			for (Set<ID> component : components) {
+				out.writeInt(component.size());
+				for (ID id : component) {
+					idCodec.encode(id, out);
+				}
+			}
 		}
 	}
 }
@@ -16,7 +16,17 @@
  */
 package de.hpi.idd.dysni.avl;
 
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.sim.SimilarityMeasure;
 
 /**
  * This class implements AVL trees.
@@ -36,6 +46,28 @@ import java.util.Iterator;
  * </p>
  *
  * <p>
+ * Each node keeps track of the number of nodes and elements in its sub-tree.
+ * This allows order statistic queries like {@link #rank(Comparable)},
+ * {@link #select(int)} and {@link #count(Comparable, Comparable)} in
+ * logarithmic time.
+ * </p>
+ *
+ * <p>
+ * Nodes can be traversed in order using the {@link #iterator() iterator},
+ * {@link #range(Comparable, Comparable) ranges} of keys or
+ * {@link #stream() streams}. The {@link #spliterator() spliterator} splits at
+ * the median rank of its nodes, so that full scans can run as parallel
+ * streams. Traversals must not be interleaved with modifications.
+ * </p>
+ *
+ * <p>
+ * Optionally, the tree computes the similarity of the keys of adjacent nodes
+ * whenever a link between them is created or changed and stores it in the
+ * smaller node. Window builders can then expand along the links without
+ * computing any similarities, see {@link Node#getNextSimilarity()}.
+ * </p>
+ *
+ * <p>
  * The idea for this data structure is based on the
  * <a href="http://www.stephenvrice.com/images/AVL_SCS.pdf">work</a> of Stephen
  * V. Rice
@@ -46,7 +78,7 @@ import java.util.Iterator;
  * @param <V>
  *            the type of the elements
  */
-public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node<K, V>> {
+public class BraidedAVLTree<K extends Comparable<K>, V> implements SortedIndex<K, V>, Iterable<Node<K, V>> {
 
 	private static class AVLTreeIterator<K extends Comparable<K>, V> implements Iterator<Node<K, V>> {
 
@@ -72,9 +104,181 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 		}
 	}
 
+	/**
+	 * Spliterator over the nodes with ranks in a range. It is split at the
+	 * median rank, which is found by descending the tree using the node counts
+	 * of the sub-trees. Traversal follows the in-order links.
+	 */
+	private class NodeSpliterator implements Spliterator<Node<K, V>> {
+
+		/** rank of the next node */
+		private int from;
+		/** next node, null if it has not been selected yet */
+		private Node<K, V> next;
+		/** rank after the last node */
+		private final int to;
+
+		NodeSpliterator(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public int characteristics() {
+			return DISTINCT | NONNULL | ORDERED | SIZED | SORTED | SUBSIZED;
+		}
+
+		@Override
+		public long estimateSize() {
+			return to - from;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Node<K, V>> action) {
+			while (tryAdvance(action)) {
+				// consume remaining nodes
+			}
+		}
+
+		@Override
+		public Comparator<? super Node<K, V>> getComparator() {
+			return Comparator.comparing(Node::getKey);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Node<K, V>> action) {
+			if (from >= to) {
+				return false;
+			}
+			if (next == null) {
+				next = select(from);
+			}
+			Node<K, V> node = next;
+			next = node.getNext();
+			from++;
+			action.accept(node);
+			return true;
+		}
+
+		@Override
+		public Spliterator<Node<K, V>> trySplit() {
+			int mid = from + to >>> 1;
+			if (mid <= from) {
+				return null;
+			}
+			NodeSpliterator prefix = new NodeSpliterator(from, mid);
+			prefix.next = next;
+			from = mid;
+			next = null;
+			return prefix;
+		}
+	}
+
+	/** measure of the similarity of adjacent keys, null if disabled */
+	private final SimilarityMeasure<? super K> linkSimilarity;
 	/** Top level node. */
 	Node<K, V> root;
 
+	/**
+	 * Construct a new empty tree without link similarities.
+	 */
+	public BraidedAVLTree() {
+		this(null);
+	}
+
+	/**
+	 * Construct a new empty tree that stores the similarity of adjacent keys
+	 * in its nodes.
+	 *
+	 * @param linkSimilarity
+	 *            measure of the similarity of adjacent keys, null to disable
+	 *            link similarities
+	 */
+	public BraidedAVLTree(SimilarityMeasure<? super K> linkSimilarity) {
+		this.linkSimilarity = linkSimilarity;
+	}
+
+	@Override
+	public Node<K, V> ceiling(K key) {
+		Node<K, V> ceiling = null;
+		int depth = 0;
+		for (Node<K, V> node = root; node != null; checkDepth(++depth)) {
+			int cmp = node.getKey().compareTo(key);
+			if (cmp < 0) {
+				node = node.getRight();
+			} else if (cmp > 0) {
+				ceiling = node;
+				node = node.getLeft();
+			} else {
+				return node;
+			}
+		}
+		return ceiling;
+	}
+
+	/**
+	 * Called for each level a search descends into the tree. Concurrent
+	 * implementations use it to detect searches misled by concurrent
+	 * modifications.
+	 *
+	 * @param depth
+	 *            the current depth of the search
+	 */
+	void checkDepth(int depth) {
+	}
+
+	/**
+	 * Count the elements whose keys lie in the specified range.
+	 *
+	 * @param fromKey
+	 *            lower bound of the range (inclusive)
+	 * @param toKey
+	 *            upper bound of the range (inclusive)
+	 * @return number of elements contained in nodes whose keys lie in the
+	 *         range
+	 */
+	public int count(K fromKey, K toKey) {
+		if (fromKey.compareTo(toKey) > 0) {
+			return 0;
+		}
+		return countSmaller(toKey, true, false) - countSmaller(fromKey, false, false);
+	}
+
+	/**
+	 * Count the nodes or elements whose keys are smaller than a key.
+	 *
+	 * @param key
+	 *            the key to compare to
+	 * @param inclusive
+	 *            whether the node with the key itself should be counted
+	 * @param nodes
+	 *            whether nodes or elements should be counted
+	 * @return number of nodes or elements with smaller keys
+	 */
+	private int countSmaller(K key, boolean inclusive, boolean nodes) {
+		int count = 0;
+		int depth = 0;
+		for (Node<K, V> node = root; node != null; checkDepth(++depth)) {
+			int cmp = node.getKey().compareTo(key);
+			if (cmp < 0 || inclusive && cmp == 0) {
+				count += nodes ? 1 + Node.nodes(node.getLeft())
+						: node.getElements().size() + Node.size(node.getLeft());
+				node = node.getRight();
+			} else {
+				node = node.getLeft();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Create an empty tree with the same link similarity.
+	 */
+	@Override
+	public BraidedAVLTree<K, V> createEmpty() {
+		return newInstance();
+	}
+
 	/**
 	 * Delete an element from the tree.
 	 * <p>
@@ -89,17 +293,14 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	 *            element to delete (silently ignored if null)
 	 * @return true if the element was deleted from the tree
 	 */
+	@Override
 	public boolean delete(K key, V element) {
 		if (element != null) {
-			Node<K, V> node = find(key);
+			Node<K, V> node = search(key);
 			if (node == null) {
 				return false;
 			}
-			if (node.contains(element)) {
-				node.delete(element);
-				return true;
-			}
-			return false;
+			return node.delete(this, element);
 		}
 		return false;
 	}
@@ -111,23 +312,9 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	 *            the key which's node should be retrieved
 	 * @return node with the specified key, null if no node is found
 	 */
+	@Override
 	public Node<K, V> find(K key) {
-		for (Node<K, V> node = root; node != null;) {
-			if (node.getKey().compareTo(key) < 0) {
-				if (node.getRight() == null) {
-					return null;
-				}
-				node = node.getRight();
-			} else if (node.getKey().compareTo(key) > 0) {
-				if (node.getLeft() == null) {
-					return null;
-				}
-				node = node.getLeft();
-			} else {
-				return node;
-			}
-		}
-		return null;
+		return search(key);
 	}
 
 	/**
@@ -139,10 +326,20 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	 * @see Node#getPrevious
 	 * @see Node#getNext
 	 */
+	@Override
 	public Node<K, V> getLargest() {
 		return root == null ? null : root.getLargest();
 	}
 
+	/**
+	 * Get the measure of the similarity of adjacent keys.
+	 *
+	 * @return the measure, null if link similarities are disabled
+	 */
+	public SimilarityMeasure<? super K> getLinkSimilarity() {
+		return linkSimilarity;
+	}
+
 	Node<K, V> getRoot() {
 		return root;
 	}
@@ -156,6 +353,7 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	 * @see Node#getPrevious
 	 * @see Node#getNext
 	 */
+	@Override
 	public Node<K, V> getSmallest() {
 		return root == null ? null : root.getSmallest();
 	}
@@ -169,13 +367,14 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	 *            element to insert
 	 * @return Node where the element was inserted
 	 */
+	@Override
 	public Node<K, V> insert(K key, V element) {
 		if (key != null) {
 			if (root == null) {
-				root = new Node<>(this, key, element);
+				root = new Node<>(key, element);
 				return root;
 			} else {
-				return root.insert(key, element);
+				return root.insert(this, key, element);
 			}
 		}
 		return null;
@@ -186,6 +385,7 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	 *
 	 * @return true if the tree is empty
 	 */
+	@Override
 	public boolean isEmpty() {
 		return root == null;
 	}
@@ -199,12 +399,137 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	}
 
 	/**
-	 * Get the number of nodes of the tree.
+	 * Get the number of nodes of the tree in constant time.
 	 *
 	 * @return number of nodes contained in the tree
 	 */
+	@Override
 	public int nodes() {
-		return root == null ? 0 : root.nodes();
+		return Node.nodes(root);
+	}
+
+	/**
+	 * Move all nodes of another tree into this tree. All keys of the other tree
+	 * must be larger than the keys of this tree. The other tree is empty
+	 * afterwards. Runs in logarithmic time.
+	 *
+	 * @param other
+	 *            the tree whose nodes should be appended
+	 * @throws IllegalArgumentException
+	 *             if the other tree contains a key not larger than the keys
+	 *             of this tree
+	 * @see #split(Comparable)
+	 */
+	public void join(BraidedAVLTree<K, V> other) {
+		if (other == this) {
+			throw new IllegalArgumentException("Cannot join a tree with itself");
+		}
+		if (other.root == null) {
+			return;
+		}
+		Node<K, V> largest = root == null ? null : root.getLargest();
+		if (largest != null && largest.getKey().compareTo(other.root.getSmallest().getKey()) >= 0) {
+			throw new IllegalArgumentException("Keys of the joined tree must be larger than all keys of this tree");
+		}
+		Node<K, V> pivot = other.root.removeSmallest(other);
+		if (largest != null) {
+			largest.setNext(pivot);
+			link(largest);
+		}
+		Node.join(this, root, Node.height(root), pivot, other.root, Node.height(other.root));
+		other.root = null;
+	}
+
+	/**
+	 * Join another index into this tree. Braided AVL trees are joined in
+	 * logarithmic time, the elements of other indexes are moved one by one.
+	 *
+	 * @see #join(BraidedAVLTree)
+	 */
+	@Override
+	public void join(SortedIndex<K, V> other) {
+		if (other instanceof BraidedAVLTree) {
+			join((BraidedAVLTree<K, V>) other);
+		} else {
+			SortedIndex.super.join(other);
+		}
+	}
+
+	/**
+	 * Compute the similarity of a node's key to the key of its successor if
+	 * link similarities are enabled. Must be called whenever the successor
+	 * of a node changes.
+	 *
+	 * @param node
+	 *            node whose link to its successor changed, may be null
+	 */
+	void link(Node<K, V> node) {
+		if (linkSimilarity == null || node == null) {
+			return;
+		}
+		Node<K, V> next = node.getNext();
+		node.setNextSimilarity(
+				next == null ? Double.NaN : linkSimilarity.calculateSimilarity(node.getKey(), next.getKey()));
+	}
+
+	/**
+	 * Fill an empty tree with nodes in linear time.
+	 *
+	 * @param nodes
+	 *            nodes sorted by their keys and linked to their in-order
+	 *            neighbors, not contained in any tree
+	 * @see TreeSnapshot
+	 */
+	void load(Node<K, V>[] nodes) {
+		if (root != null) {
+			throw new IllegalStateException("Only empty trees can be loaded");
+		}
+		root = Node.build(nodes, 0, nodes.length);
+		if (linkSimilarity != null) {
+			for (Node<K, V> node : nodes) {
+				link(node);
+			}
+		}
+	}
+
+	/**
+	 * Create a new empty tree of the same kind as this tree. Used by
+	 * {@link #split(Comparable)}.
+	 *
+	 * @return empty tree
+	 */
+	BraidedAVLTree<K, V> newInstance() {
+		return new BraidedAVLTree<K, V>(linkSimilarity);
+	}
+
+	/**
+	 * Get a view of the nodes whose keys lie in the specified range. The range
+	 * is determined whenever a traversal of the view starts.
+	 *
+	 * @param fromKey
+	 *            lower bound of the range (inclusive)
+	 * @param toKey
+	 *            upper bound of the range (inclusive)
+	 * @return nodes with keys in the range in ascending order
+	 * @see #count(Comparable, Comparable)
+	 */
+	public Iterable<Node<K, V>> range(K fromKey, K toKey) {
+		return new Iterable<Node<K, V>>() {
+
+			@Override
+			public Iterator<Node<K, V>> iterator() {
+				return Spliterators.iterator(spliterator());
+			}
+
+			@Override
+			public Spliterator<Node<K, V>> spliterator() {
+				return readOptimistically(() -> {
+					int from = countSmaller(fromKey, false, true);
+					int to = countSmaller(toKey, true, true);
+					return new NodeSpliterator(from, Math.max(from, to));
+				});
+			}
+		};
 	}
 
 	/**
@@ -215,11 +540,184 @@ public class BraidedAVLTree<K extends Comparable<K>, V> implements Iterable<Node
 	}
 
 	/**
-	 * Get the number of elements of the tree.
+	 * Locate the position of a key, i.e. the node with the key or the node
+	 * below which a node with the key would be inserted. Like
+	 * {@link #search(Comparable)}, it can be used while the tree is being
+	 * modified.
+	 *
+	 * @param key
+	 *            the key to locate
+	 * @return the node with the key or its future parent, null if the tree is
+	 *         empty
+	 */
+	final Node<K, V> locate(K key) {
+		Node<K, V> parent = null;
+		int depth = 0;
+		for (Node<K, V> node = root; node != null; checkDepth(++depth)) {
+			parent = node;
+			int cmp = node.getKey().compareTo(key);
+			if (cmp < 0) {
+				node = node.getRight();
+			} else if (cmp > 0) {
+				node = node.getLeft();
+			} else {
+				return node;
+			}
+		}
+		return parent;
+	}
+
+	/**
+	 * Search the node with the specified key. In contrast to
+	 * {@link #find(Comparable)}, this method is not overridden by concurrent
+	 * implementations and can be used while the tree is being modified.
+	 *
+	 * @param key
+	 *            the key which's node should be retrieved
+	 * @return node with the specified key, null if no node is found
+	 */
+	final Node<K, V> search(K key) {
+		int depth = 0;
+		for (Node<K, V> node = root; node != null; checkDepth(++depth)) {
+			int cmp = node.getKey().compareTo(key);
+			if (cmp < 0) {
+				node = node.getRight();
+			} else if (cmp > 0) {
+				node = node.getLeft();
+			} else {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the rank of a key, i.e. the number of nodes having a smaller key.
+	 * The key does not need to be contained in the tree.
+	 *
+	 * @param key
+	 *            the key whose rank should be computed
+	 * @return number of nodes with a key smaller than the specified key
+	 * @see #select(int)
+	 */
+	@Override
+	public int rank(K key) {
+		return countSmaller(key, false, true);
+	}
+
+	/**
+	 * Get the node at a specific in-order position.
+	 *
+	 * @param index
+	 *            position of the node, starting at 0 for the smallest node
+	 * @return node at the specified position
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not smaller than
+	 *             {@link #nodes()}
+	 * @see #rank(Comparable)
+	 */
+	public Node<K, V> select(int index) {
+		if (index < 0 || index >= nodes()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + nodes());
+		}
+		Node<K, V> node = root;
+		for (int depth = 0;; checkDepth(++depth)) {
+			int leftNodes = Node.nodes(node.getLeft());
+			if (index < leftNodes) {
+				node = node.getLeft();
+			} else if (index == leftNodes) {
+				return node;
+			} else {
+				index -= leftNodes + 1;
+				node = node.getRight();
+			}
+		}
+	}
+
+	/**
+	 * @return spliterator over the tree's nodes in-order, which splits into
+	 *         halves of equal size
+	 */
+	@Override
+	public Spliterator<Node<K, V>> spliterator() {
+		return new NodeSpliterator(0, nodes());
+	}
+
+	/**
+	 * Split the tree at a key. All nodes whose keys are larger than or equal to
+	 * the key are moved into a new tree, the smaller ones remain in this tree.
+	 * The in-order links between the two parts are cut. Runs in logarithmic
+	 * time.
+	 *
+	 * @param key
+	 *            the smallest key of the new tree
+	 * @return tree containing the nodes with keys larger than or equal to the
+	 *         key
+	 * @see #join(BraidedAVLTree)
+	 */
+	@Override
+	public BraidedAVLTree<K, V> split(K key) {
+		BraidedAVLTree<K, V> larger = newInstance();
+		if (root == null) {
+			return larger;
+		}
+		Node.Split<K, V> result = new Node.Split<>();
+		root.split(Node.height(root), key, result);
+		root = result.smaller;
+		larger.root = result.larger;
+		if (root != null) {
+			root.getLargest().cutNext();
+		}
+		return larger;
+	}
+
+	/**
+	 * Stream the tree's nodes in-order. Use {@link Stream#parallel()} to scan
+	 * the tree in parallel.
+	 *
+	 * @return stream of the nodes
+	 */
+	public Stream<Node<K, V>> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Run a read-only operation on the tree, e.g. navigating along the
+	 * in-order neighbors of a node. This tree simply runs the operation.
+	 * Concurrent implementations make sure that the operation observes a
+	 * consistent state of the tree.
+	 *
+	 * @param reader
+	 *            the operation, must not modify the tree
+	 * @return the result of the operation
+	 * @see ConcurrentBraidedAVLTree
+	 */
+	@Override
+	public <R> R read(Supplier<R> reader) {
+		return reader.get();
+	}
+
+	/**
+	 * Run a read-only operation without side effects. In contrast to
+	 * {@link #read(Supplier)}, concurrent implementations may run it more than
+	 * once and it may be nested in other operations.
+	 *
+	 * @param reader
+	 *            the operation, must neither modify the tree nor have other
+	 *            side effects
+	 * @return the result of the operation
+	 */
+	protected <R> R readOptimistically(Supplier<R> reader) {
+		return reader.get();
+	}
+
+	/**
+	 * Get the number of elements of the tree in constant time.
 	 *
 	 * @return number of elements contained in the tree
 	 */
+	@Override
 	public int size() {
-		return root == null ? 0 : root.size();
+		return Node.size(root);
 	}
 }
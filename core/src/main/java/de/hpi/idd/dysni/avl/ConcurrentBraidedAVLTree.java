@@ -0,0 +1,385 @@
+package de.hpi.idd.dysni.avl;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import de.hpi.idd.sim.SimilarityMeasure;
+import de.hpi.idd.util.ElementCollection;
+
+/**
+ * Thread-safe variant of the {@link BraidedAVLTree}.
+ *
+ * <p>
+ * Modifications of the tree are guarded by the write mode of a
+ * {@link StampedLock}. Inserts and deletes descend the tree optimistically
+ * without holding any lock and only convert their optimistic stamp into the
+ * write lock once they have found the position to modify. Hence, the write
+ * lock only covers linking the node and rebalancing the tree, and other
+ * writers as well as readers are only excluded for that time. If the tree
+ * was modified during the descent, the modification descends again holding
+ * the write lock. As the subtree counts of every ancestor up to the root
+ * change with each insert, writers are not locked per node.
+ * </p>
+ *
+ * <p>
+ * Searches, window traversals and other operations of the tree never block:
+ * they run optimistically and only validate afterwards that no modification
+ * happened in the meantime. If the validation fails, the operation is
+ * repeated holding the read lock. As the braided neighbor links always point
+ * towards larger respectively smaller keys, navigating along them cannot loop
+ * even while the tree is modified. Searches descending the tree are aborted if
+ * they exceed the maximum height of the tree.
+ * </p>
+ *
+ * <p>
+ * Navigation starting from a {@link Node}, e.g. building a window, has to be
+ * validated to be consistent. Operations without side effects can be run
+ * optimistically using {@link #readOptimistically(Supplier)}. Operations with
+ * side effects, e.g. window builders passing candidates to a sink, either run
+ * between {@link #tryOptimisticRead()} and {@link #validate(long)} while
+ * recording their effects into a throwaway buffer, as
+ * {@link de.hpi.idd.dysni.DySNIndex DySNIndex} does, or run exactly once
+ * holding the read lock using {@link #read(Supplier)}. The
+ * {@link #iterator() iterator}, {@link #range(Comparable, Comparable) ranges},
+ * {@link #stream() streams} and {@link #print()} are not thread-safe.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the key of the elements
+ * @param <V>
+ *            the type of the elements
+ */
+public class ConcurrentBraidedAVLTree<K extends Comparable<K>, V> extends BraidedAVLTree<K, V> {
+
+	/** upper bound for the height of the tree */
+	private static final int MAX_DEPTH = 64;
+	/** breaks ties of the lock order of two trees with equal identity hashes */
+	private static final Object TIE_LOCK = new Object();
+
+	/** lock guarding the structure of the tree */
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * Construct a new empty tree without link similarities.
+	 */
+	public ConcurrentBraidedAVLTree() {
+		super();
+	}
+
+	/**
+	 * Construct a new empty tree that stores the similarity of adjacent keys
+	 * in its nodes.
+	 *
+	 * @param linkSimilarity
+	 *            measure of the similarity of adjacent keys, null to disable
+	 *            link similarities
+	 */
+	public ConcurrentBraidedAVLTree(SimilarityMeasure<? super K> linkSimilarity) {
+		super(linkSimilarity);
+	}
+
+	/**
+	 * Acquire the read lock, so that a window can be built exactly once if
+	 * building it optimistically failed.
+	 *
+	 * @see #read(Supplier)
+	 */
+	@Override
+	public long beginRead() {
+		return lock.readLock();
+	}
+
+	@Override
+	public Node<K, V> ceiling(K key) {
+		return readOptimistically(() -> super.ceiling(key));
+	}
+
+	/**
+	 * Searches running optimistically may be misled into a cycle while nodes
+	 * are rotated. As an AVL tree of at most {@link Integer#MAX_VALUE} nodes is
+	 * less than {@link #MAX_DEPTH} levels high, such a search is aborted.
+	 */
+	@Override
+	void checkDepth(int depth) {
+		if (depth > MAX_DEPTH) {
+			throw new IllegalStateException("Search exceeded maximum depth of tree");
+		}
+	}
+
+	@Override
+	public int count(K fromKey, K toKey) {
+		return readOptimistically(() -> super.count(fromKey, toKey));
+	}
+
+	/**
+	 * Delete an element, searching its node optimistically.
+	 */
+	@Override
+	public boolean delete(K key, V element) {
+		if (element == null) {
+			return false;
+		}
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0L) {
+			Node<K, V> node;
+			try {
+				node = search(key);
+			} catch (RuntimeException e) {
+				// an inconsistent state may cause arbitrary exceptions
+				node = null;
+				stamp = 0L;
+			}
+			if (node == null && stamp != 0L && lock.validate(stamp)) {
+				return false;
+			}
+			long writeStamp = node == null ? 0L : lock.tryConvertToWriteLock(stamp);
+			if (writeStamp != 0L) {
+				try {
+					return node.delete(this, element);
+				} finally {
+					lock.unlockWrite(writeStamp);
+				}
+			}
+		}
+		long writeStamp = lock.writeLock();
+		try {
+			return super.delete(key, element);
+		} finally {
+			lock.unlockWrite(writeStamp);
+		}
+	}
+
+	@Override
+	public void endRead(long stamp) {
+		lock.unlockRead(stamp);
+	}
+
+	@Override
+	public Node<K, V> find(K key) {
+		return readOptimistically(() -> search(key));
+	}
+
+	@Override
+	public Node<K, V> getLargest() {
+		return readOptimistically(super::getLargest);
+	}
+
+	@Override
+	public Node<K, V> getSmallest() {
+		return readOptimistically(super::getSmallest);
+	}
+
+	@Override
+	public Node<K, V> insert(K key, V element) {
+		return insert(key, element, ElementCollection.UNTAGGED);
+	}
+
+	/**
+	 * Insert and tag an element while holding the write lock. The position of
+	 * the element is located optimistically, so that the write lock is only
+	 * held for linking the node and rebalancing the tree.
+	 */
+	@Override
+	public Node<K, V> insert(K key, V element, int tag) {
+		if (key == null) {
+			return null;
+		}
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0L) {
+			Node<K, V> position;
+			try {
+				position = locate(key);
+			} catch (RuntimeException e) {
+				// an inconsistent state may cause arbitrary exceptions
+				position = null;
+			}
+			long writeStamp = position == null ? 0L : lock.tryConvertToWriteLock(stamp);
+			if (writeStamp != 0L) {
+				try {
+					return tag(position.insert(this, key, element), element, tag);
+				} finally {
+					lock.unlockWrite(writeStamp);
+				}
+			}
+		}
+		long writeStamp = lock.writeLock();
+		try {
+			return tag(super.insert(key, element), element, tag);
+		} finally {
+			lock.unlockWrite(writeStamp);
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return readOptimistically(super::isEmpty);
+	}
+
+	/**
+	 * Join another tree into this one while holding the write locks of both
+	 * trees. The locks are acquired in a global order, so that concurrently
+	 * joining two trees into each other cannot deadlock.
+	 */
+	@Override
+	public void join(BraidedAVLTree<K, V> other) {
+		if (!(other instanceof ConcurrentBraidedAVLTree)) {
+			long stamp = lock.writeLock();
+			try {
+				super.join(other);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+			return;
+		}
+		if (other == this) {
+			throw new IllegalArgumentException("Cannot join a tree with itself");
+		}
+		StampedLock otherLock = ((ConcurrentBraidedAVLTree<K, V>) other).lock;
+		int hash = System.identityHashCode(this);
+		int otherHash = System.identityHashCode(other);
+		if (hash == otherHash) {
+			synchronized (TIE_LOCK) {
+				join(other, lock, otherLock);
+			}
+		} else if (hash < otherHash) {
+			join(other, lock, otherLock);
+		} else {
+			join(other, otherLock, lock);
+		}
+	}
+
+	private void join(BraidedAVLTree<K, V> other, StampedLock first, StampedLock second) {
+		long firstStamp = first.writeLock();
+		try {
+			long secondStamp = second.writeLock();
+			try {
+				super.join(other);
+			} finally {
+				second.unlockWrite(secondStamp);
+			}
+		} finally {
+			first.unlockWrite(firstStamp);
+		}
+	}
+
+	@Override
+	void load(Node<K, V>[] nodes) {
+		long stamp = lock.writeLock();
+		try {
+			super.load(nodes);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	ConcurrentBraidedAVLTree<K, V> newInstance() {
+		return new ConcurrentBraidedAVLTree<K, V>(getLinkSimilarity());
+	}
+
+	@Override
+	public int nodes() {
+		return readOptimistically(super::nodes);
+	}
+
+	@Override
+	public int rank(K key) {
+		return readOptimistically(() -> super.rank(key));
+	}
+
+	/**
+	 * Run a read-only operation exactly once holding the read lock, so that
+	 * it may have side effects, e.g. passing candidates to a sink. Writers
+	 * wait until the operation has finished. The operation may use the
+	 * searches of the tree, but must not call this method again.
+	 */
+	@Override
+	public <R> R read(Supplier<R> reader) {
+		long stamp = beginRead();
+		try {
+			return reader.get();
+		} finally {
+			endRead(stamp);
+		}
+	}
+
+	/**
+	 * Run a read-only operation without side effects optimistically. If a
+	 * modification happened while it was running, its result (or exception)
+	 * is discarded and it is run again holding the read lock. Operations may
+	 * be nested.
+	 *
+	 * @param reader
+	 *            the operation, must neither modify the tree nor have other
+	 *            side effects
+	 * @return the result of the operation
+	 */
+	@Override
+	public <R> R readOptimistically(Supplier<R> reader) {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0L) {
+			try {
+				R result = reader.get();
+				if (lock.validate(stamp)) {
+					return result;
+				}
+			} catch (RuntimeException e) {
+				// an inconsistent state may cause arbitrary exceptions
+				if (lock.validate(stamp)) {
+					throw e;
+				}
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return reader.get();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public Node<K, V> select(int index) {
+		return readOptimistically(() -> super.select(index));
+	}
+
+	@Override
+	public BraidedAVLTree<K, V> split(K key) {
+		long stamp = lock.writeLock();
+		try {
+			return super.split(key);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public int size() {
+		return readOptimistically(super::size);
+	}
+
+	@Override
+	public boolean supportsOptimisticReads() {
+		return true;
+	}
+
+	/**
+	 * Tag an element of a node while holding the write lock.
+	 */
+	private static <K extends Comparable<K>, V> Node<K, V> tag(Node<K, V> node, V element, int tag) {
+		if (node != null && element != null && tag != ElementCollection.UNTAGGED) {
+			node.setTag(element, tag);
+		}
+		return node;
+	}
+
+	@Override
+	public long tryOptimisticRead() {
+		return lock.tryOptimisticRead();
+	}
+
+	@Override
+	public boolean validate(long stamp) {
+		return lock.validate(stamp);
+	}
+}
@@ -1,8 +1,11 @@
 package de.hpi.idd.dysni.avl;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.util.ElementCollection;
+import de.hpi.idd.util.ElementCollection.TagConsumer;
+
 /**
  * this class implements Braided AVL trees nodes.
  * <p>
@@ -19,7 +22,7 @@ import java.util.Collection;
  *
  * @see BraidedAVLTree
  */
-public class Node<K extends Comparable<K>, V> {
+public class Node<K extends Comparable<K>, V> implements IndexNode<K, V> {
 
 	/** Enum for tree skew factor. */
 	enum Skew {
@@ -31,13 +34,32 @@ public class Node<K extends Comparable<K>, V> {
 		RIGHT_HIGH
 	}
 
+	/** Result of splitting a tree. */
+	static class Split<K extends Comparable<K>, V> {
+		/** receives the roots of intermediate joins */
+		final BraidedAVLTree<K, V> holder = new BraidedAVLTree<>();
+		/** root of the tree containing the larger keys */
+		Node<K, V> larger;
+		/** height of the tree containing the larger keys */
+		int largerHeight;
+		/** root of the tree containing the smaller keys */
+		Node<K, V> smaller;
+		/** height of the tree containing the smaller keys */
+		int smallerHeight;
+	}
+
 	/** Elements contained in the current node. */
-	private final Collection<V> elements;
+	private final ElementCollection<V> elements;
 	private final K key;
 	/** Left sub-tree. */
 	private Node<K, V> left;
 	/** Next node */
 	private Node<K, V> next;
+	/**
+	 * Similarity of the key to the key of the next node, NaN if it is unknown.
+	 * Computed by the tree whenever the link changes.
+	 */
+	private double nextSimilarity = Double.NaN;
 	/** Parent tree. */
 	private Node<K, V> parent;
 	/** Previous node */
@@ -46,8 +68,10 @@ public class Node<K extends Comparable<K>, V> {
 	private Node<K, V> right;
 	/** Skew factor. */
 	private Skew skew;
-	/** The tree the node belongs to. Needed to keep track of root of tree */
-	private final BraidedAVLTree<K, V> tree;
+	/** Number of elements contained in the sub-tree rooted at this node. */
+	private int subtreeElements;
+	/** Number of nodes contained in the sub-tree rooted at this node. */
+	private int subtreeNodes;
 
 	/**
 	 * Build a node for a specified element.
@@ -56,19 +80,18 @@ public class Node<K extends Comparable<K>, V> {
 	 *            key
 	 * @param element
 	 *            element
-	 * @param tree
-	 *            the tree the node belongs to
 	 */
-	Node(BraidedAVLTree<K, V> tree, K key, V element) {
-		this.tree = tree;
+	Node(K key, V element) {
 		if (key == null) {
 			throw new NullPointerException("Key must not be null");
 		}
-		elements = new ArrayList<>();
+		elements = new ElementCollection<>();
 		this.key = key;
 		if (element != null) {
 			elements.add(element);
 		}
+		subtreeElements = elements.size();
+		subtreeNodes = 1;
 		left = null;
 		right = null;
 		parent = null;
@@ -77,6 +100,48 @@ public class Node<K extends Comparable<K>, V> {
 		next = null;
 	}
 
+	/**
+	 * Add an element without updating the counters. Only used while bulk
+	 * loading nodes before they are linked into a tree.
+	 *
+	 * @param element
+	 *            element to add
+	 */
+	void addElement(V element) {
+		elements.add(element);
+	}
+
+	/**
+	 * Build a perfectly balanced tree from nodes sorted by their keys in
+	 * linear time. The nodes must not be linked into a tree yet, their
+	 * in-order links are not modified.
+	 *
+	 * @param nodes
+	 *            sorted nodes
+	 * @param from
+	 *            index of the first node of the sub-tree (inclusive)
+	 * @param to
+	 *            index of the last node of the sub-tree (exclusive)
+	 * @return root of the sub-tree, null if the range is empty
+	 */
+	static <K extends Comparable<K>, V> Node<K, V> build(Node<K, V>[] nodes, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		int mid = (from + to) >>> 1;
+		Node<K, V> node = nodes[mid];
+		node.setLeft(build(nodes, from, mid));
+		node.setRight(build(nodes, mid + 1, to));
+		// the height of a perfectly balanced tree only depends on its size
+		int leftHeight = 32 - Integer.numberOfLeadingZeros(mid - from);
+		int rightHeight = 32 - Integer.numberOfLeadingZeros(to - mid - 1);
+		node.skew = leftHeight > rightHeight ? Skew.LEFT_HIGH
+				: leftHeight < rightHeight ? Skew.RIGHT_HIGH : Skew.BALANCED;
+		node.parent = null;
+		node.updateCounts();
+		return node;
+	}
+
 	/**
 	 * Checks whether a node contains an element.
 	 *
@@ -84,6 +149,7 @@ public class Node<K extends Comparable<K>, V> {
 	 *            to look for
 	 * @return true if node contains element
 	 */
+	@Override
 	public boolean contains(V element) {
 		return elements.contains(element);
 	}
@@ -92,75 +158,100 @@ public class Node<K extends Comparable<K>, V> {
 	 * Delete the element from the tree. If the node is empty afterwards, the
 	 * node is deleted from the tree
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @param element
 	 *            element to delete
+	 * @return true if the node contained the element
+	 */
+	boolean delete(BraidedAVLTree<K, V> tree, V element) {
+		if (!elements.remove(element)) {
+			return false;
+		}
+		if (!elements.isEmpty()) {
+			for (Node<K, V> node = this; node != null; node = node.parent) {
+				node.subtreeElements--;
+			}
+			return true;
+		}
+		if (prev != null) {
+			prev.setNext(next);
+			tree.link(prev);
+		} else if (next != null) {
+			next.setPrev(null);
+		}
+		detach(tree);
+		return true;
+	}
+
+	/**
+	 * Remove this node from the structure of the tree and re-balance it. The
+	 * in-order links of the node are left untouched. They must still point to
+	 * the neighbors of this node, but the neighbors may already be re-linked.
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 */
-	void delete(V element) {
-		elements.remove(element);
-		if (elements.isEmpty()) {
-			if (parent == null && left == null && right == null) {
-				// this was the last node, the tree is now empty
-				tree.root = null;
+	private void detach(BraidedAVLTree<K, V> tree) {
+		final Node<K, V> start;
+		boolean leftShrunk;
+		if (left != null && right != null) {
+			// the in-order predecessor is the largest node of the left sub-tree
+			final Node<K, V> node = prev;
+			if (node.parent == this) {
+				start = node;
 			} else {
-				final Node<K, V> start;
-				Node<K, V> child;
-				boolean leftShrunk;
-				if (left == null && right == null) {
-					start = parent;
-					leftShrunk = start.isLeft(this);
-					child = null;
-				} else {
-					final Node<K, V> node;
-					if (left == null) {
-						node = next;
-						child = node.right;
-					} else {
-						node = prev;
-						child = node.left;
-					}
-					if (node != left) {
-						node.setLeft(left);
-					}
-					if (node != right) {
-						node.setRight(right);
-					}
-					start = node.parent;
-					leftShrunk = start.isLeft(node);
-					exchange(node);
-				}
-				if (prev != null) {
-					prev.setNext(next);
-				} else {
-					next.setPrev(prev);
-				}
-				if (leftShrunk) {
-					start.setLeft(child);
-				} else {
-					start.setRight(child);
-				}
-				Node<K, V> node = start;
-				Node<K, V> nextParent = node.parent;
-				while (leftShrunk ? node.rebalanceLeftShrunk() : node.rebalanceRightShrunk()) {
-					if (nextParent == null) {
-						return;
-					}
-					leftShrunk = nextParent.isLeft(start);
-					node = nextParent;
-					nextParent = node.parent;
+				start = node.parent;
+				start.setRight(node.left);
+				node.setLeft(left);
+			}
+			leftShrunk = start == node;
+			node.setRight(right);
+			node.skew = skew;
+			exchange(tree, node);
+		} else {
+			start = parent;
+			final Node<K, V> child = left != null ? left : right;
+			if (start == null) {
+				// this was the root, its only child (if any) becomes the root
+				if (child != null) {
+					child.parent = null;
 				}
+				tree.root = child;
+				return;
+			}
+			leftShrunk = start.isLeft(this);
+			if (leftShrunk) {
+				start.setLeft(child);
+			} else {
+				start.setRight(child);
 			}
 		}
+		for (Node<K, V> node = start; node != null; node = node.parent) {
+			node.updateCounts();
+		}
+		Node<K, V> node = start;
+		while (node != null) {
+			Node<K, V> nextParent = node.parent;
+			boolean nextLeftShrunk = nextParent != null && nextParent.isLeft(node);
+			if (!(leftShrunk ? node.rebalanceLeftShrunk(tree) : node.rebalanceRightShrunk(tree))) {
+				return;
+			}
+			leftShrunk = nextLeftShrunk;
+			node = nextParent;
+		}
 	}
 
 	/**
 	 * Place a node at the position where this node currently is. May update the
 	 * trees root.
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @param node
 	 *            the new node to be placed
 	 */
-	private void exchange(Node<K, V> node) {
+	private void exchange(BraidedAVLTree<K, V> tree, Node<K, V> node) {
 		if (parent != null) {
 			if (parent.isLeft(this)) {
 				parent.setLeft(node);
@@ -175,11 +266,17 @@ public class Node<K extends Comparable<K>, V> {
 		}
 	}
 
+	@Override
+	public void forEachTagged(TagConsumer<? super V> consumer) {
+		elements.forEachTagged(consumer);
+	}
+
 	/**
 	 * Retrieve the elements stored in the node.
 	 *
 	 * @return all elements contained by the node
 	 */
+	@Override
 	public Collection<V> getElements() {
 		return elements;
 	}
@@ -189,6 +286,7 @@ public class Node<K extends Comparable<K>, V> {
 	 *
 	 * @return key
 	 */
+	@Override
 	public K getKey() {
 		return key;
 	}
@@ -223,15 +321,37 @@ public class Node<K extends Comparable<K>, V> {
 	 *
 	 * @return next element of this node
 	 */
+	@Override
 	public Node<K, V> getNext() {
 		return next;
 	}
 
+	/**
+	 * Get the similarity of the key of this node to the key of the next node,
+	 * if the tree has been constructed with a measure for link similarities.
+	 *
+	 * @return similarity to the next key, NaN if it is unknown
+	 */
+	@Override
+	public double getNextSimilarity() {
+		return nextSimilarity;
+	}
+
+	/**
+	 * Get the parent of this node
+	 *
+	 * @return parent node, null if this node is the root
+	 */
+	Node<K, V> getParent() {
+		return parent;
+	}
+
 	/**
 	 * Get the in-order previous node
 	 *
 	 * @return previous element of this node
 	 */
+	@Override
 	public Node<K, V> getPrevious() {
 		return prev;
 	}
@@ -264,27 +384,33 @@ public class Node<K extends Comparable<K>, V> {
 	/**
 	 * Insert an element in a sub-tree.
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @param key
 	 *            sorting key of the element
 	 * @param element
 	 *            element to insert
 	 * @return true if the parent tree should be re-Skew.BALANCED
 	 */
-	Node<K, V> insert(K key, V element) {
+	Node<K, V> insert(BraidedAVLTree<K, V> tree, K key, V element) {
 		final Node<K, V> newNode;
-		if (key.compareTo(this.key) < 0) {
+		final int cmp = key.compareTo(this.key);
+		if (cmp < 0) {
 			// the inserted element is smaller than the node
 			if (left == null) {
-				newNode = new Node<>(tree, key, element);
+				newNode = new Node<>(key, element);
 				setLeft(newNode);
 				left.setPrev(prev);
 				setPrev(left);
+				tree.link(left.prev);
+				tree.link(left);
+				newNode.propagateInsertion(true);
 				Node<K, V> node = this;
 				Node<K, V> nextParent = parent;
 				boolean isLeft = true;
 				boolean needsRebalance = true;
 				while (needsRebalance) {
-					needsRebalance = isLeft ? node.rebalanceLeftGrown() : node.rebalanceRightGrown();
+					needsRebalance = isLeft ? node.rebalanceLeftGrown(tree) : node.rebalanceRightGrown(tree);
 					if (nextParent == null) {
 						break;
 					}
@@ -294,24 +420,30 @@ public class Node<K extends Comparable<K>, V> {
 				}
 				return newNode;
 			}
-			return left.insert(key, element);
+			return left.insert(tree, key, element);
 		}
-		if (key.compareTo(this.key) == 0) {
-			elements.add(element);
+		if (cmp == 0) {
+			if (element != null) {
+				elements.add(element);
+				propagateInsertion(false);
+			}
 			return this;
 		}
 		// the inserted element is greater than the node
 		if (right == null) {
-			newNode = new Node<>(tree, key, element);
+			newNode = new Node<>(key, element);
 			setRight(newNode);
 			right.setNext(next);
 			setNext(right);
+			tree.link(this);
+			tree.link(right);
+			newNode.propagateInsertion(true);
 			Node<K, V> node = this;
 			Node<K, V> nextParent = parent;
 			boolean isLeft = false;
 			boolean needsRebalance = true;
 			while (needsRebalance) {
-				needsRebalance = isLeft ? node.rebalanceLeftGrown() : node.rebalanceRightGrown();
+				needsRebalance = isLeft ? node.rebalanceLeftGrown(tree) : node.rebalanceRightGrown(tree);
 				if (nextParent == null) {
 					break;
 				}
@@ -321,7 +453,7 @@ public class Node<K extends Comparable<K>, V> {
 			}
 			return newNode;
 		}
-		return right.insert(key, element);
+		return right.insert(tree, key, element);
 	}
 
 	/**
@@ -352,7 +484,38 @@ public class Node<K extends Comparable<K>, V> {
 	 * @return number of nodes contained in the tree rooted at node
 	 */
 	int nodes() {
-		return 1 + (left == null ? 0 : left.nodes()) + (right == null ? 0 : right.nodes());
+		return subtreeNodes;
+	}
+
+	/**
+	 * Get the number of nodes of a possibly empty sub-tree.
+	 *
+	 * @param node
+	 *            root of the sub-tree, may be null
+	 * @return number of nodes contained in the sub-tree
+	 */
+	static int nodes(Node<?, ?> node) {
+		return node == null ? 0 : node.subtreeNodes;
+	}
+
+	/**
+	 * Update the counters of all ancestors after an element has been added to
+	 * this node. Must be called before re-balancing.
+	 *
+	 * @param newNode
+	 *            whether this node has just been created
+	 */
+	private void propagateInsertion(boolean newNode) {
+		if (!newNode) {
+			subtreeElements++;
+		}
+		int addedElements = newNode ? elements.size() : 1;
+		for (Node<K, V> node = parent; node != null; node = node.parent) {
+			node.subtreeElements += addedElements;
+			if (newNode) {
+				node.subtreeNodes++;
+			}
+		}
 	}
 
 	/**
@@ -365,20 +528,22 @@ public class Node<K extends Comparable<K>, V> {
 	/**
 	 * Re-balance the instance as left sub-tree has grown.
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @return true if the parent tree should be reSkew.BALANCED too
 	 */
-	private boolean rebalanceLeftGrown() {
+	private boolean rebalanceLeftGrown(BraidedAVLTree<K, V> tree) {
 		Node<K, V> node = this;
 		switch (skew) {
 		case LEFT_HIGH:
 			if (left.skew == Skew.LEFT_HIGH) {
-				node = rotateCW();
+				node = rotateCW(tree);
 				node.skew = Skew.BALANCED;
 				node.right.skew = Skew.BALANCED;
 			} else {
 				Skew s = left.right.skew;
-				left.rotateCCW();
-				node = rotateCW();
+				left.rotateCCW(tree);
+				node = rotateCW(tree);
 				switch (s) {
 				case LEFT_HIGH:
 					node.left.skew = Skew.BALANCED;
@@ -407,9 +572,11 @@ public class Node<K extends Comparable<K>, V> {
 	/**
 	 * Re-balance the instance as left sub-tree has shrunk.
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @return true if the parent tree should be reSkew.BALANCED too
 	 */
-	private boolean rebalanceLeftShrunk() {
+	private boolean rebalanceLeftShrunk(BraidedAVLTree<K, V> tree) {
 		Node<K, V> node = this;
 		switch (skew) {
 		case LEFT_HIGH:
@@ -417,19 +584,19 @@ public class Node<K extends Comparable<K>, V> {
 			return true;
 		case RIGHT_HIGH:
 			if (right.skew == Skew.RIGHT_HIGH) {
-				node = rotateCCW();
+				node = rotateCCW(tree);
 				node.skew = Skew.BALANCED;
 				node.left.skew = Skew.BALANCED;
 				return true;
 			} else if (right.skew == Skew.BALANCED) {
-				node = rotateCCW();
+				node = rotateCCW(tree);
 				node.skew = Skew.LEFT_HIGH;
 				node.left.skew = Skew.RIGHT_HIGH;
 				return false;
 			} else {
 				Skew s = right.left.skew;
-				right.rotateCW();
-				node = rotateCCW();
+				right.rotateCW(tree);
+				node = rotateCCW(tree);
 				switch (s) {
 				case LEFT_HIGH:
 					node.left.skew = Skew.BALANCED;
@@ -455,9 +622,11 @@ public class Node<K extends Comparable<K>, V> {
 	/**
 	 * Re-balance the instance as right sub-tree has grown.
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @return true if the parent tree should be reSkew.BALANCED too
 	 */
-	private boolean rebalanceRightGrown() {
+	private boolean rebalanceRightGrown(BraidedAVLTree<K, V> tree) {
 		Node<K, V> node = this;
 		switch (skew) {
 		case LEFT_HIGH:
@@ -465,13 +634,13 @@ public class Node<K extends Comparable<K>, V> {
 			return false;
 		case RIGHT_HIGH:
 			if (right.skew == Skew.RIGHT_HIGH) {
-				node = rotateCCW();
+				node = rotateCCW(tree);
 				node.skew = Skew.BALANCED;
 				node.left.skew = Skew.BALANCED;
 			} else {
 				Skew s = right.left.skew;
-				right.rotateCW();
-				node = rotateCCW();
+				right.rotateCW(tree);
+				node = rotateCCW(tree);
 				switch (s) {
 				case LEFT_HIGH:
 					node.left.skew = Skew.BALANCED;
@@ -497,9 +666,11 @@ public class Node<K extends Comparable<K>, V> {
 	/**
 	 * Re-balance the instance as right sub-tree has shrunk.
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @return true if the parent tree should be reSkew.BALANCED too
 	 */
-	private boolean rebalanceRightShrunk() {
+	private boolean rebalanceRightShrunk(BraidedAVLTree<K, V> tree) {
 		Node<K, V> node = this;
 		switch (skew) {
 		case RIGHT_HIGH:
@@ -507,19 +678,19 @@ public class Node<K extends Comparable<K>, V> {
 			return true;
 		case LEFT_HIGH:
 			if (left.skew == Skew.LEFT_HIGH) {
-				node = rotateCW();
+				node = rotateCW(tree);
 				node.skew = Skew.BALANCED;
 				node.right.skew = Skew.BALANCED;
 				return true;
 			} else if (left.skew == Skew.BALANCED) {
-				node = rotateCW();
+				node = rotateCW(tree);
 				node.skew = Skew.RIGHT_HIGH;
 				node.right.skew = Skew.LEFT_HIGH;
 				return false;
 			} else {
 				Skew s = left.right.skew;
-				left.rotateCCW();
-				node = rotateCW();
+				left.rotateCCW(tree);
+				node = rotateCW(tree);
 				switch (s) {
 				case LEFT_HIGH:
 					node.left.skew = Skew.BALANCED;
@@ -549,13 +720,17 @@ public class Node<K extends Comparable<K>, V> {
 	 * updated by the caller
 	 * </p>
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @return Node that is now located at this position in the tree.
 	 */
-	private Node<K, V> rotateCCW() {
+	private Node<K, V> rotateCCW(BraidedAVLTree<K, V> tree) {
 		final Node<K, V> tmpRight = right;
-		exchange(tmpRight);
+		exchange(tree, tmpRight);
 		setRight(tmpRight.left);
 		tmpRight.setLeft(this);
+		updateCounts();
+		tmpRight.updateCounts();
 		return tmpRight;
 	}
 
@@ -566,13 +741,17 @@ public class Node<K extends Comparable<K>, V> {
 	 * updated by the caller
 	 * </p>
 	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
 	 * @return Node that is now located at this position in the tree.
 	 */
-	private Node<K, V> rotateCW() {
+	private Node<K, V> rotateCW(BraidedAVLTree<K, V> tree) {
 		final Node<K, V> tmpLeft = left;
-		exchange(tmpLeft);
+		exchange(tree, tmpLeft);
 		setLeft(tmpLeft.right);
 		tmpLeft.setRight(this);
+		updateCounts();
+		tmpLeft.updateCounts();
 		return tmpLeft;
 	}
 
@@ -595,13 +774,24 @@ public class Node<K extends Comparable<K>, V> {
 	 * @param next
 	 *            next in-order node
 	 */
-	private void setNext(Node<K, V> next) {
+	void setNext(Node<K, V> next) {
 		this.next = next;
+		nextSimilarity = Double.NaN;
 		if (this.next != null) {
 			this.next.prev = this;
 		}
 	}
 
+	/**
+	 * Set the similarity of the key of this node to the key of the next node
+	 *
+	 * @param nextSimilarity
+	 *            similarity to the next key
+	 */
+	void setNextSimilarity(double nextSimilarity) {
+		this.nextSimilarity = nextSimilarity;
+	}
+
 	/**
 	 * Set the previous in-order node and update the pointers accordingly
 	 *
@@ -612,6 +802,7 @@ public class Node<K extends Comparable<K>, V> {
 		this.prev = prev;
 		if (this.prev != null) {
 			this.prev.next = this;
+			this.prev.nextSimilarity = Double.NaN;
 		}
 	}
 
@@ -628,13 +819,224 @@ public class Node<K extends Comparable<K>, V> {
 		}
 	}
 
+	@Override
+	public void setTag(V element, int tag) {
+		elements.setTag(element, tag);
+	}
+
 	/**
 	 * Get the number of elements of the tree rooted at this node.
 	 *
 	 * @return number of elements contained in the tree rooted at node
 	 */
 	int size() {
-		return elements.size() + (left == null ? 0 : left.size()) + (right == null ? 0 : right.size());
+		return subtreeElements;
+	}
+
+	/**
+	 * Get the number of elements of a possibly empty sub-tree.
+	 *
+	 * @param node
+	 *            root of the sub-tree, may be null
+	 * @return number of elements contained in the sub-tree
+	 */
+	static int size(Node<?, ?> node) {
+		return node == null ? 0 : node.subtreeElements;
+	}
+
+	/**
+	 * Compute the height of a possibly empty sub-tree by following the skew
+	 * factors.
+	 *
+	 * @param node
+	 *            root of the sub-tree, may be null
+	 * @return height of the sub-tree, 0 for an empty sub-tree
+	 */
+	static int height(Node<?, ?> node) {
+		int height = 0;
+		while (node != null) {
+			height++;
+			node = node.skew == Skew.LEFT_HIGH ? node.left : node.right;
+		}
+		return height;
+	}
+
+	/**
+	 * Join two trees and a single node whose key lies in between. The node is
+	 * hung into the higher tree at the level where the lower tree fits and the
+	 * resulting tree is re-balanced. The in-order links are not modified.
+	 *
+	 * @param tree
+	 *            holder of the resulting root, its current root is ignored
+	 * @param left
+	 *            root of the tree containing the smaller keys, may be null
+	 * @param leftHeight
+	 *            height of the left tree
+	 * @param node
+	 *            a node not contained in any tree
+	 * @param right
+	 *            root of the tree containing the larger keys, may be null
+	 * @param rightHeight
+	 *            height of the right tree
+	 * @return height of the resulting tree
+	 */
+	static <K extends Comparable<K>, V> int join(BraidedAVLTree<K, V> tree, Node<K, V> left, int leftHeight,
+			Node<K, V> node, Node<K, V> right, int rightHeight) {
+		if (leftHeight > rightHeight + 1) {
+			// descend along the right spine of the left tree
+			Node<K, V> parent = null;
+			Node<K, V> child = left;
+			int height = leftHeight;
+			while (height > rightHeight + 1) {
+				parent = child;
+				height -= child.skew == Skew.LEFT_HIGH ? 2 : 1;
+				child = child.right;
+			}
+			node.setLeft(child);
+			node.setRight(right);
+			node.skew = height > rightHeight ? Skew.LEFT_HIGH : Skew.BALANCED;
+			parent.setRight(node);
+			left.parent = null;
+			tree.root = left;
+			return leftHeight + (node.propagateGrowth(tree) ? 1 : 0);
+		}
+		if (rightHeight > leftHeight + 1) {
+			// descend along the left spine of the right tree
+			Node<K, V> parent = null;
+			Node<K, V> child = right;
+			int height = rightHeight;
+			while (height > leftHeight + 1) {
+				parent = child;
+				height -= child.skew == Skew.RIGHT_HIGH ? 2 : 1;
+				child = child.left;
+			}
+			node.setLeft(left);
+			node.setRight(child);
+			node.skew = height > leftHeight ? Skew.RIGHT_HIGH : Skew.BALANCED;
+			parent.setLeft(node);
+			right.parent = null;
+			tree.root = right;
+			return rightHeight + (node.propagateGrowth(tree) ? 1 : 0);
+		}
+		node.setLeft(left);
+		node.setRight(right);
+		node.skew = leftHeight > rightHeight ? Skew.LEFT_HIGH
+				: leftHeight < rightHeight ? Skew.RIGHT_HIGH : Skew.BALANCED;
+		node.parent = null;
+		node.updateCounts();
+		tree.root = node;
+		return Math.max(leftHeight, rightHeight) + 1;
+	}
+
+	/**
+	 * Update the counters of this node and its ancestors after the sub-tree
+	 * rooted at this node has been hung into the tree and grown by one level.
+	 * Re-balances the tree like an insertion does.
+	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
+	 * @return true if the height of the whole tree has grown
+	 */
+	private boolean propagateGrowth(BraidedAVLTree<K, V> tree) {
+		for (Node<K, V> ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+			ancestor.updateCounts();
+		}
+		Node<K, V> child = this;
+		for (Node<K, V> ancestor = parent; ancestor != null; ancestor = child.parent) {
+			boolean isLeft = ancestor.isLeft(child);
+			if (!(isLeft ? ancestor.rebalanceLeftGrown(tree) : ancestor.rebalanceRightGrown(tree))) {
+				return false;
+			}
+			child = ancestor;
+		}
+		return true;
+	}
+
+	/**
+	 * Cut the in-order link between this node and its successor.
+	 */
+	void cutNext() {
+		if (next != null) {
+			next.prev = null;
+			next = null;
+			nextSimilarity = Double.NaN;
+		}
+	}
+
+	/**
+	 * Remove the smallest node from the tree rooted at this node without
+	 * modifying the in-order links.
+	 *
+	 * @param tree
+	 *            the tree the node belongs to, its root is updated if necessary
+	 * @return the removed node, detached from the tree
+	 */
+	Node<K, V> removeSmallest(BraidedAVLTree<K, V> tree) {
+		Node<K, V> smallest = getSmallest();
+		smallest.detach(tree);
+		smallest.left = null;
+		smallest.right = null;
+		smallest.parent = null;
+		return smallest;
+	}
+
+	/**
+	 * Split the tree rooted at this node into the nodes with keys smaller than
+	 * the specified key and the remaining nodes. The in-order links are not
+	 * modified.
+	 *
+	 * @param height
+	 *            height of the tree rooted at this node
+	 * @param key
+	 *            the key to split at
+	 * @param result
+	 *            receives the roots and heights of the two resulting trees
+	 */
+	void split(int height, K key, Split<K, V> result) {
+		int leftHeight = height - (skew == Skew.RIGHT_HIGH ? 2 : 1);
+		int rightHeight = height - (skew == Skew.LEFT_HIGH ? 2 : 1);
+		final Node<K, V> leftChild = left;
+		final Node<K, V> rightChild = right;
+		left = null;
+		right = null;
+		if (leftChild != null) {
+			leftChild.parent = null;
+		}
+		if (rightChild != null) {
+			rightChild.parent = null;
+		}
+		final BraidedAVLTree<K, V> holder = result.holder;
+		if (this.key.compareTo(key) < 0) {
+			if (rightChild == null) {
+				result.smaller = null;
+				result.smallerHeight = 0;
+				result.larger = null;
+				result.largerHeight = 0;
+			} else {
+				rightChild.split(rightHeight, key, result);
+			}
+			result.smallerHeight = join(holder, leftChild, leftHeight, this, result.smaller, result.smallerHeight);
+			result.smaller = holder.root;
+		} else {
+			if (leftChild == null) {
+				result.smaller = null;
+				result.smallerHeight = 0;
+				result.larger = null;
+				result.largerHeight = 0;
+			} else {
+				leftChild.split(leftHeight, key, result);
+			}
+			result.largerHeight = join(holder, result.larger, result.largerHeight, this, rightChild, rightHeight);
+			result.larger = holder.root;
+		}
+	}
+
+	/**
+	 * Recompute the sub-tree counters from the children's counters.
+	 */
+	private void updateCounts() {
+		subtreeNodes = 1 + nodes(left) + nodes(right);
+		subtreeElements = elements.size() + size(left) + size(right);
 	}
 
 	@Override
@@ -0,0 +1,885 @@
+package de.hpi.idd.dysni.avl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+
+/**
+ * Array backed variant of the {@link BraidedAVLTree}.
+ *
+ * <p>
+ * Instead of allocating a {@link Node} object per key, the nodes of this tree
+ * are slots in parallel primitive arrays. A node is identified by its slot, an
+ * {@code int}, and the tree structure as well as the braided in-order links are
+ * stored as slot numbers. Slots of deleted nodes are reused by later
+ * insertions. The arrays grow in multiples of {@link #CHUNK_SIZE} slots.
+ * </p>
+ *
+ * <p>
+ * Navigation is done using the slots, e.g. {@link #getPrevious(int)} and
+ * {@link #getNext(int)}, which return {@link #NIL} if there is no such node.
+ * Walking the tree using those methods, {@link #elementCount(int)} and
+ * {@link #getElement(int, int)} does not allocate any objects. Slots are only
+ * valid until the node they refer to is deleted.
+ * </p>
+ *
+ * <p>
+ * Nodes holding a single element store it inline. Only nodes holding multiple
+ * elements allocate a list.
+ * </p>
+ *
+ * <p>
+ * The tree can be used as a {@link SortedIndex} of a
+ * {@link de.hpi.idd.dysni.DySNIndex DySNIndex} through its
+ * {@link #asIndex() index view}, e.g. by configuring
+ * {@code () -> new PooledBraidedAVLTree<K, V>().asIndex()} as index factory.
+ * The view represents a slot by a transient handle, which is created whenever
+ * the slot is exposed, so that the tree does not keep an object per node. A
+ * handle remembers the generation of its slot, which changes when the slot is
+ * released. Using a handle after its node has been deleted fails with an
+ * {@link IllegalStateException} rather than silently referring to the node
+ * reusing the slot. Handles of the same node are {@link Object#equals(Object)
+ * equal}.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the key of the elements
+ * @param <V>
+ *            the type of the elements
+ */
+public class PooledBraidedAVLTree<K extends Comparable<K>, V> {
+
+	/**
+	 * {@link SortedIndex} view of the tree.
+	 */
+	private class Index implements SortedIndex<K, V> {
+
+		@Override
+		public IndexNode<K, V> ceiling(K key) {
+			return handle(PooledBraidedAVLTree.this.ceiling(key));
+		}
+
+		@Override
+		public SortedIndex<K, V> createEmpty() {
+			return new PooledBraidedAVLTree<K, V>().asIndex();
+		}
+
+		@Override
+		public boolean delete(K key, V element) {
+			return PooledBraidedAVLTree.this.delete(key, element);
+		}
+
+		@Override
+		public IndexNode<K, V> find(K key) {
+			return handle(PooledBraidedAVLTree.this.find(key));
+		}
+
+		@Override
+		public IndexNode<K, V> getLargest() {
+			return handle(PooledBraidedAVLTree.this.getLargest());
+		}
+
+		@Override
+		public IndexNode<K, V> getSmallest() {
+			return handle(PooledBraidedAVLTree.this.getSmallest());
+		}
+
+		@Override
+		public IndexNode<K, V> insert(K key, V element) {
+			return handle(PooledBraidedAVLTree.this.insert(key, element));
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return PooledBraidedAVLTree.this.isEmpty();
+		}
+
+		@Override
+		public int nodes() {
+			return PooledBraidedAVLTree.this.nodes();
+		}
+
+		@Override
+		public int size() {
+			return PooledBraidedAVLTree.this.size();
+		}
+	}
+
+	/**
+	 * List used for nodes containing multiple elements. Having a dedicated
+	 * type allows distinguishing it from elements which are lists themselves.
+	 */
+	private static class ElementList<V> extends ArrayList<V> {
+
+		private static final long serialVersionUID = -3384498766785768418L;
+
+		public ElementList(V first, V second) {
+			super(2);
+			add(first);
+			add(second);
+		}
+	}
+
+	/**
+	 * Transient handle of a slot implementing {@link IndexNode}. The handle is
+	 * its own view of the elements of the slot, so that no wrapper is
+	 * allocated when the elements are retrieved.
+	 */
+	private class Slot extends AbstractCollection<V> implements IndexNode<K, V> {
+
+		/** generation of the slot when the handle was created */
+		private final int generation;
+		private final int slot;
+
+		Slot(int slot) {
+			this.slot = slot;
+			this.generation = generations[slot];
+		}
+
+		/**
+		 * Get the slot, making sure that it still holds the node of the
+		 * handle.
+		 */
+		private int check() {
+			if (generations[slot] != generation) {
+				throw new IllegalStateException("Node has been deleted");
+			}
+			return slot;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(Object element) {
+			return PooledBraidedAVLTree.this.contains(check(), (V) element);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PooledBraidedAVLTree.Slot)) {
+				return false;
+			}
+			PooledBraidedAVLTree<?, ?>.Slot other = (PooledBraidedAVLTree<?, ?>.Slot) obj;
+			return tree() == other.tree() && slot == other.slot && generation == other.generation;
+		}
+
+		@Override
+		public Collection<V> getElements() {
+			check();
+			return this;
+		}
+
+		@Override
+		public K getKey() {
+			return PooledBraidedAVLTree.this.getKey(check());
+		}
+
+		@Override
+		public IndexNode<K, V> getNext() {
+			return handle(next[check()]);
+		}
+
+		@Override
+		public IndexNode<K, V> getPrevious() {
+			return handle(prev[check()]);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * slot + generation;
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			check();
+			return new Iterator<V>() {
+
+				private int index = 0;
+
+				@Override
+				public boolean hasNext() {
+					return index < elementCount(check());
+				}
+
+				@Override
+				public V next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return getElement(slot, index++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return elementCount(check());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + super.toString();
+		}
+
+		private PooledBraidedAVLTree<K, V> tree() {
+			return PooledBraidedAVLTree.this;
+		}
+	}
+
+	/** number of slots the arrays grow by */
+	public static final int CHUNK_SIZE = 1024;
+	/** slot indicating the absence of a node */
+	public static final int NIL = -1;
+
+	/** number of slots ever handed out, i.e. the high water mark */
+	private int allocated = 0;
+	/** number of elements contained in the tree */
+	private int elements = 0;
+	/** head of the list of freed slots, linked using {@link #next} */
+	private int free = NIL;
+	/**
+	 * generation of each slot, incremented when the slot is released so that
+	 * handles of deleted nodes can be detected
+	 */
+	private int[] generations;
+	/** height of the sub-tree rooted at each slot */
+	private byte[] height;
+	/** key of each slot */
+	private Object[] keys;
+	/** left child of each slot */
+	private int[] left;
+	/** next in-order slot of each slot */
+	private int[] next;
+	/** number of nodes contained in the tree */
+	private int nodes = 0;
+	/** parent of each slot */
+	private int[] parent;
+	/** previous in-order slot of each slot */
+	private int[] prev;
+	/** right child of each slot */
+	private int[] right;
+	/** top level slot */
+	private int root = NIL;
+	/**
+	 * elements of each slot, either null, a single element or an
+	 * {@link ElementList}
+	 */
+	private Object[] values;
+
+	/**
+	 * Construct an empty tree with an initial capacity of one chunk.
+	 */
+	public PooledBraidedAVLTree() {
+		this(CHUNK_SIZE);
+	}
+
+	/**
+	 * Construct an empty tree.
+	 *
+	 * @param initialCapacity
+	 *            number of nodes the tree can hold before growing. It is
+	 *            rounded up to a multiple of {@link #CHUNK_SIZE}
+	 */
+	public PooledBraidedAVLTree(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Capacity must not be negative");
+		}
+		int capacity = roundToChunk(Math.max(initialCapacity, 1));
+		height = new byte[capacity];
+		keys = new Object[capacity];
+		left = new int[capacity];
+		next = new int[capacity];
+		parent = new int[capacity];
+		prev = new int[capacity];
+		right = new int[capacity];
+		values = new Object[capacity];
+		generations = new int[capacity];
+	}
+
+	private static int roundToChunk(int capacity) {
+		return (capacity + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+	}
+
+	/**
+	 * Add an element to a slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param element
+	 *            the element to add, ignored if null
+	 */
+	@SuppressWarnings("unchecked")
+	private void addElement(int slot, V element) {
+		if (element == null) {
+			return;
+		}
+		Object value = values[slot];
+		if (value == null) {
+			values[slot] = element;
+		} else if (value instanceof ElementList) {
+			((ElementList<V>) value).add(element);
+		} else {
+			values[slot] = new ElementList<>((V) value, element);
+		}
+		elements++;
+	}
+
+	/**
+	 * Hand out a new slot, either by reusing a freed one or by taking the next
+	 * unused one. Grows the arrays if necessary.
+	 *
+	 * @return the new slot
+	 */
+	private int allocate(K key, V element, int parentSlot) {
+		final int slot;
+		if (free != NIL) {
+			slot = free;
+			free = next[slot];
+		} else {
+			if (allocated == keys.length) {
+				grow();
+			}
+			slot = allocated++;
+		}
+		keys[slot] = key;
+		values[slot] = null;
+		left[slot] = NIL;
+		right[slot] = NIL;
+		parent[slot] = parentSlot;
+		prev[slot] = NIL;
+		next[slot] = NIL;
+		height[slot] = 1;
+		nodes++;
+		addElement(slot, element);
+		return slot;
+	}
+
+	/**
+	 * Get a {@link SortedIndex} view of the tree, e.g. for using it in a
+	 * {@link de.hpi.idd.dysni.DySNIndex DySNIndex}. Its nodes are handles of
+	 * the slots of this tree.
+	 *
+	 * @return index backed by this tree
+	 */
+	public SortedIndex<K, V> asIndex() {
+		return new Index();
+	}
+
+	private int balance(int slot) {
+		return height(left[slot]) - height(right[slot]);
+	}
+
+	/**
+	 * Get the number of slots the tree can hold without growing.
+	 *
+	 * @return the current capacity
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Find the node with the smallest key greater than or equal to a key.
+	 *
+	 * @param key
+	 *            the key to search for, which does not need to be contained
+	 * @return slot of the node with the smallest key not smaller than the
+	 *         specified key, {@link #NIL} if all keys are smaller
+	 */
+	public int ceiling(K key) {
+		int slot = root;
+		int ceiling = NIL;
+		while (slot != NIL) {
+			int cmp = key.compareTo(getKey(slot));
+			if (cmp < 0) {
+				ceiling = slot;
+				slot = left[slot];
+			} else if (cmp > 0) {
+				slot = right[slot];
+			} else {
+				return slot;
+			}
+		}
+		return ceiling;
+	}
+
+	/**
+	 * Checks whether a node contains an element.
+	 *
+	 * @param slot
+	 *            the node
+	 * @param element
+	 *            to look for
+	 * @return true if node contains element
+	 */
+	public boolean contains(int slot, V element) {
+		Object value = values[slot];
+		if (value instanceof ElementList) {
+			return ((ElementList<?>) value).contains(element);
+		}
+		return value != null && value.equals(element);
+	}
+
+	/**
+	 * Delete an element from the tree. The node is removed if it does not
+	 * contain any elements afterwards.
+	 *
+	 * @param key
+	 *            the key of the element
+	 * @param element
+	 *            element to delete (silently ignored if null)
+	 * @return true if the element was deleted from the tree
+	 * @see BraidedAVLTree#delete(Comparable, Object)
+	 */
+	public boolean delete(K key, V element) {
+		if (element == null) {
+			return false;
+		}
+		int slot = find(key);
+		if (slot == NIL || !removeElement(slot, element)) {
+			return false;
+		}
+		if (values[slot] == null) {
+			remove(slot);
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of elements of a node.
+	 *
+	 * @param slot
+	 *            the node
+	 * @return number of elements contained in the node
+	 */
+	public int elementCount(int slot) {
+		Object value = values[slot];
+		if (value instanceof ElementList) {
+			return ((ElementList<?>) value).size();
+		}
+		return value == null ? 0 : 1;
+	}
+
+	/**
+	 * Find the node with the specified key
+	 *
+	 * @param key
+	 *            the key which's node should be retrieved
+	 * @return slot of the node with the specified key, {@link #NIL} if no node
+	 *         is found
+	 */
+	public int find(K key) {
+		int slot = root;
+		while (slot != NIL) {
+			int cmp = key.compareTo(getKey(slot));
+			if (cmp < 0) {
+				slot = left[slot];
+			} else if (cmp > 0) {
+				slot = right[slot];
+			} else {
+				return slot;
+			}
+		}
+		return NIL;
+	}
+
+	/**
+	 * Retrieve a single element stored in a node without allocating.
+	 *
+	 * @param slot
+	 *            the node
+	 * @param index
+	 *            index of the element, smaller than {@link #elementCount(int)}
+	 * @return the element
+	 */
+	@SuppressWarnings("unchecked")
+	public V getElement(int slot, int index) {
+		Object value = values[slot];
+		if (value instanceof ElementList) {
+			return ((ElementList<V>) value).get(index);
+		}
+		if (value == null || index != 0) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elementCount(slot));
+		}
+		return (V) value;
+	}
+
+	/**
+	 * Retrieve the elements stored in a node.
+	 *
+	 * @param slot
+	 *            the node
+	 * @return all elements contained by the node
+	 */
+	@SuppressWarnings("unchecked")
+	public Collection<V> getElements(int slot) {
+		Object value = values[slot];
+		if (value instanceof ElementList) {
+			return Collections.unmodifiableList((ElementList<V>) value);
+		}
+		return value == null ? Collections.emptyList() : Collections.singletonList((V) value);
+	}
+
+	/**
+	 * Get the key of a node.
+	 *
+	 * @param slot
+	 *            the node
+	 * @return key
+	 */
+	@SuppressWarnings("unchecked")
+	public K getKey(int slot) {
+		return (K) keys[slot];
+	}
+
+	/**
+	 * Get the node whose key is the largest one in the tree.
+	 *
+	 * @return the slot of the node having the largest key in the tree or
+	 *         {@link #NIL} if the tree is empty
+	 */
+	public int getLargest() {
+		int slot = root;
+		if (slot != NIL) {
+			while (right[slot] != NIL) {
+				slot = right[slot];
+			}
+		}
+		return slot;
+	}
+
+	int getLeft(int slot) {
+		return left[slot];
+	}
+
+	/**
+	 * Get the in-order next node
+	 *
+	 * @param slot
+	 *            the node
+	 * @return next node, {@link #NIL} if there is none
+	 */
+	public int getNext(int slot) {
+		return next[slot];
+	}
+
+	/**
+	 * Get the in-order previous node
+	 *
+	 * @param slot
+	 *            the node
+	 * @return previous node, {@link #NIL} if there is none
+	 */
+	public int getPrevious(int slot) {
+		return prev[slot];
+	}
+
+	int getRight(int slot) {
+		return right[slot];
+	}
+
+	int getRoot() {
+		return root;
+	}
+
+	/**
+	 * Get the node whose key is the smallest one in the tree.
+	 *
+	 * @return the slot of the node having the smallest key in the tree or
+	 *         {@link #NIL} if the tree is empty
+	 */
+	public int getSmallest() {
+		int slot = root;
+		if (slot != NIL) {
+			while (left[slot] != NIL) {
+				slot = left[slot];
+			}
+		}
+		return slot;
+	}
+
+	private void grow() {
+		int capacity = roundToChunk(keys.length + Math.max(keys.length >> 1, CHUNK_SIZE));
+		height = Arrays.copyOf(height, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		left = Arrays.copyOf(left, capacity);
+		next = Arrays.copyOf(next, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		prev = Arrays.copyOf(prev, capacity);
+		right = Arrays.copyOf(right, capacity);
+		values = Arrays.copyOf(values, capacity);
+		generations = Arrays.copyOf(generations, capacity);
+	}
+
+	/**
+	 * Create a transient handle of a slot.
+	 *
+	 * @return handle of the slot, null if the slot is {@link #NIL}
+	 */
+	private Slot handle(int slot) {
+		return slot == NIL ? null : new Slot(slot);
+	}
+
+	int height(int slot) {
+		return slot == NIL ? 0 : height[slot];
+	}
+
+	/**
+	 * Insert an element in the tree.
+	 *
+	 * @param key
+	 *            the element's sorting key
+	 * @param element
+	 *            element to insert
+	 * @return slot of the node where the element was inserted, {@link #NIL}
+	 *         if the key is null
+	 */
+	public int insert(K key, V element) {
+		if (key == null) {
+			return NIL;
+		}
+		if (root == NIL) {
+			root = allocate(key, element, NIL);
+			return root;
+		}
+		int slot = root;
+		int cmp;
+		while (true) {
+			cmp = key.compareTo(getKey(slot));
+			if (cmp == 0) {
+				addElement(slot, element);
+				return slot;
+			}
+			int child = cmp < 0 ? left[slot] : right[slot];
+			if (child == NIL) {
+				break;
+			}
+			slot = child;
+		}
+		int newSlot = allocate(key, element, slot);
+		if (cmp < 0) {
+			left[slot] = newSlot;
+			link(prev[slot], newSlot);
+			link(newSlot, slot);
+		} else {
+			right[slot] = newSlot;
+			link(newSlot, next[slot]);
+			link(slot, newSlot);
+		}
+		rebalance(slot);
+		return newSlot;
+	}
+
+	/**
+	 * Check if the tree is empty.
+	 *
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+
+	/**
+	 * Make two slots in-order neighbors.
+	 *
+	 * @param before
+	 *            the previous slot, may be {@link #NIL}
+	 * @param after
+	 *            the next slot, may be {@link #NIL}
+	 */
+	private void link(int before, int after) {
+		if (before != NIL) {
+			next[before] = after;
+		}
+		if (after != NIL) {
+			prev[after] = before;
+		}
+	}
+
+	/**
+	 * Get the number of nodes of the tree.
+	 *
+	 * @return number of nodes contained in the tree
+	 */
+	public int nodes() {
+		return nodes;
+	}
+
+	/**
+	 * Re-balance the tree bottom-up starting at the specified slot. Stops as
+	 * soon as the height of a sub-tree did not change.
+	 *
+	 * @param slot
+	 *            the lowest slot whose sub-tree changed
+	 */
+	private void rebalance(int slot) {
+		while (slot != NIL) {
+			int parentSlot = parent[slot];
+			int oldHeight = height[slot];
+			int balance = balance(slot);
+			if (balance > 1) {
+				if (balance(left[slot]) < 0) {
+					rotateCCW(left[slot]);
+				}
+				slot = rotateCW(slot);
+			} else if (balance < -1) {
+				if (balance(right[slot]) > 0) {
+					rotateCW(right[slot]);
+				}
+				slot = rotateCCW(slot);
+			} else {
+				updateHeight(slot);
+			}
+			if (height[slot] == oldHeight) {
+				return;
+			}
+			slot = parentSlot;
+		}
+	}
+
+	/**
+	 * Remove a node from the tree and release its slot.
+	 *
+	 * @param slot
+	 *            the node to be removed
+	 */
+	private void remove(int slot) {
+		int predecessor = prev[slot];
+		link(predecessor, next[slot]);
+		final int start;
+		if (left[slot] != NIL && right[slot] != NIL) {
+			// the predecessor is the largest node in the left sub-tree
+			if (parent[predecessor] == slot) {
+				start = predecessor;
+			} else {
+				start = parent[predecessor];
+				setRight(start, left[predecessor]);
+				setLeft(predecessor, left[slot]);
+			}
+			setRight(predecessor, right[slot]);
+			replace(slot, predecessor);
+			height[predecessor] = height[slot];
+		} else {
+			start = parent[slot];
+			replace(slot, left[slot] != NIL ? left[slot] : right[slot]);
+		}
+		rebalance(start);
+		keys[slot] = null;
+		values[slot] = null;
+		generations[slot]++;
+		next[slot] = free;
+		free = slot;
+		nodes--;
+	}
+
+	/**
+	 * Remove an element from a slot.
+	 *
+	 * @return true if the element was contained
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean removeElement(int slot, V element) {
+		Object value = values[slot];
+		if (value instanceof ElementList) {
+			ElementList<V> list = (ElementList<V>) value;
+			if (!list.remove(element)) {
+				return false;
+			}
+			if (list.size() == 1) {
+				values[slot] = list.get(0);
+			}
+		} else if (value != null && value.equals(element)) {
+			values[slot] = null;
+		} else {
+			return false;
+		}
+		elements--;
+		return true;
+	}
+
+	/**
+	 * Place a slot at the position where another slot currently is. May
+	 * update the root.
+	 *
+	 * @param old
+	 *            the slot currently at the position
+	 * @param slot
+	 *            the new slot, may be {@link #NIL}
+	 */
+	private void replace(int old, int slot) {
+		int parentSlot = parent[old];
+		if (parentSlot == NIL) {
+			root = slot;
+		} else if (left[parentSlot] == old) {
+			left[parentSlot] = slot;
+		} else {
+			right[parentSlot] = slot;
+		}
+		if (slot != NIL) {
+			parent[slot] = parentSlot;
+		}
+	}
+
+	/**
+	 * Perform a counter-clockwise rotation rooted at the slot.
+	 *
+	 * @return slot that is now located at this position in the tree
+	 */
+	private int rotateCCW(int slot) {
+		int tmpRight = right[slot];
+		replace(slot, tmpRight);
+		setRight(slot, left[tmpRight]);
+		setLeft(tmpRight, slot);
+		updateHeight(slot);
+		updateHeight(tmpRight);
+		return tmpRight;
+	}
+
+	/**
+	 * Perform a clockwise rotation rooted at the slot.
+	 *
+	 * @return slot that is now located at this position in the tree
+	 */
+	private int rotateCW(int slot) {
+		int tmpLeft = left[slot];
+		replace(slot, tmpLeft);
+		setLeft(slot, right[tmpLeft]);
+		setRight(tmpLeft, slot);
+		updateHeight(slot);
+		updateHeight(tmpLeft);
+		return tmpLeft;
+	}
+
+	private void setLeft(int slot, int child) {
+		left[slot] = child;
+		if (child != NIL) {
+			parent[child] = slot;
+		}
+	}
+
+	private void setRight(int slot, int child) {
+		right[slot] = child;
+		if (child != NIL) {
+			parent[child] = slot;
+		}
+	}
+
+	/**
+	 * Get the number of elements of the tree.
+	 *
+	 * @return number of elements contained in the tree
+	 */
+	public int size() {
+		return elements;
+	}
+
+	private void updateHeight(int slot) {
+		height[slot] = (byte) (1 + Math.max(height(left[slot]), height(right[slot])));
+	}
+}
@@ -0,0 +1,103 @@
+package de.hpi.idd.dysni.avl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes keys or elements of a tree in a {@link TreeSnapshot}. Values are
+ * written sequentially and read back from a memory-mapped buffer.
+ *
+ * @param <T>
+ *            type of the values
+ */
+public interface SnapshotCodec<T> {
+
+	/**
+	 * Codec for {@link Integer} values using four bytes.
+	 *
+	 * @return codec for integers
+	 */
+	static SnapshotCodec<Integer> integers() {
+		return new SnapshotCodec<Integer>() {
+
+			@Override
+			public Integer decode(ByteBuffer buffer) {
+				return buffer.getInt();
+			}
+
+			@Override
+			public void encode(Integer value, DataOutput out) throws IOException {
+				out.writeInt(value);
+			}
+		};
+	}
+
+	/**
+	 * Codec for {@link Long} values using eight bytes.
+	 *
+	 * @return codec for longs
+	 */
+	static SnapshotCodec<Long> longs() {
+		return new SnapshotCodec<Long>() {
+
+			@Override
+			public Long decode(ByteBuffer buffer) {
+				return buffer.getLong();
+			}
+
+			@Override
+			public void encode(Long value, DataOutput out) throws IOException {
+				out.writeLong(value);
+			}
+		};
+	}
+
+	/**
+	 * Codec for {@link String} values encoded as UTF-8 prefixed by their length
+	 * in bytes.
+	 *
+	 * @return codec for strings
+	 */
+	static SnapshotCodec<String> strings() {
+		return new SnapshotCodec<String>() {
+
+			@Override
+			public String decode(ByteBuffer buffer) {
+				byte[] bytes = new byte[buffer.getInt()];
+				buffer.get(bytes);
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public void encode(String value, DataOutput out) throws IOException {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		};
+	}
+
+	/**
+	 * Read a value at the current position of the buffer and advance the
+	 * position behind it.
+	 *
+	 * @param buffer
+	 *            buffer to read from
+	 * @return the decoded value
+	 */
+	T decode(ByteBuffer buffer);
+
+	/**
+	 * Write a value.
+	 *
+	 * @param value
+	 *            value to encode
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if the value cannot be written
+	 */
+	void encode(T value, DataOutput out) throws IOException;
+}
@@ -0,0 +1,164 @@
+package de.hpi.idd.dysni.avl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+
+/**
+ * Compact on-disk snapshot of a {@link SortedIndex}.
+ *
+ * <p>
+ * A snapshot contains the keys of all nodes in ascending order, each followed
+ * by the elements of the node. It is written sequentially and read by
+ * memory-mapping the file. As the keys are already sorted, a
+ * {@link BraidedAVLTree} is rebuilt in linear time without a single
+ * comparison. Other indexes are filled by inserting the nodes in order.
+ * </p>
+ *
+ * <p>
+ * Layout: a header consisting of a magic number and the format version, the
+ * nodes, each as key, number of elements and elements, and a trailer with the
+ * number of nodes and elements. The index must not be modified while a
+ * snapshot is written.
+ * </p>
+ */
+public final class TreeSnapshot {
+
+	/** size of the trailer in bytes */
+	private static final int TRAILER = 2 * Integer.BYTES;
+	/** size of the header in bytes */
+	private static final int HEADER = 2 * Integer.BYTES;
+	/** "DYSN" in ASCII */
+	private static final int MAGIC = 0x4459534E;
+	private static final int VERSION = 1;
+
+	/**
+	 * Load a snapshot into an empty index.
+	 *
+	 * @param file
+	 *            the snapshot
+	 * @param keyCodec
+	 *            codec used to write the keys
+	 * @param elementCodec
+	 *            codec used to write the elements
+	 * @param index
+	 *            the empty index to be filled
+	 * @throws IOException
+	 *             if the snapshot cannot be read or is corrupt
+	 * @throws IllegalArgumentException
+	 *             if the index is not empty
+	 */
+	public static <K extends Comparable<K>, V> void read(Path file, SnapshotCodec<K> keyCodec,
+			SnapshotCodec<V> elementCodec, SortedIndex<K, V> index) throws IOException {
+		if (!index.isEmpty()) {
+			throw new IllegalArgumentException("Snapshots can only be loaded into empty indexes");
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot exceeds maximum size of a mapped buffer: " + file);
+			}
+			if (length < HEADER + TRAILER) {
+				throw new IOException("Not a snapshot: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, length);
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a snapshot: " + file);
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported snapshot version " + version + ": " + file);
+			}
+			int nodes = buffer.getInt((int) length - TRAILER);
+			int size = buffer.getInt((int) length - Integer.BYTES);
+			buffer.limit((int) length - TRAILER);
+			if (index instanceof BraidedAVLTree) {
+				((BraidedAVLTree<K, V>) index).load(readNodes(buffer, nodes, keyCodec, elementCodec));
+			} else {
+				insertNodes(buffer, nodes, keyCodec, elementCodec, index);
+			}
+			if (buffer.hasRemaining() || index.size() != size) {
+				throw new IOException("Corrupt snapshot: " + file);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt snapshot: " + file, e);
+		}
+	}
+
+	private static <K extends Comparable<K>, V> void insertNodes(ByteBuffer buffer, int nodes,
+			SnapshotCodec<K> keyCodec, SnapshotCodec<V> elementCodec, SortedIndex<K, V> index) {
+		for (int i = 0; i < nodes; i++) {
+			K key = keyCodec.decode(buffer);
+			int elements = buffer.getInt();
+			for (int j = 0; j < elements; j++) {
+				index.insert(key, elementCodec.decode(buffer));
+			}
+		}
+	}
+
+	private static <K extends Comparable<K>, V> Node<K, V>[] readNodes(ByteBuffer buffer, int nodes,
+			SnapshotCodec<K> keyCodec, SnapshotCodec<V> elementCodec) {
+		@SuppressWarnings("unchecked")
+		Node<K, V>[] sorted = (Node<K, V>[]) new Node<?, ?>[nodes];
+		for (int i = 0; i < nodes; i++) {
+			Node<K, V> node = new Node<>(keyCodec.decode(buffer), null);
+			int elements = buffer.getInt();
+			for (int j = 0; j < elements; j++) {
+				node.addElement(elementCodec.decode(buffer));
+			}
+			if (i > 0) {
+				sorted[i - 1].setNext(node);
+			}
+			sorted[i] = node;
+		}
+		return sorted;
+	}
+
+	/**
+	 * Write a snapshot of an index. An existing file is replaced.
+	 *
+	 * @param index
+	 *            the index to be written
+	 * @param file
+	 *            the snapshot
+	 * @param keyCodec
+	 *            codec to write the keys
+	 * @param elementCodec
+	 *            codec to write the elements
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public static <K extends Comparable<K>, V> void write(SortedIndex<K, V> index, Path file,
+			SnapshotCodec<K> keyCodec, SnapshotCodec<V> elementCodec) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			int nodes = 0;
+			int size = 0;
+			for (IndexNode<K, V> node = index.getSmallest(); node != null; node = node.getNext()) {
+				keyCodec.encode(node.getKey(), out);
+				out.writeInt(node.getElements().size());
+				for (V element : node.getElements()) {
+					elementCodec.encode(element, out);
+				}
+				nodes++;
+				size += node.getElements().size();
+			}
+			out.writeInt(nodes);
+			out.writeInt(size);
+		}
+	}
+
+	private TreeSnapshot() {
+	}
+}
@@ -0,0 +1,805 @@
+package de.hpi.idd.dysni.btree;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.util.ElementCollection;
+import de.hpi.idd.util.ElementCollection.TagConsumer;
+
+/**
+ * This class implements a B+-tree as a {@link SortedIndex}.
+ *
+ * <p>
+ * All keys are stored in the leaves of the tree. Each leaf holds up to
+ * {@code order} keys in a contiguous array and the elements of all of its keys
+ * in another one, together with their tags, and leaves are chained together.
+ * The elements of a key are delimited by offsets into that array, so a leaf
+ * consists of a handful of flat arrays instead of an object per key.
+ * Navigating to the in-order neighbor of a node is thus mostly a step to the
+ * adjacent slot of the same leaf, which makes expanding windows a linear scan
+ * instead of following pointers to arbitrary locations on the heap. Inner
+ * nodes only contain separator keys, so a search touches few, densely packed
+ * arrays.
+ * </p>
+ *
+ * <p>
+ * Full nodes are split on insertion. On deletion, nodes falling below half of
+ * their capacity borrow a key from a sibling or are merged with it. Adding or
+ * removing an element shifts the elements of the following keys of its leaf,
+ * so keys with very many elements are better served by a tree keeping an
+ * {@link ElementCollection} per node. Nodes returned by the tree are cursors
+ * pointing to a slot of a leaf. They stay valid as long as they contain
+ * elements and locate their key again once its leaf has been modified. This
+ * implementation is not thread-safe.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the key of the elements
+ * @param <V>
+ *            the type of the elements
+ */
+public class BPlusTree<K extends Comparable<K>, V> implements SortedIndex<K, V> {
+
+	/**
+	 * Node of the tree, pointing to a slot of a leaf.
+	 */
+	private final class Cursor implements IndexNode<K, V> {
+
+		private final K key;
+		/** leaf containing the key, null if the key was removed */
+		private Leaf<K, V> leaf;
+		/** modifications of the leaf when the slot was determined */
+		private int modifications;
+		private int slot;
+
+		Cursor(Leaf<K, V> leaf, int slot) {
+			this.key = leaf.keys[slot];
+			this.leaf = leaf;
+			this.slot = slot;
+			this.modifications = leaf.modifications;
+		}
+
+		@Override
+		public boolean contains(V element) {
+			Leaf<K, V> leaf = locate();
+			return leaf != null && leaf.indexOf(slot, element) >= 0;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BPlusTree.Cursor)) {
+				return false;
+			}
+			BPlusTree<?, ?>.Cursor other = (BPlusTree<?, ?>.Cursor) obj;
+			return tree() == other.tree() && key.equals(other.key);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void forEachTagged(TagConsumer<? super V> consumer) {
+			Leaf<K, V> leaf = locate();
+			if (leaf == null) {
+				return;
+			}
+			for (int i = leaf.offsets[slot]; i < leaf.offsets[slot + 1]; i++) {
+				consumer.accept((V) leaf.elements[i], leaf.tags[i]);
+			}
+		}
+
+		@Override
+		public Collection<V> getElements() {
+			return new Elements(this);
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public IndexNode<K, V> getNext() {
+			Leaf<K, V> leaf = locate();
+			if (leaf == null) {
+				return null;
+			}
+			if (slot + 1 < leaf.size) {
+				return new Cursor(leaf, slot + 1);
+			}
+			return leaf.next == null ? null : new Cursor(leaf.next, 0);
+		}
+
+		@Override
+		public IndexNode<K, V> getPrevious() {
+			Leaf<K, V> leaf = locate();
+			if (leaf == null) {
+				return null;
+			}
+			if (slot > 0) {
+				return new Cursor(leaf, slot - 1);
+			}
+			return leaf.prev == null ? null : new Cursor(leaf.prev, leaf.prev.size - 1);
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode();
+		}
+
+		/**
+		 * Get the leaf containing the key, locating the key again if the leaf
+		 * has been modified since the slot was determined.
+		 *
+		 * @return the leaf, null if the key was removed
+		 */
+		private Leaf<K, V> locate() {
+			if (leaf != null && leaf.modifications != modifications) {
+				leaf = leaf(key);
+				slot = Arrays.binarySearch(leaf.keys, 0, leaf.size, key);
+				if (slot < 0) {
+					leaf = null;
+				} else {
+					modifications = leaf.modifications;
+				}
+			}
+			return leaf;
+		}
+
+		@Override
+		public void setTag(V element, int tag) {
+			Leaf<K, V> leaf = locate();
+			if (leaf == null) {
+				return;
+			}
+			for (int i = leaf.offsets[slot]; i < leaf.offsets[slot + 1]; i++) {
+				if (Objects.equals(element, leaf.elements[i])) {
+					leaf.tags[i] = tag;
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return key + ": " + getElements();
+		}
+
+		private BPlusTree<K, V> tree() {
+			return BPlusTree.this;
+		}
+	}
+
+	/**
+	 * Read-only view of the elements of a key. Iterators fail if the leaf is
+	 * modified.
+	 */
+	private final class Elements extends AbstractCollection<V> {
+
+		private final Cursor cursor;
+
+		Elements(Cursor cursor) {
+			this.cursor = cursor;
+		}
+
+		@Override
+		public boolean contains(Object element) {
+			Leaf<K, V> leaf = cursor.locate();
+			return leaf != null && leaf.indexOf(cursor.slot, element) >= 0;
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			Leaf<K, V> leaf = cursor.locate();
+			if (leaf == null) {
+				return Collections.emptyIterator();
+			}
+			int modifications = leaf.modifications;
+			int end = leaf.offsets[cursor.slot + 1];
+			return new Iterator<V>() {
+
+				private int next = leaf.offsets[cursor.slot];
+
+				@Override
+				public boolean hasNext() {
+					return next < end;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public V next() {
+					if (leaf.modifications != modifications) {
+						throw new ConcurrentModificationException();
+					}
+					if (next >= end) {
+						throw new NoSuchElementException();
+					}
+					return (V) leaf.elements[next++];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			Leaf<K, V> leaf = cursor.locate();
+			return leaf == null ? 0 : leaf.offsets[cursor.slot + 1] - leaf.offsets[cursor.slot];
+		}
+	}
+
+	/** Inner node holding separator keys and child pages. */
+	private static final class Inner<K> {
+		/** children[i] contains keys smaller than keys[i] */
+		final Object[] children;
+		/** separator keys, keys[i] is not larger than any key in children[i+1] */
+		final K[] keys;
+		/** number of separator keys, the node has one more child */
+		int size;
+
+		Inner(int order) {
+			keys = newKeys(order + 1);
+			children = new Object[order + 2];
+		}
+	}
+
+	/**
+	 * Leaf holding keys and their elements. The elements of keys[i] are
+	 * elements[offsets[i]] to elements[offsets[i+1] - 1], ordered like the
+	 * keys.
+	 */
+	private static final class Leaf<K extends Comparable<K>, V> {
+		/** elements of all keys, followed by free capacity */
+		Object[] elements;
+		final K[] keys;
+		/** number of structural or element changes, invalidates cursors */
+		int modifications;
+		Leaf<K, V> next;
+		/** offsets[i] is the position of the first element of keys[i] */
+		final int[] offsets;
+		Leaf<K, V> prev;
+		/** number of keys contained in the leaf */
+		int size;
+		/** tags of the elements */
+		int[] tags;
+
+		Leaf(int order) {
+			keys = newKeys(order + 1);
+			offsets = new int[order + 2];
+			elements = new Object[order + 1];
+			tags = new int[order + 1];
+		}
+
+		/** Add an element as the last one of the key at a slot. */
+		void add(int slot, V element, int tag) {
+			int total = offsets[size];
+			reserve(total + 1);
+			int at = offsets[slot + 1];
+			System.arraycopy(elements, at, elements, at + 1, total - at);
+			System.arraycopy(tags, at, tags, at + 1, total - at);
+			elements[at] = element;
+			tags[at] = tag;
+			for (int i = slot + 1; i <= size; i++) {
+				offsets[i]++;
+			}
+			modifications++;
+		}
+
+		/** Append the keys from one slot to another slot of a leaf. */
+		void append(Leaf<K, V> source, int from, int to) {
+			int base = offsets[size];
+			int count = source.offsets[to] - source.offsets[from];
+			reserve(base + count);
+			System.arraycopy(source.elements, source.offsets[from], elements, base, count);
+			System.arraycopy(source.tags, source.offsets[from], tags, base, count);
+			System.arraycopy(source.keys, from, keys, size, to - from);
+			for (int i = from; i < to; i++) {
+				offsets[size + i - from + 1] = base + source.offsets[i + 1] - source.offsets[from];
+			}
+			size += to - from;
+			modifications++;
+		}
+
+		/**
+		 * Find an element of the key at a slot.
+		 *
+		 * @return position of the element, -1 if not contained
+		 */
+		int indexOf(int slot, Object element) {
+			for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+				if (Objects.equals(element, elements[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/** Insert a key without elements at a slot. */
+		void insert(int slot, K key) {
+			System.arraycopy(keys, slot, keys, slot + 1, size - slot);
+			System.arraycopy(offsets, slot, offsets, slot + 1, size - slot + 1);
+			keys[slot] = key;
+			size++;
+			modifications++;
+		}
+
+		/** Prepend the keys from one slot to another slot of a leaf. */
+		void prepend(Leaf<K, V> source, int from, int to) {
+			int total = offsets[size];
+			int count = source.offsets[to] - source.offsets[from];
+			reserve(total + count);
+			System.arraycopy(elements, 0, elements, count, total);
+			System.arraycopy(tags, 0, tags, count, total);
+			System.arraycopy(source.elements, source.offsets[from], elements, 0, count);
+			System.arraycopy(source.tags, source.offsets[from], tags, 0, count);
+			System.arraycopy(keys, 0, keys, to - from, size);
+			System.arraycopy(source.keys, from, keys, 0, to - from);
+			System.arraycopy(offsets, 0, offsets, to - from, size + 1);
+			for (int i = to - from; i <= size + to - from; i++) {
+				offsets[i] += count;
+			}
+			for (int i = from; i < to; i++) {
+				offsets[i - from] = source.offsets[i] - source.offsets[from];
+			}
+			size += to - from;
+			modifications++;
+		}
+
+		/** Remove the element at a position from the key at a slot. */
+		void remove(int slot, int position) {
+			int total = offsets[size];
+			System.arraycopy(elements, position + 1, elements, position, total - position - 1);
+			System.arraycopy(tags, position + 1, tags, position, total - position - 1);
+			elements[total - 1] = null;
+			for (int i = slot + 1; i <= size; i++) {
+				offsets[i]--;
+			}
+			modifications++;
+		}
+
+		/** Remove a key without elements from a slot. */
+		void remove(int slot) {
+			System.arraycopy(keys, slot + 1, keys, slot, size - slot - 1);
+			System.arraycopy(offsets, slot + 1, offsets, slot, size - slot);
+			size--;
+			keys[size] = null;
+			modifications++;
+		}
+
+		/** Remove the first keys of the leaf. */
+		void removeFirst(int count) {
+			int total = offsets[size];
+			int removed = offsets[count];
+			System.arraycopy(elements, removed, elements, 0, total - removed);
+			System.arraycopy(tags, removed, tags, 0, total - removed);
+			Arrays.fill(elements, total - removed, total, null);
+			System.arraycopy(keys, count, keys, 0, size - count);
+			Arrays.fill(keys, size - count, size, null);
+			for (int i = 0; i <= size - count; i++) {
+				offsets[i] = offsets[i + count] - removed;
+			}
+			size -= count;
+			modifications++;
+		}
+
+		/** Make room for a number of elements. */
+		private void reserve(int capacity) {
+			if (capacity > elements.length) {
+				int length = Math.max(capacity, 2 * elements.length);
+				elements = Arrays.copyOf(elements, length);
+				tags = Arrays.copyOf(tags, length);
+			}
+		}
+
+		/** Remove all keys starting at a slot. */
+		void truncate(int from) {
+			Arrays.fill(elements, offsets[from], offsets[size], null);
+			Arrays.fill(keys, from, size, null);
+			size = from;
+			modifications++;
+		}
+	}
+
+	/** default maximum number of keys per page */
+	public static final int DEFAULT_ORDER = 64;
+
+	/**
+	 * Find the child of an inner node which may contain a key.
+	 *
+	 * @return index of the child
+	 */
+	private static <K extends Comparable<K>> int childIndex(Inner<K> inner, K key) {
+		int pos = Arrays.binarySearch(inner.keys, 0, inner.size, key);
+		return pos >= 0 ? pos + 1 : -pos - 1;
+	}
+
+	/**
+	 * Create an array for the keys of a page. Keys are always comparable, so
+	 * the array can be searched using {@link Arrays#binarySearch(Object[],
+	 * int, int, Object)}.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K> K[] newKeys(int length) {
+		return (K[]) new Comparable<?>[length];
+	}
+
+	/** inner nodes visited by the last descent, starting at the root */
+	private Inner<K>[] path;
+	/** child indexes taken by the last descent */
+	private int[] slots;
+	/** number of inner levels of the tree */
+	private int height = 0;
+	/** minimum number of keys per page, except for the root */
+	private final int minimum;
+	/** number of distinct keys */
+	private int nodes = 0;
+	/** maximum number of keys per page */
+	private final int order;
+	/** either a {@link Leaf} or an {@link Inner} node */
+	private Object root;
+	/** number of elements */
+	private int size = 0;
+
+	/**
+	 * Construct a new tree with the {@link #DEFAULT_ORDER default order}.
+	 */
+	public BPlusTree() {
+		this(DEFAULT_ORDER);
+	}
+
+	/**
+	 * Construct a new tree.
+	 *
+	 * @param order
+	 *            maximum number of keys per page, at least 3
+	 */
+	@SuppressWarnings("unchecked")
+	public BPlusTree(int order) {
+		if (order < 3) {
+			throw new IllegalArgumentException("Order must be at least 3: " + order);
+		}
+		this.order = order;
+		this.minimum = order / 2;
+		this.root = new Leaf<K, V>(order);
+		this.path = (Inner<K>[]) new Inner<?>[4];
+		this.slots = new int[4];
+	}
+
+	@Override
+	public boolean delete(K key, V element) {
+		if (element == null) {
+			return false;
+		}
+		Leaf<K, V> leaf = descend(key);
+		int pos = Arrays.binarySearch(leaf.keys, 0, leaf.size, key);
+		if (pos < 0) {
+			return false;
+		}
+		int position = leaf.indexOf(pos, element);
+		if (position < 0) {
+			return false;
+		}
+		leaf.remove(pos, position);
+		size--;
+		if (leaf.offsets[pos] == leaf.offsets[pos + 1]) {
+			leaf.remove(pos);
+			nodes--;
+			rebalance(leaf);
+		}
+		return true;
+	}
+
+	/**
+	 * Descend to the leaf which may contain a key and remember the path for
+	 * a subsequent modification.
+	 *
+	 * @return the leaf
+	 */
+	@SuppressWarnings("unchecked")
+	private Leaf<K, V> descend(K key) {
+		Object page = root;
+		for (int level = 0; level < height; level++) {
+			Inner<K> inner = (Inner<K>) page;
+			int child = childIndex(inner, key);
+			path[level] = inner;
+			slots[level] = child;
+			page = inner.children[child];
+		}
+		return (Leaf<K, V>) page;
+	}
+
+	@Override
+	public IndexNode<K, V> ceiling(K key) {
+		Leaf<K, V> leaf = leaf(key);
+		int pos = Arrays.binarySearch(leaf.keys, 0, leaf.size, key);
+		if (pos < 0) {
+			pos = -pos - 1;
+		}
+		if (pos < leaf.size) {
+			return new Cursor(leaf, pos);
+		}
+		// all keys of the leaf are smaller, the ceiling starts the next leaf
+		return leaf.next == null ? null : new Cursor(leaf.next, 0);
+	}
+
+	/**
+	 * Create an empty tree of the same order.
+	 */
+	@Override
+	public BPlusTree<K, V> createEmpty() {
+		return new BPlusTree<>(order);
+	}
+
+	@Override
+	public IndexNode<K, V> find(K key) {
+		Leaf<K, V> leaf = leaf(key);
+		int pos = Arrays.binarySearch(leaf.keys, 0, leaf.size, key);
+		return pos >= 0 ? new Cursor(leaf, pos) : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public IndexNode<K, V> getLargest() {
+		Object page = root;
+		for (int level = 0; level < height; level++) {
+			Inner<K> inner = (Inner<K>) page;
+			page = inner.children[inner.size];
+		}
+		Leaf<K, V> leaf = (Leaf<K, V>) page;
+		return leaf.size == 0 ? null : new Cursor(leaf, leaf.size - 1);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public IndexNode<K, V> getSmallest() {
+		Object page = root;
+		for (int level = 0; level < height; level++) {
+			page = ((Inner<K>) page).children[0];
+		}
+		Leaf<K, V> leaf = (Leaf<K, V>) page;
+		return leaf.size == 0 ? null : new Cursor(leaf, 0);
+	}
+
+	/**
+	 * Get the number of inner levels of the tree.
+	 *
+	 * @return 0 if the root is a leaf
+	 */
+	int height() {
+		return height;
+	}
+
+	@Override
+	public IndexNode<K, V> insert(K key, V element) {
+		return insert(key, element, ElementCollection.UNTAGGED);
+	}
+
+	/**
+	 * Insert an element and store its tag right away.
+	 */
+	@Override
+	public IndexNode<K, V> insert(K key, V element, int tag) {
+		if (key == null) {
+			return null;
+		}
+		Leaf<K, V> leaf = descend(key);
+		int pos = Arrays.binarySearch(leaf.keys, 0, leaf.size, key);
+		if (pos < 0) {
+			pos = -pos - 1;
+			leaf.insert(pos, key);
+			nodes++;
+		}
+		if (element != null) {
+			leaf.add(pos, element, tag);
+			size++;
+		}
+		if (leaf.size <= order) {
+			return new Cursor(leaf, pos);
+		}
+		// split the leaf and propagate the split upwards
+		Leaf<K, V> right = splitLeaf(leaf);
+		Cursor cursor = pos < leaf.size ? new Cursor(leaf, pos) : new Cursor(right, pos - leaf.size);
+		K separator = right.keys[0];
+		Object child = right;
+		for (int level = height - 1; level >= 0; level--) {
+			Inner<K> inner = path[level];
+			int slot = slots[level];
+			System.arraycopy(inner.keys, slot, inner.keys, slot + 1, inner.size - slot);
+			System.arraycopy(inner.children, slot + 1, inner.children, slot + 2, inner.size - slot);
+			inner.keys[slot] = separator;
+			inner.children[slot + 1] = child;
+			inner.size++;
+			if (inner.size <= order) {
+				return cursor;
+			}
+			int mid = inner.size / 2;
+			separator = inner.keys[mid];
+			child = splitInner(inner, mid);
+		}
+		Inner<K> newRoot = new Inner<>(order);
+		newRoot.keys[0] = separator;
+		newRoot.children[0] = root;
+		newRoot.children[1] = child;
+		newRoot.size = 1;
+		root = newRoot;
+		height++;
+		if (height > path.length) {
+			path = Arrays.copyOf(path, 2 * path.length);
+			slots = Arrays.copyOf(slots, 2 * slots.length);
+		}
+		return cursor;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nodes == 0;
+	}
+
+	/**
+	 * Descend to the leaf which may contain a key without modifying the tree.
+	 *
+	 * @return the leaf
+	 */
+	@SuppressWarnings("unchecked")
+	private Leaf<K, V> leaf(K key) {
+		Object page = root;
+		for (int level = 0; level < height; level++) {
+			Inner<K> inner = (Inner<K>) page;
+			page = inner.children[childIndex(inner, key)];
+		}
+		return (Leaf<K, V>) page;
+	}
+
+	@Override
+	public int nodes() {
+		return nodes;
+	}
+
+	/**
+	 * Restore the minimum occupancy of the pages along the last descent after
+	 * a key was removed from a leaf.
+	 */
+	@SuppressWarnings("unchecked")
+	private void rebalance(Leaf<K, V> leaf) {
+		int pageSize = leaf.size;
+		for (int level = height - 1; level >= 0 && pageSize < minimum; level--) {
+			Inner<K> parent = path[level];
+			int slot = slots[level];
+			// fix the child together with a sibling, preferring the left one
+			int separator = slot > 0 ? slot - 1 : slot;
+			Object left = parent.children[separator];
+			Object right = parent.children[separator + 1];
+			if (level == height - 1) {
+				rebalanceLeaves(parent, separator, (Leaf<K, V>) left, (Leaf<K, V>) right);
+			} else {
+				rebalanceInner(parent, separator, (Inner<K>) left, (Inner<K>) right);
+			}
+			pageSize = parent.size;
+		}
+		if (height > 0 && ((Inner<K>) root).size == 0) {
+			Inner<K> inner = (Inner<K>) root;
+			root = inner.children[0];
+			inner.children[0] = null;
+			height--;
+		}
+	}
+
+	/**
+	 * Borrow a key from a sibling or merge with it.
+	 */
+	private void rebalanceInner(Inner<K> parent, int separator, Inner<K> left, Inner<K> right) {
+		if (left.size + right.size < order) {
+			// merge the right node into the left one
+			left.keys[left.size] = parent.keys[separator];
+			System.arraycopy(right.keys, 0, left.keys, left.size + 1, right.size);
+			System.arraycopy(right.children, 0, left.children, left.size + 1, right.size + 1);
+			left.size += right.size + 1;
+			removeChild(parent, separator);
+		} else if (left.size < right.size) {
+			// rotate the smallest key of the right node over the separator
+			left.keys[left.size] = parent.keys[separator];
+			left.children[left.size + 1] = right.children[0];
+			left.size++;
+			parent.keys[separator] = right.keys[0];
+			System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+			System.arraycopy(right.children, 1, right.children, 0, right.size);
+			right.size--;
+			right.keys[right.size] = null;
+			right.children[right.size + 1] = null;
+		} else {
+			// rotate the largest key of the left node over the separator
+			System.arraycopy(right.keys, 0, right.keys, 1, right.size);
+			System.arraycopy(right.children, 0, right.children, 1, right.size + 1);
+			right.keys[0] = parent.keys[separator];
+			right.children[0] = left.children[left.size];
+			right.size++;
+			parent.keys[separator] = left.keys[left.size - 1];
+			left.keys[left.size - 1] = null;
+			left.children[left.size] = null;
+			left.size--;
+		}
+	}
+
+	/**
+	 * Borrow a key from a sibling or merge with it.
+	 */
+	private void rebalanceLeaves(Inner<K> parent, int separator, Leaf<K, V> left, Leaf<K, V> right) {
+		if (left.size + right.size <= order) {
+			// merge the right leaf into the left one, cursors of the right
+			// leaf locate their keys again
+			left.append(right, 0, right.size);
+			right.modifications++;
+			left.next = right.next;
+			if (right.next != null) {
+				right.next.prev = left;
+			}
+			removeChild(parent, separator);
+		} else if (left.size < right.size) {
+			// move the smallest key of the right leaf
+			left.append(right, 0, 1);
+			right.removeFirst(1);
+			parent.keys[separator] = right.keys[0];
+		} else {
+			// move the largest key of the left leaf
+			right.prepend(left, left.size - 1, left.size);
+			left.truncate(left.size - 1);
+			parent.keys[separator] = right.keys[0];
+		}
+	}
+
+	/**
+	 * Remove a separator and the child to its right from an inner node.
+	 */
+	private void removeChild(Inner<K> parent, int separator) {
+		System.arraycopy(parent.keys, separator + 1, parent.keys, separator, parent.size - separator - 1);
+		System.arraycopy(parent.children, separator + 2, parent.children, separator + 1,
+				parent.size - separator - 1);
+		parent.size--;
+		parent.keys[parent.size] = null;
+		parent.children[parent.size + 1] = null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Move the upper half of an inner node into a new node. The key at the
+	 * specified position is removed and has to be inserted into the parent.
+	 *
+	 * @return the new right sibling
+	 */
+	private Inner<K> splitInner(Inner<K> inner, int mid) {
+		Inner<K> right = new Inner<>(order);
+		right.size = inner.size - mid - 1;
+		System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.size);
+		System.arraycopy(inner.children, mid + 1, right.children, 0, right.size + 1);
+		Arrays.fill(inner.keys, mid, inner.size, null);
+		Arrays.fill(inner.children, mid + 1, inner.size + 1, null);
+		inner.size = mid;
+		return right;
+	}
+
+	/**
+	 * Move the upper half of a leaf into a new leaf and chain it.
+	 *
+	 * @return the new right sibling
+	 */
+	private Leaf<K, V> splitLeaf(Leaf<K, V> leaf) {
+		Leaf<K, V> right = new Leaf<>(order);
+		int mid = leaf.size / 2;
+		right.append(leaf, mid, leaf.size);
+		leaf.truncate(mid);
+		right.next = leaf.next;
+		right.prev = leaf;
+		if (leaf.next != null) {
+			leaf.next.prev = right;
+		}
+		leaf.next = right;
+		return right;
+	}
+}
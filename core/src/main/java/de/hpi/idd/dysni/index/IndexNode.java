@@ -0,0 +1,95 @@
+package de.hpi.idd.dysni.index;
+
+import java.util.Collection;
+
+import de.hpi.idd.util.ElementCollection;
+import de.hpi.idd.util.ElementCollection.TagConsumer;
+
+/**
+ * A node of a {@link SortedIndex}. Each node holds a distinct key and all
+ * elements associated with it. Nodes provide constant time access to their
+ * in-order neighbors, which is used to build windows.
+ *
+ * @param <K>
+ *            the type of the key of the elements
+ * @param <V>
+ *            the type of the elements
+ */
+public interface IndexNode<K extends Comparable<K>, V> {
+
+	/**
+	 * Check whether this node contains the specified element.
+	 *
+	 * @param element
+	 *            element to check
+	 * @return true if node contains element
+	 */
+	boolean contains(V element);
+
+	/**
+	 * Pass all elements contained by the node together with their
+	 * {@link #setTag(Object, int) tags} to a consumer. By default, all
+	 * elements are untagged.
+	 *
+	 * @param consumer
+	 *            receives the elements, must not modify the node
+	 */
+	default void forEachTagged(TagConsumer<? super V> consumer) {
+		for (V element : getElements()) {
+			consumer.accept(element, ElementCollection.UNTAGGED);
+		}
+	}
+
+	/**
+	 * Get all elements contained by the node.
+	 *
+	 * @return all elements contained by the node
+	 */
+	Collection<V> getElements();
+
+	/**
+	 * Get the key of the node.
+	 *
+	 * @return key
+	 */
+	K getKey();
+
+	/**
+	 * Get the in-order successor of the node.
+	 *
+	 * @return node with the next larger key, null if this node has the largest
+	 *         key
+	 */
+	IndexNode<K, V> getNext();
+
+	/**
+	 * Get the similarity of the key of this node to the key of its in-order
+	 * successor, if the index maintains such link similarities.
+	 *
+	 * @return similarity to the next key, {@link Double#NaN} if it is unknown
+	 */
+	default double getNextSimilarity() {
+		return Double.NaN;
+	}
+
+	/**
+	 * Get the in-order predecessor of the node.
+	 *
+	 * @return node with the next smaller key, null if this node has the
+	 *         smallest key
+	 */
+	IndexNode<K, V> getPrevious();
+
+	/**
+	 * Tag an element contained by the node with an int, e.g. the dense int of
+	 * its id, so that window builders do not need to look it up. Nodes that do
+	 * not support tags ignore it.
+	 *
+	 * @param element
+	 *            element contained by the node
+	 * @param tag
+	 *            the tag, not negative
+	 */
+	default void setTag(V element, int tag) {
+	}
+}
@@ -0,0 +1,43 @@
+package de.hpi.idd.dysni.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the elements of a node from one {@link SortedIndex} into another one,
+ * keeping their tags. Used by the generic {@link SortedIndex#join(SortedIndex)
+ * join} and {@link SortedIndex#split(Comparable) split} of indexes that cannot
+ * relink their nodes.
+ */
+final class NodeTransfer {
+
+	/**
+	 * Move all elements of a node into another index. The node must not be
+	 * used afterwards.
+	 *
+	 * @param node
+	 *            the node whose elements should be moved
+	 * @param source
+	 *            the index containing the node
+	 * @param target
+	 *            the index receiving the elements
+	 */
+	static <K extends Comparable<K>, V> void move(IndexNode<K, V> node, SortedIndex<K, V> source,
+			SortedIndex<K, V> target) {
+		K key = node.getKey();
+		List<V> elements = new ArrayList<>();
+		int[] tags = new int[node.getElements().size()];
+		node.forEachTagged((element, tag) -> {
+			tags[elements.size()] = tag;
+			elements.add(element);
+		});
+		for (int i = 0; i < elements.size(); i++) {
+			V element = elements.get(i);
+			source.delete(key, element);
+			target.insert(key, element, tags[i]);
+		}
+	}
+
+	private NodeTransfer() {
+	}
+}
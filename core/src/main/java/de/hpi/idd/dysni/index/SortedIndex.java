@@ -0,0 +1,299 @@
+package de.hpi.idd.dysni.index;
+
+import java.util.function.Supplier;
+
+import de.hpi.idd.util.ElementCollection;
+
+/**
+ * Index keeping elements sorted by a key. Elements with equal keys are grouped
+ * in a single {@link IndexNode} and nodes are linked to their in-order
+ * neighbors.
+ *
+ * @param <K>
+ *            the type of the key of the elements
+ * @param <V>
+ *            the type of the elements
+ */
+public interface SortedIndex<K extends Comparable<K>, V> {
+
+	/**
+	 * Start a read-only operation like {@link #read(Supplier)} without
+	 * wrapping it into a lambda. Every call must be followed by a call to
+	 * {@link #endRead(long)} in a finally block. Calls must not be nested.
+	 * Indexes {@link #supportsOptimisticReads() supporting optimistic reads}
+	 * may block writers until then, so that it is meant as a fallback if an
+	 * optimistic read fails.
+	 *
+	 * @return stamp to be passed to {@link #endRead(long)}
+	 */
+	default long beginRead() {
+		return 0L;
+	}
+
+	/**
+	 * Find the node with the smallest key greater than or equal to a key in
+	 * logarithmic time.
+	 *
+	 * @param key
+	 *            the key to search for, which does not need to be contained
+	 * @return node with the smallest key not smaller than the specified key,
+	 *         null if all keys are smaller
+	 */
+	IndexNode<K, V> ceiling(K key);
+
+	/**
+	 * Create a new, empty index of the same kind and configuration as this
+	 * index, e.g. to receive the larger part of a {@link #split(Comparable)
+	 * split}.
+	 *
+	 * @return empty index
+	 * @throws UnsupportedOperationException
+	 *             if the index cannot be instantiated
+	 */
+	default SortedIndex<K, V> createEmpty() {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot create empty indexes");
+	}
+
+	/**
+	 * Delete an element from the index. The node containing the element is
+	 * removed if it does not contain any other elements.
+	 *
+	 * @param key
+	 *            the key of the element
+	 * @param element
+	 *            element to delete
+	 * @return true if the element was deleted from the index
+	 */
+	boolean delete(K key, V element);
+
+	/**
+	 * Finish a read-only operation started by {@link #beginRead()}.
+	 *
+	 * @param stamp
+	 *            the stamp returned by {@link #beginRead()}
+	 */
+	default void endRead(long stamp) {
+	}
+
+	/**
+	 * Find the node with the specified key
+	 *
+	 * @param key
+	 *            the key which's node should be retrieved
+	 * @return node with the specified key, null if no node is found
+	 */
+	IndexNode<K, V> find(K key);
+
+	/**
+	 * Get the node whose key is the largest one in the index.
+	 *
+	 * @return the node having the largest key or null if the index is empty
+	 */
+	IndexNode<K, V> getLargest();
+
+	/**
+	 * Get the node whose key is the smallest one in the index.
+	 *
+	 * @return the node having the smallest key or null if the index is empty
+	 */
+	IndexNode<K, V> getSmallest();
+
+	/**
+	 * Insert an element in the index.
+	 *
+	 * @param key
+	 *            the element's sorting key
+	 * @param element
+	 *            element to insert
+	 * @return node where the element was inserted
+	 */
+	IndexNode<K, V> insert(K key, V element);
+
+	/**
+	 * Insert an element in the index and {@link IndexNode#setTag(Object, int)
+	 * tag} it. Concurrent implementations tag the element within the same
+	 * modification, so that optimistic readers never observe a partially
+	 * written tag.
+	 *
+	 * @param key
+	 *            the element's sorting key
+	 * @param element
+	 *            element to insert
+	 * @param tag
+	 *            the tag, {@link ElementCollection#UNTAGGED} to leave the
+	 *            element untagged
+	 * @return node where the element was inserted
+	 */
+	default IndexNode<K, V> insert(K key, V element, int tag) {
+		IndexNode<K, V> node = insert(key, element);
+		if (node != null && element != null && tag != ElementCollection.UNTAGGED) {
+			node.setTag(element, tag);
+		}
+		return node;
+	}
+
+	/**
+	 * Check if the index is empty.
+	 *
+	 * @return true if the index is empty
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Move all nodes of another index into this index. All keys of the other
+	 * index must be larger than the keys of this index. The other index is
+	 * empty afterwards.
+	 *
+	 * <p>
+	 * By default, the elements of the other index are moved one by one in
+	 * ascending order, keeping their tags, which takes O(m log n) for m moved
+	 * elements. Concurrent readers may observe the elements in either index
+	 * while they are moved. Indexes able to relink their nodes should
+	 * override this.
+	 * </p>
+	 *
+	 * @param other
+	 *            the index whose nodes should be appended
+	 * @throws IllegalArgumentException
+	 *             if the other index is this index or contains a key not
+	 *             larger than the keys of this index
+	 */
+	default void join(SortedIndex<K, V> other) {
+		if (other == this) {
+			throw new IllegalArgumentException("Cannot join an index with itself");
+		}
+		IndexNode<K, V> largest = getLargest();
+		IndexNode<K, V> node = other.getSmallest();
+		if (largest != null && node != null && largest.getKey().compareTo(node.getKey()) >= 0) {
+			throw new IllegalArgumentException("Keys of the joined index must be larger than all keys of this index");
+		}
+		for (; node != null; node = other.getSmallest()) {
+			NodeTransfer.move(node, other, this);
+		}
+	}
+
+	/**
+	 * Get the number of nodes, i.e. distinct keys, of the index.
+	 *
+	 * @return number of nodes contained in the index
+	 */
+	int nodes();
+
+	/**
+	 * Run a read-only operation on the index, e.g. navigating along the
+	 * in-order neighbors of a node. Concurrent implementations make sure that
+	 * the operation observes a consistent state of the index. The operation is
+	 * run exactly once, so that it may pass candidates to a sink, but must not
+	 * call this method again.
+	 *
+	 * @param reader
+	 *            the operation, must not modify the index
+	 * @return the result of the operation
+	 */
+	default <R> R read(Supplier<R> reader) {
+		long stamp = beginRead();
+		try {
+			return reader.get();
+		} finally {
+			endRead(stamp);
+		}
+	}
+
+	/**
+	 * Get the rank of a key, i.e. the number of nodes having a smaller key, if
+	 * the index maintains order statistics. The key does not need to be
+	 * contained in the index. Other indexes would have to count the nodes one
+	 * by one and return -1 instead.
+	 *
+	 * @param key
+	 *            the key whose rank should be computed
+	 * @return number of nodes with a key smaller than the specified key, -1 if
+	 *         the index cannot compute it in logarithmic time
+	 */
+	default int rank(K key) {
+		return -1;
+	}
+
+	/**
+	 * Get the number of elements of the index.
+	 *
+	 * @return number of elements contained in the index
+	 */
+	int size();
+
+	/**
+	 * Take a snapshot of the index. The snapshot is not affected by later
+	 * modifications of the index, so that it can be read while the index is
+	 * modified.
+	 *
+	 * @return index containing the current nodes of this index
+	 * @throws UnsupportedOperationException
+	 *             if the index does not support snapshots
+	 */
+	default SortedIndex<K, V> snapshot() {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support snapshots");
+	}
+
+	/**
+	 * Split the index at a key. All nodes whose keys are larger than or equal
+	 * to the key are moved into a new index, the smaller ones remain in this
+	 * index.
+	 *
+	 * <p>
+	 * By default, the elements are moved one by one in ascending order into
+	 * an index {@link #createEmpty() created} for them, like in
+	 * {@link #join(SortedIndex)}.
+	 * </p>
+	 *
+	 * @param key
+	 *            the smallest key of the new index
+	 * @return index containing the nodes with keys larger than or equal to the
+	 *         key
+	 * @throws UnsupportedOperationException
+	 *             if the index cannot create an empty index
+	 */
+	default SortedIndex<K, V> split(K key) {
+		SortedIndex<K, V> larger = createEmpty();
+		for (IndexNode<K, V> node = ceiling(key); node != null; node = ceiling(key)) {
+			NodeTransfer.move(node, this, larger);
+		}
+		return larger;
+	}
+
+	/**
+	 * Check whether the index supports {@link #tryOptimisticRead() optimistic
+	 * reads}, i.e. whether every modification of the index invalidates the
+	 * stamps of running optimistic reads.
+	 *
+	 * @return true if readers do not need to lock the index
+	 */
+	default boolean supportsOptimisticReads() {
+		return false;
+	}
+
+	/**
+	 * Start a read-only operation optimistically, i.e. without blocking
+	 * writers. The operation may observe an inconsistent state of the index
+	 * and must therefore not have side effects before its stamp has been
+	 * {@link #validate(long) validated}.
+	 *
+	 * @return stamp to be validated, 0 if optimistic reads are not supported
+	 *         or the index is being modified
+	 * @see #supportsOptimisticReads()
+	 */
+	default long tryOptimisticRead() {
+		return 0L;
+	}
+
+	/**
+	 * Check whether the index has not been modified since an optimistic read
+	 * started.
+	 *
+	 * @param stamp
+	 *            the stamp returned by {@link #tryOptimisticRead()}
+	 * @return true if the operation observed a consistent state of the index
+	 */
+	default boolean validate(long stamp) {
+		return false;
+	}
+}
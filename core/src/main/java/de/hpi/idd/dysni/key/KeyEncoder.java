@@ -0,0 +1,150 @@
+package de.hpi.idd.dysni.key;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Appends a value to a {@link NormalizedKey} such that the order of the
+ * normalized keys matches the natural order of the values. Encoders for
+ * composite keys are assembled from the encoders of their components.
+ *
+ * @param <T>
+ *            type of the encoded values
+ */
+@FunctionalInterface
+public interface KeyEncoder<T> {
+
+	/**
+	 * Encoder for {@link Date dates} with millisecond precision.
+	 *
+	 * @return encoder for dates
+	 */
+	static KeyEncoder<Date> dates() {
+		return (value, builder) -> builder.append(value.getTime());
+	}
+
+	/**
+	 * Encoder for {@link Double doubles}.
+	 *
+	 * @return encoder for doubles
+	 */
+	static KeyEncoder<Double> doubles() {
+		return (value, builder) -> builder.append(value.doubleValue());
+	}
+
+	/**
+	 * Encode a component of a value, e.g. a field of a record.
+	 *
+	 * @param getter
+	 *            function to retrieve the component
+	 * @param encoder
+	 *            encoder for the component
+	 * @return encoder for the value
+	 * @see #then(KeyEncoder)
+	 */
+	static <T, U> KeyEncoder<T> field(Function<T, U> getter, KeyEncoder<U> encoder) {
+		return (value, builder) -> encoder.encode(getter.apply(value), builder);
+	}
+
+	/**
+	 * Encoder for {@link Instant instants} with nanosecond precision.
+	 *
+	 * @return encoder for instants
+	 */
+	static KeyEncoder<Instant> instants() {
+		return (value, builder) -> builder.append(value.getEpochSecond()).append(value.getNano());
+	}
+
+	/**
+	 * Encoder for {@link Integer integers}.
+	 *
+	 * @return encoder for integers
+	 */
+	static KeyEncoder<Integer> integers() {
+		return (value, builder) -> builder.append(value.intValue());
+	}
+
+	/**
+	 * Encoder for {@link LocalDate local dates}.
+	 *
+	 * @return encoder for local dates
+	 */
+	static KeyEncoder<LocalDate> localDates() {
+		return (value, builder) -> builder.append(value.toEpochDay());
+	}
+
+	/**
+	 * Encoder for {@link LocalDateTime local date times} with nanosecond
+	 * precision.
+	 *
+	 * @return encoder for local date times
+	 */
+	static KeyEncoder<LocalDateTime> localDateTimes() {
+		KeyEncoder<Instant> instants = instants();
+		return (value, builder) -> instants.encode(value.toInstant(ZoneOffset.UTC), builder);
+	}
+
+	/**
+	 * Encoder for {@link Long longs}.
+	 *
+	 * @return encoder for longs
+	 */
+	static KeyEncoder<Long> longs() {
+		return (value, builder) -> builder.append(value.longValue());
+	}
+
+	/**
+	 * Encoder for {@link Pair pairs}, ordered by their left and then by their
+	 * right element.
+	 *
+	 * @param left
+	 *            encoder for the left element
+	 * @param right
+	 *            encoder for the right element
+	 * @return encoder for pairs
+	 */
+	static <L, R> KeyEncoder<Pair<L, R>> pairs(KeyEncoder<L> left, KeyEncoder<R> right) {
+		return KeyEncoder.<Pair<L, R>, L> field(Pair::getLeft, left).then(field(Pair::getRight, right));
+	}
+
+	/**
+	 * Encoder for {@link String strings}.
+	 *
+	 * @return encoder for strings
+	 * @see NormalizedKey.Builder#append(String)
+	 */
+	static KeyEncoder<String> strings() {
+		return (value, builder) -> builder.append(value);
+	}
+
+	/**
+	 * Append a value to a key.
+	 *
+	 * @param value
+	 *            the value to encode
+	 * @param builder
+	 *            the key to append to
+	 */
+	void encode(T value, NormalizedKey.Builder builder);
+
+	/**
+	 * Compose this encoder with another one encoding the next component of a
+	 * tuple.
+	 *
+	 * @param next
+	 *            encoder for the next component
+	 * @return encoder ordering by this component first and then by the next
+	 */
+	default KeyEncoder<T> then(KeyEncoder<T> next) {
+		return (value, builder) -> {
+			encode(value, builder);
+			next.encode(value, builder);
+		};
+	}
+}
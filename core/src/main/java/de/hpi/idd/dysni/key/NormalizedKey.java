@@ -0,0 +1,233 @@
+package de.hpi.idd.dysni.key;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Key normalized into a byte sequence whose unsigned lexicographic order is
+ * the order of the original key. Comparing normalized keys needs no virtual
+ * calls into key specific code, no matter how complex the original key is.
+ *
+ * <p>
+ * The first eight bytes are additionally cached in a {@code long}. Most
+ * comparisons are decided by a single unsigned comparison of these prefixes,
+ * the remaining bytes are only compared if the prefixes are equal.
+ * </p>
+ *
+ * <p>
+ * Keys are built using a {@link Builder}, usually driven by a
+ * {@link KeyEncoder}.
+ * </p>
+ */
+public final class NormalizedKey implements Comparable<NormalizedKey> {
+
+	/**
+	 * Builder appending components to a normalized key. Keys consisting of
+	 * multiple components are ordered by their first component, then by the
+	 * second and so on.
+	 */
+	public static final class Builder {
+
+		private byte[] bytes = new byte[16];
+		private int length = 0;
+
+		/**
+		 * Append a boolean, false is ordered before true.
+		 *
+		 * @param value
+		 *            the value to append
+		 * @return this
+		 */
+		public Builder append(boolean value) {
+			return appendByte(value ? 1 : 0);
+		}
+
+		/**
+		 * Append a double. Numbers are ordered like
+		 * {@link Double#compare(double, double)} orders them.
+		 *
+		 * @param value
+		 *            the value to append
+		 * @return this
+		 */
+		public Builder append(double value) {
+			long bits = Double.doubleToLongBits(value);
+			// flip all bits of negative numbers, only the sign bit of others
+			return appendRaw(bits ^ (bits >> 63 | Long.MIN_VALUE));
+		}
+
+		/**
+		 * Append an int using four bytes.
+		 *
+		 * @param value
+		 *            the value to append
+		 * @return this
+		 */
+		public Builder append(int value) {
+			int flipped = value ^ Integer.MIN_VALUE;
+			ensureCapacity(Integer.BYTES);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				bytes[length++] = (byte) (flipped >>> shift);
+			}
+			return this;
+		}
+
+		/**
+		 * Append a long using eight bytes.
+		 *
+		 * @param value
+		 *            the value to append
+		 * @return this
+		 */
+		public Builder append(long value) {
+			return appendRaw(value ^ Long.MIN_VALUE);
+		}
+
+		/**
+		 * Append a string encoded as UTF-8. Strings are terminated, so that a
+		 * string is ordered before all strings it is a prefix of, regardless of
+		 * the following components. The order of strings is the order of their
+		 * code points, which only differs from {@link String#compareTo(String)}
+		 * for supplementary characters.
+		 *
+		 * @param value
+		 *            the value to append
+		 * @return this
+		 */
+		public Builder append(String value) {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			int zeros = 0;
+			for (byte b : utf8) {
+				if (b == 0) {
+					zeros++;
+				}
+			}
+			ensureCapacity(utf8.length + zeros + 2);
+			for (byte b : utf8) {
+				if (b == 0) {
+					// escape zero bytes as 0x00 0xFF
+					bytes[length++] = 0;
+					bytes[length++] = (byte) 0xFF;
+				} else {
+					bytes[length++] = b;
+				}
+			}
+			// terminate with 0x00 0x01, which is smaller than any escaped byte
+			bytes[length++] = 0;
+			bytes[length++] = 1;
+			return this;
+		}
+
+		private Builder appendByte(int value) {
+			ensureCapacity(1);
+			bytes[length++] = (byte) value;
+			return this;
+		}
+
+		private Builder appendRaw(long value) {
+			ensureCapacity(Long.BYTES);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				bytes[length++] = (byte) (value >>> shift);
+			}
+			return this;
+		}
+
+		/**
+		 * Build the key. The builder is reset afterwards and can be reused.
+		 *
+		 * @return the normalized key
+		 */
+		public NormalizedKey build() {
+			NormalizedKey key = new NormalizedKey(Arrays.copyOf(bytes, length));
+			length = 0;
+			return key;
+		}
+
+		private void ensureCapacity(int additional) {
+			if (length + additional > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + additional));
+			}
+		}
+	}
+
+	/**
+	 * Read the first eight bytes as a big-endian long, padded with zeros.
+	 */
+	private static long prefix(byte[] bytes) {
+		long prefix = 0;
+		for (int i = 0; i < Long.BYTES; i++) {
+			prefix <<= 8;
+			if (i < bytes.length) {
+				prefix |= bytes[i] & 0xFF;
+			}
+		}
+		return prefix;
+	}
+
+	/** the normalized key */
+	private final byte[] bytes;
+	/** first eight bytes of the key */
+	private final long prefix;
+
+	/**
+	 * Construct a key from its normalized representation.
+	 *
+	 * @param bytes
+	 *            the normalized key, not copied
+	 */
+	public NormalizedKey(byte[] bytes) {
+		this.bytes = bytes;
+		this.prefix = prefix(bytes);
+	}
+
+	@Override
+	public int compareTo(NormalizedKey other) {
+		int cmp = Long.compareUnsigned(prefix, other.prefix);
+		if (cmp != 0) {
+			return cmp;
+		}
+		int length = Math.min(bytes.length, other.bytes.length);
+		for (int i = Long.BYTES; i < length; i++) {
+			if (bytes[i] != other.bytes[i]) {
+				return (bytes[i] & 0xFF) - (other.bytes[i] & 0xFF);
+			}
+		}
+		return bytes.length - other.bytes.length;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof NormalizedKey)) {
+			return false;
+		}
+		NormalizedKey other = (NormalizedKey) obj;
+		return prefix == other.prefix && Arrays.equals(bytes, other.bytes);
+	}
+
+	/**
+	 * Get the normalized representation of the key. The returned array must
+	 * not be modified.
+	 *
+	 * @return the bytes of the key
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(bytes);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b & 0xFF));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,87 @@
+package de.hpi.idd.dysni.key;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import de.hpi.idd.dysni.KeyHandler;
+import de.hpi.idd.dysni.avl.SnapshotCodec;
+
+/**
+ * {@link KeyHandler} normalizing the keys of another handler into
+ * {@link NormalizedKey binary comparable keys}. Indexes using these keys
+ * compare keys with a single primitive comparison in most cases, instead of
+ * calling the possibly complex {@link Comparable#compareTo(Object)} of the
+ * original keys.
+ *
+ * @param <RECORD>
+ *            the type of records whose key should be computed
+ * @param <KEY>
+ *            the type of the original keys
+ */
+public class NormalizedKeyHandler<RECORD, KEY> implements KeyHandler<RECORD, NormalizedKey> {
+
+	/** reusable builder per thread */
+	private final ThreadLocal<NormalizedKey.Builder> builders = ThreadLocal.withInitial(NormalizedKey.Builder::new);
+	/** encoder for the original keys */
+	private final KeyEncoder<KEY> encoder;
+	/** function computing the original keys */
+	private final Function<? super RECORD, ? extends KEY> handler;
+
+	/**
+	 * Construct a new key handler
+	 *
+	 * @param handler
+	 *            function computing the original keys, e.g. another
+	 *            {@link KeyHandler#computeKey(Object) key handler}
+	 * @param encoder
+	 *            encoder normalizing the original keys
+	 */
+	public NormalizedKeyHandler(Function<? super RECORD, ? extends KEY> handler, KeyEncoder<KEY> encoder) {
+		this.handler = handler;
+		this.encoder = encoder;
+	}
+
+	@Override
+	public NormalizedKey computeKey(RECORD rec) {
+		return normalize(handler.apply(rec));
+	}
+
+	/**
+	 * Codec to write normalized keys to snapshots.
+	 *
+	 * @return codec for normalized keys
+	 */
+	public static SnapshotCodec<NormalizedKey> getCodec() {
+		return new SnapshotCodec<NormalizedKey>() {
+
+			@Override
+			public NormalizedKey decode(ByteBuffer buffer) {
+				byte[] bytes = new byte[buffer.getInt()];
+				buffer.get(bytes);
+				return new NormalizedKey(bytes);
+			}
+
+			@Override
+			public void encode(NormalizedKey value, DataOutput out) throws IOException {
+				byte[] bytes = value.getBytes();
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		};
+	}
+
+	/**
+	 * Normalize a key.
+	 *
+	 * @param key
+	 *            the original key
+	 * @return the normalized key
+	 */
+	public NormalizedKey normalize(KEY key) {
+		NormalizedKey.Builder builder = builders.get();
+		encoder.encode(key, builder);
+		return builder.build();
+	}
+}
@@ -0,0 +1,177 @@
+package de.hpi.idd.dysni.key;
+
+import java.util.Arrays;
+
+/**
+ * String key split into a prefix shared with other keys and an individual
+ * suffix. Keys created by the same {@link PrefixCompressingKeyHandler} share
+ * a single instance of each prefix, so neighboring keys in an index do not
+ * store their common prefix repeatedly.
+ *
+ * <p>
+ * Keys behave exactly like the {@link String} they represent: they are
+ * ordered lexicographically, and equality and hash code are based on the full
+ * key regardless of how it is split.
+ * </p>
+ *
+ * <p>
+ * Like a compact {@link String}, the suffix is stored with one byte per
+ * character if all of its characters are Latin-1, and with two bytes per
+ * character otherwise. It is kept in a plain array instead of a String to save
+ * the header and fields of a second object per key.
+ * </p>
+ */
+public final class PrefixCompressedKey implements Comparable<PrefixCompressedKey>, CharSequence {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	/**
+	 * Encode characters with one byte per character if possible and with two
+	 * bytes per character (big-endian) otherwise.
+	 */
+	private static byte[] encode(String s, int from, boolean utf16) {
+		int length = s.length() - from;
+		if (length == 0) {
+			return EMPTY;
+		}
+		byte[] bytes = new byte[utf16 ? 2 * length : length];
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(from + i);
+			if (utf16) {
+				bytes[2 * i] = (byte) (c >> 8);
+				bytes[2 * i + 1] = (byte) c;
+			} else {
+				bytes[i] = (byte) c;
+			}
+		}
+		return bytes;
+	}
+
+	private static boolean isLatin1(String s, int from) {
+		for (int i = from; i < s.length(); i++) {
+			if (s.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** shared prefix */
+	private final String prefix;
+	/** remaining characters of the key, encoded as Latin-1 or UTF-16 */
+	private final byte[] suffix;
+	/** true if the suffix uses two bytes per character */
+	private final boolean utf16;
+
+	/**
+	 * Construct a new key.
+	 *
+	 * @param prefix
+	 *            the shared prefix, should be interned
+	 * @param key
+	 *            the full key starting with the prefix
+	 */
+	PrefixCompressedKey(String prefix, String key) {
+		this.prefix = prefix;
+		this.utf16 = !isLatin1(key, prefix.length());
+		this.suffix = encode(key, prefix.length(), utf16);
+	}
+
+	@Override
+	public char charAt(int index) {
+		return index < prefix.length() ? prefix.charAt(index) : suffixCharAt(index - prefix.length());
+	}
+
+	@Override
+	public int compareTo(PrefixCompressedKey other) {
+		if (prefix == other.prefix) {
+			// common case for neighboring keys, only the suffixes differ
+			int length = Math.min(suffixLength(), other.suffixLength());
+			for (int i = 0; i < length; i++) {
+				char c = suffixCharAt(i);
+				char d = other.suffixCharAt(i);
+				if (c != d) {
+					return c - d;
+				}
+			}
+			return suffixLength() - other.suffixLength();
+		}
+		int length = Math.min(length(), other.length());
+		for (int i = 0; i < length; i++) {
+			char c = charAt(i);
+			char d = other.charAt(i);
+			if (c != d) {
+				return c - d;
+			}
+		}
+		return length() - other.length();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PrefixCompressedKey)) {
+			return false;
+		}
+		PrefixCompressedKey other = (PrefixCompressedKey) obj;
+		if (prefix == other.prefix) {
+			// the encoding of equal suffixes is equal, too
+			return utf16 == other.utf16 && Arrays.equals(suffix, other.suffix);
+		}
+		return length() == other.length() && compareTo(other) == 0;
+	}
+
+	/**
+	 * Get the shared prefix of the key.
+	 *
+	 * @return prefix
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * Compute the hash code of the full key, which equals the hash code of the
+	 * corresponding {@link String}. It is not cached to keep the key small.
+	 */
+	@Override
+	public int hashCode() {
+		int h = prefix.hashCode();
+		for (int i = 0; i < suffixLength(); i++) {
+			h = 31 * h + suffixCharAt(i);
+		}
+		return h;
+	}
+
+	@Override
+	public int length() {
+		return prefix.length() + suffixLength();
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+	private char suffixCharAt(int index) {
+		if (utf16) {
+			return (char) ((suffix[2 * index] & 0xFF) << 8 | suffix[2 * index + 1] & 0xFF);
+		}
+		return (char) (suffix[index] & 0xFF);
+	}
+
+	private int suffixLength() {
+		return utf16 ? suffix.length >> 1 : suffix.length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(length()).append(prefix);
+		for (int i = 0; i < suffixLength(); i++) {
+			sb.append(suffixCharAt(i));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,93 @@
+package de.hpi.idd.dysni.key;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import de.hpi.idd.dysni.KeyHandler;
+import de.hpi.idd.dysni.avl.SnapshotCodec;
+
+/**
+ * {@link KeyHandler} storing the string keys of another handler
+ * prefix-compressed. The first characters of each key are interned in a
+ * dictionary shared by all keys of the handler, only the remaining characters
+ * are stored per key. Prefixes no longer used by any key are garbage
+ * collected.
+ *
+ * <p>
+ * This pays off for keys sharing long prefixes like name prefixes or zip codes
+ * concatenated with surnames. The prefix length should be chosen such that
+ * many keys share each prefix.
+ * </p>
+ *
+ * @param <RECORD>
+ *            the type of records whose key should be computed
+ */
+public class PrefixCompressingKeyHandler<RECORD> implements KeyHandler<RECORD, PrefixCompressedKey> {
+
+	/** dictionary of prefixes */
+	private final Interner<String> dictionary = Interners.newWeakInterner();
+	/** handler computing the uncompressed keys */
+	private final KeyHandler<RECORD, String> handler;
+	/** number of characters stored in the dictionary */
+	private final int prefixLength;
+
+	/**
+	 * Construct a new key handler
+	 *
+	 * @param handler
+	 *            handler computing the uncompressed keys
+	 * @param prefixLength
+	 *            number of leading characters of each key stored in the shared
+	 *            dictionary
+	 */
+	public PrefixCompressingKeyHandler(KeyHandler<RECORD, String> handler, int prefixLength) {
+		if (prefixLength < 1) {
+			throw new IllegalArgumentException("Prefix length must be positive: " + prefixLength);
+		}
+		this.handler = handler;
+		this.prefixLength = prefixLength;
+	}
+
+	/**
+	 * Compress a key.
+	 *
+	 * @param key
+	 *            the uncompressed key
+	 * @return the compressed key
+	 */
+	public PrefixCompressedKey compress(String key) {
+		String prefix = key.length() <= prefixLength ? key : key.substring(0, prefixLength);
+		return new PrefixCompressedKey(dictionary.intern(prefix), key);
+	}
+
+	@Override
+	public PrefixCompressedKey computeKey(RECORD rec) {
+		return compress(handler.computeKey(rec));
+	}
+
+	/**
+	 * Get a codec writing the keys uncompressed to snapshots. Read keys are
+	 * compressed using the dictionary of this handler.
+	 *
+	 * @return codec for the keys of this handler
+	 */
+	public SnapshotCodec<PrefixCompressedKey> getCodec() {
+		SnapshotCodec<String> strings = SnapshotCodec.strings();
+		return new SnapshotCodec<PrefixCompressedKey>() {
+
+			@Override
+			public PrefixCompressedKey decode(ByteBuffer buffer) {
+				return compress(strings.decode(buffer));
+			}
+
+			@Override
+			public void encode(PrefixCompressedKey value, DataOutput out) throws IOException {
+				strings.encode(value.toString(), out);
+			}
+		};
+	}
+}
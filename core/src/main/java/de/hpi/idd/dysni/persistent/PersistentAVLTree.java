@@ -0,0 +1,416 @@
+package de.hpi.idd.dysni.persistent;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+
+/**
+ * Persistent AVL tree. Nodes are immutable: a modification copies the path
+ * from the root to the modified node and shares all other nodes with the
+ * previous version of the tree. Each modification therefore publishes a new
+ * version of the tree in logarithmic time and space.
+ *
+ * <p>
+ * Readers never block writers. Every {@link IndexNode} returned by the tree is
+ * bound to the version it was retrieved from, so that navigating along its
+ * neighbors observes exactly that version, no matter how the tree is modified
+ * in the meantime. {@link #snapshot()} pins the current version in constant
+ * time. Modifications are serialized.
+ * </p>
+ *
+ * <p>
+ * As nodes do not know their parent, the in-order neighbors are found using
+ * the path from the root, which is recorded when the node is retrieved. This
+ * takes amortized constant time per step.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the key of the elements
+ * @param <V>
+ *            the type of the elements
+ */
+public class PersistentAVLTree<K extends Comparable<K>, V> implements SortedIndex<K, V> {
+
+	/**
+	 * Position of a node in a specific version of the tree. The position
+	 * consists of the node and the positions of its ancestors.
+	 */
+	private static final class Cursor<K extends Comparable<K>, V> implements IndexNode<K, V> {
+
+		private final Node<K, V> node;
+		private final Cursor<K, V> parent;
+
+		Cursor(Node<K, V> node, Cursor<K, V> parent) {
+			this.node = node;
+			this.parent = parent;
+		}
+
+		@Override
+		public boolean contains(V element) {
+			return node.indexOf(element) >= 0;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Cursor && node == ((Cursor<?, ?>) obj).node;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Collection<V> getElements() {
+			return Collections.unmodifiableList((List<V>) Arrays.asList(node.elements));
+		}
+
+		@Override
+		public K getKey() {
+			return node.key;
+		}
+
+		@Override
+		public Cursor<K, V> getNext() {
+			if (node.right != null) {
+				return smallest(node.right, this);
+			}
+			Cursor<K, V> child = this;
+			Cursor<K, V> ancestor = parent;
+			while (ancestor != null && ancestor.node.right == child.node) {
+				child = ancestor;
+				ancestor = ancestor.parent;
+			}
+			return ancestor;
+		}
+
+		@Override
+		public Cursor<K, V> getPrevious() {
+			if (node.left != null) {
+				return largest(node.left, this);
+			}
+			Cursor<K, V> child = this;
+			Cursor<K, V> ancestor = parent;
+			while (ancestor != null && ancestor.node.left == child.node) {
+				child = ancestor;
+				ancestor = ancestor.parent;
+			}
+			return ancestor;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(node);
+		}
+
+		@Override
+		public String toString() {
+			return node.key + "=" + Arrays.toString(node.elements);
+		}
+	}
+
+	/** Immutable node of the tree. */
+	private static final class Node<K extends Comparable<K>, V> {
+
+		private final Object[] elements;
+		private final byte height;
+		private final K key;
+		private final Node<K, V> left;
+		/** number of nodes in the sub-tree */
+		private final int nodes;
+		private final Node<K, V> right;
+		/** number of elements in the sub-tree */
+		private final int size;
+
+		Node(K key, Object[] elements, Node<K, V> left, Node<K, V> right) {
+			this.key = key;
+			this.elements = elements;
+			this.left = left;
+			this.right = right;
+			this.height = (byte) (1 + Math.max(height(left), height(right)));
+			this.nodes = 1 + nodes(left) + nodes(right);
+			this.size = elements.length + size(left) + size(right);
+		}
+
+		int indexOf(Object element) {
+			for (int i = 0; i < elements.length; i++) {
+				if (Objects.equals(elements[i], element)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Copy this node with other children.
+		 */
+		Node<K, V> with(Node<K, V> left, Node<K, V> right) {
+			return balance(key, elements, left, right);
+		}
+	}
+
+	private static final Object[] NO_ELEMENTS = new Object[0];
+
+	private static <K extends Comparable<K>, V> Node<K, V> balance(K key, Object[] elements, Node<K, V> left,
+			Node<K, V> right) {
+		int leftHeight = height(left);
+		int rightHeight = height(right);
+		if (leftHeight > rightHeight + 1) {
+			if (height(left.left) >= height(left.right)) {
+				// single right rotation
+				return new Node<>(left.key, left.elements, left.left, new Node<>(key, elements, left.right, right));
+			}
+			// double rotation
+			Node<K, V> pivot = left.right;
+			return new Node<>(pivot.key, pivot.elements, new Node<>(left.key, left.elements, left.left, pivot.left),
+					new Node<>(key, elements, pivot.right, right));
+		}
+		if (rightHeight > leftHeight + 1) {
+			if (height(right.right) >= height(right.left)) {
+				// single left rotation
+				return new Node<>(right.key, right.elements, new Node<>(key, elements, left, right.left),
+						right.right);
+			}
+			// double rotation
+			Node<K, V> pivot = right.left;
+			return new Node<>(pivot.key, pivot.elements, new Node<>(key, elements, left, pivot.left),
+					new Node<>(right.key, right.elements, pivot.right, right.right));
+		}
+		return new Node<>(key, elements, left, right);
+	}
+
+	private static <K extends Comparable<K>, V> Node<K, V> delete(Node<K, V> node, K key, V element) {
+		if (node == null) {
+			return null;
+		}
+		int cmp = key.compareTo(node.key);
+		if (cmp < 0) {
+			Node<K, V> left = delete(node.left, key, element);
+			return left == node.left ? node : node.with(left, node.right);
+		}
+		if (cmp > 0) {
+			Node<K, V> right = delete(node.right, key, element);
+			return right == node.right ? node : node.with(node.left, right);
+		}
+		int index = node.indexOf(element);
+		if (index < 0) {
+			return node;
+		}
+		if (node.elements.length > 1) {
+			Object[] elements = new Object[node.elements.length - 1];
+			System.arraycopy(node.elements, 0, elements, 0, index);
+			System.arraycopy(node.elements, index + 1, elements, index, elements.length - index);
+			return new Node<>(node.key, elements, node.left, node.right);
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		Node<K, V> successor = node.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		return balance(successor.key, successor.elements, node.left, removeSmallest(node.right));
+	}
+
+	private static int height(Node<?, ?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> node, K key, V element) {
+		if (node == null) {
+			return new Node<>(key, element == null ? NO_ELEMENTS : new Object[] { element }, null, null);
+		}
+		int cmp = key.compareTo(node.key);
+		if (cmp < 0) {
+			Node<K, V> left = insert(node.left, key, element);
+			return left == node.left ? node : node.with(left, node.right);
+		}
+		if (cmp > 0) {
+			Node<K, V> right = insert(node.right, key, element);
+			return right == node.right ? node : node.with(node.left, right);
+		}
+		if (element == null) {
+			// nodes without elements are created for keys only
+			return node;
+		}
+		Object[] elements = Arrays.copyOf(node.elements, node.elements.length + 1);
+		elements[node.elements.length] = element;
+		return new Node<>(node.key, elements, node.left, node.right);
+	}
+
+	private static <K extends Comparable<K>, V> Cursor<K, V> largest(Node<K, V> node, Cursor<K, V> parent) {
+		Cursor<K, V> cursor = new Cursor<>(node, parent);
+		while (cursor.node.right != null) {
+			cursor = new Cursor<>(cursor.node.right, cursor);
+		}
+		return cursor;
+	}
+
+	private static int nodes(Node<?, ?> node) {
+		return node == null ? 0 : node.nodes;
+	}
+
+	private static <K extends Comparable<K>, V> Node<K, V> removeSmallest(Node<K, V> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return node.with(removeSmallest(node.left), node.right);
+	}
+
+	private static int size(Node<?, ?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static <K extends Comparable<K>, V> Cursor<K, V> smallest(Node<K, V> node, Cursor<K, V> parent) {
+		Cursor<K, V> cursor = new Cursor<>(node, parent);
+		while (cursor.node.left != null) {
+			cursor = new Cursor<>(cursor.node.left, cursor);
+		}
+		return cursor;
+	}
+
+	/** current version of the tree */
+	private volatile Node<K, V> root;
+
+	/**
+	 * Construct a new empty tree.
+	 */
+	public PersistentAVLTree() {
+		this(null);
+	}
+
+	private PersistentAVLTree(Node<K, V> root) {
+		this.root = root;
+	}
+
+	@Override
+	public IndexNode<K, V> ceiling(K key) {
+		Cursor<K, V> cursor = null;
+		Cursor<K, V> ceiling = null;
+		for (Node<K, V> node = root; node != null;) {
+			cursor = new Cursor<>(node, cursor);
+			int cmp = key.compareTo(node.key);
+			if (cmp < 0) {
+				ceiling = cursor;
+				node = node.left;
+			} else if (cmp > 0) {
+				node = node.right;
+			} else {
+				return cursor;
+			}
+		}
+		return ceiling;
+	}
+
+	@Override
+	public PersistentAVLTree<K, V> createEmpty() {
+		return new PersistentAVLTree<>();
+	}
+
+	/**
+	 * Delete an element from the tree. The node containing the element is
+	 * removed if it does not contain any other elements. Elements are compared
+	 * using {@link Object#equals(Object)}.
+	 */
+	@Override
+	public synchronized boolean delete(K key, V element) {
+		if (element == null) {
+			return false;
+		}
+		Node<K, V> current = root;
+		Node<K, V> updated = delete(current, key, element);
+		root = updated;
+		return updated != current;
+	}
+
+	@Override
+	public IndexNode<K, V> find(K key) {
+		return find(root, key);
+	}
+
+	private Cursor<K, V> find(Node<K, V> version, K key) {
+		Cursor<K, V> cursor = null;
+		for (Node<K, V> node = version; node != null;) {
+			cursor = new Cursor<>(node, cursor);
+			int cmp = key.compareTo(node.key);
+			if (cmp < 0) {
+				node = node.left;
+			} else if (cmp > 0) {
+				node = node.right;
+			} else {
+				return cursor;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public IndexNode<K, V> getLargest() {
+		Node<K, V> version = root;
+		return version == null ? null : largest(version, null);
+	}
+
+	@Override
+	public IndexNode<K, V> getSmallest() {
+		Node<K, V> version = root;
+		return version == null ? null : smallest(version, null);
+	}
+
+	/**
+	 * Get the height of the tree.
+	 *
+	 * @return number of levels of the tree
+	 */
+	int height() {
+		return height(root);
+	}
+
+	/**
+	 * Insert an element in the tree and publish the new version.
+	 *
+	 * @return node where the element was inserted, bound to the new version
+	 */
+	@Override
+	public IndexNode<K, V> insert(K key, V element) {
+		if (key == null) {
+			return null;
+		}
+		Node<K, V> version;
+		synchronized (this) {
+			version = insert(root, key, element);
+			root = version;
+		}
+		return find(version, key);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	@Override
+	public int nodes() {
+		return nodes(root);
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * Take a snapshot of the tree in constant time. The snapshot shares all
+	 * nodes with this tree and is not affected by later modifications of it.
+	 * Modifying the snapshot creates a new version independent of this tree.
+	 *
+	 * @return tree containing the current version of this tree
+	 */
+	@Override
+	public PersistentAVLTree<K, V> snapshot() {
+		return new PersistentAVLTree<>(root);
+	}
+}
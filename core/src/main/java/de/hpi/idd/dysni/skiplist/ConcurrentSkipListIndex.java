@@ -0,0 +1,498 @@
+package de.hpi.idd.dysni.skiplist;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.util.ElementCollection;
+import de.hpi.idd.util.ElementCollection.TagConsumer;
+
+/**
+ * Thread-safe {@link SortedIndex} backed by a {@link ConcurrentSkipListMap}.
+ *
+ * <p>
+ * The skip list needs no rebalancing, so concurrent insertions of different
+ * keys do not block each other. Each node holds the elements of one key.
+ * Writers add elements to and remove them from a node under the node's
+ * monitor, which also guards the removal of empty nodes from the skip list.
+ * A node removed concurrently is detected and the insertion is retried with a
+ * new node.
+ * </p>
+ *
+ * <p>
+ * Readers never block. The elements of a node are published as an immutable
+ * {@link Snapshot} of an array and a count. Appending writes to the free
+ * capacity of the array and publishes a snapshot with a larger count, so
+ * insertions take amortized constant time and the elements visible to a
+ * snapshot never change. Removing an element copies the remaining ones into a
+ * new array.
+ * </p>
+ *
+ * <p>
+ * In addition to the skip list, the nodes are chained in a doubly linked list
+ * between two sentinels, so that navigating to an in-order neighbor takes
+ * constant time. A node is linked after it has been added to the skip list and
+ * unlinked after it has been removed from it, holding the monitors of the node
+ * and its neighbors. Monitors are always acquired from smaller to larger keys.
+ * Writers never wait for each other to finish linking: a node removed before
+ * it has been linked is not linked at all, and a removed node that still
+ * occupies the position of its key is unlinked by the writer linking the new
+ * node. Navigation is weakly consistent: it reflects the index at some point
+ * at or since the node was returned, so windows built concurrently to
+ * modifications may or may not contain nodes inserted or removed in the
+ * meantime.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the key of the elements
+ * @param <V>
+ *            the type of the elements
+ */
+public class ConcurrentSkipListIndex<K extends Comparable<K>, V> implements SortedIndex<K, V> {
+
+	/**
+	 * Read-only view of the elements of a node. Iterators work on the snapshot
+	 * published when they are created.
+	 */
+	private static final class Elements<V> extends AbstractCollection<V> {
+		private final SkipListNode<?, V> node;
+
+		Elements(SkipListNode<?, V> node) {
+			this.node = node;
+		}
+
+		@Override
+		public boolean contains(Object element) {
+			return node.snapshot.indexOf(element) >= 0;
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			Snapshot snapshot = node.snapshot;
+			return new Iterator<V>() {
+
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < snapshot.count;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public V next() {
+					if (next >= snapshot.count) {
+						throw new NoSuchElementException();
+					}
+					return (V) snapshot.elements[next++];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return node.snapshot.count;
+		}
+	}
+
+	/** Node of the index holding the elements of a key. */
+	private static final class SkipListNode<K extends Comparable<K>, V> implements IndexNode<K, V> {
+		private final K key;
+		/** true while the node is part of the linked list, written under this */
+		private volatile boolean linked = false;
+		private final ConcurrentSkipListMap<K, SkipListNode<K, V>> map;
+		/** null until the node has been linked */
+		private volatile SkipListNode<K, V> next;
+		private volatile SkipListNode<K, V> prev;
+		/** set once the node has been removed from the map, written under this */
+		private volatile boolean removed = false;
+		/** elements of the node, replaced under this */
+		private volatile Snapshot snapshot = Snapshot.EMPTY;
+		private final Elements<V> view = new Elements<>(this);
+
+		SkipListNode(K key, ConcurrentSkipListMap<K, SkipListNode<K, V>> map) {
+			this.key = key;
+			this.map = map;
+		}
+
+		@Override
+		public boolean contains(V element) {
+			return snapshot.indexOf(element) >= 0;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void forEachTagged(TagConsumer<? super V> consumer) {
+			Snapshot snapshot = this.snapshot;
+			for (int i = 0; i < snapshot.count; i++) {
+				consumer.accept((V) snapshot.elements[i], snapshot.tags[i]);
+			}
+		}
+
+		@Override
+		public Collection<V> getElements() {
+			return view;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public IndexNode<K, V> getNext() {
+			SkipListNode<K, V> node = next;
+			if (node == null) {
+				// the node has just been added to the map and is not linked yet
+				return value(map.higherEntry(key));
+			}
+			while (node.removed) {
+				node = node.next;
+			}
+			return node.key == null ? null : node;
+		}
+
+		@Override
+		public IndexNode<K, V> getPrevious() {
+			SkipListNode<K, V> node = prev;
+			if (node == null) {
+				return value(map.lowerEntry(key));
+			}
+			while (node.removed) {
+				node = node.prev;
+			}
+			return node.key == null ? null : node;
+		}
+
+		/**
+		 * Tag the element in place. Snapshots sharing the array observe the
+		 * tag as well.
+		 */
+		@Override
+		public void setTag(V element, int tag) {
+			synchronized (this) {
+				Snapshot snapshot = this.snapshot;
+				for (int i = 0; i < snapshot.count; i++) {
+					if (Objects.equals(element, snapshot.elements[i])) {
+						snapshot.tags[i] = tag;
+					}
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return key + ": " + view;
+		}
+	}
+
+	/**
+	 * Immutable view of the first elements of an array. The elements below the
+	 * count never change, so snapshots with smaller counts may share the array
+	 * with newer ones.
+	 */
+	private static final class Snapshot {
+		static final Snapshot EMPTY = new Snapshot(new Object[0], new int[0], 0);
+
+		final int count;
+		final Object[] elements;
+		/** tags of the elements, written in place */
+		final int[] tags;
+
+		Snapshot(Object[] elements, int[] tags, int count) {
+			this.elements = elements;
+			this.tags = tags;
+			this.count = count;
+		}
+
+		/**
+		 * Append an element, writing it to the free capacity of the array if
+		 * there is any. Must only be called on the latest snapshot of a node.
+		 */
+		Snapshot add(Object element, int tag) {
+			Object[] elements = this.elements;
+			int[] tags = this.tags;
+			if (count == elements.length) {
+				elements = Arrays.copyOf(elements, Math.max(2, 2 * count));
+				tags = Arrays.copyOf(tags, elements.length);
+			}
+			elements[count] = element;
+			tags[count] = tag;
+			return new Snapshot(elements, tags, count + 1);
+		}
+
+		int indexOf(Object element) {
+			for (int i = 0; i < count; i++) {
+				if (Objects.equals(element, elements[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/** Remove the element at a position into a new array. */
+		Snapshot remove(int position) {
+			Object[] elements = new Object[Math.max(2, count - 1)];
+			int[] tags = new int[elements.length];
+			System.arraycopy(this.elements, 0, elements, 0, position);
+			System.arraycopy(this.elements, position + 1, elements, position, count - position - 1);
+			System.arraycopy(this.tags, 0, tags, 0, position);
+			System.arraycopy(this.tags, position + 1, tags, position, count - position - 1);
+			return new Snapshot(elements, tags, count - 1);
+		}
+	}
+
+	private static <K extends Comparable<K>, V> SkipListNode<K, V> value(Entry<K, SkipListNode<K, V>> entry) {
+		return entry == null ? null : entry.getValue();
+	}
+
+	/** sentinel preceding the smallest node, its key is null */
+	private final SkipListNode<K, V> head;
+	private final ConcurrentSkipListMap<K, SkipListNode<K, V>> map = new ConcurrentSkipListMap<>();
+	/** number of nodes, the skip list can only count them in linear time */
+	private final AtomicInteger nodes = new AtomicInteger();
+	/** number of elements */
+	private final AtomicInteger size = new AtomicInteger();
+	/** sentinel following the largest node, its key is null */
+	private final SkipListNode<K, V> tail;
+
+	/**
+	 * Construct a new empty index.
+	 */
+	public ConcurrentSkipListIndex() {
+		head = new SkipListNode<>(null, map);
+		tail = new SkipListNode<>(null, map);
+		head.next = tail;
+		head.linked = true;
+		tail.prev = head;
+		tail.linked = true;
+	}
+
+	@Override
+	public IndexNode<K, V> ceiling(K key) {
+		return value(map.ceilingEntry(key));
+	}
+
+	@Override
+	public ConcurrentSkipListIndex<K, V> createEmpty() {
+		return new ConcurrentSkipListIndex<>();
+	}
+
+	@Override
+	public boolean delete(K key, V element) {
+		if (element == null) {
+			return false;
+		}
+		SkipListNode<K, V> node = map.get(key);
+		if (node == null) {
+			return false;
+		}
+		synchronized (node) {
+			int position = node.snapshot.indexOf(element);
+			if (node.removed || position < 0) {
+				return false;
+			}
+			node.snapshot = node.snapshot.remove(position);
+			size.decrementAndGet();
+			if (node.snapshot.count > 0) {
+				return true;
+			}
+			node.removed = true;
+			map.remove(key, node);
+			nodes.decrementAndGet();
+		}
+		unlink(node);
+		return true;
+	}
+
+	@Override
+	public IndexNode<K, V> find(K key) {
+		return map.get(key);
+	}
+
+	@Override
+	public IndexNode<K, V> getLargest() {
+		return value(map.lastEntry());
+	}
+
+	@Override
+	public IndexNode<K, V> getSmallest() {
+		return value(map.firstEntry());
+	}
+
+	@Override
+	public IndexNode<K, V> insert(K key, V element) {
+		return insert(key, element, ElementCollection.UNTAGGED);
+	}
+
+	/**
+	 * Insert an element and store its tag right away.
+	 */
+	@Override
+	public IndexNode<K, V> insert(K key, V element, int tag) {
+		if (key == null) {
+			return null;
+		}
+		while (true) {
+			SkipListNode<K, V> node = map.get(key);
+			if (node == null) {
+				SkipListNode<K, V> created = new SkipListNode<>(key, map);
+				if (element != null) {
+					created.snapshot = Snapshot.EMPTY.add(element, tag);
+				}
+				node = map.putIfAbsent(key, created);
+				if (node == null) {
+					nodes.incrementAndGet();
+					if (element != null) {
+						size.incrementAndGet();
+					}
+					link(created);
+					return created;
+				}
+			}
+			synchronized (node) {
+				if (!node.removed) {
+					if (element != null) {
+						node.snapshot = node.snapshot.add(element, tag);
+						size.incrementAndGet();
+					}
+					return node;
+				}
+			}
+			// the node was removed concurrently, retry with a new node
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	/**
+	 * Link a node that has just been added to the skip list between its
+	 * in-order neighbors, unless it has been removed in the meantime.
+	 */
+	private void link(SkipListNode<K, V> node) {
+		SkipListNode<K, V> prev = predecessor(node.key);
+		while (true) {
+			synchronized (prev) {
+				SkipListNode<K, V> next = prev.next;
+				if (!prev.linked) {
+					prev = predecessor(node.key);
+					continue;
+				}
+				if (next != tail) {
+					int cmp = next.key.compareTo(node.key);
+					if (cmp < 0) {
+						// a smaller node has been linked in the meantime
+						prev = next;
+						continue;
+					}
+					if (cmp == 0) {
+						// a removed node of the same key has not been unlinked
+						// yet, unlink it instead of waiting for its remover
+						synchronized (next) {
+							unlink(prev, next);
+						}
+						continue;
+					}
+				}
+				synchronized (node) {
+					if (node.removed) {
+						// the remover has found the node unlinked and left it
+						return;
+					}
+					synchronized (next) {
+						node.prev = prev;
+						node.next = next;
+						node.linked = true;
+						prev.next = node;
+						next.prev = node;
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public int nodes() {
+		return nodes.get();
+	}
+
+	/**
+	 * Find the largest linked node with a smaller key. Nodes that have been
+	 * added to the skip list but are not linked yet are skipped.
+	 *
+	 * @return the predecessor, the head sentinel if there is none
+	 */
+	private SkipListNode<K, V> predecessor(K key) {
+		SkipListNode<K, V> prev = value(map.lowerEntry(key));
+		while (prev != null && !prev.linked) {
+			prev = value(map.lowerEntry(prev.key));
+		}
+		return prev == null ? head : prev;
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Unlink a node that has been removed from the skip list. Its links are
+	 * kept so that readers currently positioned at it can move on. Returns
+	 * right away if the node is not linked, because it has not been linked
+	 * yet or has been unlinked by another writer.
+	 */
+	private void unlink(SkipListNode<K, V> node) {
+		while (true) {
+			SkipListNode<K, V> prev = node.prev;
+			if (prev == null) {
+				synchronized (node) {
+					if (!node.linked) {
+						return;
+					}
+				}
+				continue;
+			}
+			synchronized (prev) {
+				if (!prev.linked || prev.next != node) {
+					// the predecessor has changed, unless the node has been
+					// unlinked already
+					synchronized (node) {
+						if (!node.linked) {
+							return;
+						}
+					}
+					continue;
+				}
+				synchronized (node) {
+					unlink(prev, node);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Unlink a node from its predecessor and successor. Must hold the monitors
+	 * of the predecessor and the node.
+	 */
+	private static <K extends Comparable<K>, V> void unlink(SkipListNode<K, V> prev, SkipListNode<K, V> node) {
+		SkipListNode<K, V> next = node.next;
+		synchronized (next) {
+			prev.next = next;
+			next.prev = prev;
+			node.linked = false;
+		}
+	}
+}
@@ -0,0 +1,388 @@
+package de.hpi.idd.dysni.window;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.sim.SimilarityClassifier;
+
+/**
+ * Base class for {@link WindowBuilder window builders} that expand the window
+ * node by node in both directions until a criterion of the builder stops
+ * them. The expansions alternate between the two directions, so that the
+ * closest nodes are visited first. Before each step to another node, the sink
+ * is asked whether its budget is {@link CandidateSink#isExhausted()
+ * exhausted}. If it is, the window is truncated and the sink is
+ * {@link CandidateSink#markTruncated() notified}.
+ *
+ * <p>
+ * Each thread creates its two expansions once and {@link Expansion#reset
+ * resets} them for every window, so that building a window does not allocate
+ * any objects. Consequently, a builder must not build another window on the
+ * same thread while building a window, e.g. from within a sink.
+ * </p>
+ *
+ * <p>
+ * Builders doing expensive work while expanding, e.g. comparing candidates,
+ * may expand both directions concurrently on an {@link Executor}. Each
+ * direction is then recorded separately and the recordings are merged into
+ * the sink in the same alternating order afterwards. While expanding, both
+ * directions count their candidates against the
+ * {@link CandidateSink#getRemainingComparisons() remaining comparisons} of
+ * the sink and ask the sink whether it is exhausted, so that builders
+ * comparing candidates stop once the budget is used up. Candidates exceeding
+ * the budget are discarded by the sink when merging. If one direction fails,
+ * the other one is stopped at its next step and awaited before the failure
+ * is rethrown.
+ * </p>
+ *
+ * @param <RECORD>
+ *            type of elements associated with the index
+ * @param <KEY>
+ *            type of keys which the index is sorted by
+ * @param <ID>
+ *            type of ids representing the elements
+ */
+public abstract class AbstractWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID>
+		implements WindowBuilder<RECORD, KEY, ID> {
+
+	/**
+	 * Expansion of a window in one direction. Keeps the state of the criterion
+	 * deciding when to stop, e.g. the number of nodes visited so far. An
+	 * expansion is reused for the windows built by a thread.
+	 *
+	 * @param <RECORD>
+	 *            type of elements associated with the index
+	 * @param <KEY>
+	 *            type of keys which the index is sorted by
+	 * @param <ID>
+	 *            type of ids representing the elements
+	 */
+	protected abstract static class Expansion<RECORD, KEY extends Comparable<KEY>, ID> {
+
+		/** whether the window is expanded towards larger keys */
+		private final boolean forward;
+		/** node most recently included in the window */
+		private IndexNode<KEY, ID> node;
+
+		/**
+		 * Construct a new expansion.
+		 *
+		 * @param forward
+		 *            whether the window is expanded towards larger keys
+		 */
+		protected Expansion(boolean forward) {
+			this.forward = forward;
+		}
+
+		/**
+		 * Decide whether the next node should be included in the window and
+		 * pass its elements to the sink if so.
+		 *
+		 * @param current
+		 *            node most recently included in the window
+		 * @param next
+		 *            adjacent node in the direction of the expansion
+		 * @param sink
+		 *            receives the ids contained in the window
+		 * @return true if the node was included and the expansion should be
+		 *         continued
+		 */
+		protected abstract boolean expand(IndexNode<KEY, ID> current, IndexNode<KEY, ID> next,
+				CandidateSink<ID> sink);
+
+		/**
+		 * Check the direction of the expansion.
+		 *
+		 * @return true if the window is expanded towards larger keys
+		 */
+		protected boolean isForward() {
+			return forward;
+		}
+
+		/**
+		 * Reset the state of the criterion before a new window is expanded.
+		 *
+		 * @param record
+		 *            the record for which possible duplicates should be found
+		 * @param initial
+		 *            the node containing the record, whose elements have
+		 *            already been passed to the sink
+		 */
+		protected abstract void reset(RECORD record, IndexNode<KEY, ID> initial);
+
+		/**
+		 * Start expanding a new window.
+		 */
+		void start(RECORD record, IndexNode<KEY, ID> initial) {
+			node = initial;
+			reset(record, initial);
+		}
+
+		/**
+		 * Expand the window by one node unless the budget of the sink is used
+		 * up.
+		 *
+		 * @param sink
+		 *            receives the ids contained in the window
+		 * @return false if the expansion has finished or was truncated
+		 */
+		boolean step(CandidateSink<ID> sink) {
+			IndexNode<KEY, ID> next = forward ? node.getNext() : node.getPrevious();
+			if (next == null) {
+				return false;
+			}
+			if (sink.isExhausted()) {
+				sink.markTruncated();
+				return false;
+			}
+			if (!expand(node, next, sink)) {
+				return false;
+			}
+			node = next;
+			return true;
+		}
+	}
+
+	/**
+	 * Expansion of a window in one direction recorded for merging it into the
+	 * actual sink later on. Recordings are reused by the thread merging them.
+	 * Both recordings of a window share the number of remaining comparisons.
+	 */
+	private static class Recording<ID> implements CandidateSink<ID>, Runnable {
+
+		/** classifier of the verdict per candidate, null if there is none */
+		private final List<SimilarityClassifier<?>> classifiers = new ArrayList<>();
+		/** expansion to be recorded */
+		private Expansion<?, ?, ID> expansion;
+		private final List<ID> ids = new ArrayList<>();
+		/** comparisons left in the budget of both directions */
+		private AtomicInteger remaining;
+		/** verdict per candidate */
+		private final BitSet similar = new BitSet();
+		/** sink the recording is merged into, asked for its budget only */
+		private CandidateSink<ID> sink;
+		/** number of candidates recorded after each step */
+		private int[] steps = new int[16];
+		/** number of steps */
+		private int stepCount = 0;
+		private boolean truncated = false;
+
+		@Override
+		public void accept(ID id) {
+			ids.add(id);
+			classifiers.add(null);
+			remaining.decrementAndGet();
+		}
+
+		@Override
+		public void accept(ID id, SimilarityClassifier<?> classifier, boolean similar) {
+			this.similar.set(ids.size(), similar);
+			ids.add(id);
+			classifiers.add(classifier);
+			remaining.decrementAndGet();
+		}
+
+		@Override
+		public int getRemainingComparisons() {
+			return remaining.get();
+		}
+
+		@Override
+		public boolean isExhausted() {
+			return remaining.get() <= 0 || sink.isExhausted();
+		}
+
+		@Override
+		public void markTruncated() {
+			truncated = true;
+		}
+
+		/**
+		 * Pass the candidates recorded in a step to the sink.
+		 */
+		void replay(int step) {
+			if (step >= stepCount) {
+				return;
+			}
+			for (int i = step == 0 ? 0 : steps[step - 1]; i < steps[step]; i++) {
+				SimilarityClassifier<?> classifier = classifiers.get(i);
+				if (classifier == null) {
+					sink.accept(ids.get(i));
+				} else {
+					sink.accept(ids.get(i), classifier, similar.get(i));
+				}
+			}
+		}
+
+		/**
+		 * Discard the previous recording and prepare recording an expansion.
+		 */
+		void reset(Expansion<?, ?, ID> expansion, CandidateSink<ID> sink, AtomicInteger remaining) {
+			this.expansion = expansion;
+			this.sink = sink;
+			this.remaining = remaining;
+			classifiers.clear();
+			ids.clear();
+			similar.clear();
+			stepCount = 0;
+			truncated = false;
+		}
+
+		/**
+		 * Record the expansion until it has finished.
+		 */
+		@Override
+		public void run() {
+			boolean expanded;
+			do {
+				expanded = expansion.step(this);
+				if (stepCount == steps.length) {
+					steps = Arrays.copyOf(steps, 2 * stepCount);
+				}
+				steps[stepCount++] = ids.size();
+			} while (expanded);
+		}
+	}
+
+	/**
+	 * Objects reused by a thread for building its windows.
+	 */
+	private static class Scratch<RECORD, KEY extends Comparable<KEY>, ID> {
+		private final Recording<ID> after = new Recording<>();
+		private final Recording<ID> before = new Recording<>();
+		private final Expansion<RECORD, KEY, ID> next;
+		private final Expansion<RECORD, KEY, ID> previous;
+		/** comparisons left in the budget of a window expanded concurrently */
+		private final AtomicInteger remaining = new AtomicInteger();
+
+		Scratch(Expansion<RECORD, KEY, ID> previous, Expansion<RECORD, KEY, ID> next) {
+			this.previous = previous;
+			this.next = next;
+		}
+	}
+
+	/** executor expanding towards smaller keys, null to expand sequentially */
+	private final Executor executor;
+	/** expansions and recordings of each thread */
+	private final ThreadLocal<Scratch<RECORD, KEY, ID>> scratch = ThreadLocal
+			.withInitial(() -> new Scratch<>(createExpansion(false), createExpansion(true)));
+
+	/**
+	 * Construct a new window builder expanding both directions sequentially.
+	 */
+	protected AbstractWindowBuilder() {
+		this(null);
+	}
+
+	/**
+	 * Construct a new window builder.
+	 *
+	 * @param executor
+	 *            executor expanding towards smaller keys while the calling
+	 *            thread expands towards larger keys, null to expand both
+	 *            directions sequentially. It must not depend on the calling
+	 *            thread to make progress.
+	 */
+	protected AbstractWindowBuilder(Executor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void buildWindow(RECORD record, IndexNode<KEY, ID> node, CandidateSink<ID> sink) {
+		if (node == null) {
+			return;
+		}
+		sink.acceptElements(node);
+		Scratch<RECORD, KEY, ID> scratch = this.scratch.get();
+		Expansion<RECORD, KEY, ID> previous = scratch.previous;
+		Expansion<RECORD, KEY, ID> next = scratch.next;
+		previous.start(record, node);
+		next.start(record, node);
+		if (executor != null) {
+			expandConcurrently(scratch, sink);
+			return;
+		}
+		while (previous != null || next != null) {
+			if (previous != null && !previous.step(sink)) {
+				previous = null;
+			}
+			if (next != null && !next.step(sink)) {
+				next = null;
+			}
+		}
+	}
+
+	/**
+	 * Expand both directions concurrently and merge them into the sink in the
+	 * order they would have been expanded sequentially.
+	 */
+	private void expandConcurrently(Scratch<RECORD, KEY, ID> scratch, CandidateSink<ID> sink) {
+		Recording<ID> before = scratch.before;
+		Recording<ID> after = scratch.after;
+		AtomicInteger remaining = scratch.remaining;
+		remaining.set(sink.getRemainingComparisons());
+		before.reset(scratch.previous, sink, remaining);
+		after.reset(scratch.next, sink, remaining);
+		CompletableFuture<Void> future = CompletableFuture.runAsync(before, executor);
+		RuntimeException failure = null;
+		try {
+			after.run();
+		} catch (RuntimeException e) {
+			// stop the other direction at its next step
+			remaining.set(0);
+			failure = e;
+		} finally {
+			// the other direction uses the scratch of this thread, so it has to
+			// finish before the scratch is reused
+			try {
+				future.join();
+			} catch (CompletionException e) {
+				RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+						: e;
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		for (int step = 0; step < Math.max(before.stepCount, after.stepCount); step++) {
+			before.replay(step);
+			after.replay(step);
+		}
+		if (before.truncated || after.truncated) {
+			sink.markTruncated();
+		}
+	}
+
+	/**
+	 * Get the executor expanding towards smaller keys.
+	 *
+	 * @return the executor, null if both directions are expanded
+	 *         sequentially
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Create the expansion of windows in one direction. Each thread creates
+	 * one expansion per direction and reuses it for all of its windows.
+	 *
+	 * @param forward
+	 *            whether the window is expanded towards larger keys
+	 * @return expansion, which is {@link Expansion#reset reset} before each
+	 *         window
+	 */
+	protected abstract Expansion<RECORD, KEY, ID> createExpansion(boolean forward);
+}
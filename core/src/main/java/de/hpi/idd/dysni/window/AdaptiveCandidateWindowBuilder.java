@@ -1,11 +1,6 @@
 package de.hpi.idd.dysni.window;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.function.Function;
-
-import de.hpi.idd.dysni.avl.Node;
+import de.hpi.idd.dysni.index.IndexNode;
 
 /**
  * {@link WindowBuilder Window builder} based on the idea that a fixed number of
@@ -20,7 +15,7 @@ import de.hpi.idd.dysni.avl.Node;
  *            type of ids representing the elements
  */
 public class AdaptiveCandidateWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID>
-		implements WindowBuilder<RECORD, KEY, ID> {
+		extends AbstractWindowBuilder<RECORD, KEY, ID> {
 
 	/** maximum number of candidates to be retrieved */
 	private final int maximum;
@@ -36,37 +31,34 @@ public class AdaptiveCandidateWindowBuilder<RECORD, KEY extends Comparable<KEY>,
 		this.maximum = maximum;
 	}
 
-	@Override
-	public Collection<ID> buildWindow(RECORD rec, Node<KEY, ID> node) {
-		if (node == null) {
-			return Collections.emptyList();
-		}
-		Collection<ID> candidates = new ArrayList<>();
-		candidates.addAll(node.getElements());
-		int remaining = (int) Math.ceil(maximum - candidates.size() / 2.0);
-		candidates.addAll(expand(node, remaining, Node::getPrevious));
-		candidates.addAll(expand(node, remaining, Node::getNext));
-		return candidates;
-	}
-
 	/**
 	 * Expand window with a fixed number of candidates.
-	 *
-	 * @param node
-	 *            the node where the expansion should be started
-	 * @param remaining
-	 *            number of candidates that should maximally be included in the
-	 *            window
-	 * @param f
-	 *            function to expand the window to the next node
-	 * @return ids contained in the built window
 	 */
-	private Collection<ID> expand(Node<KEY, ID> node, int remaining, Function<Node<KEY, ID>, Node<KEY, ID>> f) {
-		Collection<ID> candidates = new ArrayList<>();
-		for (node = f.apply(node); node != null && remaining - candidates.size() > 0; node = f.apply(node)) {
-			candidates.addAll(node.getElements());
-		}
-		return candidates;
+	@Override
+	protected Expansion<RECORD, KEY, ID> createExpansion(boolean forward) {
+		return new Expansion<RECORD, KEY, ID>(forward) {
+
+			/**
+			 * number of candidates that should maximally be included in the
+			 * window
+			 */
+			private int remaining;
+
+			@Override
+			protected boolean expand(IndexNode<KEY, ID> current, IndexNode<KEY, ID> next, CandidateSink<ID> sink) {
+				if (remaining <= 0) {
+					return false;
+				}
+				sink.acceptElements(next);
+				remaining -= next.getElements().size();
+				return true;
+			}
+
+			@Override
+			protected void reset(RECORD record, IndexNode<KEY, ID> initial) {
+				remaining = (int) Math.ceil(maximum - initial.getElements().size() / 2.0);
+			}
+		};
 	}
 
 }
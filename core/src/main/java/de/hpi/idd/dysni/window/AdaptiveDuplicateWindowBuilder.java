@@ -1,11 +1,8 @@
 package de.hpi.idd.dysni.window;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.function.Function;
+import java.util.concurrent.Executor;
 
-import de.hpi.idd.dysni.avl.Node;
+import de.hpi.idd.dysni.index.IndexNode;
 import de.hpi.idd.sim.SimilarityClassifier;
 import de.hpi.idd.store.RecordStore;
 import de.hpi.idd.store.StoreException;
@@ -22,7 +19,7 @@ import de.hpi.idd.store.StoreException;
  *            type of ids representing the elements
  */
 public class AdaptiveDuplicateWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID>
-		implements WindowBuilder<RECORD, KEY, ID> {
+		extends AbstractWindowBuilder<RECORD, KEY, ID> {
 
 	/** similarity classifier to determine duplicates */
 	private final SimilarityClassifier<RECORD> classifier;
@@ -32,7 +29,7 @@ public class AdaptiveDuplicateWindowBuilder<RECORD, KEY extends Comparable<KEY>,
 	private final double threshold;
 
 	/**
-	 * Construct a new window builder
+	 * Construct a new window builder expanding both directions sequentially
 	 *
 	 * @param threshold
 	 *            threshold to decide whether expansion should be continued or
@@ -44,53 +41,79 @@ public class AdaptiveDuplicateWindowBuilder<RECORD, KEY extends Comparable<KEY>,
 	 */
 	public AdaptiveDuplicateWindowBuilder(double threshold, SimilarityClassifier<RECORD> classifier,
 			RecordStore<ID, RECORD> store) {
+		this(threshold, classifier, store, null);
+	}
+
+	/**
+	 * Construct a new window builder that compares the candidates of both
+	 * directions concurrently. The classifier and the store must be
+	 * thread-safe.
+	 *
+	 * @param threshold
+	 *            threshold to decide whether expansion should be continued or
+	 *            not
+	 * @param classifier
+	 *            similarity classifier to determine duplicates
+	 * @param store
+	 *            store to retrieve records by their id
+	 * @param executor
+	 *            executor expanding towards smaller keys while the calling
+	 *            thread expands towards larger keys, null to expand both
+	 *            directions sequentially
+	 */
+	public AdaptiveDuplicateWindowBuilder(double threshold, SimilarityClassifier<RECORD> classifier,
+			RecordStore<ID, RECORD> store, Executor executor) {
+		super(executor);
 		this.threshold = threshold;
 		this.classifier = classifier;
 		this.store = store;
 	}
 
-	@Override
-	public Collection<ID> buildWindow(RECORD rec, Node<KEY, ID> node) {
-		if (node == null) {
-			return Collections.emptyList();
-		}
-		Collection<ID> candidates = new ArrayList<>();
-		candidates.addAll(node.getElements());
-		candidates.addAll(expand(rec, node, Node::getPrevious));
-		candidates.addAll(expand(rec, node, Node::getNext));
-		return candidates;
-	}
-
 	/**
 	 * Expand window as long as ratio of duplicates to all candidates exceeds
-	 * the specified threshold.
-	 *
-	 * @param record
-	 *            the record for which duplicates should be found
-	 * @param node
-	 *            the node where the expansion should be started
-	 * @param f
-	 *            function to expand the window to the next node
-	 * @return ids contained in the built window
+	 * the specified threshold. As comparing the candidates is expensive, the
+	 * budget of the sink is checked before each comparison.
 	 */
-	private Collection<ID> expand(RECORD record, Node<KEY, ID> node, Function<Node<KEY, ID>, Node<KEY, ID>> f) {
-		Collection<ID> candidates = new ArrayList<>();
-		int added = 0;
-		int matches = 0;
-		for (node = f.apply(node); node != null && isAboveThreshold(added, matches); node = f.apply(node)) {
-			for (ID id : node.getElements()) {
-				try {
-					if (classifier.areSimilar(record, store.getRecord(id))) {
-						matches++;
+	@Override
+	protected Expansion<RECORD, KEY, ID> createExpansion(boolean forward) {
+		return new Expansion<RECORD, KEY, ID>(forward) {
+
+			private int added;
+			private int matches;
+			/** record the window is built for */
+			private RECORD record;
+
+			@Override
+			protected boolean expand(IndexNode<KEY, ID> current, IndexNode<KEY, ID> next, CandidateSink<ID> sink) {
+				if (!isAboveThreshold(added, matches)) {
+					return false;
+				}
+				for (ID id : next.getElements()) {
+					if (sink.isExhausted()) {
+						sink.markTruncated();
+						return false;
+					}
+					try {
+						boolean similar = classifier.areSimilar(record, store.getRecord(id));
+						if (similar) {
+							matches++;
+						}
+						sink.accept(id, classifier, similar);
+						added++;
+					} catch (StoreException e) {
+						throw new RuntimeException("Error accessing storage", e);
 					}
-					candidates.add(id);
-					added++;
-				} catch (StoreException e) {
-					throw new RuntimeException("Error accessing storage", e);
 				}
+				return true;
+			}
+
+			@Override
+			protected void reset(RECORD record, IndexNode<KEY, ID> initial) {
+				this.record = record;
+				added = 0;
+				matches = 0;
 			}
-		}
-		return candidates;
+		};
 	}
 
 	private boolean isAboveThreshold(int added, int matches) {
@@ -1,18 +1,25 @@
 package de.hpi.idd.dysni.window;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.function.Function;
-
-import de.hpi.idd.dysni.avl.Node;
+import de.hpi.idd.dysni.index.IndexNode;
 import de.hpi.idd.sim.SimilarityClassifier;
-import de.hpi.idd.util.SymmetricTable;
+import de.hpi.idd.util.SimilarityCache;
 
 /**
  * {@link WindowBuilder Window builder} that expands the window as long as the
  * similarity of the keys to initial key exceeds a certain threshold.
  *
+ * <p>
+ * If the index stores the similarities of adjacent keys, e.g. a
+ * {@link de.hpi.idd.dysni.avl.BraidedAVLTree BraidedAVLTree} constructed with
+ * the measure of the classifier, they can be
+ * {@link #setUseLinkSimilarities(boolean) used} to stop expanding without
+ * computing the similarity to the initial key. Alternatively, the window can
+ * be expanded as long as the similarity of adjacent keys exceeds the
+ * threshold. This {@link #setChained(boolean) chained} criterion may reach
+ * keys that are not similar to the initial key, but it does not require any
+ * similarity computations.
+ * </p>
+ *
  * @param <RECORD>
  *            type of elements associated with the index
  * @param <KEY>
@@ -21,60 +28,102 @@ import de.hpi.idd.util.SymmetricTable;
  *            type of ids representing the elements
  */
 public class AdaptiveKeySimilarityWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID>
-		implements WindowBuilder<RECORD, KEY, ID> {
+		extends AbstractWindowBuilder<RECORD, KEY, ID> {
+
+	/** default maximum number of cached similarities */
+	public static final int DEFAULT_CACHE_SIZE = 1 << 16;
 
 	/** similarity classifier to determine similar keys */
 	private final SimilarityClassifier<KEY> classifier;
-	/** symmetric store to cache similarity of keys as they won't change */
-	private final SymmetricTable<KEY, Double> similarities = new SymmetricTable<>();
+	/** whether the window is expanded along similar adjacent keys */
+	private boolean chained = false;
+	/** bounded cache of the similarity of keys as they won't change */
+	private final SimilarityCache<KEY> similarities;
+	/** whether link similarities bound the similarity to the initial key */
+	private boolean useLinkSimilarities = false;
 
 	/**
-	 * Construct a new window builder
+	 * Construct a new window builder caching up to
+	 * {@link #DEFAULT_CACHE_SIZE} similarities
 	 *
 	 * @param classifier
 	 *            classifier to measure similarity of keys
 	 */
 	public AdaptiveKeySimilarityWindowBuilder(SimilarityClassifier<KEY> classifier) {
+		this(classifier, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Construct a new window builder
+	 *
+	 * @param classifier
+	 *            classifier to measure similarity of keys
+	 * @param cacheSize
+	 *            maximum number of cached similarities
+	 */
+	public AdaptiveKeySimilarityWindowBuilder(SimilarityClassifier<KEY> classifier, int cacheSize) {
 		this.classifier = classifier;
+		this.similarities = new SimilarityCache<>(cacheSize);
 	}
 
+	/**
+	 * Expand window as long as the similarity of the initial node's key to the
+	 * current node's key exceeds the specified threshold. If the chained
+	 * criterion is used, expand window as long as the similarity of adjacent
+	 * keys exceeds the threshold instead. Similarities stored in the links of
+	 * the index are used if available, otherwise they are computed.
+	 */
 	@Override
-	public Collection<ID> buildWindow(RECORD rec, Node<KEY, ID> node) {
-		if (node == null) {
-			return Collections.emptyList();
-		}
-		Collection<ID> candidates = new ArrayList<>();
-		candidates.addAll(node.getElements());
-		candidates.addAll(expand(node, Node::getPrevious));
-		candidates.addAll(expand(node, Node::getNext));
-		return candidates;
+	protected Expansion<RECORD, KEY, ID> createExpansion(boolean forward) {
+		return new Expansion<RECORD, KEY, ID>(forward) {
+
+			/** similarity of the current node's key to the initial key */
+			private double currentSimilarity;
+			/** key of the node the window is built around */
+			private KEY initial;
+
+			@Override
+			protected boolean expand(IndexNode<KEY, ID> current, IndexNode<KEY, ID> next, CandidateSink<ID> sink) {
+				double link = useLinkSimilarities || chained ? (forward ? current : next).getNextSimilarity()
+						: Double.NaN;
+				double similarity;
+				if (chained) {
+					similarity = Double.isNaN(link) ? getSimilarity(current.getKey(), next.getKey()) : link;
+				} else {
+					if (!Double.isNaN(link) && !classifier.isSimilarity(1.0 - Math.abs(currentSimilarity - link))) {
+						// the next key cannot be similar to the initial key
+						return false;
+					}
+					similarity = getSimilarity(next.getKey(), initial);
+					currentSimilarity = similarity;
+				}
+				if (!classifier.isSimilarity(similarity)) {
+					return false;
+				}
+				sink.acceptElements(next);
+				return true;
+			}
+
+			@Override
+			protected void reset(RECORD record, IndexNode<KEY, ID> initial) {
+				this.initial = initial.getKey();
+				currentSimilarity = 1.0;
+			}
+		};
 	}
 
 	/**
-	 * Expand window as long as the similarity of the initial node's key to the
-	 * current node's key exceeds the specified threshold
+	 * Get the cache of the similarities of keys, e.g. to monitor its hit rate.
 	 *
-	 * @param initial
-	 *            initial node where the expansion starts
-	 * @param f
-	 *            function to retrieve the next node
-	 * @return ids contained in the built window
+	 * @return the similarity cache
 	 */
-	private Collection<ID> expand(Node<KEY, ID> initial, Function<Node<KEY, ID>, Node<KEY, ID>> f) {
-		Collection<ID> candidates = new ArrayList<>();
-		for (Node<KEY, ID> node = f.apply(initial); node != null; node = f.apply(node)) {
-			if (classifier.isSimilarity(getSimilarity(node.getKey(), initial.getKey()))) {
-				candidates.addAll(node.getElements());
-			} else {
-				break;
-			}
-		}
-		return candidates;
+	public SimilarityCache<KEY> getCache() {
+		return similarities;
 	}
 
 	/**
 	 * Lazy computation of similarities. Similarities are looked up in cache and
-	 * only computed if not computed before.
+	 * only computed if not computed before or evicted since.
 	 *
 	 * @param key1
 	 *            first key
@@ -83,12 +132,43 @@ public class AdaptiveKeySimilarityWindowBuilder<RECORD, KEY extends Comparable<K
 	 * @return similarity of the keys
 	 */
 	private double getSimilarity(KEY key1, KEY key2) {
-		Double sim = similarities.get(key1, key2);
-		if (sim == null) {
-			sim = classifier.calculateCheckedSimilarity(key1, key2);
-			similarities.put(key1, key2, sim);
-		}
-		return sim;
+		return similarities.computeIfAbsent(key1, key2, classifier::calculateCheckedSimilarity);
+	}
+
+	/**
+	 * Set whether the window is expanded as long as adjacent keys are similar
+	 * instead of as long as keys are similar to the initial key. The index
+	 * should store the similarities of adjacent keys using the measure of the
+	 * classifier, otherwise they are computed and cached.
+	 *
+	 * @param chained
+	 *            whether the chained criterion should be used
+	 * @return this
+	 */
+	public AdaptiveKeySimilarityWindowBuilder<RECORD, KEY, ID> setChained(boolean chained) {
+		this.chained = chained;
+		return this;
+	}
+
+	/**
+	 * Set whether the similarities of adjacent keys stored in the index are
+	 * used to stop expanding the window early. The window still contains
+	 * exactly the keys similar to the initial key, provided that one minus
+	 * the similarity satisfies the triangle inequality, like a normalized
+	 * distance. The similarity of the next key to the initial key is then at
+	 * most one minus the absolute difference between the similarity of the
+	 * current key to the initial key and the link similarity. If this bound
+	 * is below the threshold, the window is not expanded any further without
+	 * computing the similarity to the initial key.
+	 *
+	 * @param useLinkSimilarities
+	 *            whether link similarities should bound the similarity to the
+	 *            initial key
+	 * @return this
+	 */
+	public AdaptiveKeySimilarityWindowBuilder<RECORD, KEY, ID> setUseLinkSimilarities(boolean useLinkSimilarities) {
+		this.useLinkSimilarities = useLinkSimilarities;
+		return this;
 	}
 
 }
@@ -0,0 +1,210 @@
+package de.hpi.idd.dysni.window;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.sim.SimilarityClassifier;
+
+/**
+ * Decorator enforcing a {@link WindowBudget budget} on each window built by
+ * another {@link WindowBuilder window builder}. Candidates exceeding the
+ * budget are discarded. Builders extending {@link AbstractWindowBuilder} also
+ * stop expanding the window as soon as the budget is used up, so that the
+ * closest nodes in both directions are kept.
+ *
+ * <p>
+ * The budget applies to each window separately. To limit all windows built
+ * for a record across the indexes of a
+ * {@link de.hpi.idd.dysni.DynamicSortedNeighborhoodIndexer
+ * DynamicSortedNeighborhoodIndexer}, configure the budget of the indexer
+ * instead.
+ * </p>
+ *
+ * @param <RECORD>
+ *            type of elements associated with the index
+ * @param <KEY>
+ *            type of keys which the index is sorted by
+ * @param <ID>
+ *            type of ids representing the elements
+ */
+public class BudgetedWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID> implements WindowBuilder<RECORD, KEY, ID> {
+
+	/**
+	 * Sink tracking the budget of a single window. Each thread reuses its sink
+	 * for all of its windows.
+	 */
+	private class BudgetedSink implements CandidateSink<ID> {
+
+		private int comparisons;
+		private CandidateSink<ID> sink;
+		private long start;
+		private boolean truncated;
+
+		@Override
+		public void accept(ID id) {
+			if (admit()) {
+				sink.accept(id);
+			}
+		}
+
+		@Override
+		public void accept(ID id, SimilarityClassifier<?> classifier, boolean similar) {
+			if (admit()) {
+				sink.accept(id, classifier, similar);
+			}
+		}
+
+		/**
+		 * Pass all elements of the node on at once if the budget admits all of
+		 * them, so that the sink may use their tags.
+		 */
+		@Override
+		public void acceptElements(IndexNode<?, ? extends ID> node) {
+			int size = node.getElements().size();
+			if (size <= budget.getMaxComparisons() - comparisons) {
+				comparisons += size;
+				sink.acceptElements(node);
+			} else {
+				CandidateSink.super.acceptElements(node);
+			}
+		}
+
+		/**
+		 * Count a candidate unless the budget is used up.
+		 *
+		 * @return true if the candidate should be passed on
+		 */
+		private boolean admit() {
+			if (comparisons >= budget.getMaxComparisons()) {
+				truncated = true;
+				return false;
+			}
+			comparisons++;
+			return true;
+		}
+
+		@Override
+		public int getRemainingComparisons() {
+			return Math.min(budget.getMaxComparisons() - comparisons, sink.getRemainingComparisons());
+		}
+
+		@Override
+		public boolean isExhausted() {
+			return budget.isExhausted(comparisons, start) || sink.isExhausted();
+		}
+
+		@Override
+		public void markTruncated() {
+			truncated = true;
+		}
+
+		/**
+		 * Start tracking the budget of a new window.
+		 *
+		 * @param sink
+		 *            sink the candidates of the window are passed on to
+		 */
+		void reset(CandidateSink<ID> sink) {
+			this.sink = sink;
+			comparisons = 0;
+			start = System.nanoTime();
+			truncated = false;
+		}
+	}
+
+	private final WindowBudget budget;
+	private final WindowBuilder<RECORD, KEY, ID> builder;
+	/** sink of each thread */
+	private final ThreadLocal<BudgetedSink> sinks = ThreadLocal.withInitial(BudgetedSink::new);
+	/** number of windows truncated so far */
+	private final LongAdder truncations = new LongAdder();
+
+	/**
+	 * Construct a new window builder
+	 *
+	 * @param builder
+	 *            window builder whose windows should be limited
+	 * @param budget
+	 *            budget of each window
+	 */
+	public BudgetedWindowBuilder(WindowBuilder<RECORD, KEY, ID> builder, WindowBudget budget) {
+		this.builder = builder;
+		this.budget = budget;
+	}
+
+	/**
+	 * Build the window using the decorated builder. If the window was
+	 * truncated, the sink is {@link CandidateSink#markTruncated() notified}.
+	 */
+	@Override
+	public void buildWindow(RECORD record, IndexNode<KEY, ID> node, CandidateSink<ID> sink) {
+		BudgetedSink budgeted = sinks.get();
+		budgeted.reset(sink);
+		builder.buildWindow(record, node, budgeted);
+		finish(budgeted);
+	}
+
+	/**
+	 * Build the window using the decorated builder, passing the index on.
+	 */
+	@Override
+	public void buildWindow(RECORD record, SortedIndex<KEY, ID> index, IndexNode<KEY, ID> node,
+			CandidateSink<ID> sink) {
+		BudgetedSink budgeted = sinks.get();
+		budgeted.reset(sink);
+		builder.buildWindow(record, index, node, budgeted);
+		finish(budgeted);
+	}
+
+	/**
+	 * Decorate a copy of the decorated builder with the same budget. The
+	 * truncations of the copy are counted separately.
+	 */
+	@Override
+	public BudgetedWindowBuilder<RECORD, KEY, ID> copy() {
+		return new BudgetedWindowBuilder<>(builder.copy(), budget);
+	}
+
+	/**
+	 * Count the window and notify the sink if it was truncated.
+	 */
+	private void finish(BudgetedSink budgeted) {
+		if (budgeted.truncated) {
+			truncations.increment();
+			budgeted.sink.markTruncated();
+		}
+	}
+
+	/**
+	 * Get the budget of each window.
+	 *
+	 * @return the budget
+	 */
+	public WindowBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the number of windows truncated because their budget was used up.
+	 *
+	 * @return number of truncated windows
+	 */
+	public long getTruncations() {
+		return truncations.sum();
+	}
+
+	/**
+	 * Pass the feedback on to the decorated builder.
+	 */
+	@Override
+	public void matched(RECORD record, Collection<ID> matches) {
+		builder.matched(record, matches);
+	}
+
+	@Override
+	public boolean usesFeedback() {
+		return builder.usesFeedback();
+	}
+}
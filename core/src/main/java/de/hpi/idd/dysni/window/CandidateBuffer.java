@@ -0,0 +1,169 @@
+package de.hpi.idd.dysni.window;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reusable {@link CandidateSink} collecting distinct candidates in the order
+ * they are received. Duplicates are detected using an open addressing hash
+ * table. Once the buffer has grown to the size of the largest windows, adding
+ * candidates and {@link #reset(Object) resetting} the buffer does not allocate
+ * any memory. Resetting takes time linear to the number of candidates, not to
+ * the capacity of the buffer.
+ *
+ * <p>
+ * Buffers are not thread-safe and are meant to be reused by a single thread.
+ * </p>
+ *
+ * @param <ID>
+ *            type of ids representing the elements
+ */
+public class CandidateBuffer<ID> implements CandidateSink<ID> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static int hash(Object id) {
+		int h = id.hashCode();
+		return h ^ h >>> 16;
+	}
+
+	/** candidates in the order they were received */
+	private Object[] candidates = new Object[INITIAL_CAPACITY];
+	/** candidate that is ignored, e.g. the record itself */
+	private ID excluded;
+	/** number of candidates */
+	private int size = 0;
+	/** slots of the candidates in the hash table */
+	private int[] slots = new int[INITIAL_CAPACITY];
+	/** hash table of the candidates, at most half full */
+	private Object[] table = new Object[2 * INITIAL_CAPACITY];
+
+	/**
+	 * Add a candidate unless it is null, excluded or contained already.
+	 */
+	@Override
+	public void accept(ID id) {
+		if (id == null || id.equals(excluded)) {
+			return;
+		}
+		int mask = table.length - 1;
+		int slot = hash(id) & mask;
+		for (Object other = table[slot]; other != null; other = table[slot]) {
+			if (other.equals(id)) {
+				return;
+			}
+			slot = slot + 1 & mask;
+		}
+		if (size == candidates.length) {
+			candidates = Arrays.copyOf(candidates, 2 * size);
+			slots = Arrays.copyOf(slots, 2 * size);
+			table = new Object[4 * size];
+			rehash();
+			accept(id);
+			return;
+		}
+		table[slot] = id;
+		candidates[size] = id;
+		slots[size] = slot;
+		size++;
+	}
+
+	/**
+	 * Check whether the buffer contains a candidate.
+	 *
+	 * @param id
+	 *            id of the candidate
+	 * @return true if the candidate has been received since the last reset
+	 */
+	public boolean contains(Object id) {
+		if (id == null) {
+			return false;
+		}
+		int mask = table.length - 1;
+		for (int slot = hash(id) & mask; table[slot] != null; slot = slot + 1 & mask) {
+			if (table[slot].equals(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get a candidate by its position.
+	 *
+	 * @param index
+	 *            position of the candidate in the order they were received
+	 * @return the candidate
+	 */
+	@SuppressWarnings("unchecked")
+	public ID get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return (ID) candidates[index];
+	}
+
+	/**
+	 * Check whether the buffer is empty.
+	 *
+	 * @return true if no candidate has been received since the last reset
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void rehash() {
+		int mask = table.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hash(candidates[i]) & mask;
+			while (table[slot] != null) {
+				slot = slot + 1 & mask;
+			}
+			table[slot] = candidates[i];
+			slots[i] = slot;
+		}
+	}
+
+	/**
+	 * Remove all candidates.
+	 *
+	 * @param excluded
+	 *            candidate that should be ignored until the next reset, may be
+	 *            null
+	 */
+	public void reset(ID excluded) {
+		for (int i = 0; i < size; i++) {
+			table[slots[i]] = null;
+			candidates[i] = null;
+		}
+		size = 0;
+		this.excluded = excluded;
+	}
+
+	/**
+	 * Get the number of candidates.
+	 *
+	 * @return number of distinct candidates received since the last reset
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Stream the candidates. The buffer must not be modified while the stream
+	 * is consumed.
+	 *
+	 * @param parallel
+	 *            whether the stream should be parallel
+	 * @return stream of the candidates
+	 */
+	@SuppressWarnings("unchecked")
+	public Stream<ID> stream(boolean parallel) {
+		Spliterator<Object> spliterator = Spliterators.spliterator(candidates, 0, size,
+				Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED);
+		return (Stream<ID>) StreamSupport.stream(spliterator, parallel);
+	}
+}
@@ -0,0 +1,118 @@
+package de.hpi.idd.dysni.window;
+
+import java.util.Collection;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.sim.SimilarityClassifier;
+
+/**
+ * Receives the candidates of a window while it is built. Implementations may
+ * collect the candidates into reusable buffers, so that building a window
+ * does not allocate intermediate collections.
+ *
+ * @param <ID>
+ *            type of ids representing the elements
+ * @see WindowBuilder#buildWindow(Object, de.hpi.idd.dysni.index.IndexNode,
+ *      CandidateSink)
+ */
+@FunctionalInterface
+public interface CandidateSink<ID> {
+
+	/**
+	 * Receive a candidate.
+	 *
+	 * @param id
+	 *            id of the candidate
+	 */
+	void accept(ID id);
+
+	/**
+	 * Receive a candidate that the window builder already compared to the
+	 * record the window is built for. Sinks may reuse the verdict instead of
+	 * comparing the candidate again, provided it was made by the same
+	 * classifier. By default, the verdict is discarded.
+	 *
+	 * @param id
+	 *            id of the candidate
+	 * @param classifier
+	 *            classifier that compared the candidate to the record
+	 * @param similar
+	 *            whether the classifier regarded the candidate as similar
+	 */
+	default void accept(ID id, SimilarityClassifier<?> classifier, boolean similar) {
+		accept(id);
+	}
+
+	/**
+	 * Receive multiple candidates, e.g. all elements of a node.
+	 *
+	 * @param ids
+	 *            ids of the candidates
+	 */
+	default void acceptAll(Collection<? extends ID> ids) {
+		for (ID id : ids) {
+			accept(id);
+		}
+	}
+
+	/**
+	 * Receive all elements of a node as candidates. Sinks may override it to
+	 * make use of the {@link IndexNode#forEachTagged(de.hpi.idd.util.ElementCollection.TagConsumer)
+	 * tags} of the elements. By default, the elements are passed to
+	 * {@link #acceptAll(Collection)}.
+	 *
+	 * @param node
+	 *            node holding the ids of the candidates
+	 */
+	default void acceptElements(IndexNode<?, ? extends ID> node) {
+		acceptAll(node.getElements());
+	}
+
+	/**
+	 * Receive a candidate together with its
+	 * {@link IndexNode#setTag(Object, int) tag}, e.g. when replaying the
+	 * elements of a node recorded before. By default, the tag is discarded.
+	 *
+	 * @param id
+	 *            id of the candidate
+	 * @param tag
+	 *            tag of the candidate,
+	 *            {@link de.hpi.idd.util.ElementCollection#UNTAGGED} if it has
+	 *            none
+	 */
+	default void acceptTagged(ID id, int tag) {
+		accept(id);
+	}
+
+	/**
+	 * Get the number of candidates the sink still admits within its budget.
+	 * Window builders recording candidates elsewhere, e.g. while expanding a
+	 * window concurrently, count them against it. By default, sinks are
+	 * unlimited.
+	 *
+	 * @return number of candidates that may still be received, at most
+	 *         {@link Integer#MAX_VALUE}
+	 * @see WindowBudget#getMaxComparisons()
+	 */
+	default int getRemainingComparisons() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Check whether the budget of the sink is used up. Window builders stop
+	 * expanding the window once it is. By default, sinks are unlimited.
+	 *
+	 * @return true if no more candidates should be passed to the sink
+	 * @see WindowBudget
+	 */
+	default boolean isExhausted() {
+		return false;
+	}
+
+	/**
+	 * Notify the sink that a window was truncated because its budget was
+	 * used up. By default, the notification is ignored.
+	 */
+	default void markTruncated() {
+	}
+}
@@ -0,0 +1,306 @@
+package de.hpi.idd.dysni.window;
+
+import java.util.Arrays;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.sim.SimilarityClassifier;
+import de.hpi.idd.util.ElementCollection;
+import de.hpi.idd.util.ElementCollection.TagConsumer;
+import de.hpi.idd.util.IdDictionary;
+
+/**
+ * Reusable {@link CandidateSink} collecting distinct candidates as dense ints
+ * of an {@link IdDictionary}. Duplicates are detected by stamping the ints
+ * with the epoch of the buffer, which is increased whenever the buffer is
+ * {@link #reset(Object) reset}. Hence, no hash table needs to be built or
+ * cleared per record. Ids not contained in the dictionary are added to it.
+ *
+ * <p>
+ * If the elements of an index node are {@link IndexNode#setTag(Object, int)
+ * tagged} with the dense ints of their ids, they are
+ * {@link #acceptElements(IndexNode) received} without looking them up in the
+ * dictionary.
+ * </p>
+ *
+ * <p>
+ * Verdicts of window builders that already compared a candidate to the record
+ * are kept if they were made by the classifier the buffer was created for, so
+ * that the candidate does not need to be compared again.
+ * </p>
+ *
+ * <p>
+ * A {@link WindowBudget budget} can be enforced on all windows built for a
+ * record until the next reset. Candidates exceeding it are discarded and the
+ * buffer remembers that the windows were truncated.
+ * </p>
+ *
+ * <p>
+ * Buffers are not thread-safe and are meant to be reused by a single thread.
+ * They must not be used while another thread modifies the dictionary, unless
+ * it is a {@link de.hpi.idd.util.ConcurrentIdDictionary
+ * ConcurrentIdDictionary}.
+ * </p>
+ *
+ * @param <ID>
+ *            type of ids representing the elements
+ */
+public class DenseCandidateBuffer<ID> implements CandidateSink<ID> {
+
+	private static final byte DISSIMILAR = 2;
+	private static final byte SIMILAR = 1;
+	private static final byte UNKNOWN = 0;
+
+	/** budget of the windows built since the last reset */
+	private WindowBudget budget = WindowBudget.UNLIMITED;
+	/** dense ints of the candidates in the order they were received */
+	private int[] candidates = new int[16];
+	/** number of candidates with a verdict */
+	private int classified = 0;
+	/** classifier whose verdicts are kept, may be null */
+	private final SimilarityClassifier<?> classifier;
+	/** dictionary assigning dense ints to the ids */
+	private final IdDictionary<ID> dictionary;
+	/** current epoch, stamps of older epochs are ignored */
+	private int epoch = 1;
+	/** candidate that is ignored, e.g. the record itself */
+	private ID excluded;
+	/** number of candidates */
+	private int size = 0;
+	/** epoch in which each int has been received last */
+	private int[] stamps = new int[16];
+	/** {@link System#nanoTime()} of the last reset, if the budget is limited */
+	private long start;
+	/** receives tagged elements, created once to avoid allocations per node */
+	private final TagConsumer<ID> tagged = this::add;
+	/** whether a window was truncated since the last reset */
+	private boolean truncated = false;
+	/** verdicts of the candidates received in the current epoch */
+	private byte[] verdicts = new byte[16];
+
+	/**
+	 * Construct a new buffer discarding all verdicts.
+	 *
+	 * @param dictionary
+	 *            dictionary assigning dense ints to the ids
+	 */
+	public DenseCandidateBuffer(IdDictionary<ID> dictionary) {
+		this(dictionary, null);
+	}
+
+	/**
+	 * Construct a new buffer.
+	 *
+	 * @param dictionary
+	 *            dictionary assigning dense ints to the ids
+	 * @param classifier
+	 *            classifier whose verdicts should be kept
+	 */
+	public DenseCandidateBuffer(IdDictionary<ID> dictionary, SimilarityClassifier<?> classifier) {
+		this.dictionary = dictionary;
+		this.classifier = classifier;
+	}
+
+	/**
+	 * Add a candidate unless it is null, excluded or contained already.
+	 */
+	@Override
+	public void accept(ID id) {
+		add(id);
+	}
+
+	/**
+	 * Add a candidate and keep the verdict if it was made by the classifier of
+	 * the buffer.
+	 */
+	@Override
+	public void accept(ID id, SimilarityClassifier<?> classifier, boolean similar) {
+		int i = add(id);
+		if (i >= 0 && classifier == this.classifier) {
+			if (verdicts[i] == UNKNOWN) {
+				classified++;
+			}
+			verdicts[i] = similar ? SIMILAR : DISSIMILAR;
+		}
+	}
+
+	/**
+	 * Add the elements of a node using their tags as dense ints. Untagged
+	 * elements are looked up in the dictionary.
+	 */
+	@Override
+	public void acceptElements(IndexNode<?, ? extends ID> node) {
+		node.forEachTagged(tagged);
+	}
+
+	/**
+	 * Add a candidate using its tag as dense int. Untagged candidates are
+	 * looked up in the dictionary.
+	 */
+	@Override
+	public void acceptTagged(ID id, int tag) {
+		add(id, tag);
+	}
+
+	/**
+	 * Add a candidate unless it is null, excluded or contained already.
+	 *
+	 * @return dense int of the candidate, -1 if it is ignored
+	 */
+	private int add(ID id) {
+		return add(id, ElementCollection.UNTAGGED);
+	}
+
+	/**
+	 * Add a candidate unless it is null, excluded or contained already.
+	 *
+	 * @param tag
+	 *            dense int of the candidate,
+	 *            {@link ElementCollection#UNTAGGED} if it is unknown
+	 * @return dense int of the candidate, -1 if it is ignored
+	 */
+	private int add(ID id, int tag) {
+		if (id == null || id.equals(excluded)) {
+			return -1;
+		}
+		int i = tag == ElementCollection.UNTAGGED ? dictionary.add(id) : tag;
+		if (i >= stamps.length) {
+			int length = Math.max(2 * stamps.length, Math.max(i + 1, dictionary.capacity()));
+			stamps = Arrays.copyOf(stamps, length);
+			verdicts = Arrays.copyOf(verdicts, length);
+		}
+		if (stamps[i] == epoch) {
+			return i;
+		}
+		if (size >= budget.getMaxComparisons()) {
+			truncated = true;
+			return -1;
+		}
+		stamps[i] = epoch;
+		verdicts[i] = UNKNOWN;
+		if (size == candidates.length) {
+			candidates = Arrays.copyOf(candidates, 2 * size);
+		}
+		candidates[size++] = i;
+		return i;
+	}
+
+	/**
+	 * Get the candidates. Only the first {@link #size()} ints are valid. The
+	 * array is reused after the next reset.
+	 *
+	 * @return dense ints of the candidates
+	 */
+	public int[] getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Get the number of candidates whose verdict is known.
+	 *
+	 * @return number of candidates that do not need to be compared
+	 */
+	public int getClassified() {
+		return classified;
+	}
+
+	/**
+	 * Get the number of candidates admitted by the budget of the windows.
+	 */
+	@Override
+	public int getRemainingComparisons() {
+		return budget.getMaxComparisons() - size;
+	}
+
+	/**
+	 * Check whether the budget of the windows is used up.
+	 */
+	@Override
+	public boolean isExhausted() {
+		return budget.isExhausted(size, start);
+	}
+
+	/**
+	 * Check whether the verdict of a candidate is known.
+	 *
+	 * @param candidate
+	 *            dense int of the candidate
+	 * @return true if a window builder already compared the candidate using
+	 *         the classifier of the buffer
+	 */
+	public boolean isClassified(int candidate) {
+		return verdicts[candidate] != UNKNOWN;
+	}
+
+	/**
+	 * Get the verdict of a candidate.
+	 *
+	 * @param candidate
+	 *            dense int of a {@link #isClassified(int) classified}
+	 *            candidate
+	 * @return true if the candidate was regarded as similar
+	 */
+	public boolean isSimilar(int candidate) {
+		return verdicts[candidate] == SIMILAR;
+	}
+
+	/**
+	 * Check whether a window was truncated since the last reset because the
+	 * budget was used up.
+	 *
+	 * @return true if candidates may have been missed
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	@Override
+	public void markTruncated() {
+		truncated = true;
+	}
+
+	/**
+	 * Remove all candidates in constant time.
+	 *
+	 * @param excluded
+	 *            candidate that should be ignored until the next reset, may be
+	 *            null
+	 */
+	public void reset(ID excluded) {
+		reset(excluded, WindowBudget.UNLIMITED);
+	}
+
+	/**
+	 * Remove all candidates in constant time and start enforcing a budget on
+	 * the windows built until the next reset.
+	 *
+	 * @param excluded
+	 *            candidate that should be ignored until the next reset, may be
+	 *            null
+	 * @param budget
+	 *            budget of all windows built until the next reset
+	 */
+	public void reset(ID excluded, WindowBudget budget) {
+		if (++epoch == 0) {
+			// stamps of the previous cycle might collide
+			Arrays.fill(stamps, 0);
+			epoch = 1;
+		}
+		size = 0;
+		classified = 0;
+		this.excluded = excluded;
+		this.budget = budget;
+		truncated = false;
+		if (budget.getMaxNanos() != Long.MAX_VALUE) {
+			start = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Get the number of candidates.
+	 *
+	 * @return number of distinct candidates received since the last reset
+	 */
+	public int size() {
+		return size;
+	}
+}
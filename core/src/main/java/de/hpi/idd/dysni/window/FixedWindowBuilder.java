@@ -1,11 +1,6 @@
 package de.hpi.idd.dysni.window;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.function.Function;
-
-import de.hpi.idd.dysni.avl.Node;
+import de.hpi.idd.dysni.index.IndexNode;
 
 /**
  * {@link WindowBuilder Window builder} that expands the window with a fixed
@@ -18,7 +13,8 @@ import de.hpi.idd.dysni.avl.Node;
  * @param <ID>
  *            type of ids representing the elements
  */
-public class FixedWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID> implements WindowBuilder<RECORD, KEY, ID> {
+public class FixedWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID>
+		extends AbstractWindowBuilder<RECORD, KEY, ID> {
 
 	/** size of window in each direction */
 	private final int size;
@@ -33,34 +29,31 @@ public class FixedWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID> impleme
 		this.size = size;
 	}
 
-	@Override
-	public Collection<ID> buildWindow(RECORD rec, Node<KEY, ID> node) {
-		if (node == null) {
-			return Collections.emptyList();
-		}
-		Collection<ID> candidates = new ArrayList<>();
-		candidates.addAll(node.getElements());
-		candidates.addAll(expand(node, Node::getPrevious));
-		candidates.addAll(expand(node, Node::getNext));
-		return candidates;
-	}
-
 	/**
 	 * Expand window with a fixed number of nodes in each direction
-	 *
-	 * @param node
-	 *            node where expansion starts
-	 * @param f
-	 *            function to retrieve the next node
-	 * @return ids contained in the built window
 	 */
-	private Collection<ID> expand(Node<KEY, ID> node, Function<Node<KEY, ID>, Node<KEY, ID>> f) {
-		Collection<ID> candidates = new ArrayList<>();
-		node = f.apply(node);
-		for (int i = 0; i < size && node != null; i++, node = f.apply(node)) {
-			candidates.addAll(node.getElements());
-		}
-		return candidates;
+	@Override
+	protected Expansion<RECORD, KEY, ID> createExpansion(boolean forward) {
+		return new Expansion<RECORD, KEY, ID>(forward) {
+
+			/** number of nodes included so far */
+			private int nodes;
+
+			@Override
+			protected boolean expand(IndexNode<KEY, ID> current, IndexNode<KEY, ID> next, CandidateSink<ID> sink) {
+				if (nodes == size) {
+					return false;
+				}
+				sink.acceptElements(next);
+				nodes++;
+				return true;
+			}
+
+			@Override
+			protected void reset(RECORD record, IndexNode<KEY, ID> initial) {
+				nodes = 0;
+			}
+		};
 	}
 
 }
@@ -0,0 +1,265 @@
+package de.hpi.idd.dysni.window;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+
+/**
+ * {@link WindowBuilder Window builder} implementing blocking on top of a
+ * sorted index. The window consists of all nodes whose keys lie in a block,
+ * i.e. an interval of keys computed from the key of the record, such as all
+ * keys sharing a prefix with it. If an index maintaining order statistics is
+ * {@link #buildWindow(Object, SortedIndex, IndexNode, CandidateSink) passed},
+ * the number of nodes of the block on either side of the record is computed
+ * from the {@link SortedIndex#rank(Comparable) ranks} of the boundaries in
+ * logarithmic time and the window walks exactly that many nodes without
+ * comparing keys. Otherwise, the keys of the neighbors are compared to the
+ * boundaries. No similarities are computed.
+ *
+ * <p>
+ * Large blocks can be capped. The window then alternates between both
+ * directions starting at the node of the record until the cap is reached, so
+ * that the closest nodes of the block are included.
+ * </p>
+ *
+ * @param <RECORD>
+ *            type of elements associated with the index
+ * @param <KEY>
+ *            type of keys which the index is sorted by
+ * @param <ID>
+ *            type of ids representing the elements
+ */
+public class PrefixBlockWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID>
+		implements WindowBuilder<RECORD, KEY, ID> {
+
+	/**
+	 * Boundaries of the block of a window. They are given either by the
+	 * number of nodes of the block on each side of the node of the record, if
+	 * they were counted in the index, or by the computed keys.
+	 */
+	private static class Block<KEY extends Comparable<KEY>, ID> {
+
+		/** nodes of the block after the node of the record not visited yet */
+		private int after;
+		/** nodes of the block before the node of the record not visited yet */
+		private int before;
+		/** whether the nodes of the block were counted in the index */
+		private final boolean counted;
+		/** smallest key of the block */
+		private final KEY lower;
+		/** key after the block, null if the block is unbounded */
+		private final KEY upper;
+
+		Block(int before, int after) {
+			this.before = before;
+			this.after = after;
+			this.lower = null;
+			this.upper = null;
+			this.counted = true;
+		}
+
+		Block(KEY lower, KEY upper) {
+			this.lower = lower;
+			this.upper = upper;
+			this.counted = false;
+		}
+
+		boolean containsNext(IndexNode<KEY, ID> next) {
+			if (next == null) {
+				return false;
+			}
+			if (counted) {
+				return after-- > 0;
+			}
+			return upper == null || next.getKey().compareTo(upper) < 0;
+		}
+
+		boolean containsPrevious(IndexNode<KEY, ID> previous) {
+			if (previous == null) {
+				return false;
+			}
+			if (counted) {
+				return before-- > 0;
+			}
+			return previous.getKey().compareTo(lower) >= 0;
+		}
+	}
+
+	/**
+	 * Get the smallest string larger than all strings starting with a prefix.
+	 *
+	 * @return the successor of the prefix, null if there is none
+	 */
+	private static String successor(String prefix) {
+		int end = prefix.length();
+		while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+			end--;
+		}
+		if (end == 0) {
+			return null;
+		}
+		return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+	}
+
+	/**
+	 * Create a window builder whose blocks consist of all keys sharing the
+	 * first characters with the key of the record. Keys shorter than the
+	 * prefix form a block on their own.
+	 *
+	 * @param length
+	 *            length of the prefix
+	 * @param cap
+	 *            maximum number of candidates per window
+	 * @return window builder for string keys
+	 */
+	public static <RECORD, ID> PrefixBlockWindowBuilder<RECORD, String, ID> prefixes(int length, int cap) {
+		return new PrefixBlockWindowBuilder<>(key -> key.length() <= length ? key : key.substring(0, length),
+				key -> key.length() < length ? key + Character.MIN_VALUE : successor(key.substring(0, length)), cap);
+	}
+
+	/** maximum number of candidates per window */
+	private final int cap;
+	/** computes the smallest key of the block of a key */
+	private final Function<? super KEY, ? extends KEY> lowerBound;
+	/** computes the key after the block of a key, null if unbounded */
+	private final Function<? super KEY, ? extends KEY> upperBound;
+
+	/**
+	 * Construct a new window builder with uncapped blocks
+	 *
+	 * @param lowerBound
+	 *            computes the smallest key of the block of a key (inclusive)
+	 * @param upperBound
+	 *            computes the key after the block of a key (exclusive), may
+	 *            return null if the block is unbounded
+	 */
+	public PrefixBlockWindowBuilder(Function<? super KEY, ? extends KEY> lowerBound,
+			Function<? super KEY, ? extends KEY> upperBound) {
+		this(lowerBound, upperBound, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Construct a new window builder
+	 *
+	 * @param lowerBound
+	 *            computes the smallest key of the block of a key (inclusive)
+	 * @param upperBound
+	 *            computes the key after the block of a key (exclusive), may
+	 *            return null if the block is unbounded
+	 * @param cap
+	 *            maximum number of candidates per window
+	 */
+	public PrefixBlockWindowBuilder(Function<? super KEY, ? extends KEY> lowerBound,
+			Function<? super KEY, ? extends KEY> upperBound, int cap) {
+		if (cap <= 0) {
+			throw new IllegalArgumentException("Cap must be positive: " + cap);
+		}
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.cap = cap;
+	}
+
+	/**
+	 * Build the window by comparing the keys of the neighbors to the
+	 * boundaries of the block.
+	 */
+	@Override
+	public void buildWindow(RECORD rec, IndexNode<KEY, ID> node, CandidateSink<ID> sink) {
+		if (node == null) {
+			return;
+		}
+		KEY key = node.getKey();
+		collect(node, new Block<>(lowerBound.apply(key), upperBound.apply(key)), sink);
+	}
+
+	/**
+	 * Build the window after counting the nodes of the block in the index. If
+	 * the index does not maintain order statistics, the keys of the neighbors
+	 * are compared to the boundaries instead. The node has to be contained in
+	 * the current version of the index.
+	 */
+	@Override
+	public void buildWindow(RECORD rec, SortedIndex<KEY, ID> index, IndexNode<KEY, ID> node,
+			CandidateSink<ID> sink) {
+		if (node == null) {
+			return;
+		}
+		KEY key = node.getKey();
+		int rank = index.rank(key);
+		if (rank < 0) {
+			buildWindow(rec, node, sink);
+			return;
+		}
+		KEY upper = upperBound.apply(key);
+		int end = upper == null ? index.nodes() : index.rank(upper);
+		collect(node, new Block<>(rank - index.rank(lowerBound.apply(key)), end - rank - 1), sink);
+	}
+
+	/**
+	 * Collect the nodes of the block, alternating between both directions,
+	 * until the block or the cap is exhausted.
+	 *
+	 * @param node
+	 *            node of the record, which lies in the block
+	 * @param block
+	 *            boundaries of the block
+	 * @param sink
+	 *            receives the ids contained in the window
+	 */
+	private void collect(IndexNode<KEY, ID> node, Block<KEY, ID> block, CandidateSink<ID> sink) {
+		int candidates = accept(node.getElements(), 0, sink);
+		IndexNode<KEY, ID> previous = node;
+		IndexNode<KEY, ID> next = node;
+		while (candidates < cap && (previous != null || next != null)) {
+			if (previous != null) {
+				IndexNode<KEY, ID> candidate = previous.getPrevious();
+				previous = block.containsPrevious(candidate) ? candidate : null;
+				if (previous != null) {
+					if (sink.isExhausted()) {
+						sink.markTruncated();
+						return;
+					}
+					candidates = accept(previous.getElements(), candidates, sink);
+				}
+			}
+			if (next != null && candidates < cap) {
+				IndexNode<KEY, ID> candidate = next.getNext();
+				next = block.containsNext(candidate) ? candidate : null;
+				if (next != null) {
+					if (sink.isExhausted()) {
+						sink.markTruncated();
+						return;
+					}
+					candidates = accept(next.getElements(), candidates, sink);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pass ids to the sink until the cap is reached.
+	 *
+	 * @return number of candidates passed so far
+	 */
+	private int accept(Collection<ID> ids, int candidates, CandidateSink<ID> sink) {
+		for (ID id : ids) {
+			if (candidates == cap) {
+				break;
+			}
+			sink.accept(id);
+			candidates++;
+		}
+		return candidates;
+	}
+
+	/**
+	 * Get the maximum number of candidates per window.
+	 *
+	 * @return the cap, {@link Integer#MAX_VALUE} if blocks are not capped
+	 */
+	public int getCap() {
+		return cap;
+	}
+}
@@ -0,0 +1,264 @@
+package de.hpi.idd.dysni.window;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.hpi.idd.dysni.index.IndexNode;
+
+/**
+ * {@link WindowBuilder Window builder} that expands the window with a number
+ * of nodes in both directions, like the {@link FixedWindowBuilder}, but tunes
+ * that number to the data. It records a histogram of the rank distances, i.e.
+ * the number of nodes between the initial node and the node of a candidate, at
+ * which duplicates are {@link #matched(Object, Collection) found}. The size of
+ * the window is continuously set to the smallest distance that covers a
+ * configured percentile of the duplicates.
+ *
+ * <p>
+ * Duplicates beyond the current size of the window would never be observed.
+ * Therefore, every {@link #getExplorationInterval() n-th} window is built with
+ * the maximum size, and only these exploration windows are recorded in the
+ * histogram. The histogram is shared by all threads, the window most recently
+ * built is tracked per thread.
+ * </p>
+ *
+ * @param <RECORD>
+ *            type of elements associated with the index
+ * @param <KEY>
+ *            type of keys which the index is sorted by
+ * @param <ID>
+ *            type of ids representing the elements
+ */
+public class SelfTuningWindowBuilder<RECORD, KEY extends Comparable<KEY>, ID>
+		extends AbstractWindowBuilder<RECORD, KEY, ID> {
+
+	/** Window most recently built by a thread. */
+	private static class Window<ID> {
+		/** rank distances of the candidates, only tracked when exploring */
+		private final Map<ID, Integer> distances = new HashMap<>();
+		/** whether the window was built with the maximum size */
+		private boolean exploring = false;
+	}
+
+	/** default number of windows per exploration window */
+	public static final int DEFAULT_EXPLORATION_INTERVAL = 16;
+
+	/** number of windows per exploration window */
+	private final int explorationInterval;
+	/** number of duplicates found per rank distance */
+	private final AtomicLongArray histogram;
+	/** size of exploration windows in each direction */
+	private final int maximum;
+	/** number of duplicates found in exploration windows */
+	private final AtomicLong observations = new AtomicLong();
+	/** fraction of duplicates the window should cover */
+	private final double percentile;
+	/** current size of window in each direction */
+	private volatile int size;
+	/** window most recently built by each thread */
+	private final ThreadLocal<Window<ID>> windows = ThreadLocal.withInitial(Window::new);
+	/** number of windows built so far */
+	private final AtomicLong windowCount = new AtomicLong();
+
+	/**
+	 * Construct a new window builder exploring every
+	 * {@link #DEFAULT_EXPLORATION_INTERVAL}-th window
+	 *
+	 * @param initial
+	 *            size of window in each direction until duplicates have been
+	 *            observed
+	 * @param maximum
+	 *            maximum size of window in each direction
+	 * @param percentile
+	 *            fraction of duplicates the window should cover, e.g. 0.99
+	 */
+	public SelfTuningWindowBuilder(int initial, int maximum, double percentile) {
+		this(initial, maximum, percentile, DEFAULT_EXPLORATION_INTERVAL);
+	}
+
+	/**
+	 * Construct a new window builder
+	 *
+	 * @param initial
+	 *            size of window in each direction until duplicates have been
+	 *            observed
+	 * @param maximum
+	 *            maximum size of window in each direction
+	 * @param percentile
+	 *            fraction of duplicates the window should cover, e.g. 0.99
+	 * @param explorationInterval
+	 *            every n-th window is built with the maximum size
+	 */
+	public SelfTuningWindowBuilder(int initial, int maximum, double percentile, int explorationInterval) {
+		if (initial < 0 || initial > maximum) {
+			throw new IllegalArgumentException("Initial size must lie between 0 and " + maximum + ": " + initial);
+		}
+		if (percentile <= 0.0 || percentile > 1.0) {
+			throw new IllegalArgumentException("Percentile must lie in (0, 1]: " + percentile);
+		}
+		if (explorationInterval <= 0) {
+			throw new IllegalArgumentException("Exploration interval must be positive: " + explorationInterval);
+		}
+		this.size = initial;
+		this.maximum = maximum;
+		this.percentile = percentile;
+		this.explorationInterval = explorationInterval;
+		this.histogram = new AtomicLongArray(maximum + 1);
+	}
+
+	@Override
+	public void buildWindow(RECORD record, IndexNode<KEY, ID> node, CandidateSink<ID> sink) {
+		Window<ID> window = windows.get();
+		window.distances.clear();
+		window.exploring = node != null && windowCount.getAndIncrement() % explorationInterval == 0;
+		if (window.exploring) {
+			for (ID id : node.getElements()) {
+				window.distances.put(id, 0);
+			}
+		}
+		super.buildWindow(record, node, sink);
+	}
+
+	/**
+	 * Create a builder starting from the current size and histogram of this
+	 * builder. Both builders are tuned separately afterwards.
+	 */
+	@Override
+	public SelfTuningWindowBuilder<RECORD, KEY, ID> copy() {
+		SelfTuningWindowBuilder<RECORD, KEY, ID> copy = new SelfTuningWindowBuilder<>(size, maximum, percentile,
+				explorationInterval);
+		for (int distance = 0; distance < histogram.length(); distance++) {
+			copy.histogram.set(distance, histogram.get(distance));
+		}
+		copy.observations.set(observations.get());
+		return copy;
+	}
+
+	/**
+	 * Expand window with the current number of nodes in each direction, or the
+	 * maximum number when exploring.
+	 */
+	@Override
+	protected Expansion<RECORD, KEY, ID> createExpansion(boolean forward) {
+		return new Expansion<RECORD, KEY, ID>(forward) {
+
+			/** maximum number of nodes included */
+			private int limit;
+			/** number of nodes included so far */
+			private int nodes;
+			/** window of the thread the expansion was started on */
+			private Window<ID> window;
+
+			@Override
+			protected boolean expand(IndexNode<KEY, ID> current, IndexNode<KEY, ID> next, CandidateSink<ID> sink) {
+				if (nodes == limit) {
+					return false;
+				}
+				nodes++;
+				for (ID id : next.getElements()) {
+					if (window.exploring) {
+						window.distances.putIfAbsent(id, nodes);
+					}
+					sink.accept(id);
+				}
+				return true;
+			}
+
+			@Override
+			protected void reset(RECORD record, IndexNode<KEY, ID> initial) {
+				window = windows.get();
+				limit = window.exploring ? maximum : size;
+				nodes = 0;
+			}
+		};
+	}
+
+	/**
+	 * Get the number of windows per exploration window.
+	 *
+	 * @return every n-th window is built with the maximum size
+	 */
+	public int getExplorationInterval() {
+		return explorationInterval;
+	}
+
+	/**
+	 * Get the histogram of the rank distances of duplicates found in
+	 * exploration windows.
+	 *
+	 * @return number of duplicates per rank distance from 0 to the maximum
+	 *         size
+	 */
+	public long[] getHistogram() {
+		long[] counts = new long[histogram.length()];
+		for (int distance = 0; distance < counts.length; distance++) {
+			counts[distance] = histogram.get(distance);
+		}
+		return counts;
+	}
+
+	/**
+	 * Get the current size of the window.
+	 *
+	 * @return number of nodes in each direction
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Record the rank distances of the duplicates if the window most recently
+	 * built by the current thread was an exploration window and resize the
+	 * window.
+	 */
+	@Override
+	public void matched(RECORD record, Collection<ID> matches) {
+		Window<ID> window = windows.get();
+		if (!window.exploring) {
+			return;
+		}
+		window.exploring = false;
+		int observed = 0;
+		for (ID match : matches) {
+			Integer distance = window.distances.get(match);
+			if (distance != null) {
+				histogram.incrementAndGet(distance);
+				observed++;
+			}
+		}
+		window.distances.clear();
+		if (observed > 0) {
+			resize(observations.addAndGet(observed));
+		}
+	}
+
+	/**
+	 * Set the size of the window to the smallest rank distance covering the
+	 * percentile of the duplicates observed so far.
+	 *
+	 * @param total
+	 *            number of duplicates observed so far
+	 */
+	private void resize(long total) {
+		long covered = 0;
+		for (int distance = 0; distance < histogram.length(); distance++) {
+			covered += histogram.get(distance);
+			if ((double) covered / total >= percentile) {
+				size = distance;
+				return;
+			}
+		}
+		size = maximum;
+	}
+
+	/**
+	 * The size of the window is tuned to the feedback.
+	 */
+	@Override
+	public boolean usesFeedback() {
+		return true;
+	}
+}
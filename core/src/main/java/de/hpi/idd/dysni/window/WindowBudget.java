@@ -0,0 +1,121 @@
+package de.hpi.idd.dysni.window;
+
+/**
+ * Budget limiting the windows built for a record, either by the number of
+ * candidates, and therefore comparisons, or by the time spent building them.
+ * Budgets are immutable and can be shared, the candidates and start time are
+ * tracked by the {@link CandidateSink sinks} enforcing them.
+ *
+ * @see BudgetedWindowBuilder
+ * @see DenseCandidateBuffer#reset(Object, WindowBudget)
+ */
+public final class WindowBudget {
+
+	/** budget without any limits */
+	public static final WindowBudget UNLIMITED = new WindowBudget(Integer.MAX_VALUE, Long.MAX_VALUE);
+
+	/**
+	 * Create a budget limiting the number of comparisons.
+	 *
+	 * @param maxComparisons
+	 *            maximum number of candidates per record
+	 * @return budget without time limit
+	 */
+	public static WindowBudget comparisons(int maxComparisons) {
+		return UNLIMITED.withComparisons(maxComparisons);
+	}
+
+	/**
+	 * Create a budget limiting the time spent building windows.
+	 *
+	 * @param maxNanos
+	 *            maximum number of nanoseconds per record
+	 * @return budget without limit of comparisons
+	 */
+	public static WindowBudget nanos(long maxNanos) {
+		return UNLIMITED.withNanos(maxNanos);
+	}
+
+	private final int maxComparisons;
+	private final long maxNanos;
+
+	private WindowBudget(int maxComparisons, long maxNanos) {
+		if (maxComparisons < 0) {
+			throw new IllegalArgumentException("Maximum number of comparisons must not be negative: " + maxComparisons);
+		}
+		if (maxNanos < 0L) {
+			throw new IllegalArgumentException("Maximum number of nanoseconds must not be negative: " + maxNanos);
+		}
+		this.maxComparisons = maxComparisons;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * Get the maximum number of candidates per record.
+	 *
+	 * @return maximum number of comparisons, {@link Integer#MAX_VALUE} if
+	 *         unlimited
+	 */
+	public int getMaxComparisons() {
+		return maxComparisons;
+	}
+
+	/**
+	 * Get the maximum time spent building the windows of a record.
+	 *
+	 * @return maximum number of nanoseconds, {@link Long#MAX_VALUE} if
+	 *         unlimited
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * Check whether the budget is used up.
+	 *
+	 * @param comparisons
+	 *            number of candidates received so far
+	 * @param start
+	 *            {@link System#nanoTime()} when building the windows started
+	 * @return true if no more candidates should be received
+	 */
+	public boolean isExhausted(int comparisons, long start) {
+		return comparisons >= maxComparisons || maxNanos != Long.MAX_VALUE && System.nanoTime() - start >= maxNanos;
+	}
+
+	/**
+	 * Check whether the budget has any limits.
+	 *
+	 * @return false if the budget never runs out
+	 */
+	public boolean isLimited() {
+		return maxComparisons != Integer.MAX_VALUE || maxNanos != Long.MAX_VALUE;
+	}
+
+	@Override
+	public String toString() {
+		return "WindowBudget[comparisons=" + maxComparisons + ", nanos=" + maxNanos + "]";
+	}
+
+	/**
+	 * Derive a budget with another limit of comparisons.
+	 *
+	 * @param maxComparisons
+	 *            maximum number of candidates per record
+	 * @return budget with the same time limit
+	 */
+	public WindowBudget withComparisons(int maxComparisons) {
+		return new WindowBudget(maxComparisons, maxNanos);
+	}
+
+	/**
+	 * Derive a budget with another time limit.
+	 *
+	 * @param maxNanos
+	 *            maximum number of nanoseconds per record
+	 * @return budget with the same limit of comparisons
+	 */
+	public WindowBudget withNanos(long maxNanos) {
+		return new WindowBudget(maxComparisons, maxNanos);
+	}
+}
@@ -1,8 +1,11 @@
 package de.hpi.idd.dysni.window;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Supplier;
 
-import de.hpi.idd.dysni.avl.Node;
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
 
 /**
  * Interface for building windows when retrieving candidates in a DySNIndex
@@ -26,6 +29,88 @@ public interface WindowBuilder<RECORD, KEY extends Comparable<KEY>, ID> {
 	 *            from this node.
 	 * @return ids contained in the built window
 	 */
-	Collection<ID> buildWindow(RECORD record, Node<KEY, ID> node);
+	default Collection<ID> buildWindow(RECORD record, IndexNode<KEY, ID> node) {
+		Collection<ID> candidates = new ArrayList<>();
+		buildWindow(record, node, candidates::add);
+		return candidates;
+	}
+
+	/**
+	 * Build a window starting at the specified node for the specified record
+	 * and pass the ids contained in it to a sink. The sink may receive an id
+	 * more than once.
+	 *
+	 * @param record
+	 *            the record for which possible duplicates should be found
+	 * @param node
+	 *            the node containing the record, may be null. The window is
+	 *            built starting from this node.
+	 * @param sink
+	 *            receives the ids contained in the built window
+	 */
+	void buildWindow(RECORD record, IndexNode<KEY, ID> node, CandidateSink<ID> sink);
+
+	/**
+	 * Build a window starting at the specified node with access to the index
+	 * containing it, e.g. to locate the boundaries of the window by searching
+	 * the index. Must be called inside {@link SortedIndex#read(Supplier)},
+	 * between {@link SortedIndex#beginRead()} and
+	 * {@link SortedIndex#endRead(long)} or optimistically between
+	 * {@link SortedIndex#tryOptimisticRead()} and
+	 * {@link SortedIndex#validate(long)}. In the latter case, the sink is
+	 * discarded unless the read is valid. By default, the index is ignored.
+	 *
+	 * @param record
+	 *            the record for which possible duplicates should be found
+	 * @param index
+	 *            the index containing the node
+	 * @param node
+	 *            the node containing the record, may be null. The window is
+	 *            built starting from this node.
+	 * @param sink
+	 *            receives the ids contained in the built window
+	 */
+	default void buildWindow(RECORD record, SortedIndex<KEY, ID> index, IndexNode<KEY, ID> node,
+			CandidateSink<ID> sink) {
+		buildWindow(record, node, sink);
+	}
+
+	/**
+	 * Get a builder with the same configuration for another index, e.g. the
+	 * larger part of a split index. Builders keeping state about the windows
+	 * of their index, such as the {@link #matched(Object, Collection)
+	 * feedback}, return a copy so that the windows of the two indexes do not
+	 * interfere. By default, the builder is returned itself.
+	 *
+	 * @return builder for another index
+	 */
+	default WindowBuilder<RECORD, KEY, ID> copy() {
+		return this;
+	}
+
+	/**
+	 * Receive the candidates of the window most recently built by the current
+	 * thread that turned out to be duplicates of the record. Builders may use
+	 * this feedback to tune their windows. By default, it is ignored.
+	 *
+	 * @param record
+	 *            the record the window was built for
+	 * @param matches
+	 *            ids of the candidates determined similar to the record
+	 */
+	default void matched(RECORD record, Collection<ID> matches) {
+	}
+
+	/**
+	 * Check whether the windows depend on the feedback received by
+	 * {@link #matched(Object, Collection)}. Batch inserts then have to match
+	 * each record before building the window of the next record. By default,
+	 * the feedback is ignored.
+	 *
+	 * @return true if the feedback of a window affects the windows built later
+	 */
+	default boolean usesFeedback() {
+		return false;
+	}
 
 }
@@ -24,6 +24,15 @@ public abstract class JDBCStore<K, V> implements RecordStore<K, V> {
 		}
 	}
 
+	@Override
+	public void deleteRecord(K id) throws StoreException {
+		try {
+			prepareDelete(id).executeUpdate();
+		} catch (SQLException e) {
+			throw new StoreException("Error deleting record from database", e);
+		}
+	}
+
 	protected abstract V deserialize(ResultSet rs);
 
 	protected abstract Connection establishConnection();
@@ -43,6 +52,21 @@ public abstract class JDBCStore<K, V> implements RecordStore<K, V> {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Prepare the statement deleting a record. Subclasses supporting
+	 * {@link #deleteRecord(Object)} must override this method.
+	 *
+	 * @param id
+	 *            id of the record to be deleted
+	 * @return the statement
+	 * @throws UnsupportedOperationException
+	 *             if the store does not support deletion
+	 */
+	protected PreparedStatement prepareDelete(K id) {
+		throw new UnsupportedOperationException(
+				getClass().getName() + " does not support deleting records, override prepareDelete to enable it");
+	}
+
 	protected abstract PreparedStatement prepareInsert(K id, V record);
 
 	protected abstract PreparedStatement prepareSelect(K id);
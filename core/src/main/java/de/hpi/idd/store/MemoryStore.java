@@ -1,21 +1,37 @@
 package de.hpi.idd.store;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Record store keeping the records in memory. It is thread-safe, records can
+ * be stored and retrieved concurrently.
+ *
+ * @param <K>
+ *            type of the ids
+ * @param <V>
+ *            type of the records
+ */
 public class MemoryStore<K, V> implements RecordStore<K, V> {
 
-	private final Map<K, V> store = new HashMap<>();
+	private final Map<K, V> store = new ConcurrentHashMap<>();
 
 	@Override
 	public void close() {
 	}
 
+	@Override
+	public void deleteRecord(K id) {
+		if (id != null) {
+			store.remove(id);
+		}
+	}
+
 	@Override
 	public V getRecord(K id) {
-		return store.get(id);
+		return id == null ? null : store.get(id);
 	}
 
 	@Override
@@ -30,4 +46,14 @@ public class MemoryStore<K, V> implements RecordStore<K, V> {
 		}
 		store.put(id, record);
 	}
+
+	@Override
+	public void storeRecords(Map<K, V> records) {
+		for (K id : records.keySet()) {
+			if (id == null) {
+				throw new NullPointerException("Cannot store record with no id");
+			}
+		}
+		store.putAll(records);
+	}
 }
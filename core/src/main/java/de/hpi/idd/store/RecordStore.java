@@ -1,6 +1,7 @@
 package de.hpi.idd.store;
 
 import java.io.Closeable;
+import java.util.Map;
 import java.util.Map.Entry;
 
 /**
@@ -16,6 +17,19 @@ public interface RecordStore<K, V> extends Closeable, Iterable<Entry<K, V>> {
 	@Override
 	void close() throws StoreException;
 
+	/**
+	 * Delete a record based on its id. By default, records cannot be deleted.
+	 *
+	 * @param id
+	 *            id of the record to be deleted
+	 * @throws StoreException
+	 * @throws UnsupportedOperationException
+	 *             if the store does not support deleting records
+	 */
+	default void deleteRecord(K id) throws StoreException {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support deleting records");
+	}
+
 	/**
 	 * Retrieve record based on its id
 	 *
@@ -36,4 +50,18 @@ public interface RecordStore<K, V> extends Closeable, Iterable<Entry<K, V>> {
 	 * @throws StoreException
 	 */
 	void storeRecord(K id, V record) throws StoreException;
+
+	/**
+	 * Store a batch of records based on their ids. By default, the records are
+	 * stored one by one.
+	 *
+	 * @param records
+	 *            records to be stored by their id
+	 * @throws StoreException
+	 */
+	default void storeRecords(Map<K, V> records) throws StoreException {
+		for (Entry<K, V> entry : records.entrySet()) {
+			storeRecord(entry.getKey(), entry.getValue());
+		}
+	}
 }
@@ -0,0 +1,172 @@
+package de.hpi.idd.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs an action for a range of indexes on a dedicated {@link Executor}, e.g.
+ * to compare a record to its candidates. The range is split into chunks of a
+ * fixed size, each submitted as a single task, so that the overhead of
+ * scheduling is amortized over several comparisons. The calling thread
+ * processes the first chunk itself and waits for the others afterwards.
+ *
+ * <p>
+ * In contrast to parallel streams, which run on the common
+ * {@link java.util.concurrent.ForkJoinPool ForkJoinPool}, the executor can be
+ * sized for the workload. If the comparisons block on retrieving records from
+ * a store, an executor of {@link #newVirtualThreadExecutor() virtual threads}
+ * may be used on Java 21 and later.
+ * </p>
+ */
+public class ChunkedExecutor {
+
+	/** default number of indexes per task */
+	public static final int DEFAULT_CHUNK_SIZE = 64;
+
+	/**
+	 * Create an executor starting a new virtual thread for each task. The
+	 * executor is looked up reflectively, so that this class still runs on
+	 * Java 8.
+	 *
+	 * @return executor of virtual threads
+	 * @throws UnsupportedOperationException
+	 *             if the JVM does not support virtual threads
+	 * @see #supportsVirtualThreads()
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later", e);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new UnsupportedOperationException("Virtual threads are not available", e);
+		}
+	}
+
+	/**
+	 * Check whether the JVM supports virtual threads.
+	 *
+	 * @return true if {@link #newVirtualThreadExecutor()} can be used
+	 */
+	public static boolean supportsVirtualThreads() {
+		try {
+			newVirtualThreadExecutor().shutdown();
+			return true;
+		} catch (UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/** number of indexes per task */
+	private final int chunkSize;
+	private final Executor executor;
+
+	/**
+	 * Construct a new chunked executor with chunks of
+	 * {@link #DEFAULT_CHUNK_SIZE} indexes.
+	 *
+	 * @param executor
+	 *            executor running the chunks, e.g. an
+	 *            {@link java.util.concurrent.ExecutorService ExecutorService}
+	 *            or a dedicated {@link java.util.concurrent.ForkJoinPool
+	 *            ForkJoinPool}
+	 */
+	public ChunkedExecutor(Executor executor) {
+		this(executor, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Construct a new chunked executor.
+	 *
+	 * @param executor
+	 *            executor running the chunks
+	 * @param chunkSize
+	 *            number of indexes per task
+	 */
+	public ChunkedExecutor(Executor executor, int chunkSize) {
+		if (executor == null) {
+			throw new NullPointerException("Executor must not be null");
+		}
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Run an action for each index of a range and wait until all of them have
+	 * completed. The action is run concurrently for indexes of different
+	 * chunks. Its effects are visible to the calling thread afterwards. If the
+	 * action fails, the call still waits for all chunks before rethrowing the
+	 * failure.
+	 *
+	 * @param size
+	 *            number of indexes, starting at 0
+	 * @param action
+	 *            action to be run for each index
+	 * @throws RuntimeException
+	 *             if the action failed for any index
+	 */
+	public void forEach(int size, IntConsumer action) {
+		int chunks = (size + chunkSize - 1) / chunkSize;
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[Math.max(0, chunks - 1)];
+		for (int chunk = 1; chunk < chunks; chunk++) {
+			int from = chunk * chunkSize;
+			int to = Math.min(size, from + chunkSize);
+			futures[chunk - 1] = CompletableFuture.runAsync(() -> run(from, to, action), executor);
+		}
+		RuntimeException failure = null;
+		try {
+			run(0, Math.min(size, chunkSize), action);
+		} catch (RuntimeException e) {
+			failure = e;
+		} finally {
+			// the other chunks must not outlive the call, even if the first
+			// one failed
+			try {
+				CompletableFuture.allOf(futures).join();
+			} catch (CompletionException e) {
+				RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+						: e;
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Get the number of indexes per task.
+	 *
+	 * @return the chunk size
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Get the executor running the chunks.
+	 *
+	 * @return the executor
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	private static void run(int from, int to, IntConsumer action) {
+		for (int i = from; i < to; i++) {
+			action.accept(i);
+		}
+	}
+}
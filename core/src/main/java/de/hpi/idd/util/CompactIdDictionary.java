@@ -0,0 +1,93 @@
+package de.hpi.idd.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link IdDictionary} reusing the ints of removed ids, so that the ints stay
+ * within the range of the number of ids contained.
+ *
+ * <p>
+ * The dictionary is not thread-safe. Concurrent {@link #get(int) lookups} are
+ * safe as long as the dictionary is not modified.
+ * </p>
+ *
+ * @param <T>
+ *            type of the ids
+ */
+public class CompactIdDictionary<T> implements IdDictionary<T> {
+
+	/** ints of removed ids */
+	private int[] free = new int[0];
+	/** number of ints of removed ids */
+	private int freeCount = 0;
+	/** maps ints to ids */
+	private Object[] ids = new Object[16];
+	/** maps ids to ints */
+	private final Map<T, Integer> ints = new HashMap<>();
+	/** number of ints ever assigned */
+	private int next = 0;
+
+	@Override
+	public int add(T id) {
+		Integer value = ints.get(id);
+		if (value != null) {
+			return value;
+		}
+		if (id == null) {
+			throw new NullPointerException("Id must not be null");
+		}
+		int i;
+		if (freeCount > 0) {
+			i = free[--freeCount];
+		} else {
+			i = next++;
+			if (i == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * i);
+			}
+		}
+		ids[i] = id;
+		ints.put(id, i);
+		return i;
+	}
+
+	@Override
+	public int capacity() {
+		return next;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int i) {
+		return (T) ids[i];
+	}
+
+	@Override
+	public int indexOf(Object id) {
+		Integer value = ints.get(id);
+		return value == null ? -1 : value;
+	}
+
+	/**
+	 * Remove an id. Its int is assigned to the next id added.
+	 */
+	@Override
+	public boolean remove(Object id) {
+		Integer value = ints.remove(id);
+		if (value == null) {
+			return false;
+		}
+		ids[value] = null;
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, Math.max(16, 2 * freeCount));
+		}
+		free[freeCount++] = value;
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return ints.size();
+	}
+}
@@ -0,0 +1,122 @@
+package de.hpi.idd.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Thread-safe {@link IdDictionary}. Ids are mapped to ints by a
+ * {@link ConcurrentHashMap}, so that lookups never block. New ints are drawn
+ * from an atomic counter, and the ids are stored in segments of a fixed size,
+ * which are only allocated under the monitor of the dictionary.
+ *
+ * <p>
+ * Unlike in the {@link CompactIdDictionary}, the ints of removed ids are never
+ * reused. A thread holding the int of an id that is removed concurrently
+ * therefore {@link #get(int) gets} null rather than another id. In return,
+ * the {@link #capacity() capacity} grows with the number of ids ever added.
+ * </p>
+ *
+ * @param <T>
+ *            type of the ids
+ */
+public class ConcurrentIdDictionary<T> implements IdDictionary<T> {
+
+	private static final int SEGMENT_BITS = 10;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+	/** assigns a new int, created once to avoid allocations per lookup */
+	private final Function<T, Integer> assign = this::assign;
+	/** maps ids to ints */
+	private final ConcurrentMap<T, Integer> ints = new ConcurrentHashMap<>();
+	/** number of ints ever assigned */
+	private final AtomicInteger next = new AtomicInteger();
+	/** maps ints to ids, segments are allocated on demand */
+	private volatile Object[][] segments = new Object[16][];
+
+	@Override
+	public int add(T id) {
+		if (id == null) {
+			throw new NullPointerException("Id must not be null");
+		}
+		Integer value = ints.get(id);
+		if (value != null) {
+			return value;
+		}
+		return ints.computeIfAbsent(id, assign);
+	}
+
+	/**
+	 * Assign a new int to an id, called at most once per id by the map.
+	 */
+	private Integer assign(T id) {
+		int i = next.getAndIncrement();
+		segment(i)[i & (SEGMENT_SIZE - 1)] = id;
+		return i;
+	}
+
+	@Override
+	public int capacity() {
+		return next.get();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int i) {
+		Object[][] segments = this.segments;
+		int s = i >>> SEGMENT_BITS;
+		if (s >= segments.length || segments[s] == null) {
+			return null;
+		}
+		return (T) segments[s][i & (SEGMENT_SIZE - 1)];
+	}
+
+	@Override
+	public int indexOf(Object id) {
+		Integer value = id == null ? null : ints.get(id);
+		return value == null ? -1 : value;
+	}
+
+	/**
+	 * Remove an id. Its int is not reused.
+	 */
+	@Override
+	public boolean remove(Object id) {
+		Integer value = id == null ? null : ints.remove(id);
+		if (value == null) {
+			return false;
+		}
+		segment(value)[value & (SEGMENT_SIZE - 1)] = null;
+		return true;
+	}
+
+	/**
+	 * Get the segment storing an int, allocating it if necessary.
+	 */
+	private Object[] segment(int i) {
+		int s = i >>> SEGMENT_BITS;
+		Object[][] segments = this.segments;
+		if (s < segments.length && segments[s] != null) {
+			return segments[s];
+		}
+		synchronized (this) {
+			segments = this.segments;
+			if (s >= segments.length) {
+				segments = Arrays.copyOf(segments, Math.max(2 * segments.length, s + 1));
+			}
+			if (segments[s] == null) {
+				segments[s] = new Object[SEGMENT_SIZE];
+			}
+			// publish the new segment
+			this.segments = segments;
+			return segments[s];
+		}
+	}
+
+	@Override
+	public int size() {
+		return ints.size();
+	}
+}
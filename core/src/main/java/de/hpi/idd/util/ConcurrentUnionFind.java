@@ -0,0 +1,258 @@
+package de.hpi.idd.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
+
+/**
+ * Thread-safe {@link DisjointSets} without a global lock.
+ *
+ * <p>
+ * Elements are mapped to their nodes by a {@link ConcurrentHashMap}. Finding
+ * the root of a node never blocks, path compression swings parent pointers to
+ * the grandparent by compare-and-set. As parents only ever move towards the
+ * root, concurrent compressions cannot disconnect a node. Each component is
+ * guarded by the monitor of its root: a union locks both roots in a global
+ * order and retries if one of them was linked below another root meanwhile.
+ * Hence, unions of different components proceed in parallel.
+ * </p>
+ *
+ * <p>
+ * The nodes of a component form a cyclic list, which two unions merge in
+ * constant time by swapping the successors of the roots. Components are
+ * enumerated and removed by walking the list while holding the monitor of
+ * the root, so that they are consistent. {@link #iterator() Iterators}
+ * operate on a copy of the components, each of which is consistent on its
+ * own.
+ * </p>
+ *
+ * @param <T>
+ *            type of the elements
+ */
+public class ConcurrentUnionFind<T> implements DisjointSets<T> {
+
+	/**
+	 * Node of a tree, which is also linked to the other nodes of its
+	 * component in a cyclic list.
+	 */
+	private static class Node<U> {
+
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Node, Node> PARENT = AtomicReferenceFieldUpdater
+				.newUpdater(Node.class, Node.class, "parent");
+
+		private final U element;
+		/** successor in the cyclic list of the component, guarded by the root */
+		private Node<U> next = this;
+		/** position in the global lock order */
+		private final long order;
+		/** null for roots, only moves towards the root afterwards */
+		private volatile Node<U> parent;
+		/** rank of a root, guarded by its monitor */
+		private byte rank;
+		/** whether the component of a root was removed, guarded by its monitor */
+		private boolean removed;
+
+		private Node(U element, long order) {
+			this.element = element;
+			this.order = order;
+		}
+
+		/**
+		 * Find the root of the tree containing this node, compressing the path
+		 * by halving.
+		 */
+		@SuppressWarnings("unchecked")
+		private Node<U> find() {
+			Node<U> node = this;
+			Node<U> parent;
+			while ((parent = node.parent) != null) {
+				Node<U> grandparent = parent.parent;
+				if (grandparent == null) {
+					return parent;
+				}
+				PARENT.compareAndSet(node, parent, grandparent);
+				node = grandparent;
+			}
+			return node;
+		}
+	}
+
+	/** Nodes rooting a tree */
+	private final AtomicInteger count = new AtomicInteger();
+	/** creates the node of an element, created once to avoid allocations */
+	private final Function<T, Node<T>> create = this::create;
+	/** Element-node mapping to retrieve the node */
+	private final ConcurrentMap<T, Node<T>> nodes = new ConcurrentHashMap<>();
+	/** source of the global lock order of nodes */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Collect the elements of a component. The monitor of the root must be
+	 * held.
+	 */
+	private static <U> Set<U> collect(Node<U> root) {
+		Set<U> component = new HashSet<>();
+		Node<U> node = root;
+		do {
+			component.add(node.element);
+			node = node.next;
+		} while (node != root);
+		return component;
+	}
+
+	@Override
+	public boolean connected(T t, T u) {
+		Node<T> nodeT = nodes.get(requireElement(t));
+		Node<T> nodeU = nodes.get(requireElement(u));
+		return nodeT != null && nodeU != null && nodeT.find() == nodeU.find();
+	}
+
+	@Override
+	public int count() {
+		return count.get();
+	}
+
+	/**
+	 * Create the node of an element, called at most once per element by the
+	 * map.
+	 */
+	private Node<T> create(T t) {
+		count.incrementAndGet();
+		return new Node<>(t, sequence.getAndIncrement());
+	}
+
+	@Override
+	public Set<T> getComponent(T t) {
+		for (;;) {
+			Node<T> node = nodes.get(requireElement(t));
+			if (node == null) {
+				return new HashSet<>();
+			}
+			Node<T> root = node.find();
+			synchronized (root) {
+				if (root.removed) {
+					// removed meanwhile, its nodes are gone from the map
+					continue;
+				}
+				if (root.parent == null) {
+					return collect(root);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Iterator<Set<T>> iterator() {
+		List<Set<T>> components = new ArrayList<>();
+		for (Node<T> node : nodes.values()) {
+			synchronized (node) {
+				if (node.parent == null && !node.removed) {
+					components.add(collect(node));
+				}
+			}
+		}
+		return components.iterator();
+	}
+
+	/**
+	 * Link the root of smaller rank below the root of larger rank and merge
+	 * the lists of their components. The monitors of both roots must be
+	 * held.
+	 */
+	private void link(Node<T> rootT, Node<T> rootU) {
+		if (rootT.rank < rootU.rank) {
+			rootT.parent = rootU;
+		} else {
+			if (rootT.rank == rootU.rank) {
+				rootT.rank++;
+			}
+			rootU.parent = rootT;
+		}
+		Node<T> next = rootT.next;
+		rootT.next = rootU.next;
+		rootU.next = next;
+		count.decrementAndGet();
+	}
+
+	/**
+	 * Get the node of an element, creating it if the element is not contained
+	 * yet.
+	 */
+	private Node<T> node(T t) {
+		Node<T> node = nodes.get(requireElement(t));
+		return node != null ? node : nodes.computeIfAbsent(t, create);
+	}
+
+	/**
+	 * Removes the component containing site <tt>t</tt>. Runs in time linear to
+	 * the size of the component, while holding the monitor of its root.
+	 */
+	@Override
+	public Set<T> removeComponent(T t) {
+		for (;;) {
+			Node<T> node = nodes.get(requireElement(t));
+			if (node == null) {
+				return new HashSet<>();
+			}
+			Node<T> root = node.find();
+			synchronized (root) {
+				if (root.removed || root.parent != null) {
+					continue;
+				}
+				root.removed = true;
+				Set<T> component = new HashSet<>();
+				Node<T> member = root;
+				do {
+					component.add(member.element);
+					nodes.remove(member.element, member);
+					member = member.next;
+				} while (member != root);
+				count.decrementAndGet();
+				return component;
+			}
+		}
+	}
+
+	private static <U> U requireElement(U t) {
+		if (t == null) {
+			throw new NullPointerException("Element must not be null");
+		}
+		return t;
+	}
+
+	@Override
+	public void union(T t, T u) {
+		for (;;) {
+			Node<T> rootT = node(t).find();
+			Node<T> rootU = node(u).find();
+			// acquire the monitors in a global order to avoid deadlocks
+			Node<T> first = rootT.order <= rootU.order ? rootT : rootU;
+			Node<T> second = first == rootT ? rootU : rootT;
+			synchronized (first) {
+				synchronized (second) {
+					if (first.removed || second.removed) {
+						// removed meanwhile, retry with new nodes
+						continue;
+					}
+					if (first.parent != null || second.parent != null) {
+						// linked below another root meanwhile
+						continue;
+					}
+					if (first != second) {
+						link(rootT, rootU);
+					}
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package de.hpi.idd.util;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Disjoint components of elements, which are merged by connecting two of
+ * their elements. Iterating yields the components.
+ *
+ * @param <T>
+ *            type of the elements
+ * @see UnionFind
+ * @see ConcurrentUnionFind
+ */
+public interface DisjointSets<T> extends Iterable<Set<T>> {
+
+	/**
+	 * Returns true if the the two sites are in the same component.
+	 *
+	 * @param t
+	 *            the element representing one site
+	 * @param u
+	 *            the element representing the other site
+	 * @return <tt>true</tt> if the two sites <tt>t</tt> and <tt>u</tt> are in
+	 *         the same component; <tt>false</tt> otherwise
+	 */
+	boolean connected(T t, T u);
+
+	/**
+	 * Returns the number of disjoint components.
+	 *
+	 * @return the number of components
+	 */
+	int count();
+
+	/**
+	 * Returns the elements contained in the same component as <tt>t</tt>
+	 *
+	 * @param t
+	 *            the element representing one site
+	 * @return the elements contained in the same component as <tt>t</tt>
+	 *         including <tt>t</tt>, empty if <tt>t</tt> is not contained
+	 */
+	Collection<T> getComponent(T t);
+
+	/**
+	 * Removes the component containing site <tt>t</tt>. Its elements are no
+	 * longer contained afterwards.
+	 *
+	 * @param t
+	 *            the element representing one site
+	 * @return the elements of the removed component including <tt>t</tt>,
+	 *         empty if <tt>t</tt> is not contained
+	 */
+	Set<T> removeComponent(T t);
+
+	/**
+	 * Merges the component containing site <tt>t</tt> with the the component
+	 * containing site <tt>u</tt>. Elements not contained yet are added.
+	 *
+	 * @param t
+	 *            the element representing one site
+	 * @param u
+	 *            the element representing the other site
+	 */
+	void union(T t, T u);
+}
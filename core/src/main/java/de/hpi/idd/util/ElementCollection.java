@@ -0,0 +1,435 @@
+package de.hpi.idd.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Collection of the elements associated with a key. Small collections are
+ * backed by an array, which is compact and fast for few elements. Once the
+ * collection grows beyond {@link #THRESHOLD} elements, it switches to a linked
+ * list of elements indexed by a hash map so that {@link #contains(Object)} and
+ * {@link #remove(Object)} run in constant time. It switches back when it has
+ * shrunk to half of the threshold.
+ *
+ * <p>
+ * In both modes, elements are iterated in insertion order and
+ * {@link #remove(Object)} removes the first occurrence of an element, just
+ * like a list does.
+ * </p>
+ *
+ * <p>
+ * Each element can be {@link #setTag(Object, int) tagged} with an int, e.g.
+ * the dense int of an id assigned by an {@link IdDictionary}, so that it does
+ * not need to be looked up again when the elements are
+ * {@link #forEachTagged(TagConsumer) iterated}.
+ * </p>
+ *
+ * @param <V>
+ *            type of the elements
+ */
+public class ElementCollection<V> extends AbstractCollection<V> {
+
+	/** Occurrence of an element in hashed mode. */
+	private static class Link<V> {
+		private final V element;
+		/** next occurrence of an equal element */
+		private Link<V> nextEqual;
+		private Link<V> next;
+		private Link<V> prev;
+		private int tag = UNTAGGED;
+
+		Link(V element) {
+			this.element = element;
+		}
+	}
+
+	private class ArrayIterator implements Iterator<V> {
+
+		private int expectedModifications = modifications;
+		/** position of the last element returned, -1 if it was removed */
+		private int last = -1;
+		private int next = 0;
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modifications != expectedModifications) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= size) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			return (V) items[last];
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if (modifications != expectedModifications) {
+				throw new ConcurrentModificationException();
+			}
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModifications = modifications;
+		}
+	}
+
+	private class LinkIterator implements Iterator<V> {
+
+		private int expectedModifications = modifications;
+		private Link<V> last;
+		private Link<V> next = head;
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public V next() {
+			if (modifications != expectedModifications) {
+				throw new ConcurrentModificationException();
+			}
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = next.next;
+			return last.element;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null) {
+				throw new IllegalStateException();
+			}
+			if (modifications != expectedModifications) {
+				throw new ConcurrentModificationException();
+			}
+			Link<V> first = index.get(last.element);
+			if (first == last) {
+				unlink(last);
+			} else {
+				// earlier occurrences of the element have been skipped
+				Link<V> link = first;
+				while (link.nextEqual != last) {
+					link = link.nextEqual;
+				}
+				link.nextEqual = last.nextEqual;
+				unlinkOccurrence(last);
+			}
+			last = null;
+			expectedModifications = modifications;
+		}
+	}
+
+	/**
+	 * Receives the elements of a collection together with their tags.
+	 *
+	 * @param <V>
+	 *            type of the elements
+	 */
+	@FunctionalInterface
+	public interface TagConsumer<V> {
+
+		/**
+		 * Receive an element.
+		 *
+		 * @param element
+		 *            the element
+		 * @param tag
+		 *            tag of the element, {@link ElementCollection#UNTAGGED} if
+		 *            it has not been tagged
+		 */
+		void accept(V element, int tag);
+	}
+
+	/** maximum number of elements stored in an array */
+	public static final int THRESHOLD = 16;
+	/** tag of elements that have not been tagged */
+	public static final int UNTAGGED = -1;
+
+	/** first occurrence in hashed mode */
+	private Link<V> head;
+	/** maps elements to their first occurrence in hashed mode, null otherwise */
+	private Map<V, Link<V>> index;
+	/** elements in array mode, null otherwise */
+	private Object[] items = new Object[1];
+	/** number of structural modifications */
+	private int modifications = 0;
+	/** number of elements */
+	private int size = 0;
+	/** tags of the elements in array mode, null if no element is tagged */
+	private int[] tags;
+	/** last occurrence in hashed mode */
+	private Link<V> tail;
+
+	@Override
+	public boolean add(V element) {
+		return add(element, UNTAGGED);
+	}
+
+	/**
+	 * Add an element with a tag.
+	 *
+	 * @param element
+	 *            the element
+	 * @param tag
+	 *            tag of the element
+	 * @return true
+	 */
+	public boolean add(V element, int tag) {
+		if (items != null) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, 2 * size);
+				if (tags != null) {
+					tags = Arrays.copyOf(tags, 2 * size);
+				}
+			}
+			items[size] = element;
+			if (tag != UNTAGGED && tags == null) {
+				tags = new int[items.length];
+				Arrays.fill(tags, UNTAGGED);
+			}
+			if (tags != null) {
+				tags[size] = tag;
+			}
+			size++;
+			modifications++;
+			if (size > THRESHOLD) {
+				toHashed();
+			}
+			return true;
+		}
+		Link<V> link = new Link<>(element);
+		link.tag = tag;
+		Link<V> first = index.putIfAbsent(element, link);
+		if (first != null) {
+			while (first.nextEqual != null) {
+				first = first.nextEqual;
+			}
+			first.nextEqual = link;
+		}
+		if (tail == null) {
+			head = link;
+		} else {
+			tail.next = link;
+			link.prev = tail;
+		}
+		tail = link;
+		size++;
+		modifications++;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		items = new Object[1];
+		tags = null;
+		index = null;
+		head = null;
+		tail = null;
+		size = 0;
+		modifications++;
+	}
+
+	@Override
+	public boolean contains(Object element) {
+		return items != null ? indexOf(element) >= 0 : index.containsKey(element);
+	}
+
+	/**
+	 * Pass all elements together with their tags to a consumer in insertion
+	 * order.
+	 *
+	 * @param consumer
+	 *            receives the elements, must not modify the collection
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEachTagged(TagConsumer<? super V> consumer) {
+		if (items != null) {
+			for (int i = 0; i < size; i++) {
+				consumer.accept((V) items[i], tags == null ? UNTAGGED : tags[i]);
+			}
+		} else {
+			for (Link<V> link = head; link != null; link = link.next) {
+				consumer.accept(link.element, link.tag);
+			}
+		}
+	}
+
+	private int indexOf(Object element) {
+		for (int i = 0; i < size; i++) {
+			if (Objects.equals(element, items[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Check whether the elements are indexed by a hash map.
+	 *
+	 * @return true if the collection switched to the hashed mode
+	 */
+	boolean isHashed() {
+		return items == null;
+	}
+
+	@Override
+	public Iterator<V> iterator() {
+		return items != null ? new ArrayIterator() : new LinkIterator();
+	}
+
+	@Override
+	public boolean remove(Object element) {
+		if (items != null) {
+			int i = indexOf(element);
+			if (i < 0) {
+				return false;
+			}
+			removeAt(i);
+			return true;
+		}
+		Link<V> link = index.get(element);
+		if (link == null) {
+			return false;
+		}
+		unlink(link);
+		if (size <= THRESHOLD / 2) {
+			toList();
+		}
+		return true;
+	}
+
+	/**
+	 * Remove the element at a position in array mode.
+	 */
+	private void removeAt(int i) {
+		int moved = size - i - 1;
+		System.arraycopy(items, i + 1, items, i, moved);
+		if (tags != null) {
+			System.arraycopy(tags, i + 1, tags, i, moved);
+		}
+		items[--size] = null;
+		modifications++;
+	}
+
+	/**
+	 * Tag all occurrences of an element.
+	 *
+	 * @param element
+	 *            the element
+	 * @param tag
+	 *            the new tag
+	 */
+	public void setTag(Object element, int tag) {
+		if (items == null) {
+			for (Link<V> link = index.get(element); link != null; link = link.nextEqual) {
+				link.tag = tag;
+			}
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			if (Objects.equals(element, items[i])) {
+				if (tags == null) {
+					tags = new int[items.length];
+					Arrays.fill(tags, UNTAGGED);
+				}
+				tags[i] = tag;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Switch to the hashed mode.
+	 */
+	@SuppressWarnings("unchecked")
+	private void toHashed() {
+		Object[] elements = items;
+		int[] elementTags = tags;
+		int count = size;
+		items = null;
+		tags = null;
+		size = 0;
+		index = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			add((V) elements[i], elementTags == null ? UNTAGGED : elementTags[i]);
+		}
+	}
+
+	/**
+	 * Switch to the array mode.
+	 */
+	private void toList() {
+		Object[] elements = new Object[THRESHOLD];
+		int[] elementTags = null;
+		int count = 0;
+		for (Link<V> link = head; link != null; link = link.next) {
+			if (link.tag != UNTAGGED && elementTags == null) {
+				elementTags = new int[THRESHOLD];
+				Arrays.fill(elementTags, UNTAGGED);
+			}
+			if (elementTags != null) {
+				elementTags[count] = link.tag;
+			}
+			elements[count++] = link.element;
+		}
+		index = null;
+		head = null;
+		tail = null;
+		items = elements;
+		tags = elementTags;
+		size = count;
+	}
+
+	/**
+	 * Remove the first occurrence of an element.
+	 */
+	private void unlink(Link<V> link) {
+		if (link.nextEqual == null) {
+			index.remove(link.element);
+		} else {
+			index.put(link.element, link.nextEqual);
+		}
+		unlinkOccurrence(link);
+	}
+
+	/**
+	 * Remove an occurrence from the list of all occurrences.
+	 */
+	private void unlinkOccurrence(Link<V> link) {
+		if (link.prev == null) {
+			head = link.next;
+		} else {
+			link.prev.next = link.next;
+		}
+		if (link.next == null) {
+			tail = link.prev;
+		} else {
+			link.next.prev = link.prev;
+		}
+		size--;
+		modifications++;
+	}
+}
@@ -0,0 +1,64 @@
+package de.hpi.idd.util;
+
+/**
+ * Bidirectional mapping of ids to dense ints. Dense ints allow to associate
+ * data with ids using plain arrays instead of hash tables.
+ *
+ * @param <T>
+ *            type of the ids
+ * @see CompactIdDictionary
+ * @see ConcurrentIdDictionary
+ */
+public interface IdDictionary<T> {
+
+	/**
+	 * Get the int of an id. A new int is assigned if the id is not contained
+	 * yet.
+	 *
+	 * @param id
+	 *            the id, not null
+	 * @return dense int of the id
+	 */
+	int add(T id);
+
+	/**
+	 * Get an upper bound of the ints assigned.
+	 *
+	 * @return number larger than all ints assigned
+	 */
+	int capacity();
+
+	/**
+	 * Get the id of an int.
+	 *
+	 * @param i
+	 *            dense int of the id
+	 * @return the id, null if the int is not assigned
+	 */
+	T get(int i);
+
+	/**
+	 * Get the int of an id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return dense int of the id, -1 if it is not contained
+	 */
+	int indexOf(Object id);
+
+	/**
+	 * Remove an id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return true if the id was contained
+	 */
+	boolean remove(Object id);
+
+	/**
+	 * Get the number of ids contained.
+	 *
+	 * @return number of ids
+	 */
+	int size();
+}
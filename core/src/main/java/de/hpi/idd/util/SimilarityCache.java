@@ -0,0 +1,264 @@
+package de.hpi.idd.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Bounded, thread-safe cache of similarities of unordered pairs of keys.
+ *
+ * <p>
+ * Entries are stored in parallel arrays with primitive values. The cache is
+ * set-associative: the symmetric hash of a pair selects a set of
+ * {@link #WAYS} slots, which is searched linearly. If the set is full, an
+ * entry is evicted using the CLOCK algorithm, i.e. the first entry that has
+ * not been read since the hand of the set passed it last. Each set is guarded
+ * by one of a fixed number of lock stripes, so that threads accessing
+ * different sets rarely contend.
+ * </p>
+ *
+ * @param <K>
+ *            type of the keys
+ */
+public class SimilarityCache<K> {
+
+	/** number of lock stripes */
+	private static final int STRIPES = 64;
+	/** number of slots per set */
+	public static final int WAYS = 8;
+
+	private static int hash(Object key1, Object key2) {
+		int h1 = key1.hashCode();
+		int h2 = key2.hashCode();
+		// symmetric combination of both hashes
+		int h = Math.min(h1, h2) * 31 + Math.max(h1, h2);
+		h *= 0x9E3779B9;
+		return h ^ h >>> 16;
+	}
+
+	private final LongAdder evictions = new LongAdder();
+	/** pair hash per slot */
+	private final int[] hashes;
+	/** position of the CLOCK hand per set */
+	private final byte[] hands;
+	private final LongAdder hits = new LongAdder();
+	private final Object[] keys1;
+	private final Object[] keys2;
+	private final Object[] locks = new Object[STRIPES];
+	private final LongAdder misses = new LongAdder();
+	/** whether the entry of a slot has been read since the hand passed it */
+	private final boolean[] referenced;
+	/** number of sets minus one */
+	private final int setMask;
+	private final double[] values;
+
+	/**
+	 * Construct a new cache.
+	 *
+	 * @param capacity
+	 *            maximum number of entries, rounded up to a power of two of
+	 *            at least {@link #WAYS}
+	 */
+	public SimilarityCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		int minimumSets = (capacity + WAYS - 1) / WAYS;
+		int sets = Integer.highestOneBit(minimumSets);
+		if (sets < minimumSets) {
+			sets <<= 1;
+		}
+		setMask = sets - 1;
+		int slots = sets * WAYS;
+		hashes = new int[slots];
+		keys1 = new Object[slots];
+		keys2 = new Object[slots];
+		values = new double[slots];
+		referenced = new boolean[slots];
+		hands = new byte[sets];
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Get the maximum number of entries.
+	 *
+	 * @return capacity of the cache
+	 */
+	public int capacity() {
+		return values.length;
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		for (int set = 0; set <= setMask; set++) {
+			synchronized (lock(set)) {
+				int from = set * WAYS;
+				Arrays.fill(keys1, from, from + WAYS, null);
+				Arrays.fill(keys2, from, from + WAYS, null);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the similarity of two keys and compute it if it is not cached.
+	 * The computation runs without holding a lock, so concurrent threads may
+	 * compute the similarity of the same pair at the same time.
+	 *
+	 * @param key1
+	 *            first key
+	 * @param key2
+	 *            second key
+	 * @param function
+	 *            computes the similarity of two keys
+	 * @return similarity of the keys
+	 */
+	public double computeIfAbsent(K key1, K key2, ToDoubleBiFunction<? super K, ? super K> function) {
+		double value = get(key1, key2);
+		if (Double.isNaN(value)) {
+			value = function.applyAsDouble(key1, key2);
+			put(key1, key2, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Retrieve the similarity of two keys regardless of their order.
+	 *
+	 * @param key1
+	 *            first key
+	 * @param key2
+	 *            second key
+	 * @return similarity of the keys, {@link Double#NaN} if it is not cached
+	 */
+	public double get(K key1, K key2) {
+		int hash = hash(key1, key2);
+		int set = hash & setMask;
+		synchronized (lock(set)) {
+			int slot = find(set, hash, key1, key2);
+			if (slot >= 0) {
+				referenced[slot] = true;
+				hits.increment();
+				return values[slot];
+			}
+		}
+		misses.increment();
+		return Double.NaN;
+	}
+
+	/**
+	 * Get the number of entries evicted to make room for new entries.
+	 *
+	 * @return number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Get the number of lookups that found a cached similarity.
+	 *
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of lookups that did not find a cached similarity.
+	 *
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Find the slot of a pair in a set. Must hold the lock of the set.
+	 *
+	 * @return slot of the pair, -1 if it is not contained
+	 */
+	private int find(int set, int hash, Object key1, Object key2) {
+		int from = set * WAYS;
+		for (int slot = from; slot < from + WAYS; slot++) {
+			Object k1 = keys1[slot];
+			if (k1 == null) {
+				return -1;
+			}
+			if (hashes[slot] == hash) {
+				Object k2 = keys2[slot];
+				if (k1.equals(key1) && k2.equals(key2) || k1.equals(key2) && k2.equals(key1)) {
+					return slot;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private Object lock(int set) {
+		return locks[set & STRIPES - 1];
+	}
+
+	/**
+	 * Store the similarity of two keys regardless of their order. If the set
+	 * of the pair is full, an entry is evicted.
+	 *
+	 * @param key1
+	 *            first key
+	 * @param key2
+	 *            second key
+	 * @param value
+	 *            similarity of the keys
+	 */
+	public void put(K key1, K key2, double value) {
+		int hash = hash(key1, key2);
+		int set = hash & setMask;
+		int from = set * WAYS;
+		synchronized (lock(set)) {
+			int slot = find(set, hash, key1, key2);
+			if (slot < 0) {
+				slot = from;
+				while (slot < from + WAYS && keys1[slot] != null) {
+					slot++;
+				}
+				if (slot == from + WAYS) {
+					slot = from + hands[set];
+					while (referenced[slot]) {
+						// second chance
+						referenced[slot] = false;
+						slot = slot + 1 == from + WAYS ? from : slot + 1;
+					}
+					hands[set] = (byte) ((slot + 1 - from) % WAYS);
+					evictions.increment();
+				}
+				keys1[slot] = key1;
+				keys2[slot] = key2;
+				hashes[slot] = hash;
+				referenced[slot] = false;
+			}
+			values[slot] = value;
+		}
+	}
+
+	/**
+	 * Count the entries of the cache. Runs in time linear to the capacity.
+	 *
+	 * @return number of cached similarities
+	 */
+	public int size() {
+		int size = 0;
+		for (int set = 0; set <= setMask; set++) {
+			synchronized (lock(set)) {
+				for (int slot = set * WAYS; slot < (set + 1) * WAYS; slot++) {
+					if (keys1[slot] != null) {
+						size++;
+					}
+				}
+			}
+		}
+		return size;
+	}
+}
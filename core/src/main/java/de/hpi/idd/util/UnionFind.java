@@ -28,7 +28,7 @@ import com.google.common.collect.Sets;
  * @param <T>
  *            type of the elements
  */
-public class UnionFind<T> implements Iterable<Set<T>> {
+public class UnionFind<T> implements DisjointSets<T> {
 
 	/**
 	 * This class represents a node in the Union Find tree having a parent,
@@ -168,27 +168,14 @@ public class UnionFind<T> implements Iterable<Set<T>> {
 	/** Element-node mapping to retrieve the node */
 	private final Map<T, Node<T>> nodes = new HashMap<>();
 
-	/**
-	 * Returns true if the the two sites are in the same component.
-	 *
-	 * @param t
-	 *            the element representing one site
-	 * @param u
-	 *            the element representing the other site
-	 * @return <tt>true</tt> if the two sites <tt>t</tt> and <tt>u</tt> are in
-	 *         the same component; <tt>false</tt> otherwise
-	 */
+	@Override
 	public boolean connected(T t, T u) {
 		Node<T> nodeT = find(t);
 		Node<T> nodeU = find(u);
 		return !(nodeT == null || nodeU == null) && nodeT.equals(nodeU);
 	}
 
-	/**
-	 * Returns the number of disjoint components.
-	 *
-	 * @return the number of components
-	 */
+	@Override
 	public int count() {
 		return count;
 	}
@@ -213,14 +200,7 @@ public class UnionFind<T> implements Iterable<Set<T>> {
 		return node.find();
 	}
 
-	/**
-	 * Returns the elements contained in the same component as <tt>t</tt>
-	 *
-	 * @param t
-	 *            the element representing one site
-	 * @return the elements contained in the same component as <tt>t</tt>
-	 *         excluding <tt>t</tt>
-	 */
+	@Override
 	public Collection<T> getComponent(T t) {
 		Node<T> node = find(t);
 		if (node == null) {
@@ -255,14 +235,22 @@ public class UnionFind<T> implements Iterable<Set<T>> {
 	}
 
 	/**
-	 * Merges the component containing site <tt>t</tt> with the the component
-	 * containing site <tt>u</tt>.
-	 *
-	 * @param t
-	 *            the element representing one site
-	 * @param u
-	 *            the element representing the other site
+	 * Removes the component containing site <tt>t</tt>. Runs in time linear to
+	 * the size of the component.
 	 */
+	@Override
+	public Set<T> removeComponent(T t) {
+		Node<T> node = find(t);
+		if (node == null) {
+			return new HashSet<>();
+		}
+		Set<T> component = node.getComponent();
+		nodes.keySet().removeAll(component);
+		count--;
+		return component;
+	}
+
+	@Override
 	public void union(T t, T u) {
 		Node<T> nodeT = nodes.get(t);
 		if (nodeT == null) {
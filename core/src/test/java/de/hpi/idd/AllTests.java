@@ -7,11 +7,37 @@ import org.junit.runners.Suite.SuiteClasses;
 import de.hpi.idd.dysni.DySNIndexTest;
 import de.hpi.idd.dysni.DynamicSortedNeighborhoodIndexerTest;
 import de.hpi.idd.dysni.avl.AVLTreeTest;
+import de.hpi.idd.dysni.avl.ConcurrentBraidedAVLTreeTest;
+import de.hpi.idd.dysni.avl.PooledBraidedAVLTreeTest;
+import de.hpi.idd.dysni.avl.TreeSnapshotTest;
+import de.hpi.idd.dysni.btree.BPlusTreeTest;
+import de.hpi.idd.dysni.key.NormalizedKeyTest;
+import de.hpi.idd.dysni.key.PrefixCompressedKeyTest;
+import de.hpi.idd.dysni.persistent.PersistentAVLTreeTest;
+import de.hpi.idd.dysni.skiplist.ConcurrentSkipListIndexTest;
+import de.hpi.idd.dysni.window.AdaptiveDuplicateWindowBuilderTest;
+import de.hpi.idd.dysni.window.BudgetedWindowBuilderTest;
+import de.hpi.idd.dysni.window.CandidateBufferTest;
+import de.hpi.idd.dysni.window.DenseCandidateBufferTest;
+import de.hpi.idd.dysni.window.PrefixBlockWindowBuilderTest;
+import de.hpi.idd.dysni.window.SelfTuningWindowBuilderTest;
+import de.hpi.idd.util.ChunkedExecutorTest;
+import de.hpi.idd.util.CompactIdDictionaryTest;
+import de.hpi.idd.util.ConcurrentIdDictionaryTest;
+import de.hpi.idd.util.ElementCollectionTest;
+import de.hpi.idd.util.SimilarityCacheTest;
 import de.hpi.idd.util.SymmetricTableTest;
 import de.hpi.idd.util.UnionFindTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({ AVLTreeTest.class, DySNIndexTest.class, SymmetricTableTest.class, UnionFindTest.class,
-		DynamicSortedNeighborhoodIndexerTest.class })
+		DynamicSortedNeighborhoodIndexerTest.class, PooledBraidedAVLTreeTest.class,
+		ConcurrentBraidedAVLTreeTest.class, BPlusTreeTest.class, ConcurrentSkipListIndexTest.class,
+		ElementCollectionTest.class, TreeSnapshotTest.class,
+		PrefixCompressedKeyTest.class, NormalizedKeyTest.class, PersistentAVLTreeTest.class,
+		CandidateBufferTest.class, DenseCandidateBufferTest.class, CompactIdDictionaryTest.class,
+		ConcurrentIdDictionaryTest.class, SimilarityCacheTest.class, BudgetedWindowBuilderTest.class,
+		SelfTuningWindowBuilderTest.class, AdaptiveDuplicateWindowBuilderTest.class,
+		PrefixBlockWindowBuilderTest.class, ChunkedExecutorTest.class })
 public class AllTests {
 }
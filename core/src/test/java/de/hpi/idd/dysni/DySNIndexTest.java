@@ -1,13 +1,24 @@
 package de.hpi.idd.dysni;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.dysni.avl.ConcurrentBraidedAVLTree;
+import de.hpi.idd.dysni.avl.PooledBraidedAVLTree;
+import de.hpi.idd.dysni.btree.BPlusTree;
 import de.hpi.idd.dysni.window.AdaptiveKeySimilarityWindowBuilder;
+import de.hpi.idd.dysni.window.WindowBuilder;
 import de.hpi.idd.sim.LevenshteinSimilarity;
 import de.hpi.idd.sim.SimilarityMeasure;
 
@@ -26,22 +37,129 @@ public class DySNIndexTest {
 			new DySNIndexConfiguration<>(new StringKeyHandler(),
 					new AdaptiveKeySimilarityWindowBuilder<>(DySNIndexTest.LEVENSHTEIN.asClassifier(0.5))));
 
-	private void insert(String s) {
+	private static void insert(DySNIndex<String, String, String> index, String s) {
 		index.insert(s, s.toLowerCase());
 	}
 
-	@Test
-	public void test() {
-		insert("C");
-		insert("A");
-		insert("D");
-		insert("B");
-		insert("E");
-		insert("DE");
+	private static void test(DySNIndex<String, String, String> index) {
+		insert(index, "C");
+		insert(index, "A");
+		insert(index, "D");
+		insert(index, "B");
+		insert(index, "E");
+		insert(index, "DE");
 		Collection<String> candidates = index.findCandidates("DE");
 		assertTrue(candidates.contains("d"));
 		assertTrue(candidates.contains("e"));
 		assertTrue(candidates.contains("de"));
 		assertEquals(3, candidates.size());
 	}
+
+	private static Collection<String> testChain(boolean chained) {
+		DySNIndex<String, String, String> index = new DySNIndex<>(new DySNIndexConfiguration<>(new StringKeyHandler(),
+				new AdaptiveKeySimilarityWindowBuilder<String, String, String>(
+						DySNIndexTest.LEVENSHTEIN.asClassifier(0.5)).setUseLinkSimilarities(true).setChained(chained),
+				() -> new BraidedAVLTree<>(DySNIndexTest.LEVENSHTEIN)));
+		insert(index, "CD");
+		insert(index, "D");
+		insert(index, "DE");
+		return index.findCandidates("DE");
+	}
+
+	@Test
+	public void test() {
+		test(index);
+	}
+
+	@Test
+	public void testOptimisticWindowRetried() {
+		ConcurrentBraidedAVLTree<String, String> tree = new ConcurrentBraidedAVLTree<>();
+		AtomicInteger builds = new AtomicInteger();
+		WindowBuilder<String, String, String> builder = (record, node, sink) -> {
+			if (builds.getAndIncrement() == 0) {
+				// invalidates the optimistic read
+				tree.insert("E", "e");
+			}
+			sink.acceptElements(node.getPrevious());
+			sink.acceptElements(node);
+		};
+		DySNIndex<String, String, String> index = new DySNIndex<>(
+				new DySNIndexConfiguration<>(new StringKeyHandler(), builder, () -> tree), true);
+		tree.insert("C", "c");
+		List<String> candidates = new ArrayList<>();
+		index.insert("D", "d", candidates::add);
+		// the discarded window is not passed to the sink
+		assertEquals(Arrays.asList("c", "d"), candidates);
+		assertEquals(2, builds.get());
+		candidates.clear();
+		index.findCandidates("D", candidates::add);
+		assertEquals(Arrays.asList("c", "d"), candidates);
+		assertEquals(3, builds.get());
+	}
+
+	@Test
+	public void testPooledBraidedAVLTree() {
+		test(new DySNIndex<>(new DySNIndexConfiguration<>(new StringKeyHandler(),
+				new AdaptiveKeySimilarityWindowBuilder<>(DySNIndexTest.LEVENSHTEIN.asClassifier(0.5)),
+				() -> new PooledBraidedAVLTree<String, String>().asIndex())));
+	}
+
+	@Test
+	public void testBPlusTree() {
+		test(new DySNIndex<>(new DySNIndexConfiguration<>(new StringKeyHandler(),
+				new AdaptiveKeySimilarityWindowBuilder<>(DySNIndexTest.LEVENSHTEIN.asClassifier(0.5)),
+				() -> new BPlusTree<>(3))));
+	}
+
+	@Test
+	public void testChainedLinkSimilarities() {
+		// CD is similar to D, but not to DE
+		assertEquals(new HashSet<>(Arrays.asList("d", "de")), new HashSet<>(testChain(false)));
+		assertEquals(new HashSet<>(Arrays.asList("cd", "d", "de")), new HashSet<>(testChain(true)));
+	}
+
+	@Test
+	public void testDelete() {
+		insert(index, "A");
+		insert(index, "B");
+		insert(index, "C");
+		DySNIndex<String, String, String> larger = index.split("B");
+		// records are deleted by the key they were inserted with
+		assertFalse(index.delete("b"));
+		assertTrue(larger.delete("b"));
+		assertFalse(larger.delete("b"));
+		assertTrue(index.delete("a"));
+		assertEquals(Arrays.asList("c"), new ArrayList<>(larger.findCandidates("C")));
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void testJoin() {
+		DySNIndex<String, String, String> index = new DySNIndex<>(
+				new DySNIndexConfiguration<>(new StringKeyHandler(),
+						new AdaptiveKeySimilarityWindowBuilder<>(DySNIndexTest.LEVENSHTEIN.asClassifier(0.5))),
+				true);
+		insert(index, "C");
+		insert(index, "A");
+		insert(index, "B");
+		DySNIndex<String, String, String> other = index.split("DE");
+		insert(other, "E");
+		insert(other, "DE");
+		insert(index, "D");
+		index.join(other);
+		assertEquals(new HashSet<>(Arrays.asList("d", "de", "e")), new HashSet<>(index.findCandidates("DE")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testJoinWithItself() {
+		index.join(index);
+	}
+
+	@Test
+	public void testLinkSimilarities() {
+		test(new DySNIndex<>(new DySNIndexConfiguration<>(new StringKeyHandler(),
+				new AdaptiveKeySimilarityWindowBuilder<String, String, String>(
+						DySNIndexTest.LEVENSHTEIN.asClassifier(0.5)).setUseLinkSimilarities(true),
+				() -> new BraidedAVLTree<>(DySNIndexTest.LEVENSHTEIN))));
+	}
 }
@@ -2,17 +2,50 @@ package de.hpi.idd.dysni;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import de.hpi.idd.dysni.avl.SnapshotCodec;
+import de.hpi.idd.dysni.persistent.PersistentAVLTree;
+import de.hpi.idd.dysni.window.AdaptiveDuplicateWindowBuilder;
 import de.hpi.idd.dysni.window.FixedWindowBuilder;
+import de.hpi.idd.dysni.window.PrefixBlockWindowBuilder;
+import de.hpi.idd.dysni.window.SelfTuningWindowBuilder;
+import de.hpi.idd.dysni.window.WindowBudget;
+import de.hpi.idd.dysni.window.WindowBuilder;
 import de.hpi.idd.sim.LevenshteinSimilarity;
+import de.hpi.idd.sim.SimilarityClassifier;
+import de.hpi.idd.sim.SimilarityMeasure;
 import de.hpi.idd.store.MemoryStore;
+import de.hpi.idd.store.RecordStore;
 import de.hpi.idd.store.StoreException;
 
 public class DynamicSortedNeighborhoodIndexerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private DynamicSortedNeighborhoodIndexer<String, Integer> er;
 
 	@Before
@@ -31,6 +64,273 @@ public class DynamicSortedNeighborhoodIndexerTest {
 		assertEquals(2, er.insert("CA", 2).size());
 	}
 	
+	@Test
+	public void testConcurrent() throws InterruptedException, StoreException {
+		SimilarityMeasure<String> measure = (s1, s2) -> s1.charAt(0) == s2.charAt(0) ? 1.0 : 0.0;
+		DynamicSortedNeighborhoodIndexer<String, Integer> concurrent = new DynamicSortedNeighborhoodIndexer<>(
+				new MemoryStore<>(), measure.asClassifier(0.5), true);
+		concurrent.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s,
+				PrefixBlockWindowBuilder.prefixes(1, Integer.MAX_VALUE)));
+		concurrent.setParallelizable(false);
+		int records = 400;
+		Thread[] threads = new Thread[4];
+		List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				try {
+					for (int i = offset; i < records; i += threads.length) {
+						concurrent.insert((char) ('A' + i % 4) + Integer.toString(i), i);
+					}
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(Collections.emptyList(), failures);
+		assertEquals(Arrays.asList(records), concurrent.indexSizes());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(records / 4 - 1, concurrent.resolve((char) ('A' + i) + Integer.toString(i), i).size());
+		}
+		// each pair of records sharing the first letter is compared at least once
+		assertTrue(concurrent.getComparisons() >= 4 * (records / 4) * (records / 4 - 1) / 2);
+	}
+
+	@Test
+	public void testDeleteAndUpdate() throws StoreException {
+		er.insert("AA", 0);
+		er.insert("AB", 1);
+		er.insert("BB", 2);
+		er.insert("BC", 3);
+		assertEquals(new HashSet<>(Arrays.asList(0, 1, 2)), new HashSet<>(er.resolve("BC", 3)));
+		er.delete(1);
+		assertEquals(Arrays.asList(2), er.indexSizes());
+		// AA and BB were only connected through AB
+		assertEquals(new HashSet<>(Arrays.asList(3)), new HashSet<>(er.resolve("BB", 2)));
+		assertEquals(0, er.resolve("AA", 0).size());
+		assertEquals(new HashSet<>(Arrays.asList(2, 3)), new HashSet<>(er.update("AB", 0)));
+		assertEquals(Arrays.asList(2), er.indexSizes());
+	}
+
+	@Test
+	public void testClassifiedCandidates() throws StoreException {
+		SimilarityClassifier<String> classifier = new LevenshteinSimilarity().asClassifier(0.5);
+		MemoryStore<Integer, String> store = new MemoryStore<>();
+		DynamicSortedNeighborhoodIndexer<String, Integer> shared = new DynamicSortedNeighborhoodIndexer<>(store,
+				classifier);
+		shared.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s,
+				new AdaptiveDuplicateWindowBuilder<>(0.5, classifier, store)));
+		MemoryStore<Integer, String> otherStore = new MemoryStore<>();
+		DynamicSortedNeighborhoodIndexer<String, Integer> separate = new DynamicSortedNeighborhoodIndexer<>(
+				otherStore, new LevenshteinSimilarity().asClassifier(0.5));
+		separate.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s,
+				new AdaptiveDuplicateWindowBuilder<>(0.5, classifier, otherStore)));
+		String[] records = { "AA", "AB", "BB", "BC", "CC", "AC", "BA" };
+		for (int i = 0; i < records.length; i++) {
+			assertEquals(new HashSet<>(separate.insert(records[i], i)), new HashSet<>(shared.insert(records[i], i)));
+		}
+		assertTrue(shared.getComparisons() < separate.getComparisons());
+	}
+
+	@Test
+	public void testBudget() throws StoreException {
+		SimilarityMeasure<String> measure = (s1, s2) -> s1.equals("d") || s2.equals("d") ? 1.0 : 0.0;
+		DynamicSortedNeighborhoodIndexer<String, Integer> budgeted = new DynamicSortedNeighborhoodIndexer<>(
+				new MemoryStore<>(), measure.asClassifier(0.5));
+		budgeted.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s, new FixedWindowBuilder<>(10)));
+		budgeted.setBudget(WindowBudget.comparisons(2));
+		String[] records = { "a", "b", "c", "e", "f" };
+		for (int i = 0; i < records.length; i++) {
+			budgeted.insert(records[i], i);
+		}
+		assertEquals(2, budgeted.getTruncations());
+		int comparisons = budgeted.getComparisons();
+		// closest records in both directions
+		assertEquals(new HashSet<>(Arrays.asList(2, 3)), new HashSet<>(budgeted.insert("d", 5)));
+		assertEquals(comparisons + 2, budgeted.getComparisons());
+		assertEquals(3, budgeted.getTruncations());
+	}
+
+	@Test
+	public void testSelfTuning() throws StoreException {
+		SelfTuningWindowBuilder<String, String, Integer> builder = new SelfTuningWindowBuilder<>(0, 5, 1.0, 1);
+		DynamicSortedNeighborhoodIndexer<String, Integer> tuned = new DynamicSortedNeighborhoodIndexer<>(
+				new MemoryStore<>(), new LevenshteinSimilarity().asClassifier(0.5));
+		tuned.addIndex(new DySNIndexConfiguration<>(s -> s, builder));
+		tuned.insert("AA", 0);
+		tuned.insert("BB", 1);
+		assertEquals(0, builder.getSize());
+		assertEquals(new HashSet<>(Arrays.asList(0, 1)), new HashSet<>(tuned.insert("AB", 2)));
+		assertEquals(2, builder.getHistogram()[1]);
+		assertEquals(1, builder.getSize());
+	}
+
+	private static void testInsertAll(
+			Function<RecordStore<Integer, String>, WindowBuilder<String, String, Integer>> builder,
+			WindowBudget budget) throws StoreException {
+		SimilarityClassifier<String> classifier = new LevenshteinSimilarity().asClassifier(0.5);
+		List<DynamicSortedNeighborhoodIndexer<String, Integer>> indexers = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			MemoryStore<Integer, String> store = new MemoryStore<>();
+			DynamicSortedNeighborhoodIndexer<String, Integer> indexer = new DynamicSortedNeighborhoodIndexer<>(store,
+					classifier);
+			indexer.addIndex(new DySNIndexConfiguration<>(s -> s, builder.apply(store)));
+			indexer.addIndex(new DySNIndexConfiguration<>(s -> new StringBuilder(s).reverse().toString(),
+					builder.apply(store)));
+			indexer.setBudget(budget);
+			indexers.add(indexer);
+		}
+		String[] records = { "AA", "AB", "BB", "BC", "CC", "AC", "BA", "CA", "CB", "AAB", "BBC", "ACC" };
+		DynamicSortedNeighborhoodIndexer<String, Integer> sequential = indexers.get(0);
+		DynamicSortedNeighborhoodIndexer<String, Integer> batch = indexers.get(1);
+		Map<Integer, Collection<Integer>> expected = new LinkedHashMap<>();
+		for (int i = 0; i < records.length; i++) {
+			expected.put(i, new HashSet<>(sequential.insert(records[i], i)));
+		}
+		Map<Integer, Collection<Integer>> actual = batch
+				.insertAll(IntStream.range(0, records.length).mapToObj(i -> new SimpleEntry<>(i, records[i])));
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		for (Entry<Integer, Collection<Integer>> entry : actual.entrySet()) {
+			assertEquals(expected.get(entry.getKey()), new HashSet<>(entry.getValue()));
+		}
+		assertEquals(sequential.getComparisons(), batch.getComparisons());
+		assertEquals(sequential.getTruncations(), batch.getTruncations());
+		assertEquals(sequential.indexSizes(), batch.indexSizes());
+		assertEquals(new HashSet<>(sequential.insert("AAC", 100)), new HashSet<>(batch.insert("AAC", 100)));
+	}
+
+	@Test
+	public void testExecutor() throws StoreException {
+		SimilarityClassifier<String> classifier = new LevenshteinSimilarity().asClassifier(0.5);
+		DynamicSortedNeighborhoodIndexer<String, Integer> pooled = new DynamicSortedNeighborhoodIndexer<>(
+				new MemoryStore<>(), classifier);
+		pooled.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s, new FixedWindowBuilder<>(3)));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			pooled.setExecutor(executor, 2);
+			assertEquals(executor, pooled.getExecutor());
+			DynamicSortedNeighborhoodIndexer<String, Integer> common = new DynamicSortedNeighborhoodIndexer<>(
+					new MemoryStore<>(), classifier);
+			common.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s, new FixedWindowBuilder<>(3)));
+			String[] records = { "AA", "AB", "BB", "BC", "CC", "AC", "BA" };
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(new HashSet<>(common.insert(records[i], i)), new HashSet<>(pooled.insert(records[i], i)));
+			}
+			assertEquals(common.getComparisons(), pooled.getComparisons());
+			// keys of a batch are computed on the executor
+			String[] batch = { "CA", "CB", "AAB", "BBC", "ACC" };
+			Map<Integer, String> more = new LinkedHashMap<>();
+			for (int i = 0; i < batch.length; i++) {
+				more.put(records.length + i, batch[i]);
+			}
+			Map<Integer, Collection<Integer>> expected = common.insertAll(more);
+			Map<Integer, Collection<Integer>> actual = pooled.insertAll(more);
+			for (Entry<Integer, Collection<Integer>> entry : actual.entrySet()) {
+				assertEquals(new HashSet<>(expected.get(entry.getKey())), new HashSet<>(entry.getValue()));
+			}
+			assertEquals(common.indexSizes(), pooled.indexSizes());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testInsertAll() throws StoreException {
+		testInsertAll(store -> new FixedWindowBuilder<>(2), WindowBudget.UNLIMITED);
+		testInsertAll(store -> new FixedWindowBuilder<>(3), WindowBudget.comparisons(3));
+		testInsertAll(store -> new AdaptiveDuplicateWindowBuilder<>(0.5,
+				new LevenshteinSimilarity().asClassifier(0.5), store), WindowBudget.UNLIMITED);
+		testInsertAll(store -> new SelfTuningWindowBuilder<>(0, 4, 1.0, 2), WindowBudget.UNLIMITED);
+	}
+
+	@Test
+	public void testPinnedSnapshot() throws StoreException {
+		DynamicSortedNeighborhoodIndexer<String, Integer> indexer = new DynamicSortedNeighborhoodIndexer<>(
+				new MemoryStore<>(), new LevenshteinSimilarity().asClassifier(0.5));
+		indexer.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s.substring(0, 1),
+				new FixedWindowBuilder<>(1), PersistentAVLTree::new));
+		indexer.insert("AA", 0);
+		indexer.insert("BA", 1);
+		DynamicSortedNeighborhoodIndexer<String, Integer>.Snapshot snapshot = indexer.snapshot();
+		indexer.insert("BB", 2);
+		indexer.delete(0);
+		assertEquals(new HashSet<>(Arrays.asList(1)), snapshot.resolve("BB", null));
+		assertEquals(new HashSet<>(Arrays.asList(1, 2)), indexer.snapshot().resolve("BB", null));
+		assertEquals(new HashSet<>(Arrays.asList(1, 2)), new HashSet<>(indexer.resolve("BB", null)));
+	}
+
+	@Test
+	public void testPinnedSnapshotOfRecords() throws StoreException {
+		MemoryStore<Integer, String> store = new MemoryStore<>();
+		DynamicSortedNeighborhoodIndexer<String, Integer> indexer = new DynamicSortedNeighborhoodIndexer<>(store,
+				new LevenshteinSimilarity().asClassifier(0.5));
+		indexer.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s.substring(0, 1),
+				new FixedWindowBuilder<>(1), PersistentAVLTree::new));
+		indexer.insert("AA", 0);
+		indexer.insert("BA", 1);
+		MemoryStore<Integer, String> records = new MemoryStore<>();
+		for (Entry<Integer, String> entry : store) {
+			records.storeRecord(entry.getKey(), entry.getValue());
+		}
+		DynamicSortedNeighborhoodIndexer<String, Integer>.Snapshot current = indexer.snapshot();
+		DynamicSortedNeighborhoodIndexer<String, Integer>.Snapshot pinned = indexer.snapshot(records);
+		indexer.update("ZZ", 1);
+		// only the snapshot with its own records compares the old version
+		assertEquals(new HashSet<>(), current.resolve("BB", null));
+		assertEquals(new HashSet<>(Arrays.asList(1)), pinned.resolve("BB", null));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testPinnedSnapshotUnsupported() {
+		er.snapshot();
+	}
+
+	@Test
+	public void testSnapshot() throws IOException, StoreException {
+		MemoryStore<Integer, String> store = new MemoryStore<>();
+		DynamicSortedNeighborhoodIndexer<String, Integer> indexer = new DynamicSortedNeighborhoodIndexer<>(store,
+				new LevenshteinSimilarity().asClassifier(0.5));
+		indexer.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s.substring(0, 1),
+				new FixedWindowBuilder<>(1)).setKeyCodec(SnapshotCodec.strings()));
+		indexer.insert("AA", 0);
+		indexer.insert("BA", 1);
+		indexer.insert("BB", 2);
+		indexer.insert("CA", 3);
+		Path directory = folder.getRoot().toPath();
+		indexer.writeSnapshot(directory, SnapshotCodec.integers());
+		DynamicSortedNeighborhoodIndexer<String, Integer> restored = new DynamicSortedNeighborhoodIndexer<>(store,
+				new LevenshteinSimilarity().asClassifier(0.5));
+		restored.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s.substring(0, 1),
+				new FixedWindowBuilder<>(1)).setKeyCodec(SnapshotCodec.strings()));
+		restored.readSnapshot(directory, SnapshotCodec.integers());
+		assertEquals(indexer.indexSizes(), restored.indexSizes());
+		assertEquals(new HashSet<>(indexer.resolve("BC", null)), new HashSet<>(restored.resolve("BC", null)));
+		assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3)), new HashSet<>(restored.insert("DA", 4)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testSnapshotWithoutHeader() throws IOException, StoreException {
+		MemoryStore<Integer, String> store = new MemoryStore<>();
+		DynamicSortedNeighborhoodIndexer<String, Integer> indexer = new DynamicSortedNeighborhoodIndexer<>(store,
+				new LevenshteinSimilarity().asClassifier(0.5));
+		indexer.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s.substring(0, 1),
+				new FixedWindowBuilder<>(1)).setKeyCodec(SnapshotCodec.strings()));
+		indexer.insert("AA", 0);
+		Path directory = folder.getRoot().toPath();
+		indexer.writeSnapshot(directory, SnapshotCodec.integers());
+		// clusters written without magic number and version
+		Files.write(directory.resolve("components.snapshot"), new byte[Integer.BYTES]);
+		DynamicSortedNeighborhoodIndexer<String, Integer> restored = new DynamicSortedNeighborhoodIndexer<>(store,
+				new LevenshteinSimilarity().asClassifier(0.5));
+		restored.addIndex(new DySNIndexConfiguration<String, String, Integer>(s -> s.substring(0, 1),
+				new FixedWindowBuilder<>(1)).setKeyCodec(SnapshotCodec.strings()));
+		restored.readSnapshot(directory, SnapshotCodec.integers());
+	}
+
 	@After
 	public void tearDown() throws StoreException {
 		er.close();
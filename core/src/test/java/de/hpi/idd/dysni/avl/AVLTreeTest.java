@@ -5,14 +5,97 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import org.junit.Test;
 
-public class AVLTreeTest {
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.index.SortedIndexTest;
+import de.hpi.idd.sim.SimilarityMeasure;
+
+public class AVLTreeTest extends SortedIndexTest {
 
 	private final BraidedAVLTree<String, String> tree = new BraidedAVLTree<>();
 
+	private static void checkLinkSimilarities(BraidedAVLTree<Integer, Integer> tree,
+			SimilarityMeasure<Integer> measure) {
+		for (Node<Integer, Integer> node : tree) {
+			Node<Integer, Integer> next = node.getNext();
+			if (next == null) {
+				assertTrue(Double.isNaN(node.getNextSimilarity()));
+			} else {
+				assertEquals(measure.calculateSimilarity(node.getKey(), next.getKey()), node.getNextSimilarity(), 0.0);
+			}
+		}
+	}
+
+	private static int checkStructure(Node<?, ?> node) {
+		if (node == null) {
+			return 0;
+		}
+		if (node.getLeft() != null) {
+			assertEquals(node, node.getLeft().getParent());
+		}
+		if (node.getRight() != null) {
+			assertEquals(node, node.getRight().getParent());
+		}
+		int left = checkStructure(node.getLeft());
+		int right = checkStructure(node.getRight());
+		assertTrue(Math.abs(left - right) <= 1);
+		assertEquals(1 + Node.nodes(node.getLeft()) + Node.nodes(node.getRight()), node.nodes());
+		assertEquals(node.getElements().size() + Node.size(node.getLeft()) + Node.size(node.getRight()),
+				node.size());
+		assertEquals(1 + Math.max(left, right), Node.height(node));
+		return 1 + Math.max(left, right);
+	}
+
+	private static void checkKeys(BraidedAVLTree<Integer, Integer> tree, int from, int to) {
+		if (tree.getRoot() != null) {
+			assertNull(tree.getRoot().getParent());
+		}
+		checkStructure(tree.getRoot());
+		assertEquals(to - from, tree.nodes());
+		Node<Integer, Integer> node = tree.getSmallest();
+		if (node != null) {
+			assertNull(node.getPrevious());
+		}
+		for (int i = from; i < to; i++, node = node.getNext()) {
+			assertEquals(i, node.getKey().intValue());
+			if (node.getNext() != null) {
+				assertEquals(node, node.getNext().getPrevious());
+			}
+		}
+		assertNull(node);
+	}
+
+	@Override
+	protected void checkInvariants(SortedIndex<Integer, Integer> index, TreeMap<Integer, List<Integer>> expected) {
+		BraidedAVLTree<Integer, Integer> tree = (BraidedAVLTree<Integer, Integer>) index;
+		checkStructure(tree.getRoot());
+		int rank = 0;
+		for (Integer key : expected.keySet()) {
+			assertEquals(rank, tree.rank(key));
+			assertEquals(key, tree.select(rank).getKey());
+			rank++;
+		}
+		assertEquals(expected.subMap(100, true, 200, true).values().stream().mapToInt(List::size).sum(),
+				tree.count(100, 200));
+	}
+
+	@Override
+	protected SortedIndex<Integer, Integer> createIndex() {
+		return new BraidedAVLTree<>();
+	}
+
 	private void insert(String s) {
 		assertEquals(s, tree.insert(s, s.toLowerCase()).getKey());
 		// BTreePrinter.printNode(tree.getRoot());
@@ -208,4 +291,160 @@ public class AVLTreeTest {
 		insert("C");
 		assertEquals("B", tree.getRoot().getKey());
 	}
+
+	@Test
+	public void testOrderStatistics() {
+		for (char c = 'A'; c <= 'J'; c++) {
+			insert(String.valueOf(c));
+		}
+		tree.insert("C", "c2");
+		assertEquals(10, tree.nodes());
+		assertEquals(11, tree.size());
+		assertEquals(0, tree.rank("A"));
+		assertEquals(2, tree.rank("C"));
+		assertEquals(3, tree.rank("CA"));
+		assertEquals(10, tree.rank("Z"));
+		assertEquals("A", tree.select(0).getKey());
+		assertEquals("D", tree.select(3).getKey());
+		assertEquals("J", tree.select(9).getKey());
+		assertEquals(4, tree.count("B", "D"));
+		assertEquals(2, tree.count("C", "C"));
+		assertEquals(0, tree.count("CA", "CZ"));
+		assertEquals(0, tree.count("D", "B"));
+		assertEquals(11, tree.count("0", "Z"));
+		tree.delete("C", "c");
+		assertEquals(10, tree.nodes());
+		assertEquals(10, tree.size());
+		tree.delete("C", "c2");
+		assertEquals(9, tree.nodes());
+		assertEquals(2, tree.rank("D"));
+		assertEquals("D", tree.select(2).getKey());
+	}
+
+	@Test
+	public void testRange() {
+		for (char c = 'A'; c <= 'J'; c++) {
+			insert(String.valueOf(c));
+		}
+		List<String> keys = new ArrayList<>();
+		for (Node<String, String> node : tree.range("B", "DA")) {
+			keys.add(node.getKey());
+		}
+		assertEquals(Arrays.asList("B", "C", "D"), keys);
+		assertFalse(tree.range("CA", "CZ").iterator().hasNext());
+		assertFalse(tree.range("D", "B").iterator().hasNext());
+		assertEquals(10, StreamSupport.stream(tree.range("0", "Z").spliterator(), false).count());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSelectOutOfBounds() {
+		insert("A");
+		tree.select(1);
+	}
+
+	@Test
+	public void testLinkSimilarities() {
+		SimilarityMeasure<Integer> measure = (key1, key2) -> 1.0 / (1 + Math.abs(key1 - key2));
+		BraidedAVLTree<Integer, Integer> tree = new BraidedAVLTree<>(measure);
+		Random random = new Random(42);
+		for (int i = 0; i < 5_000; i++) {
+			int key = random.nextInt(300);
+			if (random.nextInt(3) == 0) {
+				tree.delete(key, 0);
+			} else {
+				tree.insert(key, 0);
+			}
+		}
+		BraidedAVLTree<Integer, Integer> larger = tree.split(150);
+		checkLinkSimilarities(tree, measure);
+		checkLinkSimilarities(larger, measure);
+		tree.join(larger);
+		checkLinkSimilarities(tree, measure);
+		assertTrue(Double.isNaN(new BraidedAVLTree<Integer, Integer>().insert(1, 1).getNextSimilarity()));
+	}
+
+	@Test
+	public void testSpliterator() {
+		BraidedAVLTree<Integer, Integer> tree = new BraidedAVLTree<>();
+		for (int i = 0; i < 10_000; i++) {
+			tree.insert(i, i);
+		}
+		Spliterator<Node<Integer, Integer>> spliterator = tree.spliterator();
+		Spliterator<Node<Integer, Integer>> prefix = spliterator.trySplit();
+		assertEquals(5_000, prefix.estimateSize());
+		assertEquals(5_000, spliterator.estimateSize());
+		assertTrue(prefix.tryAdvance(node -> assertEquals(0, node.getKey().intValue())));
+		assertTrue(spliterator.tryAdvance(node -> assertEquals(5_000, node.getKey().intValue())));
+		assertEquals(IntStream.range(0, 10_000).boxed().collect(Collectors.toList()),
+				tree.stream().parallel().map(Node::getKey).collect(Collectors.toList()));
+		assertEquals(IntStream.range(0, 10_000).sum(), tree.stream().parallel().mapToInt(Node::getKey).sum());
+	}
+
+	@Test
+	public void testSplitAndJoin() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			int size = random.nextInt(300);
+			BraidedAVLTree<Integer, Integer> tree = new BraidedAVLTree<>();
+			for (int i = 0; i < size; i++) {
+				tree.insert(random.nextInt(size + 1), i);
+			}
+			List<Integer> keys = new ArrayList<>();
+			tree.forEach(node -> keys.add(node.getKey()));
+			int at = random.nextInt(size + 2);
+			BraidedAVLTree<Integer, Integer> larger = tree.split(at);
+			int smallerNodes = (int) keys.stream().filter(key -> key < at).count();
+			checkStructure(tree.getRoot());
+			checkStructure(larger.getRoot());
+			assertEquals(smallerNodes, tree.nodes());
+			assertEquals(keys.size() - smallerNodes, larger.nodes());
+			assertEquals(size, tree.size() + larger.size());
+			if (!tree.isEmpty()) {
+				assertNull(tree.getLargest().getNext());
+				assertTrue(tree.getLargest().getKey() < at);
+			}
+			if (!larger.isEmpty()) {
+				assertNull(larger.getSmallest().getPrevious());
+				assertTrue(larger.getSmallest().getKey() >= at);
+			}
+			tree.join(larger);
+			assertTrue(larger.isEmpty());
+			checkStructure(tree.getRoot());
+			assertEquals(size, tree.size());
+			List<Integer> joined = new ArrayList<>();
+			tree.forEach(node -> joined.add(node.getKey()));
+			assertEquals(keys, joined);
+		}
+	}
+
+	@Test
+	public void testJoinUnbalanced() {
+		for (int small = 0; small < 40; small++) {
+			for (int large = 0; large < 40; large++) {
+				BraidedAVLTree<Integer, Integer> left = new BraidedAVLTree<>();
+				BraidedAVLTree<Integer, Integer> right = new BraidedAVLTree<>();
+				for (int i = 0; i < small; i++) {
+					left.insert(i, i);
+				}
+				for (int i = small + large - 1; i >= small; i--) {
+					right.insert(i, i);
+				}
+				left.join(right);
+				checkKeys(left, 0, small + large);
+				checkKeys(right, 0, 0);
+				BraidedAVLTree<Integer, Integer> split = left.split(small);
+				checkKeys(left, 0, small);
+				checkKeys(split, small, small + large);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testJoinOverlapping() {
+		BraidedAVLTree<Integer, Integer> other = new BraidedAVLTree<>();
+		BraidedAVLTree<Integer, Integer> tree = new BraidedAVLTree<>();
+		tree.insert(2, 2);
+		other.insert(1, 1);
+		tree.join(other);
+	}
 }
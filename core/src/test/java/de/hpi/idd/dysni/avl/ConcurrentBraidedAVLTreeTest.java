@@ -0,0 +1,182 @@
+package de.hpi.idd.dysni.avl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.index.SortedIndexTest;
+
+public class ConcurrentBraidedAVLTreeTest extends SortedIndexTest {
+
+	private static final int ELEMENTS = 10_000;
+	private static final int THREADS = 4;
+
+	private final ConcurrentBraidedAVLTree<Integer, Integer> tree = new ConcurrentBraidedAVLTree<>();
+
+	@Override
+	protected SortedIndex<Integer, Integer> createIndex() {
+		return new ConcurrentBraidedAVLTree<>();
+	}
+
+	private int readWindow(int key) {
+		return readWindow(key, false);
+	}
+
+	private int readWindow(int key, boolean optimistic) {
+		Supplier<Integer> reader = () -> {
+			Node<Integer, Integer> node = tree.find(key);
+			if (node == null) {
+				return 0;
+			}
+			int count = node.getElements().size();
+			Node<Integer, Integer> prev = node.getPrevious();
+			for (int i = 0; i < 5 && prev != null; i++, prev = prev.getPrevious()) {
+				if (prev.getKey() >= key) {
+					return -1;
+				}
+				count += prev.getElements().size();
+			}
+			Node<Integer, Integer> next = node.getNext();
+			for (int i = 0; i < 5 && next != null; i++, next = next.getNext()) {
+				if (next.getKey() <= key) {
+					return -1;
+				}
+				count += next.getElements().size();
+			}
+			return count;
+		};
+		int result = optimistic ? tree.readOptimistically(reader) : tree.read(reader);
+		assertTrue(result >= 0);
+		return result;
+	}
+
+	@Test
+	public void testConcurrentInsertAndRead() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2 * THREADS);
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Future<?>> writers = new ArrayList<>();
+		List<Future<?>> readers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			writers.add(executor.submit(() -> {
+				for (int i = offset; i < ELEMENTS; i += THREADS) {
+					tree.insert(i % (ELEMENTS / 2), i);
+				}
+			}));
+			readers.add(executor.submit(() -> {
+				while (running.get()) {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					readWindow(random.nextInt(ELEMENTS / 2), random.nextBoolean());
+				}
+			}));
+		}
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		running.set(false);
+		for (Future<?> reader : readers) {
+			reader.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals(ELEMENTS / 2, tree.nodes());
+		assertEquals(ELEMENTS, tree.size());
+		assertEquals(22, readWindow(ELEMENTS / 4));
+		Node<Integer, Integer> node = tree.getSmallest();
+		for (int i = 0; i < ELEMENTS / 2; i++, node = node.getNext()) {
+			assertEquals(i, node.getKey().intValue());
+			assertEquals(2, node.getElements().size());
+			assertEquals(i, tree.rank(i));
+		}
+		assertNull(node);
+	}
+
+	@Test
+	public void testConcurrentDelete() throws Exception {
+		for (int i = 0; i < ELEMENTS; i++) {
+			tree.insert(i, i);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			futures.add(executor.submit(() -> {
+				for (int i = offset; i < ELEMENTS; i += THREADS) {
+					if (i % 2 == 0) {
+						assertTrue(tree.delete(i, i));
+					} else {
+						readWindow(i);
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals(ELEMENTS / 2, tree.nodes());
+		assertEquals(ELEMENTS / 2, tree.count(0, ELEMENTS));
+		assertEquals(1, tree.select(0).getKey().intValue());
+	}
+
+	@Test(timeout = 60_000)
+	public void testJoinEachOther() throws Exception {
+		ConcurrentBraidedAVLTree<Integer, Integer> other = new ConcurrentBraidedAVLTree<>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		Future<?> forward = executor.submit(() -> {
+			for (int i = 0; i < ELEMENTS; i++) {
+				tree.join(other);
+			}
+		});
+		Future<?> backward = executor.submit(() -> {
+			for (int i = 0; i < ELEMENTS; i++) {
+				other.join(tree);
+			}
+		});
+		forward.get();
+		backward.get();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+	}
+
+	@Test
+	public void testReadRunsOnce() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2 * THREADS);
+		AtomicInteger runs = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			futures.add(executor.submit(() -> {
+				for (int i = offset; i < ELEMENTS; i += THREADS) {
+					tree.insert(i, i);
+				}
+			}));
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < ELEMENTS / THREADS; i++) {
+					tree.read(runs::incrementAndGet);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals(ELEMENTS, runs.get());
+	}
+}
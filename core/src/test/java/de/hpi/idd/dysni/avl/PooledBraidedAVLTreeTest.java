@@ -0,0 +1,196 @@
+package de.hpi.idd.dysni.avl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.index.SortedIndexTest;
+
+public class PooledBraidedAVLTreeTest extends SortedIndexTest {
+
+	/** tree backing the index created by {@link #createIndex()} */
+	private PooledBraidedAVLTree<Integer, Integer> pooled;
+	/** index created by {@link #createIndex()} */
+	private SortedIndex<Integer, Integer> view;
+	private final PooledBraidedAVLTree<String, String> tree = new PooledBraidedAVLTree<>();
+
+	private static int checkBalance(PooledBraidedAVLTree<?, ?> tree, int slot) {
+		if (slot == PooledBraidedAVLTree.NIL) {
+			return 0;
+		}
+		int left = checkBalance(tree, tree.getLeft(slot));
+		int right = checkBalance(tree, tree.getRight(slot));
+		assertTrue(Math.abs(left - right) <= 1);
+		int height = 1 + Math.max(left, right);
+		assertEquals(height, tree.height(slot));
+		return height;
+	}
+
+	private void checkContents(TreeMap<Integer, List<Integer>> expected, PooledBraidedAVLTree<Integer, Integer> tree) {
+		assertEquals(expected.size(), tree.nodes());
+		int slot = tree.getSmallest();
+		for (Entry<Integer, List<Integer>> entry : expected.entrySet()) {
+			assertEquals(entry.getKey(), tree.getKey(slot));
+			assertEquals(entry.getValue().size(), tree.elementCount(slot));
+			for (int i = 0; i < entry.getValue().size(); i++) {
+				assertEquals(entry.getValue().get(i), tree.getElement(slot, i));
+			}
+			int next = tree.getNext(slot);
+			if (next != PooledBraidedAVLTree.NIL) {
+				assertEquals(slot, tree.getPrevious(next));
+			}
+			slot = next;
+		}
+		assertEquals(PooledBraidedAVLTree.NIL, slot);
+	}
+
+	@Override
+	protected void checkInvariants(SortedIndex<Integer, Integer> index, TreeMap<Integer, List<Integer>> expected) {
+		if (index != view) {
+			// created by the index, e.g. when splitting, without access to its tree
+			return;
+		}
+		checkContents(expected, pooled);
+		checkBalance(pooled, pooled.getRoot());
+	}
+
+	@Override
+	protected SortedIndex<Integer, Integer> createIndex() {
+		pooled = new PooledBraidedAVLTree<>();
+		view = pooled.asIndex();
+		return view;
+	}
+
+	private void insert(String s) {
+		assertEquals(s, tree.getKey(tree.insert(s, s.toLowerCase())));
+	}
+
+	@Test
+	public void testIndexView() {
+		SortedIndex<String, String> index = tree.asIndex();
+		insert("B");
+		insert("D");
+		index.insert("C", "c2");
+		insert("C");
+		assertEquals(3, index.nodes());
+		assertEquals(4, index.size());
+		IndexNode<String, String> node = index.find("C");
+		assertEquals(Arrays.asList("c2", "c"), new ArrayList<>(node.getElements()));
+		assertTrue(node.contains("c"));
+		assertEquals("B", node.getPrevious().getKey());
+		assertEquals("D", node.getNext().getKey());
+		assertNull(node.getNext().getNext());
+		// handles of the same node are equal
+		assertEquals(node, index.find("C"));
+		assertEquals(node, index.ceiling("BB"));
+		assertNotEquals(node, index.find("B"));
+		assertNull(index.ceiling("E"));
+		assertEquals("B", index.getSmallest().getKey());
+		assertEquals("D", index.getLargest().getKey());
+		assertTrue(index.delete("C", "c2"));
+		assertEquals(Arrays.asList("c"), new ArrayList<>(node.getElements()));
+	}
+
+	@Test
+	public void testDeletedHandle() {
+		SortedIndex<String, String> index = tree.asIndex();
+		insert("B");
+		insert("C");
+		IndexNode<String, String> node = index.find("C");
+		assertTrue(index.delete("C", "c"));
+		// the slot is reused by the next node
+		insert("D");
+		assertNotEquals(node, index.find("D"));
+		try {
+			node.getKey();
+			fail();
+		} catch (IllegalStateException e) {
+			// the handle does not refer to D
+		}
+	}
+
+	@Test
+	public void testDeletion() {
+		insert("C");
+		insert("A");
+		insert("D");
+		insert("B");
+		insert("F");
+		insert("E");
+		assertTrue(tree.delete("A", "a"));
+		assertTrue(tree.delete("E", "e"));
+		assertFalse(tree.delete("E", "e"));
+		assertEquals(4, tree.nodes());
+		assertEquals(4, tree.size());
+		int c = tree.getRoot();
+		assertEquals("C", tree.getKey(c));
+		assertEquals("B", tree.getKey(tree.getPrevious(c)));
+		assertEquals("D", tree.getKey(tree.getNext(c)));
+		assertEquals("B", tree.getKey(tree.getSmallest()));
+		assertEquals("F", tree.getKey(tree.getLargest()));
+		assertEquals(PooledBraidedAVLTree.NIL, tree.getPrevious(tree.getSmallest()));
+		assertEquals(PooledBraidedAVLTree.NIL, tree.getNext(tree.getLargest()));
+		checkBalance(tree, tree.getRoot());
+	}
+
+	@Test
+	public void testDeletionWithMultipleElements() {
+		insert("A");
+		tree.insert("A", "b");
+		assertEquals(2, tree.elementCount(tree.find("A")));
+		assertTrue(tree.delete("A", "a"));
+		assertFalse(tree.isEmpty());
+		assertEquals("b", tree.getElement(tree.find("A"), 0));
+		assertTrue(tree.delete("A", "b"));
+		assertTrue(tree.isEmpty());
+		assertEquals(PooledBraidedAVLTree.NIL, tree.find("A"));
+	}
+
+	@Test
+	public void testGrowthAndReuse() {
+		PooledBraidedAVLTree<Integer, Integer> tree = new PooledBraidedAVLTree<>(1);
+		assertEquals(PooledBraidedAVLTree.CHUNK_SIZE, tree.capacity());
+		for (int i = 0; i < PooledBraidedAVLTree.CHUNK_SIZE; i++) {
+			tree.insert(i, i);
+		}
+		assertEquals(PooledBraidedAVLTree.CHUNK_SIZE, tree.capacity());
+		tree.insert(-1, -1);
+		assertTrue(tree.capacity() > PooledBraidedAVLTree.CHUNK_SIZE);
+		assertEquals(0, tree.capacity() % PooledBraidedAVLTree.CHUNK_SIZE);
+		int capacity = tree.capacity();
+		for (int i = 0; i < 100; i++) {
+			tree.delete(i, i);
+		}
+		for (int i = 0; i < 100; i++) {
+			tree.insert(-i - 2, i);
+		}
+		assertEquals(capacity, tree.capacity());
+	}
+
+	@Test
+	public void testRotations() {
+		for (char c = 'A'; c <= 'Z'; c++) {
+			insert(String.valueOf(c));
+		}
+		checkBalance(tree, tree.getRoot());
+		assertEquals(26, tree.nodes());
+		int slot = tree.getSmallest();
+		for (char c = 'A'; c <= 'Z'; c++, slot = tree.getNext(slot)) {
+			assertEquals(String.valueOf(c), tree.getKey(slot));
+		}
+		assertEquals(PooledBraidedAVLTree.NIL, slot);
+	}
+}
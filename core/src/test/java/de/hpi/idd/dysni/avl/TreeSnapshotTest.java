@@ -0,0 +1,100 @@
+package de.hpi.idd.dysni.avl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.hpi.idd.dysni.btree.BPlusTree;
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+
+public class TreeSnapshotTest {
+
+	private static int checkStructure(Node<?, ?> node) {
+		if (node == null) {
+			return 0;
+		}
+		int left = checkStructure(node.getLeft());
+		int right = checkStructure(node.getRight());
+		assertTrue(Math.abs(left - right) <= 1);
+		assertEquals(1 + Math.max(left, right), Node.height(node));
+		assertEquals(1 + Node.nodes(node.getLeft()) + Node.nodes(node.getRight()), node.nodes());
+		assertEquals(node.getElements().size() + Node.size(node.getLeft()) + Node.size(node.getRight()),
+				node.size());
+		return 1 + Math.max(left, right);
+	}
+
+	private static void checkEquals(SortedIndex<String, Integer> expected, SortedIndex<String, Integer> actual) {
+		assertEquals(expected.nodes(), actual.nodes());
+		assertEquals(expected.size(), actual.size());
+		IndexNode<String, Integer> node = actual.getSmallest();
+		for (IndexNode<String, Integer> e = expected.getSmallest(); e != null; e = e.getNext()) {
+			assertEquals(e.getKey(), node.getKey());
+			assertEquals(new ArrayList<>(e.getElements()), new ArrayList<>(node.getElements()));
+			node = node.getNext();
+		}
+		assertNull(node);
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IOException.class)
+	public void testCorruptSnapshot() throws IOException {
+		BraidedAVLTree<String, Integer> tree = new BraidedAVLTree<>();
+		tree.insert("A", 1);
+		tree.insert("B", 2);
+		Path file = folder.newFile().toPath();
+		TreeSnapshot.write(tree, file, SnapshotCodec.strings(), SnapshotCodec.integers());
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+		TreeSnapshot.read(file, SnapshotCodec.strings(), SnapshotCodec.integers(), new BraidedAVLTree<>());
+	}
+
+	@Test
+	public void testEmptyTree() throws IOException {
+		Path file = folder.newFile().toPath();
+		TreeSnapshot.write(new BraidedAVLTree<String, Integer>(), file, SnapshotCodec.strings(),
+				SnapshotCodec.integers());
+		BraidedAVLTree<String, Integer> tree = new BraidedAVLTree<>();
+		TreeSnapshot.read(file, SnapshotCodec.strings(), SnapshotCodec.integers(), tree);
+		assertTrue(tree.isEmpty());
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random random = new Random(42);
+		for (int size : new int[] { 1, 2, 3, 7, 100, 1_000 }) {
+			BraidedAVLTree<String, Integer> tree = new BraidedAVLTree<>();
+			for (int i = 0; i < size; i++) {
+				tree.insert("k" + random.nextInt(size), i);
+			}
+			Path file = folder.newFile().toPath();
+			TreeSnapshot.write(tree, file, SnapshotCodec.strings(), SnapshotCodec.integers());
+			BraidedAVLTree<String, Integer> loaded = new ConcurrentBraidedAVLTree<>();
+			TreeSnapshot.read(file, SnapshotCodec.strings(), SnapshotCodec.integers(), loaded);
+			checkStructure(loaded.getRoot());
+			checkEquals(tree, loaded);
+			for (Node<String, Integer> node : tree) {
+				assertEquals(node.getKey(), loaded.find(node.getKey()).getKey());
+			}
+			loaded.insert("a", -1);
+			loaded.delete(tree.getLargest().getKey(), tree.getLargest().getElements().iterator().next());
+			checkStructure(loaded.getRoot());
+			BPlusTree<String, Integer> btree = new BPlusTree<>();
+			TreeSnapshot.read(file, SnapshotCodec.strings(), SnapshotCodec.integers(), btree);
+			checkEquals(tree, btree);
+		}
+	}
+}
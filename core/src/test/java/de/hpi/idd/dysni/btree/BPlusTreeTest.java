@@ -0,0 +1,127 @@
+package de.hpi.idd.dysni.btree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.index.SortedIndexTest;
+import de.hpi.idd.util.ElementCollection;
+
+public class BPlusTreeTest extends SortedIndexTest {
+
+	private final BPlusTree<String, String> tree = new BPlusTree<>(3);
+
+	@Override
+	protected SortedIndex<Integer, Integer> createIndex() {
+		return new BPlusTree<>(3);
+	}
+
+	private void insert(String s) {
+		assertEquals(s, tree.insert(s, s.toLowerCase()).getKey());
+	}
+
+	@Test
+	public void testCursorAfterModification() {
+		insert("M");
+		IndexNode<String, String> node = tree.find("M");
+		for (char c = 'A'; c <= 'Z'; c++) {
+			tree.insert(String.valueOf(c), String.valueOf(c));
+		}
+		assertTrue(tree.height() > 1);
+		assertEquals(Arrays.asList("m", "M"), new ArrayList<>(node.getElements()));
+		assertEquals("N", node.getNext().getKey());
+		assertEquals("L", node.getPrevious().getKey());
+		assertEquals(tree.find("M"), node);
+	}
+
+	@Test
+	public void testDeletion() {
+		for (char c = 'A'; c <= 'Z'; c++) {
+			insert(String.valueOf(c));
+		}
+		assertTrue(tree.height() > 1);
+		for (char c = 'A'; c <= 'Z'; c += 2) {
+			assertTrue(tree.delete(String.valueOf(c), String.valueOf(c).toLowerCase()));
+		}
+		assertFalse(tree.delete("A", "a"));
+		assertFalse(tree.delete("B", "c"));
+		assertEquals(13, tree.nodes());
+		IndexNode<String, String> node = tree.getSmallest();
+		for (char c = 'B'; c <= 'Z'; c += 2, node = node.getNext()) {
+			assertEquals(String.valueOf(c), node.getKey());
+		}
+		assertNull(node);
+		for (char c = 'B'; c <= 'Z'; c += 2) {
+			assertTrue(tree.delete(String.valueOf(c), String.valueOf(c).toLowerCase()));
+		}
+		assertTrue(tree.isEmpty());
+		assertEquals(0, tree.height());
+		assertNull(tree.getSmallest());
+		assertNull(tree.getLargest());
+	}
+
+	@Test
+	public void testDeletionWithMultipleElements() {
+		insert("A");
+		tree.insert("A", "b");
+		assertEquals(2, tree.find("A").getElements().size());
+		assertEquals(2, tree.size());
+		assertTrue(tree.delete("A", "a"));
+		assertFalse(tree.isEmpty());
+		assertTrue(tree.find("A").contains("b"));
+		assertTrue(tree.delete("A", "b"));
+		assertTrue(tree.isEmpty());
+		assertNull(tree.find("A"));
+	}
+
+	@Test
+	public void testInsertNullElement() {
+		assertTrue(tree.insert("A", null).getElements().isEmpty());
+		assertEquals(1, tree.nodes());
+		assertEquals(0, tree.size());
+		insert("A");
+		tree.insert("A", null);
+		assertEquals(1, tree.find("A").getElements().size());
+		assertEquals(1, tree.size());
+	}
+
+	@Test
+	public void testRandomOperationsWithLargerOrders() {
+		for (int order : new int[] { 4, 5, BPlusTree.DEFAULT_ORDER }) {
+			checkRandomOperations(new BPlusTree<>(order));
+		}
+	}
+
+	@Test
+	public void testRemovedNode() {
+		insert("A");
+		insert("B");
+		IndexNode<String, String> node = tree.find("A");
+		assertTrue(tree.delete("A", "a"));
+		assertNull(node.getNext());
+		assertNull(tree.getSmallest().getPrevious());
+	}
+
+	@Test
+	public void testTags() {
+		insert("A");
+		tree.insert("A", "b", 7);
+		insert("B");
+		List<Integer> tags = new ArrayList<>();
+		tree.find("A").forEachTagged((element, tag) -> tags.add(tag));
+		assertEquals(Arrays.asList(ElementCollection.UNTAGGED, 7), tags);
+		tree.find("A").setTag("a", 3);
+		tags.clear();
+		tree.find("A").forEachTagged((element, tag) -> tags.add(tag));
+		assertEquals(Arrays.asList(3, 7), tags);
+	}
+}
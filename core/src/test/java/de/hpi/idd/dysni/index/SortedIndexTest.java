@@ -0,0 +1,135 @@
+package de.hpi.idd.dysni.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Conformance test of {@link SortedIndex} implementations. Random insertions
+ * and deletions are checked against a {@link TreeMap}.
+ */
+public abstract class SortedIndexTest {
+
+	private static final int KEYS = 500;
+	private static final int OPERATIONS = 20_000;
+
+	/**
+	 * Check the index against the expected contents and the invariants of the
+	 * implementation.
+	 */
+	private void checkContents(SortedIndex<Integer, Integer> index, TreeMap<Integer, List<Integer>> expected) {
+		assertEquals(expected.size(), index.nodes());
+		assertEquals(expected.values().stream().mapToInt(List::size).sum(), index.size());
+		assertEquals(expected.isEmpty(), index.isEmpty());
+		IndexNode<Integer, Integer> node = index.getSmallest();
+		for (Entry<Integer, List<Integer>> entry : expected.entrySet()) {
+			assertEquals(entry.getKey(), node.getKey());
+			assertEquals(entry.getValue(), new ArrayList<>(node.getElements()));
+			assertEquals(entry.getKey(), index.find(entry.getKey()).getKey());
+			node = node.getNext();
+		}
+		assertNull(node);
+		node = index.getLargest();
+		for (Integer key : expected.descendingKeySet()) {
+			assertEquals(key, node.getKey());
+			node = node.getPrevious();
+		}
+		assertNull(node);
+		for (int key = -1; key <= KEYS; key += 7) {
+			Integer ceiling = expected.ceilingKey(key);
+			node = index.ceiling(key);
+			assertEquals(ceiling, node == null ? null : node.getKey());
+		}
+		checkInvariants(index, expected);
+	}
+
+	/**
+	 * Check invariants specific to the implementation, e.g. the balance of a
+	 * tree. Does nothing by default.
+	 *
+	 * @param index
+	 *            index created by {@link #createIndex()}
+	 * @param expected
+	 *            expected contents of the index
+	 */
+	protected void checkInvariants(SortedIndex<Integer, Integer> index, TreeMap<Integer, List<Integer>> expected) {
+	}
+
+	/**
+	 * Run random insertions and deletions on an index. The index grows in the
+	 * first half and shrinks in the second half of the operations.
+	 *
+	 * @param index
+	 *            empty index
+	 */
+	protected void checkRandomOperations(SortedIndex<Integer, Integer> index) {
+		TreeMap<Integer, List<Integer>> expected = new TreeMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < OPERATIONS; i++) {
+			int key = random.nextInt(KEYS);
+			int element = random.nextInt(3);
+			if (random.nextInt(10) < (i < OPERATIONS / 2 ? 7 : 3)) {
+				index.insert(key, element);
+				expected.computeIfAbsent(key, k -> new ArrayList<>()).add(element);
+			} else {
+				List<Integer> elements = expected.get(key);
+				boolean contained = elements != null && elements.remove(Integer.valueOf(element));
+				assertEquals(contained, index.delete(key, element));
+				if (elements != null && elements.isEmpty()) {
+					expected.remove(key);
+				}
+			}
+			if (i % 1_000 == 0) {
+				checkContents(index, expected);
+			}
+		}
+		checkContents(index, expected);
+	}
+
+	/**
+	 * Create a new empty index.
+	 *
+	 * @return the index
+	 */
+	protected abstract SortedIndex<Integer, Integer> createIndex();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testJoinOverlapping() {
+		SortedIndex<Integer, Integer> index = createIndex();
+		SortedIndex<Integer, Integer> other = createIndex();
+		index.insert(1, 1);
+		other.insert(0, 0);
+		index.join(other);
+	}
+
+	@Test
+	public void testRandomOperations() {
+		checkRandomOperations(createIndex());
+	}
+
+	@Test
+	public void testSplitAndJoin() {
+		SortedIndex<Integer, Integer> index = createIndex();
+		TreeMap<Integer, List<Integer>> expected = new TreeMap<>();
+		for (int key = 0; key < KEYS; key += 2) {
+			index.insert(key, key);
+			index.insert(key, key + KEYS);
+			expected.put(key, new ArrayList<>(Arrays.asList(key, key + KEYS)));
+		}
+		SortedIndex<Integer, Integer> larger = index.split(KEYS / 2 + 1);
+		checkContents(index, new TreeMap<>(expected.headMap(KEYS / 2 + 1)));
+		checkContents(larger, new TreeMap<>(expected.tailMap(KEYS / 2 + 1)));
+		index.join(larger);
+		checkContents(index, expected);
+		assertTrue(larger.isEmpty());
+	}
+}
@@ -0,0 +1,91 @@
+package de.hpi.idd.dysni.key;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import de.hpi.idd.dysni.avl.SnapshotCodec;
+
+public class NormalizedKeyTest {
+
+	private static final int ITERATIONS = 10_000;
+
+	private static <T extends Comparable<? super T>> void checkOrder(KeyEncoder<T> encoder, Supplier<T> values) {
+		NormalizedKeyHandler<T, T> handler = new NormalizedKeyHandler<>(t -> t, encoder);
+		for (int i = 0; i < ITERATIONS; i++) {
+			T s = values.get();
+			T t = values.get();
+			NormalizedKey k = handler.computeKey(s);
+			NormalizedKey l = handler.computeKey(t);
+			assertEquals(s + " <> " + t, Integer.signum(s.compareTo(t)), Integer.signum(k.compareTo(l)));
+			assertEquals(s.equals(t), k.equals(l));
+			if (k.equals(l)) {
+				assertEquals(k.hashCode(), l.hashCode());
+			}
+		}
+	}
+
+	private static String randomString(Random random) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(12);
+		for (int i = 0; i < length; i++) {
+			// include zero bytes, which are escaped
+			sb.append((char) (random.nextInt(4) == 0 ? 0 : 'a' + random.nextInt(3)));
+		}
+		return sb.toString();
+	}
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testCodec() throws IOException {
+		SnapshotCodec<NormalizedKey> codec = NormalizedKeyHandler.getCodec();
+		NormalizedKey key = new NormalizedKey.Builder().append("foo").append(42).build();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		codec.encode(key, new DataOutputStream(bytes));
+		assertEquals(key, codec.decode(ByteBuffer.wrap(bytes.toByteArray())));
+	}
+
+	@Test
+	public void testDoubles() {
+		double[] special = { Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.0, -Double.MIN_VALUE, 0.0,
+				Double.MIN_VALUE, 1.0, Double.MAX_VALUE, Double.POSITIVE_INFINITY };
+		checkOrder(KeyEncoder.doubles(), () -> random.nextBoolean() ? special[random.nextInt(special.length)]
+				: (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20)));
+	}
+
+	@Test
+	public void testIntegers() {
+		checkOrder(KeyEncoder.integers(), () -> random.nextBoolean() ? random.nextInt() : random.nextInt(10) - 5);
+	}
+
+	@Test
+	public void testLocalDates() {
+		checkOrder(KeyEncoder.localDates(), () -> LocalDate.ofEpochDay(random.nextInt(100_000) - 50_000));
+	}
+
+	@Test
+	public void testLongs() {
+		checkOrder(KeyEncoder.longs(), () -> random.nextBoolean() ? random.nextLong() : random.nextInt(10) - 5L);
+	}
+
+	@Test
+	public void testPairs() {
+		checkOrder(KeyEncoder.pairs(KeyEncoder.strings(), KeyEncoder.integers()),
+				() -> Pair.of(randomString(random), random.nextInt(5) - 2));
+	}
+
+	@Test
+	public void testStrings() {
+		checkOrder(KeyEncoder.strings(), () -> randomString(random));
+	}
+}
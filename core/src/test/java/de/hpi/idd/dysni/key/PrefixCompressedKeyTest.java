@@ -0,0 +1,71 @@
+package de.hpi.idd.dysni.key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PrefixCompressedKeyTest {
+
+	/** includes a Latin-1 and a non-Latin-1 character */
+	private static final String ALPHABET = "ab\u00e4\u20ac";
+
+	private static String randomString(Random random) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(8);
+		for (int i = 0; i < length; i++) {
+			sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testOrderAndEquality() {
+		Random random = new Random(42);
+		for (int prefixLength = 1; prefixLength < 5; prefixLength++) {
+			PrefixCompressingKeyHandler<String> handler = new PrefixCompressingKeyHandler<>(s -> s, prefixLength);
+			for (int i = 0; i < 10_000; i++) {
+				String s = randomString(random);
+				String t = randomString(random);
+				PrefixCompressedKey k = handler.computeKey(s);
+				PrefixCompressedKey l = handler.computeKey(t);
+				assertEquals(s, k.toString());
+				assertEquals(s.length(), k.length());
+				assertEquals(Integer.signum(s.compareTo(t)), Integer.signum(k.compareTo(l)));
+				assertEquals(s.equals(t), k.equals(l));
+				assertEquals(s.hashCode(), k.hashCode());
+			}
+		}
+	}
+
+	@Test
+	public void testSharedPrefix() {
+		PrefixCompressingKeyHandler<String> handler = new PrefixCompressingKeyHandler<>(s -> s, 5);
+		PrefixCompressedKey k = handler.computeKey(new String("14482Mueller"));
+		PrefixCompressedKey l = handler.computeKey(new String("14482Meier"));
+		assertSame(k.getPrefix(), l.getPrefix());
+		assertEquals("14482", k.getPrefix());
+		assertEquals('M', k.charAt(5));
+		assertEquals("482Mu", k.subSequence(2, 7));
+		assertNotEquals(k, l);
+		assertEquals(handler.computeKey("1448"), handler.computeKey("1448"));
+	}
+
+	@Test
+	public void testCodec() throws IOException {
+		PrefixCompressingKeyHandler<String> handler = new PrefixCompressingKeyHandler<>(s -> s, 3);
+		PrefixCompressedKey key = handler.computeKey("zip-name");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		handler.getCodec().encode(key, new DataOutputStream(bytes));
+		PrefixCompressedKey decoded = handler.getCodec().decode(ByteBuffer.wrap(bytes.toByteArray()));
+		assertEquals(key, decoded);
+		assertSame(key.getPrefix(), decoded.getPrefix());
+	}
+}
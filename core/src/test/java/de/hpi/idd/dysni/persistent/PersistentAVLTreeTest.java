@@ -0,0 +1,96 @@
+package de.hpi.idd.dysni.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.index.SortedIndexTest;
+
+public class PersistentAVLTreeTest extends SortedIndexTest {
+
+	/** contents of {@link #snapshot} when it was taken */
+	private List<String> expectedSnapshot;
+	/** snapshot taken by the last check of the random operations */
+	private PersistentAVLTree<Integer, Integer> snapshot;
+	private final PersistentAVLTree<Integer, Integer> tree = new PersistentAVLTree<>();
+
+	/**
+	 * Check the balance of the tree and that a snapshot taken now is not
+	 * affected by the following operations.
+	 */
+	@Override
+	protected void checkInvariants(SortedIndex<Integer, Integer> index, TreeMap<Integer, List<Integer>> expected) {
+		PersistentAVLTree<Integer, Integer> tree = (PersistentAVLTree<Integer, Integer>) index;
+		assertTrue(tree.height() <= 1.45 * Math.log(expected.size() + 2) / Math.log(2));
+		if (snapshot != null) {
+			checkSnapshot();
+		}
+		snapshot = tree.snapshot();
+		expectedSnapshot = new ArrayList<>();
+		for (Entry<Integer, List<Integer>> entry : expected.entrySet()) {
+			expectedSnapshot.add(entry.getKey() + "=" + entry.getValue());
+		}
+	}
+
+	private void checkSnapshot() {
+		List<String> contents = new ArrayList<>();
+		for (IndexNode<Integer, Integer> node = snapshot.getSmallest(); node != null; node = node.getNext()) {
+			contents.add(node.getKey() + "=" + new ArrayList<>(node.getElements()));
+		}
+		assertEquals(expectedSnapshot, contents);
+	}
+
+	@Override
+	protected SortedIndex<Integer, Integer> createIndex() {
+		return new PersistentAVLTree<>();
+	}
+
+	@Test
+	public void testNavigation() {
+		tree.insert(2, 2);
+		tree.insert(1, 1);
+		tree.insert(3, 3);
+		tree.insert(2, 4);
+		IndexNode<Integer, Integer> node = tree.find(2);
+		assertEquals(2, node.getElements().size());
+		assertTrue(node.contains(4));
+		assertEquals(1, node.getPrevious().getKey().intValue());
+		assertEquals(3, node.getNext().getKey().intValue());
+		assertNull(tree.getSmallest().getPrevious());
+		assertNull(tree.getLargest().getNext());
+		assertNull(tree.find(5));
+		assertFalse(tree.delete(2, 5));
+		assertTrue(tree.delete(1, 1));
+		assertNull(tree.find(1));
+		assertNull(tree.find(2).getPrevious());
+		// nodes retrieved before remain bound to their version
+		assertEquals(1, node.getPrevious().getKey().intValue());
+	}
+
+	@Test
+	public void testSnapshot() {
+		for (int i = 0; i < 100; i++) {
+			tree.insert(i, i);
+		}
+		PersistentAVLTree<Integer, Integer> snapshot = tree.snapshot();
+		for (int i = 0; i < 100; i += 2) {
+			tree.delete(i, i);
+		}
+		snapshot.insert(100, 100);
+		assertEquals(50, tree.nodes());
+		assertNull(tree.find(100));
+		assertEquals(101, snapshot.nodes());
+		assertEquals(1, snapshot.find(0).getNext().getKey().intValue());
+		assertEquals(3, tree.find(1).getNext().getKey().intValue());
+	}
+}
@@ -0,0 +1,180 @@
+package de.hpi.idd.dysni.skiplist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.index.SortedIndexTest;
+import de.hpi.idd.util.ElementCollection;
+
+public class ConcurrentSkipListIndexTest extends SortedIndexTest {
+
+	private static final int ELEMENTS = 10_000;
+	private static final int THREADS = 4;
+
+	private final ConcurrentSkipListIndex<Integer, Integer> index = new ConcurrentSkipListIndex<>();
+
+	@Override
+	protected SortedIndex<Integer, Integer> createIndex() {
+		return new ConcurrentSkipListIndex<>();
+	}
+
+	private void runConcurrently(Runnable... tasks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+		List<Future<?>> futures = new ArrayList<>();
+		for (Runnable task : tasks) {
+			futures.add(executor.submit(task));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+	}
+
+	@Test
+	public void testConcurrentDelete() throws Exception {
+		for (int i = 0; i < ELEMENTS; i++) {
+			index.insert(i / 2, i);
+		}
+		Runnable[] tasks = new Runnable[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			tasks[t] = () -> {
+				for (int i = offset; i < ELEMENTS; i += THREADS) {
+					if (i % 4 != 0) {
+						assertTrue(index.delete(i / 2, i));
+					}
+				}
+			};
+		}
+		runConcurrently(tasks);
+		assertEquals(ELEMENTS / 4, index.nodes());
+		assertEquals(ELEMENTS / 4, index.size());
+		IndexNode<Integer, Integer> node = index.getSmallest();
+		for (int i = 0; i < ELEMENTS; i += 4, node = node.getNext()) {
+			assertEquals(i / 2, node.getKey().intValue());
+			assertEquals(1, node.getElements().size());
+			assertTrue(node.contains(i));
+		}
+		assertNull(node);
+	}
+
+	@Test
+	public void testConcurrentInsert() throws Exception {
+		Runnable[] tasks = new Runnable[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			tasks[t] = () -> {
+				for (int i = offset; i < ELEMENTS; i += THREADS) {
+					IndexNode<Integer, Integer> node = index.insert(i % (ELEMENTS / 2), i);
+					assertTrue(node.contains(i));
+				}
+			};
+		}
+		runConcurrently(tasks);
+		assertEquals(ELEMENTS / 2, index.nodes());
+		assertEquals(ELEMENTS, index.size());
+		IndexNode<Integer, Integer> node = index.getLargest();
+		for (int i = ELEMENTS / 2 - 1; i >= 0; i--, node = node.getPrevious()) {
+			assertEquals(i, node.getKey().intValue());
+			assertEquals(2, node.getElements().size());
+		}
+		assertNull(node);
+	}
+
+	@Test
+	public void testConcurrentInsertAndDeleteOfSameKey() throws Exception {
+		Runnable[] tasks = new Runnable[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			int element = t;
+			tasks[t] = () -> {
+				for (int i = 0; i < ELEMENTS; i++) {
+					index.insert(0, element);
+					assertTrue(index.delete(0, element));
+				}
+			};
+		}
+		runConcurrently(tasks);
+		assertTrue(index.isEmpty());
+		assertEquals(0, index.nodes());
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void testConcurrentLinking() throws Exception {
+		Runnable[] tasks = new Runnable[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			int element = t;
+			tasks[t] = () -> {
+				// neighboring keys are inserted and removed by all threads
+				for (int i = 0; i < ELEMENTS; i++) {
+					index.insert(i % 64, element);
+					if (i % 3 != 0) {
+						assertTrue(index.delete(i % 64, element));
+					}
+				}
+			};
+		}
+		runConcurrently(tasks);
+		IndexNode<Integer, Integer> previous = null;
+		int nodes = 0;
+		for (IndexNode<Integer, Integer> node = index.getSmallest(); node != null; node = node.getNext()) {
+			assertEquals(previous, node.getPrevious());
+			assertEquals(node, index.find(node.getKey()));
+			assertFalse(node.getElements().isEmpty());
+			previous = node;
+			nodes++;
+		}
+		assertEquals(previous, index.getLargest());
+		assertEquals(index.nodes(), nodes);
+	}
+
+	@Test
+	public void testNavigation() {
+		index.insert(2, 2);
+		index.insert(1, 1);
+		index.insert(3, 3);
+		index.insert(2, 4);
+		IndexNode<Integer, Integer> node = index.find(2);
+		assertEquals(2, node.getElements().size());
+		assertEquals(1, node.getPrevious().getKey().intValue());
+		assertEquals(3, node.getNext().getKey().intValue());
+		assertNull(index.getSmallest().getPrevious());
+		assertNull(index.getLargest().getNext());
+		assertFalse(index.delete(2, 5));
+		assertTrue(index.delete(1, 1));
+		assertNull(node.getPrevious());
+		assertNull(index.find(1));
+	}
+
+	@Test
+	public void testSnapshotIteration() {
+		index.insert(1, 1, 5);
+		IndexNode<Integer, Integer> node = index.find(1);
+		Iterator<Integer> elements = node.getElements().iterator();
+		index.insert(1, 2);
+		assertTrue(index.delete(1, 1));
+		assertEquals(1, elements.next().intValue());
+		assertFalse(elements.hasNext());
+		assertEquals(Arrays.asList(2), new ArrayList<>(node.getElements()));
+		index.insert(1, 3, 7);
+		List<Integer> tags = new ArrayList<>();
+		node.forEachTagged((element, tag) -> tags.add(tag));
+		assertEquals(Arrays.asList(ElementCollection.UNTAGGED, 7), tags);
+	}
+}
@@ -0,0 +1,135 @@
+package de.hpi.idd.dysni.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.sim.LevenshteinSimilarity;
+import de.hpi.idd.sim.SimilarityClassifier;
+import de.hpi.idd.sim.SimilarityMeasure;
+import de.hpi.idd.store.MemoryStore;
+import de.hpi.idd.store.StoreException;
+
+public class AdaptiveDuplicateWindowBuilderTest {
+
+	/** Sink recording the candidates and verdicts in the order received. */
+	private static class RecordingSink implements CandidateSink<Integer> {
+
+		private final List<String> received = new ArrayList<>();
+
+		@Override
+		public void accept(Integer id) {
+			received.add(id.toString());
+		}
+
+		@Override
+		public void accept(Integer id, SimilarityClassifier<?> classifier, boolean similar) {
+			received.add(id + (similar ? "+" : "-"));
+		}
+	}
+
+	private static final String[] RECORDS = { "AA", "AB", "AC", "BA", "BB", "BC", "CA", "CB", "CC", "AAA", "ABB",
+			"BBB", "BBC", "CCC" };
+
+	private final SimilarityClassifier<String> classifier = new LevenshteinSimilarity().asClassifier(0.5);
+	private ExecutorService executor;
+	private final MemoryStore<Integer, String> store = new MemoryStore<>();
+	private final BraidedAVLTree<String, Integer> tree = new BraidedAVLTree<>();
+
+	private List<String> buildWindow(AdaptiveDuplicateWindowBuilder<String, String, Integer> builder,
+			String record) {
+		RecordingSink sink = new RecordingSink();
+		builder.buildWindow(record, tree.find(record), sink);
+		return sink.received;
+	}
+
+	@Before
+	public void setup() throws StoreException {
+		executor = Executors.newSingleThreadExecutor();
+		for (int i = 0; i < RECORDS.length; i++) {
+			store.storeRecord(i, RECORDS[i]);
+			tree.insert(RECORDS[i], i);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testConcurrentComparisonBudget() {
+		AtomicInteger comparisons = new AtomicInteger();
+		SimilarityMeasure<String> counting = (s1, s2) -> {
+			comparisons.incrementAndGet();
+			return 1.0;
+		};
+		BudgetedWindowBuilder<String, String, Integer> builder = new BudgetedWindowBuilder<>(
+				new AdaptiveDuplicateWindowBuilder<String, String, Integer>(0.3, counting.asClassifier(0.5), store,
+						executor),
+				WindowBudget.comparisons(4));
+		RecordingSink sink = new RecordingSink();
+		builder.buildWindow("BB", tree.find("BB"), sink);
+		assertEquals(4, sink.received.size());
+		// three comparisons are left after the initial node, both directions
+		// may pass the check for the last one at once
+		assertTrue(comparisons.get() <= 4);
+		assertEquals(1, builder.getTruncations());
+	}
+
+	@Test
+	public void testConcurrentExpansion() {
+		AdaptiveDuplicateWindowBuilder<String, String, Integer> sequential = new AdaptiveDuplicateWindowBuilder<>(
+				0.3, classifier, store);
+		AdaptiveDuplicateWindowBuilder<String, String, Integer> concurrent = new AdaptiveDuplicateWindowBuilder<>(
+				0.3, classifier, store, executor);
+		for (String record : RECORDS) {
+			assertEquals(buildWindow(sequential, record), buildWindow(concurrent, record));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testConcurrentFailure() {
+		SimilarityMeasure<String> failing = (s1, s2) -> {
+			throw new IllegalStateException();
+		};
+
+		buildWindow(new AdaptiveDuplicateWindowBuilder<>(0.3, failing.asClassifier(0.5), store, executor), "BB");
+	}
+
+	@Test
+	public void testConcurrentFailureAwaitsOtherDirection() {
+		AtomicInteger running = new AtomicInteger();
+		SimilarityMeasure<String> failing = (s1, s2) -> {
+			if (s2.compareTo(s1) > 0) {
+				throw new IllegalStateException();
+			}
+			running.incrementAndGet();
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			return 1.0;
+		};
+		try {
+			buildWindow(new AdaptiveDuplicateWindowBuilder<>(0.3, failing.asClassifier(0.5), store, executor), "BB");
+			fail();
+		} catch (IllegalStateException e) {
+			// the direction towards smaller keys has finished its comparison
+			assertEquals(0, running.get());
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package de.hpi.idd.dysni.window;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.dysni.index.IndexNode;
+
+public class BudgetedWindowBuilderTest {
+
+	private final BraidedAVLTree<Integer, Integer> tree = new BraidedAVLTree<>();
+
+	private static List<Integer> buildWindow(WindowBuilder<Object, Integer, Integer> builder,
+			IndexNode<Integer, Integer> node) {
+		List<Integer> window = new ArrayList<>();
+		builder.buildWindow(null, node, window::add);
+		return window;
+	}
+
+	private static FixedWindowBuilder<Object, Integer, Integer> fixed(int size) {
+		return new FixedWindowBuilder<>(size);
+	}
+
+	@Before
+	public void setup() {
+		for (int i = 0; i < 10; i++) {
+			tree.insert(i, i);
+		}
+	}
+
+	@Test
+	public void testAlternatingExpansion() {
+		assertEquals(Arrays.asList(5, 4, 6, 3, 7, 2, 8, 1, 9, 0),
+				buildWindow(fixed(10), tree.find(5)));
+		FixedWindowBuilder<Object, Integer, Integer> builder = fixed(3);
+		assertEquals(Arrays.asList(1, 0, 2, 3, 4), buildWindow(builder, tree.find(1)));
+		// the expansions are reused for the next window
+		assertEquals(Arrays.asList(8, 7, 9, 6, 5), buildWindow(builder, tree.find(8)));
+	}
+
+	@Test
+	public void testComparisonBudget() {
+		BudgetedWindowBuilder<Object, Integer, Integer> builder = new BudgetedWindowBuilder<>(
+				fixed(10), WindowBudget.comparisons(4));
+		assertEquals(Arrays.asList(5, 4, 6, 3), buildWindow(builder, tree.find(5)));
+		assertEquals(1, builder.getTruncations());
+		// each window has its own budget
+		assertEquals(Arrays.asList(2, 1, 3, 0), buildWindow(builder, tree.find(2)));
+		assertEquals(2, builder.getTruncations());
+		assertEquals(Arrays.asList(0, 1, 2), buildWindow(
+				new BudgetedWindowBuilder<>(fixed(2), WindowBudget.comparisons(3)), tree.find(0)));
+	}
+
+	@Test
+	public void testTimeBudget() {
+		BudgetedWindowBuilder<Object, Integer, Integer> builder = new BudgetedWindowBuilder<>(
+				fixed(10), WindowBudget.nanos(0L));
+		assertEquals(Arrays.asList(5), buildWindow(builder, tree.find(5)));
+		assertEquals(1, builder.getTruncations());
+		builder = new BudgetedWindowBuilder<>(fixed(10), WindowBudget.nanos(Long.MAX_VALUE - 1));
+		assertEquals(10, buildWindow(builder, tree.find(5)).size());
+		assertEquals(0, builder.getTruncations());
+	}
+}
@@ -0,0 +1,57 @@
+package de.hpi.idd.dysni.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class CandidateBufferTest {
+
+	private final CandidateBuffer<Integer> buffer = new CandidateBuffer<>();
+
+	@Test
+	public void testDistinctInOrder() {
+		buffer.reset(3);
+		buffer.acceptAll(Arrays.asList(5, 1, 3, 5, null, 2, 1));
+		assertEquals(3, buffer.size());
+		assertEquals(Arrays.asList(5, 1, 2), buffer.stream(false).collect(Collectors.toList()));
+		assertTrue(buffer.contains(2));
+		assertFalse(buffer.contains(3));
+		buffer.reset(null);
+		assertTrue(buffer.isEmpty());
+		assertFalse(buffer.contains(5));
+		buffer.accept(3);
+		assertEquals(3, buffer.get(0).intValue());
+	}
+
+	@Test
+	public void testRandomReuse() {
+		Random random = new Random(42);
+		for (int round = 0; round < 100; round++) {
+			Set<Integer> expected = new LinkedHashSet<>();
+			buffer.reset(-1);
+			int candidates = random.nextInt(1_000);
+			for (int i = 0; i < candidates; i++) {
+				// colliding hash codes
+				int id = random.nextInt(500) * 64;
+				expected.add(id);
+				buffer.accept(id);
+			}
+			assertEquals(new ArrayList<>(expected), buffer.stream(false).collect(Collectors.toList()));
+			List<Integer> parallel = buffer.stream(true).collect(Collectors.toList());
+			assertEquals(new ArrayList<>(expected), parallel);
+			for (int i = 0; i < expected.size(); i++) {
+				assertTrue(buffer.contains(buffer.get(i)));
+			}
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package de.hpi.idd.dysni.window;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.util.CompactIdDictionary;
+import de.hpi.idd.util.IdDictionary;
+
+public class DenseCandidateBufferTest {
+
+	private final IdDictionary<Integer> dictionary = new CompactIdDictionary<Integer>() {
+
+		@Override
+		public int add(Integer id) {
+			lookups++;
+			return super.add(id);
+		}
+	};
+	private int lookups = 0;
+	private final DenseCandidateBuffer<Integer> buffer = new DenseCandidateBuffer<>(dictionary);
+
+	private List<Integer> candidates() {
+		List<Integer> candidates = new ArrayList<>();
+		for (int i = 0; i < buffer.size(); i++) {
+			candidates.add(dictionary.get(buffer.getCandidates()[i]));
+		}
+		return candidates;
+	}
+
+	@Test
+	public void testDistinctInOrder() {
+		buffer.reset(3);
+		buffer.acceptAll(Arrays.asList(5, 1, 3, 5, null, 2, 1));
+		assertEquals(Arrays.asList(5, 1, 2), candidates());
+		buffer.reset(null);
+		assertEquals(0, buffer.size());
+		buffer.acceptAll(Arrays.asList(3, 5, 3));
+		assertEquals(Arrays.asList(3, 5), candidates());
+	}
+
+	@Test
+	public void testRandomReuse() {
+		Random random = new Random(42);
+		for (int round = 0; round < 100; round++) {
+			Set<Integer> expected = new LinkedHashSet<>();
+			buffer.reset(-1);
+			int candidates = random.nextInt(1_000);
+			for (int i = 0; i < candidates; i++) {
+				int id = random.nextInt(500 + 10 * round);
+				expected.add(id);
+				buffer.accept(id);
+			}
+			assertEquals(new ArrayList<>(expected), candidates());
+		}
+	}
+
+	@Test
+	public void testTaggedElements() {
+		BraidedAVLTree<String, Integer> tree = new BraidedAVLTree<>();
+		for (int id : Arrays.asList(4, 2, 7)) {
+			tree.insert("a", id);
+		}
+		IndexNode<String, Integer> node = tree.find("a");
+		node.setTag(4, dictionary.add(4));
+		node.setTag(7, dictionary.add(7));
+		lookups = 0;
+		buffer.reset(7);
+		buffer.acceptElements(node);
+		assertEquals(Arrays.asList(4, 2), candidates());
+		// only the untagged element is looked up
+		assertEquals(1, lookups);
+	}
+}
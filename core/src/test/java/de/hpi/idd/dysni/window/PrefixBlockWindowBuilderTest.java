@@ -0,0 +1,99 @@
+package de.hpi.idd.dysni.window;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.dysni.avl.ConcurrentBraidedAVLTree;
+import de.hpi.idd.dysni.btree.BPlusTree;
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.persistent.PersistentAVLTree;
+import de.hpi.idd.dysni.skiplist.ConcurrentSkipListIndex;
+
+public class PrefixBlockWindowBuilderTest {
+
+	private static final String[] KEYS = { "AA", "AB", "ABC", "AC", "B", "BA", "BB", "C" };
+
+	private static List<String> buildWindow(PrefixBlockWindowBuilder<Object, String, String> builder,
+			SortedIndex<String, String> index, String key, boolean located) {
+		List<String> window = new ArrayList<>();
+		if (located) {
+			builder.buildWindow(null, index, index.find(key), window::add);
+		} else {
+			builder.buildWindow(null, index.find(key), window::add);
+		}
+		return window;
+	}
+
+	private static void test(Supplier<SortedIndex<String, String>> factory) {
+		SortedIndex<String, String> index = factory.get();
+		for (String key : KEYS) {
+			index.insert(key, key);
+		}
+		for (boolean located : new boolean[] { false, true }) {
+			assertEquals(Arrays.asList("AB", "AA", "ABC", "AC"),
+					buildWindow(PrefixBlockWindowBuilder.prefixes(1, Integer.MAX_VALUE), index, "AB", located));
+			assertEquals(Arrays.asList("ABC", "AB"),
+					buildWindow(PrefixBlockWindowBuilder.prefixes(2, Integer.MAX_VALUE), index, "ABC", located));
+			assertEquals(Arrays.asList("B"),
+					buildWindow(PrefixBlockWindowBuilder.prefixes(2, Integer.MAX_VALUE), index, "B", located));
+			assertEquals(Arrays.asList("BB", "BA", "B"),
+					buildWindow(PrefixBlockWindowBuilder.prefixes(1, Integer.MAX_VALUE), index, "BB", located));
+			assertEquals(Arrays.asList("C"),
+					buildWindow(PrefixBlockWindowBuilder.prefixes(1, Integer.MAX_VALUE), index, "C", located));
+			assertEquals(Arrays.asList("AB", "AA"),
+					buildWindow(PrefixBlockWindowBuilder.prefixes(1, 2), index, "AB", located));
+			assertEquals(KEYS.length,
+					buildWindow(PrefixBlockWindowBuilder.prefixes(0, Integer.MAX_VALUE), index, "B", located).size());
+		}
+	}
+
+	@Test
+	public void testBlocks() {
+		test(BraidedAVLTree::new);
+		test(ConcurrentBraidedAVLTree::new);
+		test(() -> new BPlusTree<>(3));
+		test(ConcurrentSkipListIndex::new);
+		test(PersistentAVLTree::new);
+	}
+
+	@Test
+	public void testBlocksOfOlderVersion() {
+		PersistentAVLTree<String, String> index = new PersistentAVLTree<>();
+		for (String key : KEYS) {
+			index.insert(key, key);
+		}
+		IndexNode<String, String> node = index.find("AB");
+		index.insert("AD", "AD");
+		index.insert("BC", "BC");
+		// the boundaries are located in a newer version than the node
+		List<String> window = new ArrayList<>();
+		PrefixBlockWindowBuilder.<Object, String> prefixes(1, Integer.MAX_VALUE).buildWindow(null, index, node,
+				window::add);
+		assertEquals(Arrays.asList("AB", "AA", "ABC", "AC"), window);
+	}
+
+	@Test
+	public void testCeiling() {
+		for (Supplier<SortedIndex<String, String>> factory : Arrays
+				.<Supplier<SortedIndex<String, String>>> asList(BraidedAVLTree::new, () -> new BPlusTree<>(3),
+						ConcurrentSkipListIndex::new, PersistentAVLTree::new)) {
+			SortedIndex<String, String> index = factory.get();
+			for (String key : KEYS) {
+				index.insert(key, key);
+			}
+			assertEquals("AA", index.ceiling("").getKey());
+			assertEquals("ABC", index.ceiling("ABB").getKey());
+			assertEquals("B", index.ceiling("B").getKey());
+			assertEquals("C", index.ceiling("BC").getKey());
+			assertEquals(null, index.ceiling("D"));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package de.hpi.idd.dysni.window;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.dysni.index.IndexNode;
+
+public class SelfTuningWindowBuilderTest {
+
+	private static List<Integer> buildWindow(WindowBuilder<Object, Integer, Integer> builder,
+			IndexNode<Integer, Integer> node) {
+		List<Integer> window = new ArrayList<>();
+		builder.buildWindow(null, node, window::add);
+		return window;
+	}
+
+	@Test
+	public void testCopy() {
+		BraidedAVLTree<Integer, Integer> tree = new BraidedAVLTree<>();
+		for (int i = 0; i < 100; i++) {
+			tree.insert(i, i);
+		}
+		IndexNode<Integer, Integer> node = tree.find(50);
+		SelfTuningWindowBuilder<Object, Integer, Integer> builder = new SelfTuningWindowBuilder<>(2, 10, 0.5, 1);
+		buildWindow(builder, node);
+		builder.matched(null, Arrays.asList(49));
+		SelfTuningWindowBuilder<Object, Integer, Integer> copy = builder.copy();
+		assertEquals(1, copy.getSize());
+		assertArrayEquals(builder.getHistogram(), copy.getHistogram());
+		// the window of the original must not receive the feedback of the copy
+		buildWindow(builder, node);
+		buildWindow(copy, node);
+		copy.matched(null, Arrays.asList(45, 55));
+		assertEquals(1, builder.getSize());
+		assertEquals(5, copy.getSize());
+		builder.matched(null, Arrays.asList(51));
+		assertEquals(1, builder.getSize());
+	}
+
+	@Test
+	public void testTuning() {
+		BraidedAVLTree<Integer, Integer> tree = new BraidedAVLTree<>();
+		for (int i = 0; i < 100; i++) {
+			tree.insert(i, i);
+		}
+		IndexNode<Integer, Integer> node = tree.find(50);
+		SelfTuningWindowBuilder<Object, Integer, Integer> builder = new SelfTuningWindowBuilder<>(2, 10, 0.5, 2);
+		assertEquals(21, buildWindow(builder, node).size());
+		builder.matched(null, Arrays.asList(49, 53));
+		assertEquals(1, builder.getSize());
+		assertEquals(Arrays.asList(50, 49, 51), buildWindow(builder, node));
+		// only exploration windows are recorded
+		builder.matched(null, Arrays.asList(49));
+		assertArrayEquals(new long[] { 0, 1, 0, 1, 0, 0, 0, 0, 0, 0, 0 }, builder.getHistogram());
+		assertEquals(21, buildWindow(builder, node).size());
+		builder.matched(null, Arrays.asList(53, 47, 99));
+		assertEquals(3, builder.getSize());
+		assertEquals(Arrays.asList(50, 49, 51, 48, 52, 47, 53), buildWindow(builder, node));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPercentile() {
+		new SelfTuningWindowBuilder<>(1, 10, 1.5);
+	}
+}
@@ -0,0 +1,94 @@
+package de.hpi.idd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkedExecutorTest {
+
+	private ExecutorService pool;
+
+	@Before
+	public void setup() {
+		pool = Executors.newFixedThreadPool(3);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testForEach() {
+		ChunkedExecutor executor = new ChunkedExecutor(pool, 7);
+		for (int size : new int[] { 0, 1, 7, 8, 100 }) {
+			AtomicIntegerArray counts = new AtomicIntegerArray(size);
+			executor.forEach(size, counts::incrementAndGet);
+			for (int i = 0; i < size; i++) {
+				assertEquals(1, counts.get(i));
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFailure() {
+		new ChunkedExecutor(pool, 2).forEach(10, i -> {
+			if (i == 7) {
+				throw new IllegalStateException();
+			}
+		});
+	}
+
+	@Test
+	public void testFailureAwaitsOtherChunks() {
+		AtomicInteger running = new AtomicInteger();
+		try {
+			new ChunkedExecutor(pool, 2).forEach(6, i -> {
+				if (i == 0) {
+					throw new IllegalStateException();
+				}
+				running.incrementAndGet();
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			// the chunks of the executor have finished
+			assertEquals(0, running.get());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidChunkSize() {
+		new ChunkedExecutor(pool, 0);
+	}
+
+	@Test
+	public void testVirtualThreads() {
+		if (!ChunkedExecutor.supportsVirtualThreads()) {
+			return;
+		}
+		ExecutorService virtual = ChunkedExecutor.newVirtualThreadExecutor();
+		try {
+			AtomicIntegerArray counts = new AtomicIntegerArray(10);
+			new ChunkedExecutor(virtual, 1).forEach(10, counts::incrementAndGet);
+			for (int i = 0; i < 10; i++) {
+				assertEquals(1, counts.get(i));
+			}
+		} finally {
+			virtual.shutdown();
+		}
+	}
+}
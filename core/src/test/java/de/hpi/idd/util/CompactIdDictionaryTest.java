@@ -0,0 +1,39 @@
+package de.hpi.idd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CompactIdDictionaryTest {
+
+	private final IdDictionary<String> dictionary = new CompactIdDictionary<>();
+
+	@Test
+	public void test() {
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, dictionary.add("id" + i));
+		}
+		assertEquals(42, dictionary.add("id42"));
+		assertEquals(42, dictionary.indexOf("id42"));
+		assertEquals("id42", dictionary.get(42));
+		assertEquals(-1, dictionary.indexOf("foo"));
+		assertEquals(100, dictionary.size());
+		assertTrue(dictionary.remove("id42"));
+		assertFalse(dictionary.remove("id42"));
+		assertNull(dictionary.get(42));
+		assertEquals(-1, dictionary.indexOf("id42"));
+		assertEquals(99, dictionary.size());
+		// ints of removed ids are reused
+		assertEquals(42, dictionary.add("foo"));
+		assertEquals(100, dictionary.add("bar"));
+		assertEquals(101, dictionary.capacity());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNull() {
+		dictionary.add(null);
+	}
+}
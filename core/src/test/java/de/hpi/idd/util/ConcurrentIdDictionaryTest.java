@@ -0,0 +1,78 @@
+package de.hpi.idd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConcurrentIdDictionaryTest {
+
+	private final ConcurrentIdDictionary<String> dictionary = new ConcurrentIdDictionary<>();
+
+	@Test
+	public void test() {
+		for (int i = 0; i < 3000; i++) {
+			assertEquals(i, dictionary.add("id" + i));
+		}
+		assertEquals(42, dictionary.add("id42"));
+		assertEquals(2042, dictionary.indexOf("id2042"));
+		assertEquals("id2042", dictionary.get(2042));
+		assertEquals(-1, dictionary.indexOf("foo"));
+		assertNull(dictionary.get(5000));
+		assertEquals(3000, dictionary.size());
+		assertTrue(dictionary.remove("id42"));
+		assertFalse(dictionary.remove("id42"));
+		assertNull(dictionary.get(42));
+		assertEquals(-1, dictionary.indexOf("id42"));
+		assertEquals(2999, dictionary.size());
+		// ints of removed ids are not reused
+		assertEquals(3000, dictionary.add("foo"));
+		assertNull(dictionary.get(42));
+		assertEquals(3001, dictionary.add("id42"));
+		assertEquals(3002, dictionary.capacity());
+	}
+
+	@Test
+	public void testConcurrentAdds() throws InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 5000; i++) {
+						dictionary.add("id" + i);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(5000, dictionary.size());
+		assertEquals(5000, dictionary.capacity());
+		BitSet ints = new BitSet();
+		for (int i = 0; i < 5000; i++) {
+			int value = dictionary.indexOf("id" + i);
+			assertEquals("id" + i, dictionary.get(value));
+			ints.set(value);
+		}
+		assertEquals(5000, ints.cardinality());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNull() {
+		dictionary.add(null);
+	}
+}
@@ -0,0 +1,163 @@
+package de.hpi.idd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ElementCollectionTest {
+
+	private final ElementCollection<Integer> elements = new ElementCollection<>();
+
+	private List<String> tagged() {
+		List<String> tagged = new ArrayList<>();
+		elements.forEachTagged((element, tag) -> tagged.add(element + ":" + tag));
+		return tagged;
+	}
+
+	@Test
+	public void testDuplicates() {
+		for (int i = 0; i <= ElementCollection.THRESHOLD; i++) {
+			elements.add(i % 2);
+		}
+		assertTrue(elements.isHashed());
+		assertEquals(ElementCollection.THRESHOLD + 1, elements.size());
+		assertTrue(elements.remove(0));
+		assertEquals(ElementCollection.THRESHOLD, elements.size());
+		for (int i = 0; i < ElementCollection.THRESHOLD / 2; i++) {
+			assertTrue(elements.remove(0));
+		}
+		assertFalse(elements.isHashed());
+		assertFalse(elements.contains(0));
+		assertTrue(elements.contains(1));
+		assertEquals(ElementCollection.THRESHOLD / 2, elements.size());
+	}
+
+	@Test
+	public void testDuplicateOrder() {
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 4 * ElementCollection.THRESHOLD; i++) {
+			elements.add(i % 3);
+			expected.add(i % 3);
+		}
+		assertTrue(elements.isHashed());
+		assertEquals(expected, new ArrayList<>(elements));
+		for (int i = 0; i < ElementCollection.THRESHOLD; i++) {
+			assertTrue(elements.remove(i % 2));
+			expected.remove((Integer) (i % 2));
+			assertEquals(expected, new ArrayList<>(elements));
+		}
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 2 * ElementCollection.THRESHOLD; i++) {
+			elements.add(i % 5);
+			expected.add(i % 5);
+		}
+		assertTrue(elements.isHashed());
+		elements.removeIf(i -> i == 3);
+		expected.removeIf(i -> i == 3);
+		assertEquals(expected, new ArrayList<>(elements));
+		assertFalse(elements.contains(3));
+		Iterator<Integer> iterator = elements.iterator();
+		iterator.next();
+		iterator.next();
+		iterator.remove();
+		expected.remove(1);
+		assertEquals(expected, new ArrayList<>(elements));
+		assertTrue(elements.remove(1));
+		expected.remove((Integer) 1);
+		assertEquals(expected, new ArrayList<>(elements));
+		// remove the second occurrence of 4
+		iterator = elements.iterator();
+		int seen = 0;
+		while (seen < 2) {
+			if (iterator.next() == 4) {
+				seen++;
+			}
+		}
+		iterator.remove();
+		int second = expected.indexOf(4) + 1;
+		second += expected.subList(second, expected.size()).indexOf(4);
+		expected.remove(second);
+		assertEquals(expected, new ArrayList<>(elements));
+		assertTrue(elements.remove(4));
+		expected.remove((Integer) 4);
+		assertEquals(expected, new ArrayList<>(elements));
+	}
+
+	@Test
+	public void testInsertionOrder() {
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 4 * ElementCollection.THRESHOLD; i++) {
+			elements.add(100 - i);
+			expected.add(100 - i);
+			assertEquals(expected, new ArrayList<>(elements));
+		}
+		assertTrue(elements.isHashed());
+		for (int i = 0; i < 4 * ElementCollection.THRESHOLD; i += 2) {
+			assertTrue(elements.remove(100 - i));
+			expected.remove((Integer) (100 - i));
+			assertEquals(expected, new ArrayList<>(elements));
+		}
+	}
+
+	@Test
+	public void testSwitchBack() {
+		elements.addAll(Arrays.asList(1, 2, 3));
+		assertFalse(elements.isHashed());
+		for (int i = 4; i <= ElementCollection.THRESHOLD + 1; i++) {
+			elements.add(i);
+		}
+		assertTrue(elements.isHashed());
+		for (int i = 1; i <= ElementCollection.THRESHOLD / 2 + 1; i++) {
+			assertTrue(elements.isHashed());
+			assertTrue(elements.remove(i));
+		}
+		assertFalse(elements.isHashed());
+		assertFalse(elements.remove(1));
+		assertTrue(elements.contains(ElementCollection.THRESHOLD + 1));
+		assertEquals(ElementCollection.THRESHOLD / 2, elements.size());
+	}
+
+	@Test
+	public void testTags() {
+		elements.add(1);
+		elements.add(2, 20);
+		elements.add(1);
+		assertEquals(Arrays.asList("1:-1", "2:20", "1:-1"), tagged());
+		elements.setTag(1, 10);
+		assertEquals(Arrays.asList("1:10", "2:20", "1:10"), tagged());
+		List<String> expected = new ArrayList<>(tagged());
+		for (int i = 3; i <= ElementCollection.THRESHOLD; i++) {
+			elements.add(i, i % 2 == 0 ? 10 * i : ElementCollection.UNTAGGED);
+			expected.add(i + ":" + (i % 2 == 0 ? 10 * i : ElementCollection.UNTAGGED));
+		}
+		assertTrue(elements.isHashed());
+		assertEquals(expected, tagged());
+		elements.setTag(3, 30);
+		expected.set(3, "3:30");
+		assertEquals(expected, tagged());
+		for (int i = ElementCollection.THRESHOLD; i > ElementCollection.THRESHOLD / 2; i--) {
+			assertTrue(elements.remove(i));
+			expected.remove(expected.size() - 1);
+		}
+		assertTrue(elements.isHashed());
+		assertTrue(elements.remove(1));
+		expected.remove(0);
+		assertFalse(elements.isHashed());
+		assertEquals(expected, tagged());
+		elements.setTag(8, 80);
+		expected.set(expected.size() - 1, "8:80");
+		assertEquals(expected, tagged());
+		assertEquals(Arrays.asList(2, 1, 3, 4, 5, 6, 7, 8), new ArrayList<>(elements));
+	}
+}
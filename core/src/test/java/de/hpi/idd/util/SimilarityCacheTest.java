@@ -0,0 +1,81 @@
+package de.hpi.idd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SimilarityCacheTest {
+
+	private static final int THREADS = 4;
+
+	private static double similarity(Integer i, Integer j) {
+		return 1.0 / (1 + Math.abs(i - j));
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		SimilarityCache<Integer> cache = new SimilarityCache<>(256);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 100_000; i++) {
+					int key1 = ThreadLocalRandom.current().nextInt(100);
+					int key2 = ThreadLocalRandom.current().nextInt(100);
+					double sim = cache.computeIfAbsent(key1, key2, SimilarityCacheTest::similarity);
+					assertEquals(similarity(key1, key2), sim, 0.0);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals(THREADS * 100_000, cache.getHits() + cache.getMisses());
+		assertTrue(cache.size() <= cache.capacity());
+	}
+
+	@Test
+	public void testEviction() {
+		SimilarityCache<Integer> cache = new SimilarityCache<>(100);
+		assertEquals(128, cache.capacity());
+		for (int i = 0; i < 1_000; i++) {
+			cache.put(i, i + 1, 0.5);
+		}
+		assertEquals(cache.capacity(), cache.size());
+		assertEquals(1_000 - cache.capacity(), cache.getEvictions());
+		// recently read entries survive
+		cache.put(0, 0, 1.0);
+		cache.get(0, 0);
+		for (int i = 0; i < 1_000; i++) {
+			cache.put(-i, -i - 1, 0.5);
+			cache.get(0, 0);
+		}
+		assertEquals(1.0, cache.get(0, 0), 0.0);
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testSymmetry() {
+		SimilarityCache<String> cache = new SimilarityCache<>(16);
+		assertTrue(Double.isNaN(cache.get("a", "b")));
+		cache.put("a", "b", 0.5);
+		assertEquals(0.5, cache.get("b", "a"), 0.0);
+		cache.put("b", "a", 0.25);
+		assertEquals(0.25, cache.get("a", "b"), 0.0);
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+}
@@ -12,9 +12,25 @@ import java.util.Set;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 public class UnionFindTest {
 
+	private static void checkRemoveComponent(DisjointSets<Integer> uf) {
+		uf.union(1, 2);
+		uf.union(2, 3);
+		uf.union(4, 5);
+		assertEquals(2, uf.count());
+		assertEquals(Sets.newHashSet(1, 2, 3), uf.removeComponent(2));
+		assertEquals(1, uf.count());
+		assertFalse(uf.connected(1, 3));
+		assertTrue(uf.getComponent(1).isEmpty());
+		assertTrue(uf.removeComponent(1).isEmpty());
+		assertTrue(uf.connected(4, 5));
+		uf.union(1, 4);
+		assertEquals(Sets.newHashSet(1, 4, 5), uf.getComponent(5));
+	}
+
 	@Test
 	public void test() {
 		UnionFind<Integer> uf = new UnionFind<>();
@@ -46,6 +62,54 @@ public class UnionFindTest {
 		assertEquals(1, components.get(1).size());
 	}
 
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		DisjointSets<Integer> uf = new ConcurrentUnionFind<>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = offset; i < 1000; i += threads.length) {
+					uf.union(i % 10, i);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(10, uf.count());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(100, uf.getComponent(i).size());
+		}
+		assertEquals(10, Lists.newArrayList(uf).size());
+		// merge the components concurrently
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = offset; i < 999; i += threads.length) {
+					uf.union(i, i + 1);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, uf.count());
+		assertEquals(1000, uf.getComponent(500).size());
+	}
+
+	@Test
+	public void testRemoveComponent() {
+		checkRemoveComponent(new UnionFind<>());
+	}
+
+	@Test
+	public void testConcurrentRemoveComponent() {
+		checkRemoveComponent(new ConcurrentUnionFind<>());
+	}
+
 	@Test
 	public void testNullInsertion() {
 		UnionFind<Integer> uf = new UnionFind<>();
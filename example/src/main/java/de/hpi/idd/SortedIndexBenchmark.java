@@ -0,0 +1,125 @@
+package de.hpi.idd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import de.hpi.idd.dysni.avl.BraidedAVLTree;
+import de.hpi.idd.dysni.btree.BPlusTree;
+import de.hpi.idd.dysni.index.IndexNode;
+import de.hpi.idd.dysni.index.SortedIndex;
+import de.hpi.idd.dysni.persistent.PersistentAVLTree;
+import de.hpi.idd.dysni.skiplist.ConcurrentSkipListIndex;
+import de.hpi.idd.dysni.window.FixedWindowBuilder;
+import de.hpi.idd.dysni.window.WindowBuilder;
+
+/**
+ * Compares the {@link SortedIndex} implementations by inserting keys and
+ * building windows around them, like the indexer does for every record.
+ */
+public class SortedIndexBenchmark {
+
+	private enum Distribution {
+		/** random strings with a skewed distribution of prefixes like names */
+		NAMES,
+		/** ascending keys, e.g. timestamps */
+		SEQUENTIAL,
+		/** uniformly distributed keys */
+		UNIFORM
+	}
+
+	private static final String[] SYLLABLES = { "an", "ber", "ch", "de", "el", "fi", "ger", "ha", "in", "jo", "ka",
+			"li", "ma", "ne", "o", "pe", "ri", "sch", "t", "u", "ve", "w", "z" };
+
+	public static void main(String[] args) {
+		SortedIndexBenchmark benchmark = new SortedIndexBenchmark();
+		JCommander jc = new JCommander(benchmark, args);
+		if (benchmark.help) {
+			jc.usage();
+			System.exit(0);
+		}
+		benchmark.run();
+	}
+
+	@Parameter(names = "--help", help = true)
+	private boolean help = false;
+
+	@Parameter(names = { "--records", "-n" })
+	private int records = 1_000_000;
+	@Parameter(names = { "--window", "-w" })
+	private int window = 20;
+	@Parameter(names = { "--runs", "-r" })
+	private int runs = 5;
+	@Parameter(names = { "--seed" })
+	private long seed = 42;
+
+	private List<String> generateKeys(Distribution distribution) {
+		Random random = new Random(seed);
+		List<String> keys = new ArrayList<>(records);
+		for (int i = 0; i < records; i++) {
+			switch (distribution) {
+			case NAMES:
+				StringBuilder sb = new StringBuilder();
+				int syllables = 2 + random.nextInt(3);
+				for (int j = 0; j < syllables; j++) {
+					// squaring skews the distribution towards the first syllables
+					double r = random.nextDouble();
+					sb.append(SYLLABLES[(int) (r * r * SYLLABLES.length)]);
+				}
+				keys.add(sb.toString());
+				break;
+			case SEQUENTIAL:
+				keys.add(String.format("%010d", i));
+				break;
+			case UNIFORM:
+				keys.add(String.format("%010d", random.nextInt(Integer.MAX_VALUE)));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown distribution: " + distribution);
+			}
+		}
+		return keys;
+	}
+
+	public void run() {
+		System.out.println("index\tdistribution\tinsert ms\twindow ms\tcandidates");
+		for (Distribution distribution : Distribution.values()) {
+			List<String> keys = generateKeys(distribution);
+			for (int run = 0; run < runs; run++) {
+				// the first runs warm up the JIT
+				boolean print = run == runs - 1;
+				run("avl", BraidedAVLTree::new, keys, distribution, print);
+				run("b+tree", BPlusTree::new, keys, distribution, print);
+				run("skiplist", ConcurrentSkipListIndex::new, keys, distribution, print);
+				run("persistent", PersistentAVLTree::new, keys, distribution, print);
+			}
+		}
+	}
+
+	private void run(String name, Supplier<SortedIndex<String, Integer>> factory, List<String> keys,
+			Distribution distribution, boolean print) {
+		SortedIndex<String, Integer> index = factory.get();
+		WindowBuilder<String, String, Integer> builder = new FixedWindowBuilder<>(window);
+		long start = System.nanoTime();
+		for (int i = 0; i < keys.size(); i++) {
+			index.insert(keys.get(i), i);
+		}
+		long inserted = System.nanoTime();
+		long candidates = 0;
+		for (String key : keys) {
+			IndexNode<String, Integer> node = index.find(key);
+			Collection<Integer> window = builder.buildWindow(key, node);
+			candidates += window.size();
+		}
+		long built = System.nanoTime();
+		if (print) {
+			System.out.println(name + "\t" + distribution + "\t" + (inserted - start) / 1_000_000 + "\t"
+					+ (built - inserted) / 1_000_000 + "\t" + candidates);
+		}
+	}
+}